@@ -78,6 +78,41 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final int IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT =
       100;
 
+  /**
+   * Whether the RPC server takes the buffers of requests and responses from
+   * a pool, instead of allocating them per call.
+   */
+  public static final String IPC_SERVER_BUFFER_POOL_ENABLED_KEY =
+      "ipc.server.buffer.pool.enabled";
+  /** Default value for IPC_SERVER_BUFFER_POOL_ENABLED_KEY. */
+  public static final boolean IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT = false;
+  /**
+   * Whether the RPC server handlers hand the calls they take from the call
+   * queue to an executor, so more calls than handlers can block at a time.
+   */
+  public static final String IPC_SERVER_HANDLER_ASYNC_ENABLED_KEY =
+      "ipc.server.handler.async.enabled";
+  /** Default value for IPC_SERVER_HANDLER_ASYNC_ENABLED_KEY. */
+  public static final boolean IPC_SERVER_HANDLER_ASYNC_ENABLED_DEFAULT = false;
+  /** Max number of calls running at a time in async handler mode. */
+  public static final String IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_KEY =
+      "ipc.server.handler.async.max-concurrency";
+  /** Default value for IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_KEY. */
+  public static final int IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_DEFAULT =
+      1024;
+  /** Whether async handler mode runs the calls on virtual threads. */
+  public static final String IPC_SERVER_HANDLER_ASYNC_VIRTUAL_THREADS_KEY =
+      "ipc.server.handler.async.virtual-threads";
+  /** Default value for IPC_SERVER_HANDLER_ASYNC_VIRTUAL_THREADS_KEY. */
+  public static final boolean IPC_SERVER_HANDLER_ASYNC_VIRTUAL_THREADS_DEFAULT =
+      false;
+  /** Largest request or response buffer kept in the RPC buffer pool. */
+  public static final String IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY =
+      "ipc.server.buffer.pool.max-buffer-size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY. */
+  public static final int IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT =
+      64 * 1024;
+
   /** Max request size a server will accept. */
   public static final String IPC_MAXIMUM_DATA_LENGTH =
       "ipc.maximum.data.length";
@@ -362,6 +397,30 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
       + ".bind.wildcard.addr";
   public static final boolean IPC_CLIENT_BIND_WILDCARD_ADDR_DEFAULT = false;
 
+  /**
+   * Whether an ipc client coalesces the requests sent concurrently on a
+   * connection into a single write.
+   */
+  public static final String IPC_CLIENT_WRITE_COALESCING_ENABLED_KEY =
+      "ipc.client.write.coalescing.enabled";
+  /** Default value for IPC_CLIENT_WRITE_COALESCING_ENABLED_KEY. */
+  public static final boolean IPC_CLIENT_WRITE_COALESCING_ENABLED_DEFAULT =
+      false;
+  /** Number of connections an ipc client opens for each connection id. */
+  public static final String IPC_CLIENT_CONNECTIONS_PER_ID_KEY =
+      "ipc.client.connections.per-id";
+  /** Default value for IPC_CLIENT_CONNECTIONS_PER_ID_KEY. */
+  public static final int IPC_CLIENT_CONNECTIONS_PER_ID_DEFAULT = 1;
+  /**
+   * Whether the protobuf responses of an ipc client reference the received
+   * buffer for their bytes fields instead of copying them.
+   */
+  public static final String IPC_CLIENT_RESPONSE_ALIASING_ENABLED_KEY =
+      "ipc.client.response.aliasing.enabled";
+  /** Default value for IPC_CLIENT_RESPONSE_ALIASING_ENABLED_KEY. */
+  public static final boolean IPC_CLIENT_RESPONSE_ALIASING_ENABLED_DEFAULT =
+      false;
+
   public static final String IPC_CLIENT_CONNECT_MAX_RETRIES_ON_SASL_KEY =
     "ipc.client.connect.max.retries.on.sasl";
   public static final int    IPC_CLIENT_CONNECT_MAX_RETRIES_ON_SASL_DEFAULT = 5;
@@ -37,6 +37,7 @@
 import org.apache.hadoop.io.retry.RetryPolicy.RetryAction;
 import org.apache.hadoop.ipc.RPC.RpcKind;
 import org.apache.hadoop.ipc.Server.AuthProtocol;
+import org.apache.hadoop.ipc.metrics.RpcClientMetrics;
 import org.apache.hadoop.ipc.protobuf.IpcConnectionContextProtos.IpcConnectionContextProto;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcRequestHeaderProto;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcRequestHeaderProto.OperationProto;
@@ -442,6 +443,10 @@ private class Connection extends Thread {
     private IOException closeException; // close reason
     
     private final Object sendRpcRequestLock = new Object();
+    // whether concurrent requests are coalesced into one write
+    private final boolean writeCoalescing;
+    // the batch accepting requests, guarded by sendRpcRequestLock
+    private SendBatch currentBatch;
 
     private AtomicReference<Thread> connectingThread = new AtomicReference<>();
     private final Consumer<Connection> removeMethod;
@@ -454,6 +459,9 @@ private class Connection extends Thread {
       this.maxResponseLength = remoteId.conf.getInt(
           CommonConfigurationKeys.IPC_MAXIMUM_RESPONSE_LENGTH,
           CommonConfigurationKeys.IPC_MAXIMUM_RESPONSE_LENGTH_DEFAULT);
+      this.writeCoalescing = remoteId.conf.getBoolean(
+          CommonConfigurationKeys.IPC_CLIENT_WRITE_COALESCING_ENABLED_KEY,
+          CommonConfigurationKeys.IPC_CLIENT_WRITE_COALESCING_ENABLED_DEFAULT);
       this.rpcTimeout = remoteId.getRpcTimeout();
       this.maxIdleTime = remoteId.getMaxIdleTime();
       this.connectionRetryPolicy = remoteId.connectionRetryPolicy;
@@ -1143,6 +1151,11 @@ public void sendRpcRequest(final Call call)
       header.writeDelimitedTo(buf);
       RpcWritable.wrap(call.rpcRequest).writeTo(buf);
 
+      if (writeCoalescing) {
+        sendCoalesced(call, buf);
+        return;
+      }
+
       synchronized (sendRpcRequestLock) {
         Future<?> senderFuture = sendParamsExecutor.submit(new Runnable() {
           @Override
@@ -1173,17 +1186,97 @@ public void run() {
           }
         });
       
+        waitForSend(senderFuture);
+      }
+    }
+
+    /**
+     * Add a serialized request to the batch of this connection, and wait
+     * until the batch is written. The first request of a batch submits its
+     * sender; the requests added while the previous batch is being written
+     * share a single write and flush.
+     */
+    private void sendCoalesced(Call call, ResponseBuffer buf)
+        throws InterruptedException {
+      final SendBatch batch;
+      synchronized (sendRpcRequestLock) {
+        if (currentBatch == null) {
+          currentBatch = new SendBatch();
+          currentBatch.future = sendParamsExecutor.submit(currentBatch);
+        }
+        batch = currentBatch;
+        batch.add(call, buf);
+      }
+      waitForSend(batch.future);
+    }
+
+    private void waitForSend(Future<?> senderFuture)
+        throws InterruptedException {
+      try {
+        senderFuture.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+
+        // cause should only be a RuntimeException as the sender
+        // catches IOException
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else {
+          throw new RuntimeException("unexpected checked exception", cause);
+        }
+      }
+    }
+
+    /**
+     * The requests sent concurrently on the connection, written by one
+     * sender. The batch accepts requests until its sender owns the output
+     * stream.
+     */
+    private final class SendBatch implements Runnable {
+      private final List<Call> calls = new ArrayList<>();
+      private final List<ResponseBuffer> buffers = new ArrayList<>();
+      private final List<Long> addTimes = new ArrayList<>();
+      private Future<?> future;
+
+      void add(Call call, ResponseBuffer buf) {
+        calls.add(call);
+        buffers.add(buf);
+        addTimes.add(Time.monotonicNowNanos());
+      }
+
+      @Override
+      public void run() {
         try {
-          senderFuture.get();
-        } catch (ExecutionException e) {
-          Throwable cause = e.getCause();
-          
-          // cause should only be a RuntimeException as the Runnable above
-          // catches IOException
-          if (cause instanceof RuntimeException) {
-            throw (RuntimeException) cause;
-          } else {
-            throw new RuntimeException("unexpected checked exception", cause);
+          synchronized (ipcStreams.out) {
+            synchronized (sendRpcRequestLock) {
+              // later requests start a new batch
+              currentBatch = null;
+            }
+            if (shouldCloseConnection.get()) {
+              return;
+            }
+            final RpcClientMetrics metrics = RpcClientMetrics.get();
+            final long now = Time.monotonicNowNanos();
+            metrics.addSendBatch(calls.size());
+            for (int i = 0; i < calls.size(); i++) {
+              metrics.addSendQueueTime(
+                  TimeUnit.NANOSECONDS.toMicros(now - addTimes.get(i)));
+              if (LOG.isDebugEnabled()) {
+                LOG.debug(getName() + " sending #" + calls.get(i).id
+                    + " " + calls.get(i).rpcRequest);
+              }
+              // RpcRequestHeader + RpcRequest
+              buffers.get(i).writeTo(ipcStreams.out);
+            }
+            ipcStreams.flush();
+          }
+        } catch (IOException e) {
+          // a partially written batch leaves the connection in an
+          // unrecoverable state, so close it, killing outstanding calls
+          markClosed(e);
+        } finally {
+          for (ResponseBuffer buf : buffers) {
+            IOUtils.closeStream(buf);
           }
         }
       }
@@ -1594,10 +1687,12 @@ Set<ConnectionId> getConnectionIds() {
   }
   
   /** Get a connection from the pool, or create a new one and add it to the
-   * pool.  Connections to a given ConnectionId are reused. */
-  private Connection getConnection(ConnectionId remoteId,
+   * pool.  Connections to a given ConnectionId are reused, and the calls are
+   * spread over its connections when it has more than one. */
+  private Connection getConnection(ConnectionId connectionId,
       Call call, int serviceClass, AtomicBoolean fallbackToSimpleAuth)
       throws IOException {
+    final ConnectionId remoteId = connectionId.forCall(call.id);
     final InetSocketAddress address = remoteId.getAddress();
     if (address.isUnresolved()) {
       throw NetUtils.wrapException(address.getHostName(),
@@ -1673,10 +1768,28 @@ public static class ConnectionId {
     private final int pingInterval; // how often sends ping to the server in msecs
     private String saslQop; // here for testing
     private final Configuration conf; // used to get the expected kerberos principal name
+    // the number of connections opened for this id
+    private final int connectionsPerId;
+    // which of the connections of the id, from 0 to connectionsPerId - 1
+    private final int index;
+    // the ids of each connection, created on the first call
+    private volatile ConnectionId[] indexedIds;
     
     ConnectionId(InetSocketAddress address, Class<?> protocol, 
                  UserGroupInformation ticket, int rpcTimeout,
                  RetryPolicy connectionRetryPolicy, Configuration conf) {
+      this(address, protocol, ticket, rpcTimeout, connectionRetryPolicy, conf,
+          0);
+    }
+
+    private ConnectionId(InetSocketAddress address, Class<?> protocol,
+                 UserGroupInformation ticket, int rpcTimeout,
+                 RetryPolicy connectionRetryPolicy, Configuration conf,
+                 int index) {
+      this.index = index;
+      this.connectionsPerId = Math.max(1, conf.getInt(
+          CommonConfigurationKeys.IPC_CLIENT_CONNECTIONS_PER_ID_KEY,
+          CommonConfigurationKeys.IPC_CLIENT_CONNECTIONS_PER_ID_DEFAULT));
       this.protocol = protocol;
       this.address = address;
       this.ticket = ticket;
@@ -1757,6 +1870,35 @@ int getPingInterval() {
     String getSaslQop() {
       return saslQop;
     }
+
+    @VisibleForTesting
+    int getIndex() {
+      return index;
+    }
+
+    /**
+     * Returns the id of the connection carrying the given call. Calls are
+     * assigned to the connections of this id in round robin order of their
+     * call ids.
+     * @param callId the id of the call.
+     * @return this id if it has a single connection.
+     */
+    ConnectionId forCall(int callId) {
+      if (connectionsPerId <= 1) {
+        return this;
+      }
+      ConnectionId[] ids = indexedIds;
+      if (ids == null) {
+        ids = new ConnectionId[connectionsPerId];
+        ids[0] = this;
+        for (int i = 1; i < ids.length; i++) {
+          ids[i] = new ConnectionId(address, protocol, ticket, rpcTimeout,
+              connectionRetryPolicy, conf, i);
+        }
+        indexedIds = ids;
+      }
+      return ids[(callId & Integer.MAX_VALUE) % ids.length];
+    }
     
     /**
      * Returns a ConnectionId object. 
@@ -1808,7 +1950,8 @@ && isEqual(this.connectionRetryPolicy, that.connectionRetryPolicy)
             && isEqual(this.protocol, that.protocol)
             && this.rpcTimeout == that.rpcTimeout
             && this.tcpNoDelay == that.tcpNoDelay
-            && isEqual(this.ticket, that.ticket);
+            && isEqual(this.ticket, that.ticket)
+            && this.index == that.index;
       }
       return false;
     }
@@ -1824,6 +1967,7 @@ public int hashCode() {
       result = PRIME * result + rpcTimeout;
       result = PRIME * result + (tcpNoDelay ? 1231 : 1237);
       result = PRIME * result + ((ticket == null) ? 0 : ticket.hashCode());
+      result = PRIME * result + index;
       return result;
     }
     
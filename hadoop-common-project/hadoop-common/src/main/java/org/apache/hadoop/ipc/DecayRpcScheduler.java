@@ -137,6 +137,15 @@ public class DecayRpcScheduler implements RpcScheduler,
       IPC_DECAYSCHEDULER_BACKOFF_RESPONSETIME_THRESHOLDS_KEY =
       "decay-scheduler.backoff.responsetime.thresholds";
 
+  /**
+   * The decayed cost an identity may accumulate before its calls are backed
+   * off, when backoff is enabled. Service users are never backed off by
+   * budget. Zero disables the budget.
+   */
+  public static final String IPC_DECAYSCHEDULER_BACKOFF_COST_BUDGET_KEY =
+      "decay-scheduler.backoff.cost-budget";
+  public static final long IPC_DECAYSCHEDULER_BACKOFF_COST_BUDGET_DEFAULT = 0;
+
   // Specifies the top N user's call count and scheduler decision
   // Metrics2 Source
   public static final String DECAYSCHEDULER_METRICS_TOP_USER_COUNT =
@@ -149,8 +158,9 @@ public class DecayRpcScheduler implements RpcScheduler,
   private static final ObjectWriter WRITER = new ObjectMapper().writer();
 
   // Track the decayed and raw (no decay) number of calls for each schedulable
-  // identity from all previous decay windows: idx 0 for decayed call cost and
-  // idx 1 for the raw call cost
+  // identity from all previous decay windows: idx 0 for decayed call cost,
+  // idx 1 for the raw call cost and idx 2 for the number of calls backed off
+  // over the cost budget
   private final ConcurrentHashMap<Object, List<AtomicLong>> callCosts =
       new ConcurrentHashMap<Object, List<AtomicLong>>();
 
@@ -163,6 +173,8 @@ public class DecayRpcScheduler implements RpcScheduler,
   private final AtomicLong totalServiceUserDecayedCallCost = new AtomicLong();
   // The sum of all AtomicLongs in raw callCosts of service-user.
   private final AtomicLong totalServiceUserRawCallCost = new AtomicLong();
+  // The number of calls backed off over the cost budget.
+  private final AtomicLong totalBudgetBackoffs = new AtomicLong();
 
 
   // Track total call count and response time in current decay window
@@ -190,6 +202,7 @@ public class DecayRpcScheduler implements RpcScheduler,
   private final IdentityProvider identityProvider;
   private final boolean backOffByResponseTimeEnabled;
   private final long[] backOffResponseTimeThresholds;
+  private final long backOffCostBudget;
   private final String namespace;
   private final int topUsersCount; // e.g., report top 10 users' metrics
   private static final double PRECISION = 0.0001;
@@ -248,6 +261,11 @@ public DecayRpcScheduler(int numLevels, String ns, Configuration conf) {
         conf);
     this.backOffResponseTimeThresholds =
         parseBackOffResponseTimeThreshold(ns, conf, numLevels);
+    this.backOffCostBudget = conf.getLong(ns + "." +
+        IPC_DECAYSCHEDULER_BACKOFF_COST_BUDGET_KEY,
+        IPC_DECAYSCHEDULER_BACKOFF_COST_BUDGET_DEFAULT);
+    Preconditions.checkArgument(backOffCostBudget >= 0,
+        "the cost budget must not be negative");
     this.serviceUserNames = this.parseServiceUserNames(ns, conf);
 
     // Setup response time metrics
@@ -545,7 +563,9 @@ private void addCost(Object identity, long costDelta) {
       // Create the costs since no such cost exists.
       // idx 0 for decayed call cost
       // idx 1 for the raw call cost
-      cost = new ArrayList<AtomicLong>(2);
+      // idx 2 for the calls backed off over the cost budget
+      cost = new ArrayList<AtomicLong>(3);
+      cost.add(new AtomicLong(0));
       cost.add(new AtomicLong(0));
       cost.add(new AtomicLong(0));
 
@@ -713,9 +733,32 @@ public boolean shouldBackOff(Schedulable obj) {
         }
       }
     }
+    if (!backOff && backOffCostBudget > 0) {
+      backOff = isOverBudget(obj);
+    }
     return backOff;
   }
 
+  /**
+   * Whether the decayed cost of the identity of a call has reached the cost
+   * budget. The calls of such an identity are backed off on admission, so
+   * they never occupy a handler until the cost decays below the budget.
+   */
+  private boolean isOverBudget(Schedulable obj) {
+    String identity = getIdentity(obj);
+    if (isServiceUser(identity)) {
+      return false;
+    }
+    List<AtomicLong> cost = callCosts.get(identity);
+    if (cost == null || cost.get(0).get() < backOffCostBudget) {
+      return false;
+    }
+    cost.get(2).incrementAndGet();
+    totalBudgetBackoffs.incrementAndGet();
+    LOG.debug("Backing off a call of {} over the cost budget", identity);
+    return true;
+  }
+
   @Override
   public void addResponseTime(String callName, Schedulable schedulable,
       ProcessingDetails details) {
@@ -896,6 +939,16 @@ public String getCallVolumeSummary() {
       }
     }
 
+    @Override
+    public String getCostBudgetSummary() {
+      DecayRpcScheduler scheduler = delegate.get();
+      if (scheduler == null) {
+        return "No Active Scheduler";
+      } else {
+        return scheduler.getCostBudgetSummary();
+      }
+    }
+
     @Override
     public int getUniqueIdentityCount() {
       DecayRpcScheduler scheduler = delegate.get();
@@ -995,6 +1048,7 @@ public void getMetrics(MetricsCollector collector, boolean all) {
       addRawCallVolume(rb);
       addServiceUserDecayedCallVolume(rb);
       addServiceUserRawCallVolume(rb);
+      addBudgetBackoffs(rb);
     } catch (Exception e) {
       LOG.warn("Exception thrown while metric collection. Exception : "
           + e.getMessage());
@@ -1032,6 +1086,12 @@ private void addServiceUserRawCallVolume(MetricsRecordBuilder rb) {
         getTotalServiceUserRawCallVolume());
   }
 
+  // Key: BudgetBackoffs
+  private void addBudgetBackoffs(MetricsRecordBuilder rb) {
+    rb.addCounter(Interns.info("BudgetBackoffs", "Calls backed off over " +
+        "the cost budget"), getTotalBudgetBackoffs());
+  }
+
   // Key: Priority.0.CompletedCallVolume
   private void addCallVolumePerPriority(MetricsRecordBuilder rb) {
     for (int i = 0; i < responseTimeCountInLastWindow.length(); i++) {
@@ -1062,6 +1122,14 @@ private void addTopNCallerSummary(MetricsRecordBuilder rb) {
       String topCallerPriority = topCaller + ".Priority";
       rb.addCounter(Interns.info(topCallerVolume, topCallerVolume),
           entry.getValue());
+      if (backOffCostBudget > 0) {
+        List<AtomicLong> cost = callCosts.get(entry.getName());
+        if (cost != null) {
+          String topCallerBudgetUsage = topCaller + ".BudgetUsage";
+          rb.addGauge(Interns.info(topCallerBudgetUsage, topCallerBudgetUsage),
+              cost.get(0).get() * 100 / backOffCostBudget);
+        }
+      }
       Integer priority = decisions.get(entry.getName());
       if (priority != null) {
         rb.addCounter(Interns.info(topCallerPriority, topCallerPriority),
@@ -1099,6 +1167,38 @@ public String getSchedulingDecisionSummary() {
     }
   }
 
+  /**
+   * @return for each identity with a cost, its decayed cost, the percentage
+   * of the cost budget it uses and its calls backed off over the budget, as
+   * JSON. Empty if the budget is disabled.
+   */
+  public String getCostBudgetSummary() {
+    if (backOffCostBudget <= 0) {
+      return "{}";
+    }
+    Map<Object, Map<String, Long>> summary = new HashMap<>();
+    for (Map.Entry<Object, List<AtomicLong>> entry : callCosts.entrySet()) {
+      long decayedCost = entry.getValue().get(0).get();
+      long backoffs = entry.getValue().get(2).get();
+      if (decayedCost > 0 || backoffs > 0) {
+        Map<String, Long> budget = new HashMap<>();
+        budget.put("Cost", decayedCost);
+        budget.put("BudgetUsage", decayedCost * 100 / backOffCostBudget);
+        budget.put("BudgetBackoffs", backoffs);
+        summary.put(entry.getKey(), budget);
+      }
+    }
+    try {
+      return WRITER.writeValueAsString(summary);
+    } catch (Exception e) {
+      return "Error: " + e.getMessage();
+    }
+  }
+
+  public long getTotalBudgetBackoffs() {
+    return totalBudgetBackoffs.get();
+  }
+
   public String getCallVolumeSummary() {
     try {
       return WRITER.writeValueAsString(getDecayedCallCosts());
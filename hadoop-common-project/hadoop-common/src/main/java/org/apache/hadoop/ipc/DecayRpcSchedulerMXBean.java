@@ -25,6 +25,8 @@ public interface DecayRpcSchedulerMXBean {
   // Get an overview of the requests in history.
   String getSchedulingDecisionSummary();
   String getCallVolumeSummary();
+  // Get the usage of the cost budget per identity.
+  String getCostBudgetSummary();
   int getUniqueIdentityCount();
   long getTotalCallVolume();
   double[] getAverageResponseTime();
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+
+import static org.apache.hadoop.ipc.ProcessingDetails.Timing;
+
+/**
+ * A {@link CostProvider} that bills an operation for the time it held the
+ * server lock, as measured by the lock (for example the FSNamesystem lock
+ * of the NameNode) in the {@link ProcessingDetails} of the call. Users
+ * running a few expensive operations, such as recursive listings or content
+ * summaries, are charged for the lock time they consume rather than for
+ * their number of calls.
+ * <p>
+ * The cost of a call is, in microseconds,
+ * <pre>
+ *   call + lockshared + exclusive-weight * lockexclusive
+ * </pre>
+ * where the exclusive lock hold time is weighted as it blocks all other
+ * handlers, and the fixed call cost keeps the cheap calls of a user from
+ * being free. Both are configured with the {@link #CONFIG_PREFIX} key,
+ * prefixed with the IPC namespace. For example:
+ * <pre>
+ *   ipc.8020.cost-provider.impl=org.apache.hadoop.ipc.LockTimeCostProvider
+ *   ipc.8020.lock-time-cost.exclusive-weight=20
+ *   ipc.8020.lock-time-cost.call=50
+ * </pre>
+ */
+public class LockTimeCostProvider implements CostProvider {
+
+  /** The prefix of the configuration of this provider. */
+  public static final String CONFIG_PREFIX = ".lock-time-cost.";
+  public static final String EXCLUSIVE_WEIGHT_KEY = "exclusive-weight";
+  static final int DEFAULT_EXCLUSIVE_WEIGHT = 10;
+  public static final String CALL_COST_KEY = "call";
+  static final long DEFAULT_CALL_COST = 100;
+
+  private long exclusiveWeight = -1;
+  private long callCost;
+
+  @Override
+  public void init(String namespace, Configuration conf) {
+    exclusiveWeight = conf.getInt(
+        namespace + CONFIG_PREFIX + EXCLUSIVE_WEIGHT_KEY,
+        DEFAULT_EXCLUSIVE_WEIGHT);
+    callCost = conf.getLong(namespace + CONFIG_PREFIX + CALL_COST_KEY,
+        DEFAULT_CALL_COST);
+  }
+
+  /**
+   * Calculates the lock time cost of a call to be used as the cost in
+   * {@link DecayRpcScheduler}.
+   *
+   * @param details Processing details
+   * @return The cost of the call, in microseconds of lock hold time.
+   */
+  @Override
+  public long getCost(ProcessingDetails details) {
+    assert exclusiveWeight >= 0 : "Cost provider must be initialized before use";
+    return callCost
+        + details.get(Timing.LOCKSHARED, TimeUnit.MICROSECONDS)
+        + exclusiveWeight
+            * details.get(Timing.LOCKEXCLUSIVE, TimeUnit.MICROSECONDS);
+  }
+}
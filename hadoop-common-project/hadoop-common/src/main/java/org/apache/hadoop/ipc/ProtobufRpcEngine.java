@@ -601,6 +601,10 @@ public void writeTo(ResponseBuffer out) throws IOException {
     public String toString() {
       try {
         RequestHeaderProto header = getRequestHeader();
+        if (header == null) {
+          // the request was released before its header was decoded
+          return super.toString();
+        }
         return header.getDeclaringClassProtocolName() + "." +
                header.getMethodName();
       } catch (IOException e) {
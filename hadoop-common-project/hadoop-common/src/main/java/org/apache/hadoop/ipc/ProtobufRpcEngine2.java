@@ -25,6 +25,7 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.classification.InterfaceStability.Unstable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.retry.RetryPolicy;
 import org.apache.hadoop.ipc.Client.ConnectionId;
@@ -126,6 +127,8 @@ private static final class Invoker implements RpcInvocationHandler {
     private final String protocolName;
     private AtomicBoolean fallbackToSimpleAuth;
     private AlignmentContext alignmentContext;
+    // whether responses are parsed without copying their bytes fields
+    private final boolean responseAliasing;
 
     private Invoker(Class<?> protocol, InetSocketAddress addr,
         UserGroupInformation ticket, Configuration conf, SocketFactory factory,
@@ -149,6 +152,9 @@ private Invoker(Class<?> protocol, Client.ConnectionId connId,
       this.protocolName = RPC.getProtocolName(protocol);
       this.clientProtocolVersion = RPC
           .getProtocolVersion(protocol);
+      this.responseAliasing = conf.getBoolean(
+          CommonConfigurationKeys.IPC_CLIENT_RESPONSE_ALIASING_ENABLED_KEY,
+          CommonConfigurationKeys.IPC_CLIENT_RESPONSE_ALIASING_ENABLED_DEFAULT);
     }
 
     private RequestHeaderProto constructRpcRequestHeader(Method method) {
@@ -289,7 +295,11 @@ private Message getReturnMessage(final Method method,
       }
       Message returnMessage;
       try {
-        returnMessage = buf.getValue(prototype.getDefaultInstanceForType());
+        // the client allocates a buffer per response, so the message may
+        // reference it
+        returnMessage = responseAliasing
+            ? buf.getAliasedValue(prototype.getDefaultInstanceForType())
+            : buf.getValue(prototype.getDefaultInstanceForType());
 
         if (LOG.isTraceEnabled()) {
           LOG.trace(Thread.currentThread().getId() + ": Response <- " +
@@ -593,6 +603,10 @@ public void writeTo(ResponseBuffer out) throws IOException {
     public String toString() {
       try {
         RequestHeaderProto header = getRequestHeader();
+        if (header == null) {
+          // the request was released before its header was decoded
+          return super.toString();
+        }
         return header.getDeclaringClassProtocolName() + "." +
                header.getMethodName();
       } catch (IOException e) {
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.ByteBufferPool;
+import org.apache.hadoop.ipc.metrics.RpcMetrics;
+import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A pool of heap buffers for framing RPC requests and responses, divided in
+ * power of two size classes. A request for a buffer is served by the
+ * smallest class which fits it, and the returned buffer has its limit set to
+ * the requested length. Lengths above the largest class are allocated
+ * without pooling.
+ *
+ * Each class retains at most {@link #MAX_BYTES_PER_CLASS} bytes, and at
+ * least {@link #MIN_BUFFERS_PER_CLASS} buffers. Buffers are taken on the
+ * reader threads and handlers, and returned by the handlers and the
+ * responder, so the classes are lock free queues.
+ *
+ * Heap buffers are used as the request and response decoders work on the
+ * backing array.
+ */
+@InterfaceAudience.Private
+class RpcBufferPool implements ByteBufferPool {
+  static final int MIN_BUFFER_SIZE = 256;
+  static final int MAX_BYTES_PER_CLASS = 1024 * 1024;
+  static final int MIN_BUFFERS_PER_CLASS = 8;
+
+  private final Queue<ByteBuffer>[] classes;
+  private final AtomicInteger[] sizes;
+  private final int[] maxBuffers;
+  private final int maxBufferSize;
+  // the server whose metrics are updated, may be null
+  private final Server server;
+
+  @SuppressWarnings("unchecked")
+  RpcBufferPool(int maxBufferSize, Server server) {
+    int numClasses = 1;
+    while ((MIN_BUFFER_SIZE << (numClasses - 1)) < maxBufferSize &&
+        numClasses < 24) {
+      numClasses++;
+    }
+    this.maxBufferSize = MIN_BUFFER_SIZE << (numClasses - 1);
+    this.classes = new Queue[numClasses];
+    this.sizes = new AtomicInteger[numClasses];
+    this.maxBuffers = new int[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      classes[i] = new ConcurrentLinkedQueue<>();
+      sizes[i] = new AtomicInteger();
+      maxBuffers[i] = Math.max(MIN_BUFFERS_PER_CLASS,
+          MAX_BYTES_PER_CLASS / (MIN_BUFFER_SIZE << i));
+    }
+    this.server = server;
+  }
+
+  private RpcMetrics getRpcMetrics() {
+    // the pools are created before the metrics of the server
+    return server != null ? server.getRpcMetrics() : null;
+  }
+
+  /** @return the index of the smallest class fitting the length, or -1. */
+  private int getClass(int length) {
+    if (length > maxBufferSize) {
+      return -1;
+    }
+    int c = 0;
+    while ((MIN_BUFFER_SIZE << c) < length) {
+      c++;
+    }
+    return c;
+  }
+
+  /**
+   * Get a heap buffer with the limit set to the given length. The contents
+   * of the buffer are undefined.
+   */
+  @Override
+  public ByteBuffer getBuffer(boolean direct, int length) {
+    final int c = getClass(length);
+    if (c < 0) {
+      return ByteBuffer.allocate(length);
+    }
+    final RpcMetrics rpcMetrics = getRpcMetrics();
+    ByteBuffer buffer = classes[c].poll();
+    if (buffer != null) {
+      sizes[c].decrementAndGet();
+      if (rpcMetrics != null) {
+        rpcMetrics.incrBufferPoolHits();
+      }
+      buffer.clear();
+    } else {
+      if (rpcMetrics != null) {
+        rpcMetrics.incrBufferPoolMisses();
+      }
+      buffer = ByteBuffer.allocate(MIN_BUFFER_SIZE << c);
+    }
+    buffer.limit(length);
+    return buffer;
+  }
+
+  /**
+   * Return a buffer to the pool. The caller must not access the buffer
+   * afterwards. Buffers whose capacity is not the size of a class are
+   * ignored.
+   */
+  @Override
+  public void putBuffer(ByteBuffer buffer) {
+    if (buffer == null || buffer.isDirect() || buffer.arrayOffset() != 0) {
+      return;
+    }
+    final int capacity = buffer.capacity();
+    final int c = getClass(capacity);
+    if (c < 0 || (MIN_BUFFER_SIZE << c) != capacity) {
+      return;
+    }
+    if (sizes[c].incrementAndGet() > maxBuffers[c]) {
+      sizes[c].decrementAndGet();
+      return;
+    }
+    classes[c].offer(buffer);
+  }
+
+  @VisibleForTesting
+  int getNumBuffers() {
+    int n = 0;
+    for (AtomicInteger size : sizes) {
+      n += size.get();
+    }
+    return n;
+  }
+}
@@ -96,9 +96,16 @@ <T> T readFrom(ByteBuffer bb) throws IOException {
   // adapter for Protobufs.
   static class ProtobufWrapper extends RpcWritable {
     private Message message;
+    // whether bytes fields reference the buffer instead of copies of it
+    private final boolean aliasing;
 
     ProtobufWrapper(Message message) {
+      this(message, false);
+    }
+
+    ProtobufWrapper(Message message, boolean aliasing) {
       this.message = message;
+      this.aliasing = aliasing;
     }
 
     Message getMessage() {
@@ -122,6 +129,7 @@ <T> T readFrom(ByteBuffer bb) throws IOException {
       // that internally buffer.
       CodedInputStream cis = CodedInputStream.newInstance(
           bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+      cis.enableAliasing(aliasing);
       try {
         cis.pushLimit(cis.readRawVarint32());
         message = message.getParserForType().parseFrom(cis);
@@ -232,8 +240,26 @@ public <T> T getValue(T value) throws IOException {
       return RpcWritable.wrap(value).readFrom(bb);
     }
 
+    /**
+     * Parse a protobuf message whose bytes fields reference the buffer
+     * rather than copies of it. The buffer must not be reused while the
+     * message is referenced, and is retained as long as any of its bytes
+     * fields is.
+     */
+    <T extends Message> T getAliasedValue(T value) throws IOException {
+      return new ProtobufWrapper(value, true).readFrom(bb);
+    }
+
     public int remaining() {
       return bb.remaining();
     }
+
+    /**
+     * Drop the reference to the request buffer once the call is processed,
+     * as the server may reuse the buffer for another request.
+     */
+    void release() {
+      bb = null;
+    }
   }
 }
\ No newline at end of file
@@ -29,6 +29,7 @@
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.BindException;
 import java.net.InetAddress;
@@ -64,7 +65,10 @@
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -126,6 +130,7 @@
 import org.apache.hadoop.tracing.TraceUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.thirdparty.protobuf.ByteString;
 import org.apache.hadoop.thirdparty.protobuf.CodedOutputStream;
 import org.apache.hadoop.thirdparty.protobuf.Message;
@@ -462,6 +467,8 @@ public static int getPriorityLevel() {
   private int handlerCount;                       // number of handler threads
   private int readThreads;                        // number of read threads
   private int readerPendingConnectionQueue;         // number of connections to queue per read thread
+  private boolean bufferPoolEnabled;                // if T then pool request and response buffers
+  private int bufferPoolMaxBufferSize;              // largest pooled buffer
   private Class<? extends Writable> rpcRequestClass;   // class used for deserializing the rpc request
   final protected RpcMetrics rpcMetrics;
   final protected RpcDetailedMetrics rpcDetailedMetrics;
@@ -497,6 +504,10 @@ protected ResponseBuffer initialValue() {
   private Map<Integer, Listener> auxiliaryListenerMap;
   private Responder responder = null;
   private Handler[] handlers = null;
+  // runs the calls taken by the handlers, if not null
+  private ExecutorService asyncHandlerExecutor = null;
+  // bounds the number of calls running on asyncHandlerExecutor
+  private Semaphore asyncHandlerPermits = null;
 
   private boolean logSlowRPC = false;
 
@@ -913,6 +924,12 @@ void doResponse(Throwable t) throws IOException {
 
     void doResponse(Throwable t, RpcStatusProto proto) throws IOException {}
 
+    /**
+     * Release the buffer of the request once the call has been processed
+     * by a handler. No-op unless overridden.
+     */
+    void releaseRequestBuffer() {}
+
     // For Schedulable
     @Override
     public UserGroupInformation getUserGroupInformation() {
@@ -966,6 +983,7 @@ private class RpcCall extends Call {
     final Connection connection;  // connection to client
     final Writable rpcRequest;    // Serialized Rpc request from client
     ByteBuffer rpcResponse;       // the response for this call
+    ByteBuffer requestBuffer;     // the buffer rpcRequest was read from
 
     private ResponseParams responseParams; // the response params
     private Writable rv;                   // the byte response
@@ -1097,6 +1115,17 @@ void setResponse(ByteBuffer response) throws IOException {
       this.rpcResponse = response;
     }
 
+    @Override
+    void releaseRequestBuffer() {
+      if (requestBuffer != null) {
+        if (rpcRequest instanceof RpcWritable.Buffer) {
+          ((RpcWritable.Buffer) rpcRequest).release();
+        }
+        connection.releaseBuffer(requestBuffer);
+        requestBuffer = null;
+      }
+    }
+
     @Override
     void doResponse(Throwable t, RpcStatusProto status) throws IOException {
       RpcCall call = this;
@@ -1253,6 +1282,8 @@ void setIsAuxiliary() {
     private class Reader extends Thread {
       final private BlockingQueue<Connection> pendingConnections;
       private final Selector readSelector;
+      // buffers of the connections of this reader, null if not pooled
+      private final RpcBufferPool bufferPool;
 
       Reader(String name) throws IOException {
         super(name);
@@ -1260,6 +1291,12 @@ private class Reader extends Thread {
         this.pendingConnections =
             new LinkedBlockingQueue<Connection>(readerPendingConnectionQueue);
         this.readSelector = Selector.open();
+        this.bufferPool = bufferPoolEnabled ?
+            new RpcBufferPool(bufferPoolMaxBufferSize, Server.this) : null;
+      }
+
+      RpcBufferPool getBufferPool() {
+        return bufferPool;
       }
       
       @Override
@@ -1427,6 +1464,7 @@ void doAccept(SelectionKey key) throws InterruptedException, IOException,  OutOf
           continue;
         }
         key.attach(c);  // so closeCurrentConnection can get the object
+        c.setBufferPool(reader.getBufferPool());
         reader.addConnection(c);
       }
     }
@@ -1672,6 +1710,7 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
           }
           if (!call.rpcResponse.hasRemaining()) {
             //Clear out the response buffer so it can be collected
+            call.connection.releaseBuffer(call.rpcResponse);
             call.rpcResponse = null;
             call.connection.decRpcCount();
             if (numElements == 1) {    // last call fully processes.
@@ -1852,6 +1891,8 @@ public class Connection {
 
     private boolean sentNegotiate = false;
     private boolean useWrap = false;
+    // pool of the request and response buffers, null if not pooled
+    private RpcBufferPool bufferPool;
     
     public Connection(SocketChannel channel, long lastContact,
         int ingressPort, boolean isOnAuxiliaryPort) {
@@ -2316,7 +2357,7 @@ public int readAndProcess() throws IOException, InterruptedException {
           dataLength = dataLengthBuffer.getInt();
           checkDataLength(dataLength);
           // Set buffer for reading EXACTLY the RPC-packet length and no more.
-          data = ByteBuffer.allocate(dataLength);
+          data = allocateBuffer(dataLength);
         }
         // Now read the RPC packet
         count = channelRead(channel, data);
@@ -2526,7 +2567,7 @@ private void unwrapPacketAndProcessRpcs(byte[] inBuf)
         if (unwrappedData == null) {
           unwrappedDataLengthBuffer.flip();
           int unwrappedDataLength = unwrappedDataLengthBuffer.getInt();
-          unwrappedData = ByteBuffer.allocate(unwrappedDataLength);
+          unwrappedData = allocateBuffer(unwrappedDataLength);
         }
 
         count = channelRead(ch, unwrappedData);
@@ -2566,6 +2607,8 @@ private void processOneRpc(ByteBuffer bb)
       // should be closed.
       int callId = -1;
       int retry = RpcConstants.INVALID_RETRY_COUNT;
+      // true once a queued call owns the buffer
+      boolean queued = false;
       try {
         final RpcWritable.Buffer buffer = RpcWritable.Buffer.wrap(bb);
         final RpcRequestHeaderProto header =
@@ -2584,7 +2627,8 @@ private void processOneRpc(ByteBuffer bb)
               RpcErrorCodeProto.FATAL_INVALID_RPC_HEADER,
               "Connection context not established");
         } else {
-          processRpcRequest(header, buffer);
+          processRpcRequest(header, buffer, bb);
+          queued = true;
         }
       } catch (RpcServerException rse) {
         // inform client of error, but do not rethrow else non-fatal
@@ -2601,6 +2645,10 @@ private void processOneRpc(ByteBuffer bb)
             rse.getRpcStatusProto(), rse.getRpcErrorCodeProto(), null,
             t.getClass().getName(), t.getMessage());
         sendResponse(call);
+      } finally {
+        if (!queued) {
+          releaseBuffer(bb);
+        }
       }
     }
 
@@ -2641,6 +2689,7 @@ private void checkRpcHeaders(RpcRequestHeaderProto header)
      *     its response will be sent later when the request is processed.
      * @param header - RPC request header
      * @param buffer - stream to request payload
+     * @param requestBuffer - buffer of the request, released by the handler
      * @throws RpcServerException - generally due to fatal rpc layer issues
      *   such as invalid header or deserialization error.  The call queue
      *   may also throw a fatal or non-fatal exception on overflow.
@@ -2649,8 +2698,8 @@ private void checkRpcHeaders(RpcRequestHeaderProto header)
      * @throws InterruptedException
      */
     private void processRpcRequest(RpcRequestHeaderProto header,
-        RpcWritable.Buffer buffer) throws RpcServerException,
-        InterruptedException {
+        RpcWritable.Buffer buffer, ByteBuffer requestBuffer)
+        throws RpcServerException, InterruptedException {
       Class<? extends Writable> rpcRequestClass = 
           getRpcRequestWrapper(header.getRpcKind());
       if (rpcRequestClass == null) {
@@ -2708,6 +2757,7 @@ private void processRpcRequest(RpcRequestHeaderProto header,
           header.getRetryCount(), rpcRequest,
           ProtoUtil.convert(header.getRpcKind()),
           header.getClientId().toByteArray(), span, callerContext);
+      call.requestBuffer = requestBuffer;
 
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
@@ -2860,6 +2910,26 @@ public void setServiceClass(int serviceClass) {
       this.serviceClass = serviceClass;
     }
 
+    void setBufferPool(RpcBufferPool bufferPool) {
+      this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Get a buffer with the limit set to the given length, from the pool if
+     * buffers are pooled.
+     */
+    ByteBuffer allocateBuffer(int length) {
+      return bufferPool != null ?
+          bufferPool.getBuffer(false, length) : ByteBuffer.allocate(length);
+    }
+
+    /** Return a buffer which is no longer referenced to the pool. */
+    void releaseBuffer(ByteBuffer buffer) {
+      if (bufferPool != null) {
+        bufferPool.putBuffer(buffer);
+      }
+    }
+
     private synchronized void close() {
       disposeSasl();
       data = null;
@@ -2927,17 +2997,19 @@ public void run() {
       LOG.debug(Thread.currentThread().getName() + ": starting");
       SERVER.set(Server.this);
       while (running) {
-        TraceScope traceScope = null;
         Call call = null;
-        long startTimeNanos = 0;
-        // True iff the connection for this call has been dropped.
-        // Set to true by default and update to false later if the connection
-        // can be succesfully read.
-        boolean connDropped = true;
-
+        // True iff a permit of the async handler executor is held.
+        boolean permitHeld = false;
         try {
+          if (asyncHandlerPermits != null) {
+            // Wait for a free slot before taking the next call, so the calls
+            // stay in the call queue, where they are scheduled, while the
+            // concurrency limit is reached.
+            asyncHandlerPermits.acquire();
+            permitHeld = true;
+          }
           call = callQueue.take(); // pop the queue; maybe blocked here
-          startTimeNanos = Time.monotonicNowNanos();
+          final long startTimeNanos = Time.monotonicNowNanos();
           if (alignmentContext != null && call.isCallCoordinated() &&
               call.getClientStateId() > alignmentContext.getLastSeenStateId()) {
             /*
@@ -2952,57 +3024,97 @@ public void run() {
              * In case of Observer, it handles only reads, which are
              * commutative.
              */
-            // Re-queue the call and continue
+            // Re-queue the call and continue. Only its queue time is
+            // recorded, as for a call whose connection has been dropped.
+            updateMetrics(call, startTimeNanos, true);
             requeueCall(call);
             continue;
           }
-          if (LOG.isDebugEnabled()) {
-            LOG.debug(Thread.currentThread().getName() + ": " + call + " for RpcKind " + call.rpcKind);
-          }
-          CurCall.set(call);
-          if (call.span != null) {
-            traceScope = tracer.activateSpan(call.span);
-            call.span.addTimelineAnnotation("called");
-          }
-          // always update the current call context
-          CallerContext.setCurrent(call.callerContext);
-          UserGroupInformation remoteUser = call.getRemoteUser();
-          connDropped = !call.isOpen();
-          if (remoteUser != null) {
-            remoteUser.doAs(call);
+          if (asyncHandlerExecutor != null) {
+            final Call asyncCall = call;
+            asyncHandlerExecutor.execute(() -> {
+              try {
+                SERVER.set(Server.this);
+                processCall(asyncCall, startTimeNanos);
+              } finally {
+                asyncHandlerPermits.release();
+              }
+            });
+            permitHeld = false;
           } else {
-            call.run();
+            processCall(call, startTimeNanos);
           }
         } catch (InterruptedException e) {
           if (running) {                          // unexpected -- log it
             LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
-            if (traceScope != null) {
-              traceScope.addTimelineAnnotation("unexpectedly interrupted: " +
-                  StringUtils.stringifyException(e));
-            }
           }
         } catch (Exception e) {
           LOG.info(Thread.currentThread().getName() + " caught an exception", e);
-          if (traceScope != null) {
-            traceScope.addTimelineAnnotation("Exception: " +
-                StringUtils.stringifyException(e));
-          }
         } finally {
-          CurCall.set(null);
-          IOUtils.cleanupWithLogger(LOG, traceScope);
-          if (call != null) {
-            updateMetrics(call, startTimeNanos, connDropped);
-            ProcessingDetails.LOG.debug(
-                "Served: [{}]{} name={} user={} details={}",
-                call, (call.isResponseDeferred() ? ", deferred" : ""),
-                call.getDetailedMetricsName(), call.getRemoteUser(),
-                call.getProcessingDetails());
+          if (permitHeld) {
+            asyncHandlerPermits.release();
           }
         }
       }
       LOG.debug(Thread.currentThread().getName() + ": exiting");
     }
 
+    /**
+     * Run a call taken from the call queue, on the handler thread or on a
+     * thread of the async handler executor.
+     */
+    private void processCall(Call call, long startTimeNanos) {
+      TraceScope traceScope = null;
+      // True iff the connection for this call has been dropped.
+      // Set to true by default and update to false later if the connection
+      // can be succesfully read.
+      boolean connDropped = true;
+
+      try {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(Thread.currentThread().getName() + ": " + call + " for RpcKind " + call.rpcKind);
+        }
+        CurCall.set(call);
+        if (call.span != null) {
+          traceScope = tracer.activateSpan(call.span);
+          call.span.addTimelineAnnotation("called");
+        }
+        // always update the current call context
+        CallerContext.setCurrent(call.callerContext);
+        UserGroupInformation remoteUser = call.getRemoteUser();
+        connDropped = !call.isOpen();
+        if (remoteUser != null) {
+          remoteUser.doAs(call);
+        } else {
+          call.run();
+        }
+      } catch (InterruptedException e) {
+        if (running) {                          // unexpected -- log it
+          LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
+          if (traceScope != null) {
+            traceScope.addTimelineAnnotation("unexpectedly interrupted: " +
+                StringUtils.stringifyException(e));
+          }
+        }
+      } catch (Exception e) {
+        LOG.info(Thread.currentThread().getName() + " caught an exception", e);
+        if (traceScope != null) {
+          traceScope.addTimelineAnnotation("Exception: " +
+              StringUtils.stringifyException(e));
+        }
+      } finally {
+        CurCall.set(null);
+        IOUtils.cleanupWithLogger(LOG, traceScope);
+        updateMetrics(call, startTimeNanos, connDropped);
+        ProcessingDetails.LOG.debug(
+            "Served: [{}]{} name={} user={} details={}",
+            call, (call.isResponseDeferred() ? ", deferred" : ""),
+            call.getDetailedMetricsName(), call.getRemoteUser(),
+            call.getProcessingDetails());
+        call.releaseRequestBuffer();
+      }
+    }
+
     private void requeueCall(Call call)
         throws IOException, InterruptedException {
       try {
@@ -3103,6 +3215,12 @@ protected Server(String bindAddress, int port,
     this.readerPendingConnectionQueue = conf.getInt(
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_KEY,
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT);
+    this.bufferPoolEnabled = conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT);
+    this.bufferPoolMaxBufferSize = conf.getInt(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT);
 
     // Setup appropriate callqueue
     final String prefix = getQueueClassPrefix();
@@ -3272,17 +3390,17 @@ private void setupResponse(
 
   private void setupResponse(RpcCall call,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
-    final byte[] response;
+    final ByteBuffer response;
     if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
-      response = setupResponseForProtobuf(header, rv);
+      response = setupResponseForProtobuf(call.connection, header, rv);
     } else {
-      response = setupResponseForWritable(header, rv);
+      response = ByteBuffer.wrap(setupResponseForWritable(header, rv));
     }
-    if (response.length > maxRespSize) {
-      LOG.warn("Large response size " + response.length + " for call "
+    if (response.remaining() > maxRespSize) {
+      LOG.warn("Large response size " + response.remaining() + " for call "
           + call.toString());
     }
-    call.setResponse(ByteBuffer.wrap(response));
+    call.setResponse(response);
   }
 
   private byte[] setupResponseForWritable(
@@ -3306,7 +3424,7 @@ private byte[] setupResponseForWritable(
 
   // writing to a pre-allocated array is the most efficient way to construct
   // a protobuf response.
-  private byte[] setupResponseForProtobuf(
+  private ByteBuffer setupResponseForProtobuf(Connection connection,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     Message payload = (rv != null)
         ? ((RpcWritable.ProtobufWrapper)rv).getMessage() : null;
@@ -3314,8 +3432,9 @@ private byte[] setupResponseForProtobuf(
     if (payload != null) {
       length += getDelimitedLength(payload);
     }
-    byte[] buf = new byte[length + 4];
-    CodedOutputStream cos = CodedOutputStream.newInstance(buf);
+    ByteBuffer response = connection.allocateBuffer(length + 4);
+    CodedOutputStream cos = CodedOutputStream.newInstance(
+        response.array(), 0, length + 4);
     // the stream only supports little endian ints
     cos.writeRawByte((byte)((length >>> 24) & 0xFF));
     cos.writeRawByte((byte)((length >>> 16) & 0xFF));
@@ -3327,7 +3446,7 @@ private byte[] setupResponseForProtobuf(
       cos.writeUInt32NoTag(payload.getSerializedSize());
       payload.writeTo(cos);
     }
-    return buf;
+    return response;
   }
 
   private static int getDelimitedLength(Message message) {
@@ -3364,12 +3483,16 @@ private void setupResponseOldVersionFatal(ByteArrayOutputStream response,
 
   private void wrapWithSasl(RpcCall call) throws IOException {
     if (call.connection.saslServer != null) {
-      byte[] token = call.rpcResponse.array();
+      final ByteBuffer response = call.rpcResponse;
+      byte[] token;
       // synchronization may be needed since there can be multiple Handler
       // threads using saslServer to wrap responses.
       synchronized (call.connection.saslServer) {
-        token = call.connection.saslServer.wrap(token, 0, token.length);
+        token = call.connection.saslServer.wrap(response.array(),
+            response.arrayOffset() + response.position(),
+            response.remaining());
       }
+      call.connection.releaseBuffer(response);
       if (LOG.isDebugEnabled())
         LOG.debug("Adding saslServer wrapped token of size " + token.length
             + " as call response.");
@@ -3407,6 +3530,26 @@ public synchronized void start() {
       }
     }
 
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_ENABLED_DEFAULT)) {
+      int maxConcurrency = conf.getInt(
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_KEY,
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_DEFAULT);
+      if (maxConcurrency < 1) {
+        LOG.warn("{} is set to {}. Using the handler count {} instead.",
+            CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_KEY,
+            maxConcurrency, handlerCount);
+        maxConcurrency = handlerCount;
+      }
+      asyncHandlerPermits = new Semaphore(maxConcurrency);
+      asyncHandlerExecutor = newAsyncHandlerExecutor(conf.getBoolean(
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_VIRTUAL_THREADS_KEY,
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_VIRTUAL_THREADS_DEFAULT));
+      LOG.info("Running up to {} calls at a time on {}", maxConcurrency,
+          asyncHandlerExecutor);
+    }
+
     handlers = new Handler[handlerCount];
     
     for (int i = 0; i < handlerCount; i++) {
@@ -3415,6 +3558,27 @@ public synchronized void start() {
     }
   }
 
+  /**
+   * Create the executor running the calls in async handler mode. A virtual
+   * thread per call is used if requested and the JVM supports it, otherwise
+   * a cached pool of daemon threads.
+   */
+  private ExecutorService newAsyncHandlerExecutor(boolean virtualThreads) {
+    if (virtualThreads) {
+      try {
+        Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) m.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        LOG.info("Virtual threads are not supported by this JVM. Using " +
+            "platform threads for the async handlers.");
+      }
+    }
+    return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("IPC Server async handler %d on default port " + port)
+        .build());
+  }
+
   /** Stops the service.  No new calls will be handled after this is called. */
   public synchronized void stop() {
     LOG.info("Stopping server on " + port);
@@ -3426,6 +3590,9 @@ public synchronized void stop() {
         }
       }
     }
+    if (asyncHandlerExecutor != null) {
+      asyncHandlerExecutor.shutdownNow();
+    }
     listener.interrupt();
     listener.doStop();
     if (auxiliaryListenerMap != null && auxiliaryListenerMap.size() > 0) {
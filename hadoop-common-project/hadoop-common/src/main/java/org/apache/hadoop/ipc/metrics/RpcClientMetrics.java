@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc.metrics;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.metrics2.annotation.Metric;
+import org.apache.hadoop.metrics2.annotation.Metrics;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is for maintaining the statistics of the coalesced writes of
+ * the RPC clients of a process, and publishing them through the metrics
+ * interfaces.
+ */
+@InterfaceAudience.Private
+@Metrics(about="Aggregate RPC client metrics", context="rpc")
+public class RpcClientMetrics {
+
+  static final Logger LOG = LoggerFactory.getLogger(RpcClientMetrics.class);
+  static final String NAME = "RpcClientActivity";
+  private static RpcClientMetrics instance;
+
+  final MetricsRegistry registry;
+  final MutableStat rpcSendBatchSize;
+
+  RpcClientMetrics() {
+    registry = new MetricsRegistry("rpcclient");
+    rpcSendBatchSize = registry.newStat("rpcSendBatchSize",
+        "Number of requests per coalesced write", "Batches", "Requests");
+    LOG.debug("Initialized " + registry);
+  }
+
+  /** @return the metrics shared by the clients of this process. */
+  public static synchronized RpcClientMetrics get() {
+    if (instance == null) {
+      RpcClientMetrics m = new RpcClientMetrics();
+      instance = DefaultMetricsSystem.instance().register(NAME, null, m);
+    }
+    return instance;
+  }
+
+  @Metric("Time requests waited for their batch to be written, in " +
+      "microseconds")
+  MutableRate rpcSendQueueTime;
+  @Metric("Number of coalesced writes") MutableCounterLong rpcSendBatches;
+  @Metric("Number of requests sent in coalesced writes")
+  MutableCounterLong rpcSendRequests;
+
+  /**
+   * Add a coalesced write.
+   * @param numRequests the number of requests in the write.
+   */
+  public void addSendBatch(int numRequests) {
+    rpcSendBatches.incr();
+    rpcSendRequests.incr(numRequests);
+    rpcSendBatchSize.add(numRequests);
+  }
+
+  /**
+   * Add the time a request waited for its batch to be written.
+   * @param micros the queueing delay in microseconds.
+   */
+  public void addSendQueueTime(long micros) {
+    rpcSendQueueTime.add(micros);
+  }
+
+  public long getSendBatches() {
+    return rpcSendBatches.value();
+  }
+
+  public long getSendRequests() {
+    return rpcSendRequests.value();
+  }
+}
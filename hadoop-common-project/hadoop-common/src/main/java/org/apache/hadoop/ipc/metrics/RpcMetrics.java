@@ -123,6 +123,10 @@ public static RpcMetrics create(Server server, Configuration conf) {
   MutableCounterLong rpcClientBackoff;
   @Metric("Number of Slow RPC calls")
   MutableCounterLong rpcSlowCalls;
+  @Metric("Number of RPC buffers served from the buffer pool")
+  MutableCounterLong rpcBufferPoolHits;
+  @Metric("Number of RPC buffers allocated as the buffer pool was empty")
+  MutableCounterLong rpcBufferPoolMisses;
 
   @Metric("Number of open connections") public int numOpenConnections() {
     return server.getNumOpenConnections();
@@ -262,6 +266,36 @@ public void incrClientBackoff() {
   public  void incrSlowRpc() {
     rpcSlowCalls.incr();
   }
+
+  /**
+   * Increments the counter of buffers served from the buffer pool.
+   */
+  public void incrBufferPoolHits() {
+    rpcBufferPoolHits.incr();
+  }
+
+  /**
+   * Increments the counter of buffers allocated on a buffer pool miss.
+   */
+  public void incrBufferPoolMisses() {
+    rpcBufferPoolMisses.incr();
+  }
+
+  /**
+   * Returns the number of buffers served from the buffer pool.
+   * @return long
+   */
+  public long getBufferPoolHits() {
+    return rpcBufferPoolHits.value();
+  }
+
+  /**
+   * Returns the number of buffers allocated on a buffer pool miss.
+   * @return long
+   */
+  public long getBufferPoolMisses() {
+    return rpcBufferPoolMisses.value();
+  }
   /**
    * Returns a MutableRate Counter.
    * @return Mutable Rate
@@ -33,6 +33,7 @@
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 /** The class represents a cluster of computer with a tree hierarchical
  * network topology.
@@ -958,16 +959,54 @@ public <T extends Node> void sortByDistanceUsingNetworkLocation(Node reader,
   private <T extends Node> void sortByDistance(Node reader, T[] nodes,
       int activeLen, Consumer<List<T>> secondarySort,
       boolean nonDataNodeReader) {
+    sortByDistance(getWeigher(reader, nonDataNodeReader), nodes, activeLen,
+        secondarySort);
+  }
+
+  private ToIntFunction<Node> getWeigher(final Node reader,
+      final boolean nonDataNodeReader) {
+    if (nonDataNodeReader) {
+      return node -> getWeightUsingNetworkLocation(reader, node);
+    }
+    return node -> getWeight(reader, node);
+  }
+
+  /**
+   * Get a weigher of nodes by their network distance to <i>reader</i>, which
+   * computes the weight of each node once and then remembers it. It is meant
+   * to sort the replicas of all the blocks of a file for one reader with
+   * {@link #sortByDistance(ToIntFunction, Node[], int, Consumer)}, and
+   * should then be discarded, as it does not observe later topology changes.
+   *
+   * @param reader    Node where data will be read
+   * @param nonDataNodeReader True if the reader is not a datanode
+   * @return the caching weigher
+   */
+  public ToIntFunction<Node> getCachingWeigher(Node reader,
+      boolean nonDataNodeReader) {
+    final ToIntFunction<Node> weigher = getWeigher(reader, nonDataNodeReader);
+    final Map<Node, Integer> weights = new HashMap<>();
+    return node -> weights.computeIfAbsent(node, weigher::applyAsInt);
+  }
+
+  /**
+   * Sort nodes array by the weights given by <i>weigher</i>, with the same
+   * randomization and secondary sort as
+   * {@link #sortByDistance(Node, Node[], int, Consumer)}.
+   *
+   * @param weigher   Weigher of nodes by network distance to the reader
+   * @param nodes     Available replicas with the requested data
+   * @param activeLen Number of active nodes at the front of the array
+   * @param secondarySort a secondary sorting strategy which can inject into
+   *     that point from outside to help sort the same distance.
+   */
+  public <T extends Node> void sortByDistance(ToIntFunction<Node> weigher,
+      T[] nodes, int activeLen, Consumer<List<T>> secondarySort) {
     /** Sort weights for the nodes array */
     TreeMap<Integer, List<T>> weightedNodeTree =
         new TreeMap<>();
-    int nWeight;
     for (int i = 0; i < activeLen; i++) {
-      if (nonDataNodeReader) {
-        nWeight = getWeightUsingNetworkLocation(reader, nodes[i]);
-      } else {
-        nWeight = getWeight(reader, nodes[i]);
-      }
+      int nWeight = weigher.applyAsInt(nodes[i]);
       weightedNodeTree.computeIfAbsent(
           nWeight, k -> new ArrayList<>(1)).add(nodes[i]);
     }
@@ -85,6 +85,13 @@ public LightWeightResizableGSet(int initCapacity) {
     this(initCapacity, DEFAULT_LOAD_FACTOR);
   }
 
+  /**
+   * @return the current length of the internal table.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
   @Override
   public E put(final E element) {
     E existing = super.put(element);
@@ -477,4 +477,52 @@ public void testServiceUsersCase2() {
     // test priority of normal user.
     assertEquals(level - 1, scheduler.getPriorityLevel(mockCall("user1")));
   }
-}
\ No newline at end of file
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBackOffOverCostBudget() {
+    Configuration conf = new Configuration();
+    conf.setClass("ipc.21." + CommonConfigurationKeys.IPC_COST_PROVIDER_KEY,
+        LockTimeCostProvider.class, CostProvider.class);
+    conf.setLong("ipc.21."
+        + DecayRpcScheduler.IPC_SCHEDULER_DECAYSCHEDULER_PERIOD_KEY, 999999);
+    conf.setLong("ipc.21."
+        + DecayRpcScheduler.IPC_DECAYSCHEDULER_BACKOFF_COST_BUDGET_KEY, 1000);
+    conf.set("ipc.21." + DecayRpcScheduler.IPC_DECAYSCHEDULER_SERVICE_USERS_KEY,
+        "service");
+    scheduler = new DecayRpcScheduler(2, "ipc.21", conf);
+
+    // A single call holding the read lock for 2ms is over the budget of
+    // 1000us, while cheap calls and service users are not.
+    ProcessingDetails lockDetails =
+        new ProcessingDetails(TimeUnit.MILLISECONDS);
+    lockDetails.set(ProcessingDetails.Timing.LOCKSHARED, 2);
+    scheduler.addResponseTime("ignored", mockCall("HEAVY"), lockDetails);
+    scheduler.addResponseTime("ignored", mockCall("service"), lockDetails);
+    for (int i = 0; i < 5; i++) {
+      scheduler.addResponseTime("ignored", mockCall("LIGHT"),
+          new ProcessingDetails(TimeUnit.MILLISECONDS));
+    }
+    assertTrue(scheduler.shouldBackOff(mockCall("HEAVY")));
+    assertFalse(scheduler.shouldBackOff(mockCall("LIGHT")));
+    assertFalse(scheduler.shouldBackOff(mockCall("service")));
+    assertFalse(scheduler.shouldBackOff(mockCall("NEW")));
+    assertEquals(1, scheduler.getTotalBudgetBackoffs());
+
+    Map<String, Object> summary = (Map<String, Object>)
+        JSON.parse(scheduler.getCostBudgetSummary());
+    Map<String, Object> heavy = (Map<String, Object>) summary.get("HEAVY");
+    assertEquals(2100L, heavy.get("Cost"));
+    assertEquals(210L, heavy.get("BudgetUsage"));
+    assertEquals(1L, heavy.get("BudgetBackoffs"));
+    Map<String, Object> light = (Map<String, Object>) summary.get("LIGHT");
+    assertEquals(50L, light.get("BudgetUsage"));
+
+    // The user is admitted again once its cost decays below the budget.
+    scheduler.forceDecay();
+    assertTrue(scheduler.shouldBackOff(mockCall("HEAVY")));
+    scheduler.forceDecay();
+    assertFalse(scheduler.shouldBackOff(mockCall("HEAVY")));
+    assertEquals(2, scheduler.getTotalBudgetBackoffs());
+  }
+}
@@ -79,6 +79,7 @@
 import org.apache.hadoop.ipc.RPC.RpcKind;
 import org.apache.hadoop.ipc.Server.Call;
 import org.apache.hadoop.ipc.Server.Connection;
+import org.apache.hadoop.ipc.metrics.RpcClientMetrics;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto;
 import org.apache.hadoop.net.ConnectTimeoutException;
 import org.apache.hadoop.net.NetUtils;
@@ -361,6 +362,43 @@ public void internalTestSerial(int handlerCount, boolean handlerSleep,
     server.stop();
   }
 
+  @Test(timeout=60000)
+  public void testCoalescedWritesAndConnectionsPerId() throws Exception {
+    conf.setBoolean(
+        CommonConfigurationKeys.IPC_CLIENT_WRITE_COALESCING_ENABLED_KEY, true);
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_CONNECTIONS_PER_ID_KEY, 3);
+    Server server = new TestServer(5, false);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+
+    long batches = RpcClientMetrics.get().getSendBatches();
+    long requests = RpcClientMetrics.get().getSendRequests();
+    Client client = new Client(LongWritable.class, conf);
+    SerialCaller[] callers = new SerialCaller[10];
+    for (int i = 0; i < callers.length; i++) {
+      callers[i] = new SerialCaller(client, addr, 100);
+      callers[i].start();
+    }
+    for (SerialCaller caller : callers) {
+      caller.join();
+      assertFalse(caller.failed);
+    }
+    Set<Integer> indexes = new HashSet<>();
+    for (ConnectionId id : client.getConnectionIds()) {
+      indexes.add(id.getIndex());
+    }
+    assertEquals(3, indexes.size());
+    batches = RpcClientMetrics.get().getSendBatches() - batches;
+    requests = RpcClientMetrics.get().getSendRequests() - requests;
+    assertTrue(batches > 0);
+    assertEquals(callers.length * 100, requests);
+    // at least one write carried the requests of several callers
+    assertTrue("requests " + requests + ", batches " + batches,
+        requests > batches);
+    client.stop();
+    server.stop();
+  }
+
   @Test
   public void testAuxiliaryPorts() throws IOException, InterruptedException {
     int defaultPort = 9000;
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.ProcessingDetails.Timing;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.hadoop.ipc.LockTimeCostProvider.DEFAULT_CALL_COST;
+import static org.apache.hadoop.ipc.LockTimeCostProvider.DEFAULT_EXCLUSIVE_WEIGHT;
+import static org.junit.Assert.assertEquals;
+
+/** Tests for {@link LockTimeCostProvider}. */
+public class TestLockTimeCostProvider {
+
+  private static final int LOCKFREE_TIME = 5;
+  private static final int LOCKWAIT_TIME = 3;
+  private static final int LOCKSHARED_TIME = 7;
+  private static final int LOCKEXCLUSIVE_TIME = 11;
+
+  private LockTimeCostProvider costProvider;
+  private ProcessingDetails processingDetails;
+
+  @Before
+  public void setup() {
+    costProvider = new LockTimeCostProvider();
+    processingDetails = new ProcessingDetails(TimeUnit.MILLISECONDS);
+    processingDetails.set(Timing.LOCKFREE, LOCKFREE_TIME);
+    processingDetails.set(Timing.LOCKWAIT, LOCKWAIT_TIME);
+    processingDetails.set(Timing.LOCKSHARED, LOCKSHARED_TIME);
+    processingDetails.set(Timing.LOCKEXCLUSIVE, LOCKEXCLUSIVE_TIME);
+  }
+
+  @Test(expected = AssertionError.class)
+  public void testGetCostBeforeInit() {
+    costProvider.getCost(null);
+  }
+
+  @Test
+  public void testGetCostDefaults() {
+    costProvider.init("foo", new Configuration());
+    long expectedCost = DEFAULT_CALL_COST + 1000 * LOCKSHARED_TIME
+        + DEFAULT_EXCLUSIVE_WEIGHT * 1000 * LOCKEXCLUSIVE_TIME;
+    assertEquals(expectedCost, costProvider.getCost(processingDetails));
+    assertEquals(DEFAULT_CALL_COST, costProvider.getCost(
+        new ProcessingDetails(TimeUnit.MILLISECONDS)));
+  }
+
+  @Test
+  public void testGetCostConfigured() {
+    Configuration conf = new Configuration();
+    conf.setInt("foo.lock-time-cost.exclusive-weight", 2);
+    conf.setLong("foo.lock-time-cost.call", 0);
+    conf.setLong("bar.lock-time-cost.call", 5); // should not apply
+    costProvider.init("foo", conf);
+    long expectedCost = 1000 * LOCKSHARED_TIME + 2 * 1000 * LOCKEXCLUSIVE_TIME;
+    assertEquals(expectedCost, costProvider.getCost(processingDetails));
+  }
+}
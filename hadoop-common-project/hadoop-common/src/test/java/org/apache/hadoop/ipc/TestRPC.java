@@ -94,6 +94,7 @@
 import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -387,6 +388,39 @@ public void testProxyAddress() throws Exception {
     }
   }
 
+  @Test
+  public void testSlowRpcWithAsyncHandler() throws Exception {
+    Configuration myConf = new Configuration(conf);
+    myConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_ENABLED_KEY, true);
+    myConf.setInt(
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_ASYNC_MAX_CONCURRENCY_KEY,
+        4);
+    // a single handler, which would block on the slow RPC if it ran it
+    Server server = setupTestServer(myConf, 1);
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, myConf);
+
+      SlowRPC slowrpc = new SlowRPC(proxy);
+      Thread thread = new Thread(slowrpc, "SlowRPC");
+      thread.start(); // send a slow RPC, which won't return until two fast pings
+      assertFalse("Slow RPC should not have finished.", slowrpc.isDone());
+
+      slowrpc.ping(false);
+      assertFalse("Slow RPC should not have finished.", slowrpc.isDone());
+      // Server.get() works on the threads running the calls.
+      proxy.testServerGet(null, newEmptyRequest());
+      slowrpc.ping(false);
+
+      GenericTestUtils.waitFor(slowrpc::isDone, 100, 10000);
+      MetricsRecordBuilder rb = getMetrics(server.rpcMetrics.name());
+      assertCounter("RpcProcessingTimeNumOps", 4L, rb);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
   @Test
   public void testSlowRpc() throws IOException, ServiceException {
     Server server;
@@ -430,6 +464,41 @@ public void testCalls() throws Exception {
     testCallsInternal(conf);
   }
 
+  @Test
+  public void testCallsWithBufferPool() throws Exception {
+    Configuration myConf = new Configuration(conf);
+    myConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    myConf.setInt(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY,
+        4096);
+    Server server = setupTestServer(myConf, 2);
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, myConf);
+      // Reused buffers must not leak the bytes of earlier, longer requests
+      // or responses, including those too large to be pooled.
+      for (int i = 0; i < 100; i++) {
+        StringBuilder sb = new StringBuilder();
+        int length = (i * 97) % 8192;
+        for (int j = 0; j < length; j++) {
+          sb.append((char) ('a' + (i + j) % 26));
+        }
+        String message = sb.toString();
+        TestProtos.EchoResponseProto echoResp =
+            proxy.echo(null, newEchoRequest(message));
+        assertEquals(message, echoResp.getMessage());
+      }
+      RpcMetrics rpcMetrics = server.getRpcMetrics();
+      assertTrue(rpcMetrics.getBufferPoolHits() > 0);
+      assertTrue(rpcMetrics.getBufferPoolMisses() > 0);
+      MetricsRecordBuilder rb = getMetrics(rpcMetrics.name());
+      assertCounterGt("RpcBufferPoolHits", 0L, rb);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
   private void testCallsInternal(Configuration myConf) throws Exception {
     Server server;
     TestRpcService proxy = null;
@@ -261,7 +261,7 @@ public boolean hasNext() throws IOException {
       if (thisListing == null) {
         return false;
       }
-      if (i>=thisListing.getPartialListing().length
+      if (i>=thisListing.getPartialListingSize()
           && thisListing.hasMore()) { 
         // current listing is exhausted & fetch a new listing
         thisListing = dfs.listPaths(src, thisListing.getLastName(),
@@ -271,7 +271,7 @@ public boolean hasNext() throws IOException {
         }
         i = 0;
       }
-      return (i<thisListing.getPartialListing().length);
+      return (i<thisListing.getPartialListingSize());
     }
 
     /**
@@ -283,7 +283,7 @@ public boolean hasNext() throws IOException {
      */
     public HdfsFileStatus getNext() throws IOException {
       if (hasNext()) {
-        return thisListing.getPartialListing()[i++];
+        return thisListing.getPartialListingEntry(i++);
       }
       throw new NoSuchElementException("No more entry in " + src);
     }
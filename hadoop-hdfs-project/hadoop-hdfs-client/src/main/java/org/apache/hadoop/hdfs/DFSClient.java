@@ -39,6 +39,7 @@
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -245,6 +246,7 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor LISTING_THREAD_POOL;
   private final long serverDefaultsValidityPeriod;
 
   /**
@@ -1768,6 +1770,53 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
           UnresolvedPathException.class);
     }
   }
+
+  /**
+   * Get the file info for many files or directories. The paths are sent to
+   * the NameNode in batches of at most
+   * {@link HdfsClientConfigKeys#DFS_BATCHED_FILEINFO_LIMIT_KEY} paths. If
+   * the NameNode does not support batched calls, the file info of each path
+   * is fetched separately.
+   * @param srcs The string representations of the paths to the files
+   * @param needLocation Include the locations of the blocks of the files
+   * @return the file info of each path, or null if the path is not found
+   *
+   * @see ClientProtocol#getBatchedFileInfo(String[], boolean)
+   */
+  public HdfsFileStatus[] getBatchedFileInfo(String[] srcs,
+      boolean needLocation) throws IOException {
+    checkOpen();
+    final HdfsFileStatus[] stats = new HdfsFileStatus[srcs.length];
+    final int limit = dfsClientConf.getBatchedFileInfoLimit();
+    try (TraceScope ignored = tracer.newScope("getBatchedFileInfo")) {
+      for (int start = 0; start < srcs.length; start += limit) {
+        String[] batch = Arrays.copyOfRange(srcs, start,
+            Math.min(start + limit, srcs.length));
+        HdfsFileStatus[] batchStats;
+        try {
+          batchStats = namenode.getBatchedFileInfo(batch, needLocation);
+        } catch (RemoteException re) {
+          IOException ioe = re.unwrapRemoteException(
+              AccessControlException.class,
+              UnresolvedPathException.class,
+              RpcNoSuchMethodException.class);
+          if (!(ioe instanceof RpcNoSuchMethodException)) {
+            throw ioe;
+          }
+          LOG.debug("The version of namenode doesn't support " +
+              "getBatchedFileInfo API. Fall back to per path calls.");
+          batchStats = new HdfsFileStatus[batch.length];
+          for (int i = 0; i < batch.length; i++) {
+            batchStats[i] = needLocation
+                ? getLocatedFileInfo(batch[i], false)
+                : getFileInfo(batch[i]);
+          }
+        }
+        System.arraycopy(batchStats, 0, stats, start, batchStats.length);
+      }
+    }
+    return stats;
+  }
   /**
    * Close status of a file
    * @return true if file is already closed
@@ -3138,6 +3187,25 @@ ThreadPoolExecutor getStripedReadsThreadPool() {
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * Get the thread pool used to prefetch listings and to list directories in
+   * parallel, creating it on first use.
+   */
+  ThreadPoolExecutor getListingThreadPool() {
+    if (LISTING_THREAD_POOL == null) {
+      synchronized (DFSClient.class) {
+        if (LISTING_THREAD_POOL == null) {
+          ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+              1, dfsClientConf.getListingThreadpoolSize(), 60, "Listing-",
+              true);
+          threadPool.allowCoreThreadTimeOut(true);
+          LISTING_THREAD_POOL = threadPool;
+        }
+      }
+    }
+    return LISTING_THREAD_POOL;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -124,18 +124,28 @@
 import javax.annotation.Nonnull;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.apache.hadoop.fs.impl.PathCapabilitiesSupport.validatePathCapabilityArgs;
 
@@ -1107,11 +1117,11 @@ private FileStatus[] listStatusInternal(Path p) throws IOException {
       throw new FileNotFoundException("File " + p + " does not exist.");
     }
 
-    HdfsFileStatus[] partialListing = thisListing.getPartialListing();
     if (!thisListing.hasMore()) { // got all entries of the directory
-      FileStatus[] stats = new FileStatus[partialListing.length];
-      for (int i = 0; i < partialListing.length; i++) {
-        stats[i] = partialListing[i].makeQualified(getUri(), p);
+      FileStatus[] stats = new FileStatus[thisListing.getPartialListingSize()];
+      for (int i = 0; i < stats.length; i++) {
+        stats[i] = thisListing.getPartialListingEntry(i)
+            .makeQualified(getUri(), p);
       }
       statistics.incrementReadOps(1);
       storageStatistics.incrementOpCounter(OpType.LIST_STATUS);
@@ -1121,13 +1131,11 @@ private FileStatus[] listStatusInternal(Path p) throws IOException {
     // The directory size is too big that it needs to fetch more
     // estimate the total number of entries in the directory
     int totalNumEntries =
-        partialListing.length + thisListing.getRemainingEntries();
+        thisListing.getPartialListingSize() + thisListing.getRemainingEntries();
     ArrayList<FileStatus> listing =
         new ArrayList<>(totalNumEntries);
     // add the first batch of entries to the array list
-    for (HdfsFileStatus fileStatus : partialListing) {
-      listing.add(fileStatus.makeQualified(getUri(), p));
-    }
+    addQualified(listing, thisListing, p);
     statistics.incrementLargeReadOps(1);
     storageStatistics.incrementOpCounter(OpType.LIST_STATUS);
 
@@ -1139,10 +1147,7 @@ private FileStatus[] listStatusInternal(Path p) throws IOException {
         throw new FileNotFoundException("File " + p + " does not exist.");
       }
 
-      partialListing = thisListing.getPartialListing();
-      for (HdfsFileStatus fileStatus : partialListing) {
-        listing.add(fileStatus.makeQualified(getUri(), p));
-      }
+      addQualified(listing, thisListing, p);
       statistics.incrementLargeReadOps(1);
       storageStatistics.incrementOpCounter(OpType.LIST_STATUS);
     } while (thisListing.hasMore());
@@ -1150,6 +1155,15 @@ private FileStatus[] listStatusInternal(Path p) throws IOException {
     return listing.toArray(new FileStatus[listing.size()]);
   }
 
+  /** Add the qualified entries of a partial listing to the list. */
+  private void addQualified(List<FileStatus> listing,
+      DirectoryListing partialListing, Path p) {
+    for (int i = 0; i < partialListing.getPartialListingSize(); i++) {
+      listing.add(partialListing.getPartialListingEntry(i)
+          .makeQualified(getUri(), p));
+    }
+  }
+
   /**
    * List all the entries of a directory
    *
@@ -1185,6 +1199,49 @@ public FileStatus[] next(final FileSystem fs, final Path p)
     }.resolve(this, absF);
   }
 
+  /**
+   * List the statuses of the files/directories in each of the given paths.
+   * The listings of the different paths are fetched concurrently, using up
+   * to {@link HdfsClientConfigKeys.Listing#THREADPOOL_SIZE_KEY} threads, and
+   * each of them is done as {@link #listStatus(Path)}.
+   *
+   * @param paths the paths to list
+   * @return the statuses of the entries of each path, in the iteration
+   *         order of the given paths
+   * @throws FileNotFoundException if one of the paths does not exist
+   * @throws IOException if one of the listings fails
+   */
+  public Map<Path, FileStatus[]> listStatusBatch(Collection<Path> paths)
+      throws IOException {
+    final Map<Path, Future<FileStatus[]>> futures = new LinkedHashMap<>();
+    final ExecutorService executor = dfs.getListingThreadPool();
+    try {
+      for (Path path : paths) {
+        if (!futures.containsKey(path)) {
+          futures.put(path, executor.submit(() -> listStatus(path)));
+        }
+      }
+      final Map<Path, FileStatus[]> listings = new LinkedHashMap<>();
+      for (Map.Entry<Path, Future<FileStatus[]>> entry : futures.entrySet()) {
+        listings.put(entry.getKey(), entry.getValue().get());
+      }
+      return listings;
+    } catch (InterruptedException e) {
+      throw (InterruptedIOException) new InterruptedIOException(
+          "Interrupted while listing " + paths).initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      for (Future<FileStatus[]> future : futures.values()) {
+        future.cancel(false);
+      }
+    }
+  }
+
   /**
    * The BlockLocation of returned LocatedFileStatus will have different
    * formats for replicated and erasure coded file.
@@ -1223,6 +1280,8 @@ public RemoteIterator<LocatedFileStatus> next(final FileSystem fs,
    * Returns a remote iterator so that followup calls are made on demand
    * while consuming the entries. This reduces memory consumption during
    * listing of a large directory.
+   * The following pages can be fetched ahead of the consumption by setting
+   * {@link HdfsClientConfigKeys.Listing#PREFETCH_DEPTH_KEY}.
    *
    * @param p target path
    * @return remote iterator
@@ -1254,6 +1313,10 @@ public RemoteIterator<FileStatus> next(final FileSystem fs, final Path p)
    * if needLocation, status contains block location if it is a file
    * throws a RuntimeException with the error as its cause.
    *
+   * If {@link HdfsClientConfigKeys.Listing#PREFETCH_DEPTH_KEY} is positive,
+   * up to that many following pages of the listing are fetched in the
+   * background while the current page is consumed.
+   *
    * @param <T> the type of the file status
    */
   private class  DirListingIterator<T extends FileStatus>
@@ -1265,6 +1328,12 @@ public RemoteIterator<FileStatus> next(final FileSystem fs, final Path p)
     private T curStat = null;
     private PathFilter filter;
     private boolean needLocation;
+    private final int prefetchDepth;
+    // the pages being fetched ahead of thisListing, in listing order
+    private final Deque<CompletableFuture<DirectoryListing>> prefetched =
+        new ArrayDeque<>();
+    // the last page fetched or being fetched
+    private CompletableFuture<DirectoryListing> lastFetched;
 
     private DirListingIterator(Path p, PathFilter filter,
         boolean needLocation) throws IOException {
@@ -1285,6 +1354,11 @@ private DirListingIterator(Path p, PathFilter filter,
         throw new FileNotFoundException("File " + p + " does not exist.");
       }
       i = 0;
+      prefetchDepth = dfs.getConf().getListingPrefetchDepth();
+      if (prefetchDepth > 0) {
+        lastFetched = CompletableFuture.completedFuture(thisListing);
+        prefetch();
+      }
     }
 
     private DirListingIterator(Path p, boolean needLocation)
@@ -1297,7 +1371,7 @@ private DirListingIterator(Path p, boolean needLocation)
     public boolean hasNext() throws IOException {
       while (curStat == null && hasNextNoFilter()) {
         T next;
-        HdfsFileStatus fileStat = thisListing.getPartialListing()[i++];
+        HdfsFileStatus fileStat = thisListing.getPartialListingEntry(i++);
         if (needLocation) {
           next = (T)((HdfsLocatedFileStatus)fileStat)
               .makeQualifiedLocated(getUri(), p);
@@ -1317,18 +1391,80 @@ private boolean hasNextNoFilter() throws IOException {
       if (thisListing == null) {
         return false;
       }
-      if (i >= thisListing.getPartialListing().length
+      if (i >= thisListing.getPartialListingSize()
           && thisListing.hasMore()) {
         // current listing is exhausted & fetch a new listing
-        thisListing = dfs.listPaths(src, thisListing.getLastName(),
-            needLocation);
-        statistics.incrementReadOps(1);
-        if (thisListing == null) {
-          throw new FileNotFoundException("File " + p + " does not exist.");
+        if (prefetchDepth > 0) {
+          thisListing = takePrefetched();
+        } else {
+          thisListing = fetch(thisListing.getLastName());
         }
         i = 0;
       }
-      return (i < thisListing.getPartialListing().length);
+      return (i < thisListing.getPartialListingSize());
+    }
+
+    /** Fetch the page of the listing following the given name. */
+    private DirectoryListing fetch(byte[] startAfter) throws IOException {
+      DirectoryListing listing = dfs.listPaths(src, startAfter, needLocation);
+      statistics.incrementReadOps(1);
+      if (listing == null) {
+        throw new FileNotFoundException("File " + p + " does not exist.");
+      }
+      return listing;
+    }
+
+    /**
+     * Request the pages following the last fetched page, until prefetchDepth
+     * pages are pending or the end of the listing is known. Each request is
+     * chained on the completion of the previous one, as it starts after the
+     * last name of that page.
+     */
+    private void prefetch() {
+      final Executor executor = dfs.getListingThreadPool();
+      while (prefetched.size() < prefetchDepth) {
+        if (lastFetched.isDone() && !lastFetched.isCompletedExceptionally()) {
+          DirectoryListing last = lastFetched.getNow(null);
+          if (last == null || !last.hasMore()) {
+            break;
+          }
+        }
+        lastFetched = lastFetched.thenApplyAsync(previous -> {
+          if (previous == null || !previous.hasMore()) {
+            return null;
+          }
+          try {
+            return fetch(previous.getLastName());
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        }, executor);
+        prefetched.add(lastFetched);
+      }
+    }
+
+    /** Wait for the next prefetched page and request the following ones. */
+    private DirectoryListing takePrefetched() throws IOException {
+      CompletableFuture<DirectoryListing> next = prefetched.poll();
+      prefetch();
+      if (next == null) {
+        next = prefetched.poll();
+      }
+      try {
+        DirectoryListing listing = next.get();
+        Preconditions.checkState(listing != null,
+            "Missing listing page of %s", src);
+        return listing;
+      } catch (InterruptedException e) {
+        throw (InterruptedIOException) new InterruptedIOException(
+            "Interrupted while listing " + p).initCause(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      }
     }
 
     @Override
@@ -1768,6 +1904,63 @@ public FileStatus next(final FileSystem fs, final Path p)
     }.resolve(this, absF);
   }
 
+  /**
+   * Get the file statuses of many paths. The NameNode resolves the paths in
+   * batches of {@link HdfsClientConfigKeys#DFS_BATCHED_FILEINFO_LIMIT_KEY}
+   * paths, each of them in a single call. Unlike
+   * {@link #getFileStatus(Path)}, symlinks are not resolved.
+   *
+   * @param paths the paths to get the status of
+   * @return the status of each path, in order, with null for the paths
+   *         that do not exist
+   * @throws IOException if the statuses could not be fetched
+   */
+  public FileStatus[] getFileStatus(List<Path> paths) throws IOException {
+    final HdfsFileStatus[] stats = getBatchedFileInfo(paths, false);
+    final FileStatus[] result = new FileStatus[stats.length];
+    for (int i = 0; i < stats.length; i++) {
+      if (stats[i] != null) {
+        result[i] = stats[i].makeQualified(getUri(),
+            fixRelativePart(paths.get(i)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the file statuses of many paths, with the locations of all the
+   * blocks of the files, as {@link #getFileStatus(List)} does.
+   *
+   * @param paths the paths to get the status of
+   * @return the located status of each path, in order, with null for the
+   *         paths that do not exist
+   * @throws IOException if the statuses could not be fetched
+   */
+  public LocatedFileStatus[] getLocatedFileStatus(List<Path> paths)
+      throws IOException {
+    final HdfsFileStatus[] stats = getBatchedFileInfo(paths, true);
+    final LocatedFileStatus[] result = new LocatedFileStatus[stats.length];
+    for (int i = 0; i < stats.length; i++) {
+      if (stats[i] != null) {
+        result[i] = ((HdfsLocatedFileStatus) stats[i]).makeQualifiedLocated(
+            getUri(), fixRelativePart(paths.get(i)));
+      }
+    }
+    return result;
+  }
+
+  private HdfsFileStatus[] getBatchedFileInfo(List<Path> paths,
+      boolean needLocation) throws IOException {
+    statistics.incrementReadOps(1);
+    storageStatistics.incrementOpCounter(needLocation
+        ? OpType.GET_FILE_BLOCK_LOCATIONS : OpType.GET_FILE_STATUS);
+    final String[] srcs = new String[paths.size()];
+    for (int i = 0; i < srcs.length; i++) {
+      srcs[i] = getPathName(fixRelativePart(paths.get(i)));
+    }
+    return dfs.getBatchedFileInfo(srcs, needLocation);
+  }
+
   /**
    * Synchronize client metadata state with Active NameNode.
    * <p>
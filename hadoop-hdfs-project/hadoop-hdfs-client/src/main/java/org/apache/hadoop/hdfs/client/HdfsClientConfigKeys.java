@@ -133,6 +133,8 @@ public interface HdfsClientConfigKeys {
   int     DFS_BYTES_PER_CHECKSUM_DEFAULT = 512;
   String  DFS_CHECKSUM_COMBINE_MODE_KEY = "dfs.checksum.combine.mode";
   String  DFS_CHECKSUM_COMBINE_MODE_DEFAULT = "MD5MD5CRC";
+  String  DFS_BATCHED_FILEINFO_LIMIT_KEY = "dfs.batched.fileinfo.limit";
+  int     DFS_BATCHED_FILEINFO_LIMIT_DEFAULT = 1000;
   String  DFS_DATANODE_SOCKET_WRITE_TIMEOUT_KEY =
       "dfs.datanode.socket.write.timeout";
   String  DFS_CLIENT_DOMAIN_SOCKET_DATA_TRAFFIC =
@@ -495,6 +497,16 @@ interface StripedRead {
     int     THREADPOOL_SIZE_DEFAULT = 18;
   }
 
+  /** dfs.client.listing configuration properties */
+  interface Listing {
+    String PREFIX = "dfs.client.listing.";
+
+    String  PREFETCH_DEPTH_KEY = PREFIX + "prefetch.depth";
+    int     PREFETCH_DEPTH_DEFAULT = 0;
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+  }
+
   /** dfs.http.client configuration properties */
   interface HttpClient {
     String  PREFIX = "dfs.http.client.";
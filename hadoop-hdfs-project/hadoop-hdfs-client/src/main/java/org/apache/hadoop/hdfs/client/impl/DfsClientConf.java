@@ -152,6 +152,9 @@ public class DfsClientConf {
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int listingPrefetchDepth;
+  private final int listingThreadpoolSize;
+  private final int batchedFileInfoLimit;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -279,6 +282,24 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    listingPrefetchDepth = conf.getInt(
+        HdfsClientConfigKeys.Listing.PREFETCH_DEPTH_KEY,
+        HdfsClientConfigKeys.Listing.PREFETCH_DEPTH_DEFAULT);
+    Preconditions.checkArgument(listingPrefetchDepth >= 0, "The value of " +
+        HdfsClientConfigKeys.Listing.PREFETCH_DEPTH_KEY +
+        " must not be negative.");
+    listingThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.Listing.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.Listing.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(listingThreadpoolSize > 0, "The value of " +
+        HdfsClientConfigKeys.Listing.THREADPOOL_SIZE_KEY +
+        " must be greater than 0.");
+    batchedFileInfoLimit = conf.getInt(
+        HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_KEY,
+        HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_DEFAULT);
+    Preconditions.checkArgument(batchedFileInfoLimit > 0, "The value of " +
+        HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_KEY +
+        " must be greater than 0.");
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
 
     leaseHardLimitPeriod =
@@ -660,6 +681,27 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the listingPrefetchDepth
+   */
+  public int getListingPrefetchDepth() {
+    return listingPrefetchDepth;
+  }
+
+  /**
+   * @return the listingThreadpoolSize
+   */
+  public int getListingThreadpoolSize() {
+    return listingThreadpoolSize;
+  }
+
+  /**
+   * @return the batchedFileInfoLimit
+   */
+  public int getBatchedFileInfoLimit() {
+    return batchedFileInfoLimit;
+  }
+
   /**
    * @return the deadNodeDetectionEnabled
    */
@@ -23,6 +23,7 @@
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
 
 import org.apache.hadoop.net.SocketInputStream;
 import org.apache.hadoop.net.SocketOutputStream;
@@ -54,6 +55,13 @@ public NioInetPeer(Socket socket) throws IOException {
     this.isLocal = socket.getInetAddress().equals(socket.getLocalAddress());
   }
 
+  /**
+   * @return the channel of the socket, which is in non-blocking mode.
+   */
+  public SocketChannel getSocketChannel() {
+    return socket.getChannel();
+  }
+
   @Override
   public ReadableByteChannel getInputStreamChannel() {
     return in;
@@ -1105,6 +1105,24 @@ CorruptFileBlocks listCorruptFileBlocks(String path, String cookie)
   HdfsLocatedFileStatus getLocatedFileInfo(String src, boolean needBlockToken)
       throws IOException;
 
+  /**
+   * Get the file info for many files or directories in a single call. The
+   * NameNode resolves all the paths under one acquisition of its lock.
+   * @param srcs The string representations of the paths to the files
+   * @param needLocation if the file info of files should be
+   *        {@link HdfsLocatedFileStatus} with the locations of all their
+   *        blocks, with block tokens and sorted by their distance from the
+   *        client as by {@link #getBlockLocations}
+   * @return the file info of each path, in the order of srcs, with null
+   *         for the paths not found
+   * @throws org.apache.hadoop.security.AccessControlException permission denied
+   * @throws IOException If an I/O error occurred
+   */
+  @Idempotent
+  @ReadOnly(isCoordinated = true)
+  HdfsFileStatus[] getBatchedFileInfo(String[] srcs, boolean needLocation)
+      throws IOException;
+
   /**
    * Get {@link ContentSummary} rooted at the specified directory.
    * @param path The string representation of the path
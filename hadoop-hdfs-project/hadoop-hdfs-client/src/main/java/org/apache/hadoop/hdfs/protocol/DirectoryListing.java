@@ -49,6 +49,20 @@ public DirectoryListing(HdfsFileStatus[] partialListing,
     this.remainingEntries = remainingEntries;
   }
 
+  /**
+   * constructor for a listing whose subclass provides the entries, e.g.
+   * converting them on access
+   * @param numEntries number of entries in the partial listing
+   * @param remainingEntries number of entries that are left to be listed
+   */
+  protected DirectoryListing(int numEntries, int remainingEntries) {
+    if (numEntries == 0 && remainingEntries != 0) {
+      throw new IllegalArgumentException("Partial listing is empty but " +
+          "the number of remaining entries is not zero");
+    }
+    this.remainingEntries = remainingEntries;
+  }
+
   /**
    * Get the partial listing of file status
    * @return the partial listing of file status
@@ -57,6 +71,25 @@ public HdfsFileStatus[] getPartialListing() {
     return partialListing;
   }
 
+  /**
+   * Get the number of entries in the partial listing
+   * @return the number of entries in the partial listing
+   */
+  public int getPartialListingSize() {
+    return partialListing.length;
+  }
+
+  /**
+   * Get an entry of the partial listing. Unlike
+   * {@link #getPartialListing()}, this does not require all the entries to
+   * be available.
+   * @param i the index of the entry
+   * @return the file status of the entry
+   */
+  public HdfsFileStatus getPartialListingEntry(int i) {
+    return partialListing[i];
+  }
+
   /**
    * Get the number of remaining entries that are left to be listed
    * @return the number of remaining entries that are left to be listed
@@ -142,6 +142,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedFileInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetPreferredBlockSizeRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetQuotaUsageRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetServerDefaultsRequestProto;
@@ -991,6 +993,24 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
     }
   }
 
+  @Override
+  public HdfsFileStatus[] getBatchedFileInfo(String[] srcs,
+      boolean needLocation) throws IOException {
+    GetBatchedFileInfoRequestProto req =
+        GetBatchedFileInfoRequestProto.newBuilder()
+            .addAllSrcs(Arrays.asList(srcs))
+            .setNeedLocation(needLocation)
+            .build();
+    try {
+      GetBatchedFileInfoResponseProto res =
+          rpcProxy.getBatchedFileInfo(null, req);
+      return PBHelperClient.convert(res.getFsList(), res.getMissingList(),
+          srcs.length);
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
     GetFileLinkInfoRequestProto req = GetFileLinkInfoRequestProto.newBuilder()
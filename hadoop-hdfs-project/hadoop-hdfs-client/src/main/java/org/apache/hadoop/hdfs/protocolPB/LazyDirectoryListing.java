@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocolPB;
+
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.DirectoryListingProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.HdfsFileStatusProto;
+
+/**
+ * A {@link DirectoryListing} which keeps the received protobuf entries and
+ * converts them on access. Iterating over the entries with
+ * {@link #getPartialListingEntry(int)} converts each entry when it is
+ * reached, without retaining the converted entries; the whole array is only
+ * built if {@link #getPartialListing()} is called.
+ */
+@InterfaceAudience.Private
+final class LazyDirectoryListing extends DirectoryListing {
+  // the received entries, dropped once they are all converted
+  private List<HdfsFileStatusProto> protos;
+  private HdfsFileStatus[] partialListing;
+  private final int size;
+
+  LazyDirectoryListing(DirectoryListingProto dl) {
+    super(dl.getPartialListingCount(), dl.getRemainingEntries());
+    this.protos = dl.getPartialListingList();
+    this.size = protos.size();
+  }
+
+  @Override
+  public synchronized HdfsFileStatus[] getPartialListing() {
+    if (partialListing == null) {
+      partialListing = size == 0 ? new HdfsFileStatus[0]
+          : PBHelperClient.convert(
+              protos.toArray(new HdfsFileStatusProto[size]));
+      protos = null;
+    }
+    return partialListing;
+  }
+
+  @Override
+  public int getPartialListingSize() {
+    return size;
+  }
+
+  @Override
+  public synchronized HdfsFileStatus getPartialListingEntry(int i) {
+    if (partialListing != null) {
+      return partialListing[i];
+    }
+    return PBHelperClient.convert(protos.get(i));
+  }
+
+  @Override
+  public synchronized byte[] getLastName() {
+    if (size == 0) {
+      return null;
+    }
+    if (partialListing != null) {
+      return partialListing[size - 1].getLocalNameInBytes();
+    }
+    return protos.get(size - 1).getPath().toByteArray();
+  }
+}
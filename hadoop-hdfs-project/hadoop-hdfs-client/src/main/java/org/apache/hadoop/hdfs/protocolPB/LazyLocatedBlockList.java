@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocolPB;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlockProto;
+
+/**
+ * The blocks of a {@link org.apache.hadoop.hdfs.protocol.LocatedBlocks}
+ * which keeps the received protobuf blocks and converts each of them the
+ * first time it is accessed. Readers of a large file look up the few blocks
+ * they read by binary search, so most blocks are never converted.
+ *
+ * The list holds either the protobuf or the converted block at each index,
+ * and supports the updates made by
+ * {@link org.apache.hadoop.hdfs.protocol.LocatedBlocks#insertRange}.
+ */
+@InterfaceAudience.Private
+final class LazyLocatedBlockList extends AbstractList<LocatedBlock>
+    implements RandomAccess {
+  private final ArrayList<Object> blocks;
+
+  LazyLocatedBlockList(List<LocatedBlockProto> protos) {
+    this.blocks = new ArrayList<>(protos);
+  }
+
+  @Override
+  public synchronized LocatedBlock get(int index) {
+    final Object block = blocks.get(index);
+    if (block instanceof LocatedBlock) {
+      return (LocatedBlock) block;
+    }
+    final LocatedBlock converted =
+        PBHelperClient.convertLocatedBlockProto((LocatedBlockProto) block);
+    blocks.set(index, converted);
+    return converted;
+  }
+
+  @Override
+  public synchronized int size() {
+    return blocks.size();
+  }
+
+  @Override
+  public synchronized LocatedBlock set(int index, LocatedBlock block) {
+    final LocatedBlock previous = get(index);
+    blocks.set(index, block);
+    return previous;
+  }
+
+  @Override
+  public synchronized void add(int index, LocatedBlock block) {
+    blocks.add(index, block);
+    modCount++;
+  }
+
+  @Override
+  public synchronized boolean addAll(int index,
+      Collection<? extends LocatedBlock> c) {
+    modCount++;
+    return blocks.addAll(index, c);
+  }
+
+  @Override
+  public synchronized LocatedBlock remove(int index) {
+    final LocatedBlock previous = get(index);
+    blocks.remove(index);
+    modCount++;
+    return previous;
+  }
+}
@@ -842,10 +842,14 @@ public static AdminStates convert(AdminState adminState) {
   }
 
   // LocatedBlocks
+  /**
+   * Convert located blocks. The blocks other than the last one are converted
+   * when they are accessed.
+   */
   public static LocatedBlocks convert(LocatedBlocksProto lb) {
     return new LocatedBlocks(
         lb.getFileLength(), lb.getUnderConstruction(),
-        convertLocatedBlocks(lb.getBlocksList()),
+        new LazyLocatedBlockList(lb.getBlocksList()),
         lb.hasLastBlock() ?
             convertLocatedBlockProto(lb.getLastBlock()) : null,
         lb.getIsLastBlockComplete(),
@@ -2065,14 +2069,14 @@ public static DatanodeReportTypeProto convert(DatanodeReportType t) {
     }
   }
 
+  /**
+   * Convert a directory listing. The entries are converted when they are
+   * accessed.
+   */
   public static DirectoryListing convert(DirectoryListingProto dl) {
     if (dl == null)
       return null;
-    List<HdfsFileStatusProto> partList =  dl.getPartialListingList();
-    return new DirectoryListing(partList.isEmpty()
-        ? new HdfsFileStatus[0]
-        : convert(partList.toArray(new HdfsFileStatusProto[partList.size()])),
-                  dl.getRemainingEntries());
+    return new LazyDirectoryListing(dl);
   }
 
   public static HdfsFileStatus[] convert(HdfsFileStatusProto[] fs) {
@@ -2085,6 +2089,31 @@ public static HdfsFileStatus[] convert(HdfsFileStatusProto[] fs) {
     return result;
   }
 
+  /**
+   * Convert the file info of a batch of paths.
+   * @param fs the file info of the paths found, in order
+   * @param missing the ascending indexes of the paths not found
+   * @param len the number of paths
+   * @return the file info of each path, with null for the paths not found
+   */
+  public static HdfsFileStatus[] convert(List<HdfsFileStatusProto> fs,
+      List<Integer> missing, int len) {
+    Preconditions.checkArgument(fs.size() + missing.size() == len,
+        "Expected %s file statuses, got %s found and %s missing", len,
+        fs.size(), missing.size());
+    HdfsFileStatus[] result = new HdfsFileStatus[len];
+    int found = 0;
+    int nextMissing = 0;
+    for (int i = 0; i < len; ++i) {
+      if (nextMissing < missing.size() && missing.get(nextMissing) == i) {
+        nextMissing++;
+      } else {
+        result[i] = convert(fs.get(found++));
+      }
+    }
+    return result;
+  }
+
   public static List<HdfsFileStatus> convertHdfsFileStatus(
       List<HdfsFileStatusProto> fs) {
     if (fs == null) {
@@ -48,6 +48,7 @@ public class TestReadOnly {
           "isFileClosed",
           "getFileLinkInfo",
           "getLocatedFileInfo",
+          "getBatchedFileInfo",
           "getContentSummary",
           "getLinkTarget",
           "getSnapshotDiffReport",
@@ -966,6 +966,73 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
         locations, method, HdfsFileStatus.class, null);
   }
 
+  @Override
+  public HdfsFileStatus[] getBatchedFileInfo(String[] srcs,
+      boolean needLocation) throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+
+    final HdfsFileStatus[] ret = new HdfsFileStatus[srcs.length];
+    // Group the paths with a single destination by subcluster
+    final Map<String, List<Integer>> nsIndexes = new HashMap<>();
+    final Map<String, List<String>> nsPaths = new HashMap<>();
+    final List<Integer> multiDestIndexes = new ArrayList<>();
+    for (int i = 0; i < srcs.length; i++) {
+      final List<RemoteLocation> locations =
+          rpcServer.getLocationsForPath(srcs[i], false, false);
+      if (locations.size() == 1 && !rpcServer.isPathAll(srcs[i])) {
+        RemoteLocation location = locations.get(0);
+        String nsId = location.getNameserviceId();
+        nsIndexes.computeIfAbsent(nsId, k -> new ArrayList<>()).add(i);
+        nsPaths.computeIfAbsent(nsId, k -> new ArrayList<>())
+            .add(location.getDest());
+      } else {
+        multiDestIndexes.add(i);
+      }
+    }
+
+    // Get the file info of each subcluster in one call, concurrently
+    if (!nsPaths.isEmpty()) {
+      final Map<RemoteLocation, String[]> nsSrcs = new HashMap<>();
+      for (Map.Entry<String, List<String>> entry : nsPaths.entrySet()) {
+        List<String> paths = entry.getValue();
+        nsSrcs.put(new RemoteLocation(entry.getKey(), "/", "/"),
+            paths.toArray(new String[paths.size()]));
+      }
+      RemoteMethod method = new RemoteMethod("getBatchedFileInfo",
+          new Class<?>[] {String[].class, boolean.class},
+          new RemoteParam(nsSrcs), needLocation);
+      Map<RemoteLocation, HdfsFileStatus[]> results =
+          rpcClient.invokeConcurrent(nsSrcs.keySet(), method, true, false,
+              HdfsFileStatus[].class);
+      for (Map.Entry<RemoteLocation, HdfsFileStatus[]> entry :
+          results.entrySet()) {
+        List<Integer> indexes =
+            nsIndexes.get(entry.getKey().getNameserviceId());
+        HdfsFileStatus[] stats = entry.getValue();
+        for (int j = 0; j < stats.length; j++) {
+          ret[indexes.get(j)] = stats[j];
+        }
+      }
+    }
+
+    // The paths in several subclusters are checked one by one
+    for (int i : multiDestIndexes) {
+      ret[i] = needLocation
+          ? getLocatedFileInfo(srcs[i], false) : getFileInfo(srcs[i]);
+    }
+
+    // If there is no real path, check mount points
+    if (!needLocation) {
+      for (int i = 0; i < srcs.length; i++) {
+        if (ret[i] == null && subclusterResolver.getMountPoints(srcs[i])
+            != null) {
+          ret[i] = getFileInfo(srcs[i]);
+        }
+      }
+    }
+    return ret;
+  }
+
   @Override
   public long[] getStats() throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.UNCHECKED);
@@ -1021,6 +1021,12 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
     return clientProto.getLocatedFileInfo(src, needBlockToken);
   }
 
+  @Override // ClientProtocol
+  public HdfsFileStatus[] getBatchedFileInfo(String[] srcs,
+      boolean needLocation) throws IOException {
+    return clientProto.getBatchedFileInfo(srcs, needLocation);
+  }
+
   @Override // ClientProtocol
   public long[] getStats() throws IOException {
     return clientProto.getStats();
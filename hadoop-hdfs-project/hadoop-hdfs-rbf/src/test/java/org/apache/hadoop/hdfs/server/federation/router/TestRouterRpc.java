@@ -86,6 +86,7 @@
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyState;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.ReplicatedBlockStats;
@@ -646,6 +647,36 @@ public void testProxyChownFiles() throws Exception {
         new Object[] {badPath, newUsername, newGroup});
   }
 
+  @Test
+  public void testProxyGetBatchedFileInfo() throws Exception {
+    List<String> nss = cluster.getNameservices();
+    String ns1 = nss.get(1);
+    String ns1File =
+        cluster.getFederatedTestDirectoryForNS(ns1) + "/testbatchedfileinfo";
+    createFile(routerFS, ns1File, 32);
+    try {
+      String missing = routerFile + "-missing";
+      String[] srcs = {routerFile, missing, ns1File, "/"};
+      HdfsFileStatus[] stats = routerProtocol.getBatchedFileInfo(srcs, false);
+      assertEquals(srcs.length, stats.length);
+      assertEquals(32, stats[0].getLen());
+      assertNull(stats[1]);
+      assertEquals(32, stats[2].getLen());
+      // the root is only made of mount points
+      assertTrue(stats[3].isDirectory());
+
+      stats = routerProtocol.getBatchedFileInfo(
+          new String[] {ns1File, routerFile}, true);
+      for (HdfsFileStatus stat : stats) {
+        LocatedBlocks blocks =
+            ((HdfsLocatedFileStatus) stat).getLocatedBlocks();
+        assertEquals(1, blocks.locatedBlockCount());
+      }
+    } finally {
+      routerFS.delete(new Path(ns1File), false);
+    }
+  }
+
   @Test
   public void testProxyGetStats() throws Exception {
     // Some of the statistics are out of sync because of the mini cluster
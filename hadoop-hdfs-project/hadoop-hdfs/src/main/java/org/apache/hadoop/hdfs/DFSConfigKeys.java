@@ -137,6 +137,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_DATANODE_SYNC_BEHIND_WRITES_IN_BACKGROUND_DEFAULT = false;
   public static final String  DFS_DATANODE_DROP_CACHE_BEHIND_READS_KEY = "dfs.datanode.drop.cache.behind.reads";
   public static final boolean DFS_DATANODE_DROP_CACHE_BEHIND_READS_DEFAULT = false;
+  public static final String  DFS_DATANODE_READ_CACHE_CAPACITY_KEY =
+      "dfs.datanode.read.cache.capacity";
+  public static final long    DFS_DATANODE_READ_CACHE_CAPACITY_DEFAULT = 0;
+  public static final String  DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_KEY =
+      "dfs.datanode.read.cache.admission.threshold";
+  public static final int     DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_DEFAULT =
+      2;
   public static final String  DFS_DATANODE_USE_DN_HOSTNAME = "dfs.datanode.use.datanode.hostname";
   public static final boolean DFS_DATANODE_USE_DN_HOSTNAME_DEFAULT = false;
   public static final String  DFS_DATANODE_MAX_LOCKED_MEMORY_KEY = "dfs.datanode.max.locked.memory";
@@ -311,6 +318,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.namenode.blockreport.max.lock.hold.time";
   public static final long
       DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME_DEFAULT = 4;
+  public static final String DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_KEY
+      = "dfs.namenode.blockreport.batched-apply.enabled";
+  public static final boolean
+      DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_DEFAULT = false;
 
   public static final String
       DFS_NAMENODE_CORRUPT_BLOCK_DELETE_IMMEDIATELY_ENABLED =
@@ -396,6 +407,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.edits.asynclogging.pending.queue.size";
   public static final int
       DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT = 4096;
+  public static final String DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY =
+      "dfs.namenode.edits.replay.prefetch.ops";
+  public static final int DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_DEFAULT = 0;
 
   public static final String DFS_NAMENODE_PROVIDED_ENABLED = "dfs.namenode.provided.enabled";
   public static final boolean DFS_NAMENODE_PROVIDED_ENABLED_DEFAULT = false;
@@ -424,10 +438,18 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_LIST_LIMIT_DEFAULT = 1000;
   public static final String  DFS_NAMENODE_BATCHED_LISTING_LIMIT = "dfs.batched.ls.limit";
   public static final int     DFS_NAMENODE_BATCHED_LISTING_LIMIT_DEFAULT = 100;
+  public static final String  DFS_NAMENODE_BATCHED_FILEINFO_LIMIT =
+      HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_KEY;
+  public static final int     DFS_NAMENODE_BATCHED_FILEINFO_LIMIT_DEFAULT =
+      HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_DEFAULT;
   public static final String  DFS_CONTENT_SUMMARY_LIMIT_KEY = "dfs.content-summary.limit";
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_PARALLELISM_KEY = "dfs.content-summary.parallelism";
+  public static final int     DFS_CONTENT_SUMMARY_PARALLELISM_DEFAULT = 1;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY = "dfs.content-summary.cache.size";
+  public static final int     DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT = 0;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String
@@ -437,6 +459,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_DATANODE_SYNCONCLOSE_DEFAULT = false;
   public static final String  DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY = "dfs.datanode.socket.reuse.keepalive";
   public static final int     DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_DEFAULT = 4000;
+  public static final String  DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_KEY =
+      "dfs.datanode.socket.reuse.selector.enabled";
+  public static final boolean DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_DEFAULT =
+      false;
+  public static final String  DFS_DATANODE_SOCKET_REUSE_SELECTOR_GRACE_MS_KEY =
+      "dfs.datanode.socket.reuse.selector.grace-ms";
+  public static final int DFS_DATANODE_SOCKET_REUSE_SELECTOR_GRACE_MS_DEFAULT =
+      500;
   public static final String  DFS_DATANODE_OOB_TIMEOUT_KEY = "dfs.datanode.oob.timeout-ms";
   public static final String  DFS_DATANODE_OOB_TIMEOUT_DEFAULT = "1500,0,0,0"; // OOB_TYPE1, OOB_TYPE2, OOB_TYPE3, OOB_TYPE4
 
@@ -485,6 +515,36 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.block.deletion.increment";
   public static final int DFS_NAMENODE_BLOCK_DELETION_INCREMENT_DEFAULT = 1000;
 
+  /** Backing set type and sizing of the BlocksMap. */
+  public static final String DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_KEY =
+      "dfs.namenode.blocksmap.gset.type";
+  public static final String DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_DEFAULT =
+      "FIXED";
+  public static final String DFS_NAMENODE_BLOCKSMAP_CAPACITY_PERCENTAGE_KEY =
+      "dfs.namenode.blocksmap.capacity.percentage";
+  public static final float
+      DFS_NAMENODE_BLOCKSMAP_CAPACITY_PERCENTAGE_DEFAULT = 2.0f;
+  public static final String DFS_NAMENODE_BLOCKSMAP_INITIAL_CAPACITY_KEY =
+      "dfs.namenode.blocksmap.initial.capacity";
+  public static final int DFS_NAMENODE_BLOCKSMAP_INITIAL_CAPACITY_DEFAULT =
+      1 << 16;
+  public static final String DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_KEY =
+      "dfs.namenode.block.deletion.async.threshold";
+  public static final int DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_DEFAULT =
+      100000;
+  public static final String DFS_NAMENODE_BLOCK_DELETION_LOCK_THRESHOLD_MS =
+      "dfs.namenode.block.deletion.lock.threshold.ms";
+  public static final long DFS_NAMENODE_BLOCK_DELETION_LOCK_THRESHOLD_MS_DEFAULT =
+      50;
+  public static final String DFS_NAMENODE_BLOCK_DELETION_UNLOCK_INTERVAL_MS =
+      "dfs.namenode.block.deletion.unlock.interval.ms";
+  public static final long
+      DFS_NAMENODE_BLOCK_DELETION_UNLOCK_INTERVAL_MS_DEFAULT = 10;
+  public static final String DFS_NAMENODE_BLOCK_DELETION_MAX_PENDING_INVALIDATES_KEY =
+      "dfs.namenode.block.deletion.max.pending.invalidates";
+  public static final long
+      DFS_NAMENODE_BLOCK_DELETION_MAX_PENDING_INVALIDATES_DEFAULT = 0;
+
   public static final String DFS_NAMENODE_SNAPSHOT_CAPTURE_OPENFILES =
       HdfsClientConfigKeys.DFS_NAMENODE_SNAPSHOT_CAPTURE_OPENFILES;
   public static final boolean DFS_NAMENODE_SNAPSHOT_CAPTURE_OPENFILES_DEFAULT =
@@ -599,6 +659,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_NAMENODE_FSLOCK_FAIR_KEY =
       "dfs.namenode.fslock.fair";
   public static final boolean DFS_NAMENODE_FSLOCK_FAIR_DEFAULT = true;
+  public static final String
+      DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY =
+      "dfs.namenode.settimes.partition-lock.enabled";
+  public static final boolean
+      DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_DEFAULT = false;
+  public static final String DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY =
+      "dfs.namenode.settimes.partition-locks";
+  public static final int DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_DEFAULT = 256;
 
   public static final String  DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY =
       "dfs.namenode.lock.detailed-metrics.enabled";
@@ -628,6 +696,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.lock-reporting-threshold-ms";
   public static final long
       DFS_DATANODE_LOCK_REPORTING_THRESHOLD_MS_DEFAULT = 300L;
+  public static final String DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY =
+      "dfs.datanode.replica.lock.stripes";
+  public static final int DFS_DATANODE_REPLICA_LOCK_STRIPES_DEFAULT = 1024;
 
   public static final String  DFS_UPGRADE_DOMAIN_FACTOR = "dfs.namenode.upgrade.domain.factor";
   public static final int DFS_UPGRADE_DOMAIN_FACTOR_DEFAULT = DFS_REPLICATION_DEFAULT;
@@ -710,6 +781,21 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_NAMENODE_AUDIT_LOG_ASYNC_BLOCKING_DEFAULT = true;
   public static final String  DFS_NAMENODE_AUDIT_LOG_ASYNC_BUFFER_SIZE_KEY = "dfs.namenode.audit.log.async.buffer.size";
   public static final int     DFS_NAMENODE_AUDIT_LOG_ASYNC_BUFFER_SIZE_DEFAULT = 128;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_KEY = "dfs.namenode.audit.log.batch.queue.size";
+  public static final int     DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_DEFAULT = 65536;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY = "dfs.namenode.audit.log.batch.size";
+  public static final int     DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_DEFAULT = 1024;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_KEY = "dfs.namenode.audit.log.batch.blocking";
+  public static final boolean DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_DEFAULT = true;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_TIMEOUT_KEY = "dfs.namenode.audit.log.batch.blocking.timeout";
+  public static final long    DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_TIMEOUT_DEFAULT = 1000;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY = "dfs.namenode.audit.log.batch.format";
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_DEFAULT = "TEXT";
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY = "dfs.namenode.audit.log.batch.binary.path";
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_KEY = "dfs.namenode.audit.log.batch.binary.max.size";
+  public static final long    DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_DEFAULT = 0;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_KEY = "dfs.namenode.audit.log.batch.binary.max.backups";
+  public static final int     DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_DEFAULT = 10;
   public static final String  DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST = "dfs.namenode.audit.log.debug.cmdlist";
   public static final String  DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_KEY =
       "dfs.namenode.metrics.logger.period.seconds";
@@ -836,6 +922,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_DATANODE_DIRECTORYSCAN_INTERVAL_DEFAULT = 21600;
   public static final String  DFS_DATANODE_DIRECTORYSCAN_THREADS_KEY = "dfs.datanode.directoryscan.threads";
   public static final int     DFS_DATANODE_DIRECTORYSCAN_THREADS_DEFAULT = 1;
+  public static final String  DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY =
+      "dfs.datanode.directoryscan.incremental.enabled";
+  public static final boolean DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_DEFAULT =
+      false;
+  public static final String  DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_CYCLES_KEY =
+      "dfs.datanode.directoryscan.full.scan.cycles";
+  public static final int     DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_CYCLES_DEFAULT =
+      10;
 
   public static final String DFS_DATANODE_DISK_CHECK_MIN_GAP_KEY =
       "dfs.datanode.disk.check.min.gap";
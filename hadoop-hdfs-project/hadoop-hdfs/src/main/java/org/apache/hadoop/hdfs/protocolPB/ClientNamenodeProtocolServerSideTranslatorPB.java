@@ -150,6 +150,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedFileInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetPreferredBlockSizeRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetPreferredBlockSizeResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetQuotaUsageRequestProto;
@@ -1074,6 +1076,29 @@ public GetLocatedFileInfoResponseProto getLocatedFileInfo(
     }
   }
 
+  @Override
+  public GetBatchedFileInfoResponseProto getBatchedFileInfo(
+      RpcController controller, GetBatchedFileInfoRequestProto req)
+      throws ServiceException {
+    try {
+      HdfsFileStatus[] result = server.getBatchedFileInfo(
+          req.getSrcsList().toArray(new String[req.getSrcsCount()]),
+          req.getNeedLocation());
+      GetBatchedFileInfoResponseProto.Builder builder =
+          GetBatchedFileInfoResponseProto.newBuilder();
+      for (int i = 0; i < result.length; i++) {
+        if (result[i] == null) {
+          builder.addMissing(i);
+        } else {
+          builder.addFs(PBHelperClient.convert(result[i]));
+        }
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public GetFileLinkInfoResponseProto getFileLinkInfo(RpcController controller,
       GetFileLinkInfoRequestProto req) throws ServiceException {
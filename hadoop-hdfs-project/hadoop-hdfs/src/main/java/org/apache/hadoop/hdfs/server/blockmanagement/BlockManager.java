@@ -42,6 +42,7 @@
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadLocalRandom;
@@ -221,6 +222,10 @@ public long getPendingDeletionBlocksCount() {
     return invalidateBlocks.numBlocks();
   }
   /** Used by metrics */
+  public long getPendingMarkedDeleteBlocksCount() {
+    return pendingMarkedDeleteBlocks.get();
+  }
+  /** Used by metrics */
   public long getStartupDelayBlockDeletionInMs() {
     return startupDelayBlockDeletionInMs;
   }
@@ -338,6 +343,21 @@ public long getTotalECBlockGroups() {
   /** Block report thread for handling async reports. */
   private final BlockReportProcessingThread blockReportThread;
 
+  /**
+   * Blocks of large deletes, which are removed from the blocks map by the
+   * {@link #markedDeleteBlockScrubberThread} after the delete has returned.
+   */
+  private final ConcurrentLinkedQueue<List<BlockInfo>> markedDeleteQueue =
+      new ConcurrentLinkedQueue<>();
+  /** Number of blocks in {@link #markedDeleteQueue}. */
+  private final AtomicLong pendingMarkedDeleteBlocks = new AtomicLong();
+  /** Thread removing the blocks of {@link #markedDeleteQueue}. */
+  private final Daemon markedDeleteBlockScrubberThread =
+      new Daemon(new MarkedDeleteBlockScrubber());
+  private final long deleteBlockLockTimeMs;
+  private final long deleteBlockUnlockIntervalMs;
+  private final long deleteBlockMaxPendingInvalidates;
+
   /**
    * Store blocks {@literal ->} datanodedescriptor(s) map of corrupt replicas.
    */
@@ -413,6 +433,10 @@ public long getTotalECBlockGroups() {
   // Max write lock hold time for BlockReportProcessingThread(ms).
   private final long maxLockHoldTime;
 
+  // Compare full block reports under the read lock and apply the changes
+  // in batches of at most maxLockHoldTime under the write lock.
+  private final boolean blockReportBatchedApply;
+
   /**
    * When running inside a Standby node, the node may receive block reports
    * from datanodes before receiving the corresponding namespace edits from
@@ -487,9 +511,7 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         startupDelayBlockDeletionInMs,
         blockIdManager);
 
-    // Compute the map capacity by allocating 2% of total memory
-    blocksMap = new BlocksMap(
-        LightWeightGSet.computeCapacity(2.0, "BlocksMap"));
+    blocksMap = createBlocksMap(conf);
     placementPolicies = new BlockPlacementPolicies(
       conf, datanodeManager.getFSClusterStats(),
       datanodeManager.getNetworkTopology(),
@@ -561,6 +583,19 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
           DFSConfigKeys.DFS_NAMENODE_STORAGEINFO_DEFRAGMENT_RATIO_KEY,
           DFSConfigKeys.DFS_NAMENODE_STORAGEINFO_DEFRAGMENT_RATIO_DEFAULT);
 
+    this.deleteBlockLockTimeMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_LOCK_THRESHOLD_MS,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_LOCK_THRESHOLD_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    this.deleteBlockUnlockIntervalMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_UNLOCK_INTERVAL_MS,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_UNLOCK_INTERVAL_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    this.deleteBlockMaxPendingInvalidates = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_MAX_PENDING_INVALIDATES_KEY,
+        DFSConfigKeys.
+            DFS_NAMENODE_BLOCK_DELETION_MAX_PENDING_INVALIDATES_DEFAULT);
+
     this.encryptDataTransfer =
         conf.getBoolean(DFSConfigKeys.DFS_ENCRYPT_DATA_TRANSFER_KEY,
             DFSConfigKeys.DFS_ENCRYPT_DATA_TRANSFER_DEFAULT);
@@ -572,6 +607,9 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME_DEFAULT,
         TimeUnit.MILLISECONDS);
+    this.blockReportBatchedApply = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_DEFAULT);
     this.numBlocksPerIteration = conf.getInt(
         DFSConfigKeys.DFS_BLOCK_MISREPLICATION_PROCESSING_LIMIT,
         DFSConfigKeys.DFS_BLOCK_MISREPLICATION_PROCESSING_LIMIT_DEFAULT);
@@ -634,6 +672,36 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
     LOG.info("maxNumBlocksToLog          = {}", maxNumBlocksToLog);
   }
 
+  private static BlocksMap createBlocksMap(final Configuration conf) {
+    final String typeName = conf.getTrimmed(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_DEFAULT);
+    final BlocksMap.GSetType type;
+    try {
+      type = BlocksMap.GSetType.valueOf(StringUtils.toUpperCase(typeName));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value " + typeName + " for "
+          + DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_KEY
+          + ", expected one of "
+          + Arrays.toString(BlocksMap.GSetType.values()), e);
+    }
+    final int capacity;
+    if (type == BlocksMap.GSetType.RESIZABLE) {
+      capacity = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_INITIAL_CAPACITY_KEY,
+          DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_INITIAL_CAPACITY_DEFAULT);
+    } else {
+      // Compute the map capacity by allocating a percentage of total memory
+      final float percentage = conf.getFloat(
+          DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_CAPACITY_PERCENTAGE_KEY,
+          DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_CAPACITY_PERCENTAGE_DEFAULT);
+      capacity = LightWeightGSet.computeCapacity(percentage, "BlocksMap");
+    }
+    LOG.info("{} = {}, initial capacity = {}",
+        DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_GSET_TYPE_KEY, type, capacity);
+    return new BlocksMap(capacity, type);
+  }
+
   private static BlockTokenSecretManager createBlockTokenSecretManager(
       final Configuration conf) throws IOException {
     final boolean isEnabled = conf.getBoolean(
@@ -752,6 +820,8 @@ public void activate(Configuration conf, long blockTotal) {
     storageInfoDefragmenterThread.setName("StorageInfoMonitor");
     storageInfoDefragmenterThread.start();
     this.blockReportThread.start();
+    markedDeleteBlockScrubberThread.setName("MarkedDeleteBlockScrubber");
+    markedDeleteBlockScrubberThread.start();
     mxBeanName = MBeans.register("NameNode", "BlockStats", this);
     bmSafeMode.activate(blockTotal);
   }
@@ -765,9 +835,11 @@ public void close() {
       redundancyThread.interrupt();
       storageInfoDefragmenterThread.interrupt();
       blockReportThread.interrupt();
+      markedDeleteBlockScrubberThread.interrupt();
       redundancyThread.join(3000);
       storageInfoDefragmenterThread.join(3000);
       blockReportThread.join(3000);
+      markedDeleteBlockScrubberThread.join(3000);
     } catch (InterruptedException ie) {
     }
     datanodeManager.close();
@@ -2772,6 +2844,9 @@ public boolean processReport(final DatanodeID nodeID,
       final DatanodeStorage storage,
       final BlockListAsLongs newReport,
       BlockReportContext context) throws IOException {
+    if (canApplyReportInBatches(nodeID, storage)) {
+      return processReportInBatches(nodeID, storage, newReport, context);
+    }
     namesystem.writeLock();
     final long startTime = Time.monotonicNow(); //after acquiring write lock
     final long endTime;
@@ -2928,36 +3003,54 @@ Collection<Block> processReport(
     Collection<BlockToMarkCorrupt> toCorrupt = new ArrayList<>();
     Collection<StatefulBlockInfo> toUC = new ArrayList<>();
 
-    boolean sorted = false;
-    String strBlockReportId = "";
-    if (context != null) {
-      sorted = context.isSorted();
-      strBlockReportId = Long.toHexString(context.getReportId());
-    }
-
-    Iterable<BlockReportReplica> sortedReport;
-    if (!sorted) {
-      blockLog.warn("BLOCK* processReport 0x{}: Report from the DataNode ({}) "
-                    + "is unsorted. This will cause overhead on the NameNode "
-                    + "which needs to sort the Full BR. Please update the "
-                    + "DataNode to the same version of Hadoop HDFS as the "
-                    + "NameNode ({}).",
-                    strBlockReportId,
-                    storageInfo.getDatanodeDescriptor().getDatanodeUuid(),
-                    VersionInfo.getVersion());
-      Set<BlockReportReplica> set = new FoldedTreeSet<>();
-      for (BlockReportReplica iblk : report) {
-        set.add(new BlockReportReplica(iblk));
-      }
-      sortedReport = set;
-    } else {
-      sortedReport = report;
-    }
+    String strBlockReportId =
+        context != null ? Long.toHexString(context.getReportId()) : "";
+    Iterable<BlockReportReplica> sortedReport = sortReport(
+        storageInfo.getDatanodeDescriptor(), report, context);
 
     reportDiffSorted(storageInfo, sortedReport,
                      toAdd, toRemove, toInvalidate, toCorrupt, toUC);
 
+    int numBlocksLogged = applyReportDiff(storageInfo, toAdd, toRemove,
+        toInvalidate, toCorrupt, toUC, 0);
+    if (numBlocksLogged > maxNumBlocksToLog) {
+      blockLog.info("BLOCK* processReport 0x{}: logged info for {} of {} " +
+          "reported.", strBlockReportId, maxNumBlocksToLog, numBlocksLogged);
+    }
+
+    return toInvalidate;
+  }
+
+  private Iterable<BlockReportReplica> sortReport(DatanodeDescriptor node,
+      BlockListAsLongs report, BlockReportContext context) {
+    if (context != null && context.isSorted()) {
+      return report;
+    }
+    blockLog.warn("BLOCK* processReport 0x{}: Report from the DataNode ({}) "
+                  + "is unsorted. This will cause overhead on the NameNode "
+                  + "which needs to sort the Full BR. Please update the "
+                  + "DataNode to the same version of Hadoop HDFS as the "
+                  + "NameNode ({}).",
+                  context != null ? Long.toHexString(context.getReportId()) : "",
+                  node.getDatanodeUuid(),
+                  VersionInfo.getVersion());
+    Set<BlockReportReplica> set = new FoldedTreeSet<>();
+    for (BlockReportReplica iblk : report) {
+      set.add(new BlockReportReplica(iblk));
+    }
+    return set;
+  }
 
+  /**
+   * Apply the result of a block report diff to the given storage.
+   * @return the given number of added blocks plus the blocks added here,
+   *         used to limit the number of blocks logged per report.
+   */
+  private int applyReportDiff(DatanodeStorageInfo storageInfo,
+      Collection<BlockInfoToAdd> toAdd, Collection<BlockInfo> toRemove,
+      Collection<Block> toInvalidate, Collection<BlockToMarkCorrupt> toCorrupt,
+      Collection<StatefulBlockInfo> toUC, int numBlocksLogged)
+      throws IOException {
     DatanodeDescriptor node = storageInfo.getDatanodeDescriptor();
     // Process the blocks on each queue
     for (StatefulBlockInfo b : toUC) { 
@@ -2966,24 +3059,195 @@ Collection<Block> processReport(
     for (BlockInfo b : toRemove) {
       removeStoredBlock(b, node);
     }
-    int numBlocksLogged = 0;
     for (BlockInfoToAdd b : toAdd) {
       addStoredBlock(b.stored, b.reported, storageInfo, null,
           numBlocksLogged < maxNumBlocksToLog);
       numBlocksLogged++;
     }
-    if (numBlocksLogged > maxNumBlocksToLog) {
-      blockLog.info("BLOCK* processReport 0x{}: logged info for {} of {} " +
-          "reported.", strBlockReportId, maxNumBlocksToLog, numBlocksLogged);
-    }
     for (Block b : toInvalidate) {
       addToInvalidates(b, node);
     }
     for (BlockToMarkCorrupt b : toCorrupt) {
       markBlockAsCorrupt(b, storageInfo, node);
     }
+    return numBlocksLogged;
+  }
 
-    return toInvalidate;
+  /**
+   * @return true if the full block report of the given storage can be
+   *         processed by {@link #processReportInBatches}. First reports,
+   *         reports of provided storages and reports received by a standby
+   *         or during startup safe mode are processed under the write lock.
+   */
+  private boolean canApplyReportInBatches(DatanodeID nodeID,
+      DatanodeStorage storage) {
+    if (!blockReportBatchedApply || namesystem.hasWriteLock()
+        || shouldPostponeBlocksFromFuture || namesystem.isInStartupSafeMode()
+        || StorageType.PROVIDED.equals(storage.getStorageType())) {
+      return false;
+    }
+    namesystem.readLock();
+    try {
+      DatanodeDescriptor node = datanodeManager.getDatanode(nodeID);
+      if (node == null || !node.isRegistered()) {
+        return false;
+      }
+      DatanodeStorageInfo storageInfo =
+          node.getStorageInfo(storage.getStorageID());
+      return storageInfo != null && storageInfo.getBlockReportCount() > 0;
+    } catch (UnregisteredNodeException e) {
+      return false;
+    } finally {
+      namesystem.readUnlock();
+    }
+  }
+
+  /**
+   * Process a full block report without holding the write lock for the
+   * whole report. The report is compared with the storage's block list
+   * under the read lock, which only blocks other writers. The replicas that
+   * may need an update are then classified again and applied under the write
+   * lock, in batches of at most maxLockHoldTime, since the namespace may
+   * have changed in between. Replicas which are already finalized on this
+   * storage, typically almost all of them, never need the write lock.
+   * Incremental block reports are processed by the same thread, so the
+   * storage's replicas can only change through namespace operations while
+   * the report is applied.
+   *
+   * @return true if all known storages of the given DN have finished reporting.
+   */
+  private boolean processReportInBatches(final DatanodeID nodeID,
+      final DatanodeStorage storage, final BlockListAsLongs newReport,
+      BlockReportContext context) throws IOException {
+    final long startTime = Time.monotonicNow();
+    final String strBlockReportId =
+        context != null ? Long.toHexString(context.getReportId()) : "";
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    final List<BlockInfo> toRemove = new ArrayList<>();
+    final List<BlockReportReplica> toCheck = new ArrayList<>();
+    final DatanodeDescriptor node;
+    final DatanodeStorageInfo storageInfo;
+
+    namesystem.readLock();
+    try {
+      node = datanodeManager.getDatanode(nodeID);
+      storageInfo = node == null ? null
+          : node.getStorageInfo(storage.getStorageID());
+    } finally {
+      namesystem.readUnlock();
+    }
+    if (storageInfo == null) {
+      throw new IOException(
+          "ProcessReport from dead or unregistered node: " + nodeID);
+    }
+    // Sort outside of the lock.
+    final Iterable<BlockReportReplica> sortedReport =
+        sortReport(node, newReport, context);
+
+    namesystem.readLock();
+    final long diffStartTime = Time.monotonicNow();
+    try {
+      checkReportedStorage(nodeID, node, storageInfo);
+      reportDiffCandidates(storageInfo, sortedReport, toRemove, toCheck);
+    } finally {
+      namesystem.readUnlock();
+    }
+    if (metrics != null) {
+      metrics.addBlockReportDiff(Time.monotonicNow() - diffStartTime);
+    }
+
+    final Collection<Block> invalidatedBlocks = new ArrayList<>();
+    final Iterator<BlockInfo> removeIt = toRemove.iterator();
+    final Iterator<BlockReportReplica> checkIt = toCheck.iterator();
+    int pending = toRemove.size() + toCheck.size();
+    int numBatches = 0;
+    int numBlocksLogged = 0;
+    if (metrics != null) {
+      metrics.addBlockReportChangesPending(pending);
+    }
+    try {
+      do {
+        Collection<BlockInfoToAdd> toAdd = new ArrayList<>();
+        Collection<BlockInfo> batchToRemove = new ArrayList<>();
+        Collection<Block> toInvalidate = new ArrayList<>();
+        Collection<BlockToMarkCorrupt> toCorrupt = new ArrayList<>();
+        Collection<StatefulBlockInfo> toUC = new ArrayList<>();
+        int applied = 0;
+        namesystem.writeLock();
+        final long batchStartTime = Time.monotonicNow();
+        try {
+          checkReportedStorage(nodeID, node, storageInfo);
+          // The time is only checked after an item, so that every batch
+          // makes progress even if taking the lock was slow.
+          while (removeIt.hasNext() || checkIt.hasNext()) {
+            if (removeIt.hasNext()) {
+              BlockInfo b = removeIt.next();
+              // The block may have been deleted in the meantime.
+              if (b.findStorageInfo(storageInfo) != -1) {
+                batchToRemove.add(b);
+              }
+            } else {
+              reportDiffReplica(storageInfo, checkIt.next(),
+                  toAdd, toInvalidate, toCorrupt, toUC);
+            }
+            applied++;
+            if (Time.monotonicNow() - batchStartTime > maxLockHoldTime) {
+              break;
+            }
+          }
+          numBlocksLogged = applyReportDiff(storageInfo, toAdd,
+              batchToRemove, toInvalidate, toCorrupt, toUC, numBlocksLogged);
+          if (pending == applied) {
+            storageInfo.receivedBlockReport();
+          }
+        } finally {
+          pending -= applied;
+          final long batchTime = Time.monotonicNow() - batchStartTime;
+          namesystem.writeUnlock();
+          if (metrics != null) {
+            metrics.addBlockReportApplyBatch(batchTime);
+            metrics.addBlockReportChangesPending(-applied);
+          }
+        }
+        invalidatedBlocks.addAll(toInvalidate);
+        numBatches++;
+      } while (pending > 0);
+    } finally {
+      if (metrics != null && pending > 0) {
+        // The report failed part way; its changes are no longer pending.
+        metrics.addBlockReportChangesPending(-pending);
+      }
+    }
+    final long endTime = Time.monotonicNow();
+
+    if (numBlocksLogged > maxNumBlocksToLog) {
+      blockLog.info("BLOCK* processReport 0x{}: logged info for {} of {} " +
+          "reported.", strBlockReportId, maxNumBlocksToLog, numBlocksLogged);
+    }
+    for (Block b : invalidatedBlocks) {
+      blockLog.debug("BLOCK* processReport 0x{}: {} on node {} size {} does not"
+          + " belong to any file", strBlockReportId, b, node, b.getNumBytes());
+    }
+    if (metrics != null) {
+      metrics.addStorageBlockReport((int) (endTime - startTime));
+    }
+    blockLog.info("BLOCK* processReport 0x{}: from storage {} node {}, " +
+        "blocks: {}, hasStaleStorage: {}, processing time: {} msecs, " +
+        "changes: {}, batches: {}, invalidatedBlocks: {}", strBlockReportId,
+        storage.getStorageID(), nodeID, newReport.getNumberOfBlocks(),
+        node.hasStaleStorages(), (endTime - startTime),
+        toRemove.size() + toCheck.size(), numBatches,
+        invalidatedBlocks.size());
+    return !node.hasStaleStorages();
+  }
+
+  private void checkReportedStorage(DatanodeID nodeID, DatanodeDescriptor node,
+      DatanodeStorageInfo storageInfo) throws IOException {
+    if (datanodeManager.getDatanode(nodeID) != node || !node.isRegistered()
+        || node.getStorageInfo(storageInfo.getStorageID()) != storageInfo) {
+      throw new IOException(
+          "ProcessReport from dead or unregistered node: " + nodeID);
+    }
   }
 
   /**
@@ -3182,6 +3446,103 @@ && isGenStampInFuture(replica)) {
     }
   }
 
+  /**
+   * Like {@link #reportDiffSorted}, but without modifying any state, so that
+   * it only needs the read lock. Collects the stored blocks missing from the
+   * report and copies of the reported replicas which are not already
+   * finalized on the storage; see {@link #isReplicaUpToDate}.
+   */
+  private void reportDiffCandidates(DatanodeStorageInfo storageInfo,
+      Iterable<BlockReportReplica> newReport,
+      Collection<BlockInfo> toRemove,
+      Collection<BlockReportReplica> toCheck) {
+    Iterator<BlockInfo> storageBlocksIterator = storageInfo.getBlockIterator();
+    BlockInfo storageBlock = null;
+
+    for (BlockReportReplica replica : newReport) {
+      long replicaID = replica.getBlockId();
+      if (BlockIdManager.isStripedBlockID(replicaID)
+          && (!hasNonEcBlockUsingStripedID ||
+              !blocksMap.containsBlock(replica))) {
+        replicaID = BlockIdManager.convertToStripedID(replicaID);
+      }
+
+      if (storageBlock == null && storageBlocksIterator.hasNext()) {
+        storageBlock = storageBlocksIterator.next();
+      }
+
+      do {
+        int cmp;
+        if (storageBlock == null ||
+            (cmp = Long.compare(replicaID, storageBlock.getBlockId())) < 0) {
+          // Not on this storage yet, or not on the NN at all.
+          toCheck.add(new BlockReportReplica(replica));
+          break;
+        } else if (cmp == 0) {
+          if (!isReplicaUpToDate(storageInfo, replica, storageBlock)) {
+            toCheck.add(new BlockReportReplica(replica));
+          }
+          storageBlock = null;
+        } else {
+          do {
+            toRemove.add(storageBlock);
+            storageBlock = storageBlocksIterator.hasNext()
+                           ? storageBlocksIterator.next() : null;
+          } while (storageBlock != null &&
+                   Long.compare(replicaID, storageBlock.getBlockId()) > 0);
+        }
+      } while (storageBlock != null);
+    }
+
+    while (storageBlocksIterator.hasNext()) {
+      toRemove.add(storageBlocksIterator.next());
+    }
+  }
+
+  /**
+   * @return true if the reported replica is a finalized replica of a complete
+   *         block, stored on the given storage and not marked corrupt, for
+   *         which {@link #reportDiffSortedInner} would not do anything.
+   */
+  private boolean isReplicaUpToDate(DatanodeStorageInfo storageInfo,
+      BlockReportReplica replica, BlockInfo storedBlock) {
+    if (replica.getState() != ReplicaState.FINALIZED
+        || !storedBlock.isComplete()
+        || (shouldPostponeBlocksFromFuture && isGenStampInFuture(replica))) {
+      return false;
+    }
+    DatanodeDescriptor dn = storageInfo.getDatanodeDescriptor();
+    return checkReplicaCorrupt(replica, ReplicaState.FINALIZED, storedBlock,
+        BlockUCState.COMPLETE, dn) == null
+        && !corruptReplicas.isReplicaCorrupt(storedBlock, dn);
+  }
+
+  /**
+   * Classify a single reported replica against the current state, as
+   * {@link #reportDiffSorted} does for each replica of a full report.
+   */
+  private void reportDiffReplica(DatanodeStorageInfo storageInfo,
+      BlockReportReplica replica,
+      Collection<BlockInfoToAdd> toAdd,
+      Collection<Block> toInvalidate,
+      Collection<BlockToMarkCorrupt> toCorrupt,
+      Collection<StatefulBlockInfo> toUC) {
+    ReplicaState reportedState = replica.getState();
+    if (shouldPostponeBlocksFromFuture && isGenStampInFuture(replica)) {
+      queueReportedBlock(storageInfo, replica, reportedState,
+          QUEUE_REASON_FUTURE_GENSTAMP);
+      return;
+    }
+    BlockInfo storedBlock = getStoredBlock(replica);
+    if (storedBlock != null) {
+      reportDiffSortedInner(storageInfo, replica, reportedState,
+          storedBlock, toAdd, toCorrupt, toUC);
+    } else {
+      // Replica not found anywhere so it should be invalidated
+      toInvalidate.add(new Block(replica));
+    }
+  }
+
   private void reportDiffSortedInner(
       final DatanodeStorageInfo storageInfo,
       final BlockReportReplica replica, final ReplicaState reportedState,
@@ -4651,6 +5012,18 @@ public void removeBlock(BlockInfo block) {
     postponedMisreplicatedBlocks.remove(block);
   }
 
+  /**
+   * Queue the blocks of deleted files to be removed from the blocks map in
+   * the background. The blocks must already be marked as deleted, see
+   * {@link BlockInfo#delete()}.
+   */
+  public void addBlocksToMarkedDeleteQueue(List<BlockInfo> blocks) {
+    if (!blocks.isEmpty()) {
+      pendingMarkedDeleteBlocks.addAndGet(blocks.size());
+      markedDeleteQueue.add(blocks);
+    }
+  }
+
   public BlockInfo getStoredBlock(Block block) {
     if (!BlockIdManager.isStripedBlockID(block.getBlockId())) {
       return blocksMap.getStoredBlock(block);
@@ -4964,6 +5337,72 @@ public long getLastRedundancyMonitorTS() {
     return lastRedundancyCycleTS.get();
   }
 
+  /**
+   * Removes the blocks of {@link #markedDeleteQueue} from the blocks map and
+   * queues their invalidation, holding the write lock for at most
+   * {@link #deleteBlockLockTimeMs} at once.
+   */
+  private class MarkedDeleteBlockScrubber implements Runnable {
+    private Iterator<BlockInfo> toDelete = null;
+
+    @Override
+    public void run() {
+      LOG.info("Start MarkedDeleteBlockScrubber thread");
+      while (namesystem.isRunning()) {
+        try {
+          if (!isInvalidationBacklogged()) {
+            removeMarkedDeleteBlocks();
+          }
+          TimeUnit.MILLISECONDS.sleep(deleteBlockUnlockIntervalMs);
+        } catch (InterruptedException ie) {
+          LOG.info("Stopping MarkedDeleteBlockScrubber.");
+          break;
+        } catch (Throwable t) {
+          LOG.warn("MarkedDeleteBlockScrubber encountered an exception, the"
+              + " removal of blocks will be retried.", t);
+        }
+      }
+    }
+
+    private boolean hasMarkedDeleteBlocks() {
+      return (toDelete != null && toDelete.hasNext())
+          || !markedDeleteQueue.isEmpty();
+    }
+
+    private boolean isInvalidationBacklogged() {
+      return deleteBlockMaxPendingInvalidates > 0
+          && invalidateBlocks.numBlocks() >= deleteBlockMaxPendingInvalidates;
+    }
+
+    private void removeMarkedDeleteBlocks() {
+      if (!hasMarkedDeleteBlocks()) {
+        return;
+      }
+      int removed = 0;
+      namesystem.writeLock();
+      try {
+        final long start = Time.monotonicNow();
+        do {
+          if (toDelete == null || !toDelete.hasNext()) {
+            List<BlockInfo> next = markedDeleteQueue.poll();
+            if (next == null) {
+              break;
+            }
+            toDelete = next.iterator();
+          } else {
+            removeBlock(toDelete.next());
+            pendingMarkedDeleteBlocks.decrementAndGet();
+            removed++;
+          }
+        } while (Time.monotonicNow() - start < deleteBlockLockTimeMs);
+      } finally {
+        namesystem.writeUnlock();
+      }
+      LOG.debug("Removed {} blocks of deleted files, {} blocks pending.",
+          removed, pendingMarkedDeleteBlocks.get());
+    }
+  }
+
   /**
    * Periodically calls computeBlockRecoveryWork().
    */
@@ -5261,7 +5700,19 @@ public void enqueueBlockOp(final Runnable action) throws IOException {
   // sync batch processing for a full BR.
   public <T> T runBlockOp(final Callable<T> action)
       throws IOException {
-    final FutureTask<T> future = new FutureTask<T>(action);
+    return runBlockOp(action, true);
+  }
+
+  /**
+   * Run the action on the block report processing thread and wait for it.
+   * @param writeLock if false, the action is not batched under the write
+   *                  lock with other block ops and has to take the
+   *                  namesystem lock itself.
+   */
+  public <T> T runBlockOp(final Callable<T> action, boolean writeLock)
+      throws IOException {
+    final FutureTask<T> future = writeLock ? new FutureTask<T>(action)
+        : new UnlockedBlockOp<T>(action);
     enqueueBlockOp(future);
     try {
       return future.get();
@@ -5313,6 +5764,23 @@ public int getBlockOpQueueLength() {
     return blockReportThread.queue.size();
   }
 
+  /**
+   * @return true if full block reports are applied in batches, see
+   *         {@link DFSConfigKeys#DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_KEY}.
+   */
+  public boolean isBlockReportBatchedApplyEnabled() {
+    return blockReportBatchedApply;
+  }
+
+  /**
+   * A block op which takes the namesystem lock itself.
+   */
+  private static class UnlockedBlockOp<T> extends FutureTask<T> {
+    UnlockedBlockOp(Callable<T> action) {
+      super(action);
+    }
+  }
+
   private class BlockReportProcessingThread extends Thread {
     private long lastFull = 0;
 
@@ -5339,8 +5807,14 @@ private void processQueue() {
         NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
         try {
           Runnable action = queue.take();
+          if (action instanceof UnlockedBlockOp) {
+            metrics.setBlockOpsQueued(queue.size() + 1);
+            action.run();
+            continue;
+          }
           // batch as many operations in the write lock until the queue
-          // runs dry, or the max lock hold is reached.
+          // runs dry, the max lock hold is reached, or an op that takes
+          // the lock itself is next.
           int processed = 0;
           namesystem.writeLock();
           metrics.setBlockOpsQueued(queue.size() + 1);
@@ -5349,7 +5823,8 @@ private void processQueue() {
             do {
               processed++;
               action.run();
-              if (Time.monotonicNow() - start > maxLockHoldTime) {
+              if (Time.monotonicNow() - start > maxLockHoldTime
+                  || queue.peek() instanceof UnlockedBlockOp) {
                 break;
               }
               action = queue.poll();
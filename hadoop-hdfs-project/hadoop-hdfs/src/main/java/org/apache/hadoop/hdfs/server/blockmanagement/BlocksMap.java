@@ -25,6 +25,7 @@
 import org.apache.hadoop.hdfs.server.namenode.INodeId;
 import org.apache.hadoop.util.GSet;
 import org.apache.hadoop.util.LightWeightGSet;
+import org.apache.hadoop.util.LightWeightResizableGSet;
 
 /**
  * This class maintains the map from a block to its metadata.
@@ -33,31 +34,61 @@
  */
 class BlocksMap {
 
-  /** Constant {@link LightWeightGSet} capacity. */
+  /**
+   * The implementations of the set backing the map.
+   * FIXED uses a {@link LightWeightGSet} whose table is allocated once with
+   * the given capacity. RESIZABLE uses a {@link LightWeightResizableGSet}
+   * which starts at the given capacity and doubles as blocks are added.
+   * Each doubling rehashes every block under the namesystem write lock.
+   * Neither changes the memory used by the {@link BlockInfo}s themselves.
+   */
+  enum GSetType {
+    FIXED,
+    RESIZABLE
+  }
+
+  /** Initial {@link LightWeightGSet} capacity. */
   private final int capacity;
-  
+
+  private final GSetType type;
+
   private GSet<Block, BlockInfo> blocks;
 
   private final LongAdder totalReplicatedBlocks = new LongAdder();
   private final LongAdder totalECBlockGroups = new LongAdder();
 
   BlocksMap(int capacity) {
-    // Use 2% of total memory to size the GSet capacity
+    this(capacity, GSetType.FIXED);
+  }
+
+  BlocksMap(int capacity, GSetType type) {
     this.capacity = capacity;
-    this.blocks = new LightWeightGSet<Block, BlockInfo>(capacity) {
-      @Override
-      public Iterator<BlockInfo> iterator() {
-        SetIterator iterator = new SetIterator();
-        /*
-         * Not tracking any modifications to set. As this set will be used
-         * always under FSNameSystem lock, modifications will not cause any
-         * ConcurrentModificationExceptions. But there is a chance of missing
-         * newly added elements during iteration.
-         */
-        iterator.setTrackModification(false);
-        return iterator;
-      }
-    };
+    this.type = type;
+    /*
+     * The iterators do not track any modifications to set. As this set will
+     * be used always under FSNameSystem lock, modifications will not cause
+     * any ConcurrentModificationExceptions. But there is a chance of missing
+     * newly added elements during iteration.
+     */
+    if (type == GSetType.RESIZABLE) {
+      this.blocks = new LightWeightResizableGSet<Block, BlockInfo>(capacity) {
+        @Override
+        public Iterator<BlockInfo> iterator() {
+          SetIterator iterator = new SetIterator();
+          iterator.setTrackModification(false);
+          return iterator;
+        }
+      };
+    } else {
+      this.blocks = new LightWeightGSet<Block, BlockInfo>(capacity) {
+        @Override
+        public Iterator<BlockInfo> iterator() {
+          SetIterator iterator = new SetIterator();
+          iterator.setTrackModification(false);
+          return iterator;
+        }
+      };
+    }
   }
 
 
@@ -204,9 +235,17 @@ Iterable<BlockInfo> getBlocks() {
   
   /** Get the capacity of the HashMap that stores blocks */
   int getCapacity() {
+    if (blocks instanceof LightWeightResizableGSet) {
+      return ((LightWeightResizableGSet<Block, BlockInfo>) blocks)
+          .getCapacity();
+    }
     return capacity;
   }
 
+  GSetType getGSetType() {
+    return type;
+  }
+
   private void incrementBlockStat(BlockInfo block) {
     if (block.isStriped()) {
       totalECBlockGroups.increment();
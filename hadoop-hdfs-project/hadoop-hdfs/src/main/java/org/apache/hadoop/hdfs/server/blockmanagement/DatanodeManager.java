@@ -67,6 +67,7 @@
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 /**
  * Manage datanodes, include decommission and other activities.
@@ -467,12 +468,20 @@ public void sortLocatedBlocks(final String targetHost,
     Comparator<DatanodeInfo> comparator = avoidStaleDataNodesForRead ?
         new DFSUtil.ServiceAndStaleComparator(staleInterval) :
         new DFSUtil.ServiceComparator();
+    // the reader and the distances to the datanodes are resolved once for
+    // all the blocks
+    ToIntFunction<Node> weigher = null;
+    Consumer<List<DatanodeInfoWithStorage>> secondarySort = null;
     // sort located block
     for (LocatedBlock lb : locatedBlocks) {
       if (lb.isStriped()) {
         sortLocatedStripedBlock(lb, comparator);
       } else {
-        sortLocatedBlock(lb, targetHost, comparator);
+        if (weigher == null) {
+          weigher = getReaderWeigher(targetHost);
+          secondarySort = createSecondaryNodeSorter();
+        }
+        sortLocatedBlock(lb, weigher, secondarySort, comparator);
       }
     }
   }
@@ -509,15 +518,13 @@ private void sortLocatedStripedBlock(final LocatedBlock lb,
   }
 
   /**
-   * Move decommissioned/stale datanodes to the bottom. Also, sort nodes by
-   * network distance.
+   * Get a weigher of datanodes by their network distance to the reader on
+   * the target host, which remembers the distance of each datanode.
    *
-   * @param lb located block
    * @param targetHost target host
-   * @param comparator dn comparator
+   * @return the weigher
    */
-  private void sortLocatedBlock(final LocatedBlock lb, String targetHost,
-      Comparator<DatanodeInfo> comparator) {
+  private ToIntFunction<Node> getReaderWeigher(String targetHost) {
     // As it is possible for the separation of node manager and datanode, 
     // here we should get node but not datanode only .
     boolean nonDatanodeReader = false;
@@ -538,7 +545,22 @@ private void sortLocatedBlock(final LocatedBlock lb, String targetHost,
           "awareness scripts are functional.");
       }
     }
+    return networktopology.getCachingWeigher(client, nonDatanodeReader);
+  }
 
+  /**
+   * Move decommissioned/stale datanodes to the bottom. Also, sort nodes by
+   * network distance.
+   *
+   * @param lb located block
+   * @param weigher weigher of datanodes by distance to the reader
+   * @param secondarySort secondary sort of datanodes at the same distance
+   * @param comparator dn comparator
+   */
+  private void sortLocatedBlock(final LocatedBlock lb,
+      ToIntFunction<Node> weigher,
+      Consumer<List<DatanodeInfoWithStorage>> secondarySort,
+      Comparator<DatanodeInfo> comparator) {
     DatanodeInfoWithStorage[] di = lb.getLocations();
     // Move decommissioned/stale datanodes to the bottom
     Arrays.sort(di, comparator);
@@ -549,13 +571,8 @@ private void sortLocatedBlock(final LocatedBlock lb, String targetHost,
       --lastActiveIndex;
     }
     int activeLen = lastActiveIndex + 1;
-    if(nonDatanodeReader) {
-      networktopology.sortByDistanceUsingNetworkLocation(client,
-          lb.getLocations(), activeLen, createSecondaryNodeSorter());
-    } else {
-      networktopology.sortByDistance(client, lb.getLocations(), activeLen,
-          createSecondaryNodeSorter());
-    }
+    networktopology.sortByDistance(weigher, lb.getLocations(), activeLen,
+        secondarySort);
     // move PROVIDED storage to the end to prefer local replicas.
     lb.moveProvidedToEnd(activeLen);
     // must update cache since we modified locations array
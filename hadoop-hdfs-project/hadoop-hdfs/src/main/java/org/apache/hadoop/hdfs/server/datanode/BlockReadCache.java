@@ -0,0 +1,332 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+
+import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A size-bounded cache of the data and the verified checksums of recently
+ * read ranges of finalized replicas. {@link BlockSender} consults it for
+ * short reads before opening the block file, and copies the cached bytes
+ * straight into its packets.
+ * <p>
+ * Replicas are cached in {@link #SEGMENT_SIZE} segments keyed by block ID
+ * and generation stamp. A cached segment never goes stale, because any
+ * change to the content of a replica also changes its generation stamp.
+ * <p>
+ * The cache is split by block ID into up to {@link #MAX_STRIPES} stripes,
+ * each with its own lock, capacity and admission state, so that reads of
+ * different blocks do not contend. Within a stripe, segments are evicted in
+ * LRU order. Admission follows TinyLFU. A small
+ * count-min sketch counts the reads of every segment, and its counters are
+ * halved periodically. A segment is admitted only after it has been read
+ * {@code admissionThreshold} times. When the cache is full, a segment is
+ * admitted only if it has been read more often than the segment it would
+ * evict. Single reads of cold data therefore do not flush hot segments.
+ */
+class BlockReadCache {
+  /** The size of the cached segments, a multiple of any sane chunk size. */
+  static final int SEGMENT_SIZE = 64 * 1024;
+  /** The maximum number of stripes of the cache. */
+  static final int MAX_STRIPES = 16;
+  /** The minimum number of segments a stripe can hold. */
+  private static final int MIN_STRIPE_SEGMENTS = 64;
+
+  /** A cached segment of a replica. */
+  static final class Segment {
+    private final byte[] data;
+    private final byte[] checksums;
+
+    /**
+     * @param data the data of the segment, which must not be modified after
+     * @param checksums the verified checksums of the chunks of the data,
+     *          which must not be modified after
+     */
+    Segment(byte[] data, byte[] checksums) {
+      this.data = data;
+      this.checksums = checksums;
+    }
+
+    int getDataLength() {
+      return data.length;
+    }
+
+    void readData(int pos, byte[] buf, int off, int len) {
+      System.arraycopy(data, pos, buf, off, len);
+    }
+
+    void readChecksums(int pos, byte[] buf, int off, int len) {
+      System.arraycopy(checksums, pos, buf, off, len);
+    }
+
+    private int size() {
+      return data.length + checksums.length;
+    }
+  }
+
+  private static final class Key {
+    private final String bpid;
+    private final long blockId;
+    private final long genStamp;
+    private final long index;
+
+    private Key(ExtendedBlock block, long index) {
+      this.bpid = block.getBlockPoolId();
+      this.blockId = block.getBlockId();
+      this.genStamp = block.getGenerationStamp();
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return blockId == that.blockId && genStamp == that.genStamp
+          && index == that.index && bpid.equals(that.bpid);
+    }
+
+    @Override
+    public int hashCode() {
+      long h = blockId * 31 + genStamp;
+      h = h * 31 + index;
+      return Long.hashCode(h) * 31 + bpid.hashCode();
+    }
+  }
+
+  /**
+   * A count-min sketch of the recent reads of the segments, with 4-bit
+   * counters that are halved every {@code 10 * width} counted reads.
+   */
+  private static final class FrequencySketch {
+    private static final int[] SEEDS = {
+        0x97cb3127, 0x8ba04c5d, 0x2ec5e6bd, 0x61c88647 };
+    private static final int MAX_COUNT = 15;
+
+    private final int width;
+    private final int[] table;
+    private final int sampleSize;
+    private int additions = 0;
+
+    private FrequencySketch(long expectedEntries) {
+      int n = (int) Math.min(Math.max(expectedEntries, 64L), 1 << 24);
+      width = Integer.highestOneBit(n - 1) << 1;
+      table = new int[SEEDS.length * width];
+      sampleSize = 10 * width;
+    }
+
+    private int indexOf(int hash, int row) {
+      int h = (hash + SEEDS[row]) * 0x9e3779b9;
+      h ^= h >>> 16;
+      return row * width + (h & (width - 1));
+    }
+
+    private void increment(int hash) {
+      boolean added = false;
+      for (int row = 0; row < SEEDS.length; row++) {
+        int i = indexOf(hash, row);
+        if (table[i] < MAX_COUNT) {
+          table[i]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        for (int i = 0; i < table.length; i++) {
+          table[i] >>>= 1;
+        }
+        additions /= 2;
+      }
+    }
+
+    private int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < SEEDS.length; row++) {
+        frequency = Math.min(frequency, table[indexOf(hash, row)]);
+      }
+      return frequency;
+    }
+  }
+
+  /** The segments of some of the blocks, under one lock. */
+  private static final class Stripe {
+    private final long capacity;
+    private final int admissionThreshold;
+    private final FrequencySketch sketch;
+    /** The cached segments, in LRU order. */
+    private final LinkedHashMap<Key, Segment> segments =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+
+    private Stripe(long capacity, int admissionThreshold) {
+      this.capacity = capacity;
+      this.admissionThreshold = admissionThreshold;
+      this.sketch = new FrequencySketch(capacity / SEGMENT_SIZE);
+    }
+
+    private synchronized Segment[] get(ExtendedBlock block, long first,
+        int numSegments) {
+      final Segment[] result = new Segment[numSegments];
+      for (int i = 0; i < result.length; i++) {
+        Key key = new Key(block, first + i);
+        sketch.increment(key.hashCode());
+        result[i] = segments.get(key);
+      }
+      return result;
+    }
+
+    private synchronized boolean isAdmissible(ExtendedBlock block,
+        long index) {
+      return sketch.frequency(new Key(block, index).hashCode())
+          >= admissionThreshold;
+    }
+
+    private synchronized boolean put(ExtendedBlock block, long index,
+        Segment segment) {
+      final Key key = new Key(block, index);
+      if (segments.containsKey(key) || segment.size() > capacity) {
+        return false;
+      }
+      final int frequency = sketch.frequency(key.hashCode());
+      final Iterator<Map.Entry<Key, Segment>> lru =
+          segments.entrySet().iterator();
+      while (usedBytes + segment.size() > capacity) {
+        Map.Entry<Key, Segment> victim = lru.next();
+        if (sketch.frequency(victim.getKey().hashCode()) >= frequency) {
+          return false;
+        }
+        lru.remove();
+        usedBytes -= victim.getValue().size();
+      }
+      segments.put(key, segment);
+      usedBytes += segment.size();
+      return true;
+    }
+
+    private synchronized void clear() {
+      segments.clear();
+      usedBytes = 0;
+    }
+
+    private synchronized long getUsedBytes() {
+      return usedBytes;
+    }
+
+    private synchronized int getNumSegments() {
+      return segments.size();
+    }
+  }
+
+  private final Stripe[] stripes;
+
+  /**
+   * @param capacity the maximum number of bytes of cached data and checksums
+   * @param admissionThreshold the number of recent reads of a segment needed
+   *          for its admission
+   */
+  BlockReadCache(long capacity, int admissionThreshold) {
+    // A small cache is not split, so that each stripe holds enough segments
+    final int numStripes = (int) Math.max(1, Math.min(MAX_STRIPES,
+        capacity / ((long) MIN_STRIPE_SEGMENTS * SEGMENT_SIZE)));
+    this.stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      stripes[i] = new Stripe(capacity / numStripes, admissionThreshold);
+    }
+  }
+
+  private Stripe getStripe(ExtendedBlock block) {
+    return stripes[Math.floorMod(Long.hashCode(block.getBlockId()),
+        stripes.length)];
+  }
+
+  /**
+   * Get the cached segments of a block covering a range, and count a read of
+   * each of them.
+   *
+   * @param block the block, with the generation stamp of the replica
+   * @param start the offset of the first byte of the range
+   * @param end the offset after the last byte of the range
+   * @return the segments from the one containing start, with a null element
+   *         for each segment which is not cached
+   */
+  Segment[] get(ExtendedBlock block, long start, long end) {
+    final long first = start / SEGMENT_SIZE;
+    return getStripe(block).get(block, first,
+        (int) ((end - 1) / SEGMENT_SIZE - first + 1));
+  }
+
+  /**
+   * @return whether a segment has been read often enough to be admitted
+   */
+  boolean isAdmissible(ExtendedBlock block, long index) {
+    return getStripe(block).isAdmissible(block, index);
+  }
+
+  /**
+   * Add a segment unless it is colder than the segments it would evict.
+   *
+   * @param block the block, with the generation stamp of the replica
+   * @param index the index of the segment in the block
+   * @param segment the segment
+   * @return whether the segment was added
+   */
+  boolean put(ExtendedBlock block, long index, Segment segment) {
+    return getStripe(block).put(block, index, segment);
+  }
+
+  /**
+   * Drop all the cached segments.
+   */
+  void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  @VisibleForTesting
+  long getUsedBytes() {
+    long usedBytes = 0;
+    for (Stripe stripe : stripes) {
+      usedBytes += stripe.getUsedBytes();
+    }
+    return usedBytes;
+  }
+
+  @VisibleForTesting
+  int getNumSegments() {
+    int numSegments = 0;
+    for (Stripe stripe : stripes) {
+      numSegments += stripe.getNumSegments();
+    }
+    return numSegments;
+  }
+
+  @VisibleForTesting
+  int getNumStripes() {
+    return stripes.length;
+  }
+}
@@ -41,6 +41,7 @@
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.datatransfer.PacketHeader;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.DataNodeVolumeMetrics;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeReference;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
@@ -156,6 +157,11 @@ class BlockSender implements java.io.Closeable {
   /** The replica of the block that is being read. */
   private final Replica replica;
 
+  /** The read cache segments to send, or null to read the replica files */
+  private BlockReadCache.Segment[] cachedSegments;
+  /** Index in the block of the first element of cachedSegments */
+  private long firstCachedSegment;
+
   // Cache-management related fields
   private final long readaheadLength;
 
@@ -256,7 +262,8 @@ class BlockSender implements java.io.Closeable {
       // the append write.
       ChunkChecksum chunkChecksum = null;
       final long replicaVisibleLength;
-      try(AutoCloseableLock lock = datanode.data.acquireDatasetReadLock()) {
+      try(AutoCloseableLock lock =
+              datanode.data.acquireReplicaReadLock(block)) {
         replica = getReplica(block, datanode);
         replicaVisibleLength = replica.getVisibleLength();
       }
@@ -414,8 +421,20 @@ class BlockSender implements java.io.Closeable {
       }
       endOffset = end;
 
+      // Short reads of finalized replicas may be served by the read cache
+      final BlockReadCache readCache = datanode.getBlockReadCache();
+      if (readCache != null && !verifyChecksum
+          && checksumIn != null && checksumSize > 0
+          && replica.getState() == ReplicaState.FINALIZED
+          && BlockReadCache.SEGMENT_SIZE % chunkSize == 0
+          && endOffset > offset
+          && endOffset - offset <= LONG_READ_THRESHOLD_BYTES) {
+        cachedSegments = getCachedSegments(readCache, replicaVisibleLength,
+            volumeRef.getVolume().getMetrics());
+      }
+
       // seek to the right offsets
-      if (offset > 0 && checksumIn != null) {
+      if (offset > 0 && checksumIn != null && cachedSegments == null) {
         long checksumSkip = (offset / chunkSize) * checksumSize;
         // note blockInStream is seeked when created below
         if (checksumSkip > 0) {
@@ -428,7 +447,13 @@ class BlockSender implements java.io.Closeable {
       if (DataNode.LOG.isDebugEnabled()) {
         DataNode.LOG.debug("replica=" + replica);
       }
-      blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      if (cachedSegments != null) {
+        // The checksums of the cached segments were verified when loaded
+        IOUtils.closeStream(checksumIn);
+        checksumIn = null;
+      } else {
+        blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      }
       ris = new ReplicaInputStreams(
           blockIn, checksumIn, volumeRef, fileIoProvider);
     } catch (IOException ioe) {
@@ -470,6 +495,103 @@ private ChunkChecksum getPartialChunkChecksumForFinalized(
     }
   }
 
+  /**
+   * Get the segments of the read cache which cover the range to send, loading
+   * the missing ones from the replica files if they are admitted.
+   *
+   * @param readCache the read cache
+   * @param replicaLength the length of the finalized replica
+   * @param volumeMetrics the metrics of the volume of the replica, or null
+   * @return the segments, or null to read the replica files
+   */
+  private BlockReadCache.Segment[] getCachedSegments(
+      BlockReadCache readCache, long replicaLength,
+      DataNodeVolumeMetrics volumeMetrics) {
+    firstCachedSegment = offset / BlockReadCache.SEGMENT_SIZE;
+    final BlockReadCache.Segment[] segments =
+        readCache.get(block, offset, endOffset);
+    boolean hit = true;
+    for (BlockReadCache.Segment segment : segments) {
+      hit &= segment != null;
+    }
+    if (volumeMetrics != null) {
+      if (hit) {
+        volumeMetrics.incrReadCacheHits();
+      } else {
+        volumeMetrics.incrReadCacheMisses();
+      }
+    }
+    if (hit) {
+      return coversRange(segments, replicaLength) ? segments : null;
+    }
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i] == null
+          && !readCache.isAdmissible(block, firstCachedSegment + i)) {
+        return null;
+      }
+    }
+    try {
+      for (int i = 0; i < segments.length; i++) {
+        if (segments[i] == null) {
+          segments[i] = loadSegment(firstCachedSegment + i, replicaLength);
+          readCache.put(block, firstCachedSegment + i, segments[i]);
+        }
+      }
+    } catch (IOException e) {
+      // Leave the error, if any, to the regular read
+      LOG.debug("Could not load read cache segments of {}", block, e);
+      return null;
+    }
+    return coversRange(segments, replicaLength) ? segments : null;
+  }
+
+  /**
+   * @return whether each segment has all the data of its range of the
+   *         replica, so that the segments cover the range to send
+   */
+  private boolean coversRange(BlockReadCache.Segment[] segments,
+      long replicaLength) {
+    for (int i = 0; i < segments.length; i++) {
+      final long start =
+          (firstCachedSegment + i) * BlockReadCache.SEGMENT_SIZE;
+      if (segments[i].getDataLength()
+          != Math.min(BlockReadCache.SEGMENT_SIZE, replicaLength - start)) {
+        LOG.debug("Read cache segment {} of {} has {} bytes, reading the "
+            + "replica files", firstCachedSegment + i, block,
+            segments[i].getDataLength());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read a segment of the replica and its checksums, and verify them.
+   */
+  private BlockReadCache.Segment loadSegment(long index, long replicaLength)
+      throws IOException {
+    final long start = index * BlockReadCache.SEGMENT_SIZE;
+    final int dataLen =
+        (int) Math.min(BlockReadCache.SEGMENT_SIZE, replicaLength - start);
+    final byte[] data = new byte[dataLen];
+    final byte[] checksums = new byte[numberOfChunks(dataLen) * checksumSize];
+    try (InputStream in = datanode.data.getBlockInputStream(block, start)) {
+      IOUtils.readFully(in, data, 0, data.length);
+    }
+    try (LengthInputStream metaIn =
+        datanode.data.getMetaDataInputStream(block)) {
+      if (metaIn == null) {
+        throw new FileNotFoundException("Meta-data not found for " + block);
+      }
+      IOUtils.skipFully(metaIn, BlockMetadataHeader.getHeaderSize()
+          + (start / chunkSize) * checksumSize);
+      IOUtils.readFully(metaIn, checksums, 0, checksums.length);
+    }
+    checksum.verifyChunkedSums(ByteBuffer.wrap(data),
+        ByteBuffer.wrap(checksums), block.getBlockName(), start);
+    return new BlockReadCache.Segment(data, checksums);
+  }
+
   /**
    * close opened files.
    */
@@ -573,7 +695,10 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
     int checksumOff = pkt.position();
     byte[] buf = pkt.array();
     
-    if (checksumSize > 0 && ris.getChecksumIn() != null) {
+    if (cachedSegments != null) {
+      readCachedSegments(buf, checksumOff, checksumOff + checksumDataLen,
+          dataLen);
+    } else if (checksumSize > 0 && ris.getChecksumIn() != null) {
       readChecksum(buf, checksumOff, checksumDataLen);
 
       // write in progress that we need to use to get last checksum
@@ -587,7 +712,7 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
     }
     
     int dataOff = checksumOff + checksumDataLen;
-    if (!transferTo) { // normal transfer
+    if (!transferTo && cachedSegments == null) { // normal transfer
       try {
         ris.readDataFully(buf, dataOff, dataLen);
       } catch (IOException ioe) {
@@ -669,6 +794,39 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
     return dataLen;
   }
   
+  /**
+   * Copy the data and the checksums of a packet from the read cache.
+   * @param buf buffer to copy into
+   * @param checksumOff offset at which to write the checksums into buf
+   * @param dataOff offset at which to write the data into buf
+   * @param dataLen length of the data
+   * @throws IOException if the cached segments do not cover the data
+   */
+  private void readCachedSegments(byte[] buf, int checksumOff, int dataOff,
+      int dataLen) throws IOException {
+    long pos = offset;
+    int left = dataLen;
+    while (left > 0) {
+      final BlockReadCache.Segment segment = cachedSegments[
+          (int) (pos / BlockReadCache.SEGMENT_SIZE - firstCachedSegment)];
+      final int segmentPos = (int) (pos % BlockReadCache.SEGMENT_SIZE);
+      final int len = Math.min(left, segment.getDataLength() - segmentPos);
+      if (len <= 0) {
+        // The segments are checked when the sender is created
+        throw new IOException("Read cache segment of " + block
+            + " ends before offset " + pos);
+      }
+      final int checksumLen = numberOfChunks(len) * checksumSize;
+      segment.readData(segmentPos, buf, dataOff, len);
+      segment.readChecksums(segmentPos / chunkSize * checksumSize, buf,
+          checksumOff, checksumLen);
+      pos += len;
+      left -= len;
+      dataOff += len;
+      checksumOff += checksumLen;
+    }
+  }
+
   /**
    * Read checksum into given buffer
    * @param buf buffer to read the checksum into
@@ -41,6 +41,10 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_OOB_TIMEOUT_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_OOB_TIMEOUT_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_PLUGINS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_READ_CACHE_CAPACITY_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_READ_CACHE_CAPACITY_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_STARTUP_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_DEFAULT;
@@ -374,6 +378,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   private final List<String> usersWithLocalPathAccess;
   private final boolean connectToDnViaHostname;
   ReadaheadPool readaheadPool;
+  private BlockReadCache blockReadCache;
   SaslDataTransferClient saslClient;
   SaslDataTransferServer saslServer;
   private ObjectName dataNodeInfoBeanName;
@@ -1126,7 +1131,7 @@ private synchronized void initDirectoryScanner(Configuration conf) {
       reason = "verifcation is not supported by SimulatedFSDataset";
     } 
     if (reason == null) {
-      directoryScanner = new DirectoryScanner(data, conf);
+      directoryScanner = new DirectoryScanner(data, conf, metrics);
       directoryScanner.start();
     } else {
       LOG.info("Periodic Directory Tree Verification scan " +
@@ -1482,6 +1487,14 @@ void startDataNode(List<StorageLocation> dataDirectories,
     // Create the ReadaheadPool from the DataNode context so we can
     // exit without having to explicitly shutdown its thread pool.
     readaheadPool = ReadaheadPool.getInstance();
+    final long readCacheCapacity = getConf().getLong(
+        DFS_DATANODE_READ_CACHE_CAPACITY_KEY,
+        DFS_DATANODE_READ_CACHE_CAPACITY_DEFAULT);
+    if (readCacheCapacity > 0) {
+      blockReadCache = new BlockReadCache(readCacheCapacity,
+          getConf().getInt(DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_KEY,
+              DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_DEFAULT));
+    }
     saslClient = new SaslDataTransferClient(dnConf.getConf(),
         dnConf.saslPropsResolver, dnConf.trustedChannelResolver);
     saslServer = new SaslDataTransferServer(dnConf, blockPoolTokenSecretManager);
@@ -1923,6 +1936,14 @@ public DataNodeMetrics getMetrics() {
     return metrics;
   }
 
+  /**
+   * @return the cache of short reads of finalized replicas, or null if it
+   *         is disabled
+   */
+  BlockReadCache getBlockReadCache() {
+    return blockReadCache;
+  }
+
   public DataNodeDiskMetrics getDiskMetrics() {
     return diskMetrics;
   }
@@ -2196,6 +2217,9 @@ public void shutdown() {
     if (data != null) {
       data.shutdown();
     }
+    if (blockReadCache != null) {
+      blockReadCache.clear();
+    }
     if (metrics != null) {
       metrics.shutdown();
     }
@@ -3128,7 +3152,7 @@ void transferReplicaForPipelineRecovery(final ExtendedBlock b,
     final BlockConstructionStage stage;
 
     //get replica information
-    try(AutoCloseableLock lock = data.acquireDatasetReadLock()) {
+    try(AutoCloseableLock lock = data.acquireReplicaReadLock(b)) {
       Block storedBlock = data.getStoredBlock(b.getBlockPoolId(),
           b.getBlockId());
       if (null == storedBlock) {
@@ -26,6 +26,7 @@
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.net.NioInetPeer;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.protocol.BlockChecksumOptions;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -62,6 +63,7 @@
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.net.SocketInputStream;
 import org.apache.hadoop.net.unix.DomainSocket;
 import org.apache.hadoop.security.token.SecretManager.InvalidToken;
 import org.apache.hadoop.security.token.Token;
@@ -86,6 +88,7 @@
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -122,6 +125,13 @@ class DataXceiver extends Receiver implements Runnable {
   private final int ioFileBufferSize;
   private final int smallBufferSize;
   private Thread xceiver = null;
+  private int opsProcessed = 0;
+  /**
+   * The channel of the connection if it may wait for the next operation
+   * without a thread, i.e. it is a TCP connection whose input is not wrapped
+   * by SASL; null otherwise.
+   */
+  private SocketChannel parkableChannel = null;
 
   /**
    * Client Name used in previous operation. Not available on first request
@@ -221,47 +231,35 @@ private synchronized BlockReceiver getCurrentBlockReceiver() {
    */
   @Override
   public void run() {
-    int opsProcessed = 0;
     Op op = null;
+    // whether the next op of a parked connection has arrived
+    boolean resumed = opsProcessed != 0;
+    boolean parked = false;
 
     try {
       synchronized(this) {
         xceiver = Thread.currentThread();
       }
       dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
-      peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
-      InputStream input = socketIn;
-      try {
-        IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
-          socketIn, datanode.getXferAddress().getPort(),
-          datanode.getDatanodeId());
-        input = new BufferedInputStream(saslStreams.in,
-            smallBufferSize);
-        socketOut = saslStreams.out;
-      } catch (InvalidMagicNumberException imne) {
-        if (imne.isHandshake4Encryption()) {
-          LOG.info("Failed to read expected encryption handshake from client " +
-              "at {}. Perhaps the client " +
-              "is running an older version of Hadoop which does not support " +
-              "encryption", peer.getRemoteAddressString(), imne);
-        } else {
-          LOG.info("Failed to read expected SASL data transfer protection " +
-              "handshake from client at {}" +
-              ". Perhaps the client is running an older version of Hadoop " +
-              "which does not support SASL data transfer protection",
-              peer.getRemoteAddressString(), imne);
-        }
+      if (!resumed && !initialize()) {
         return;
       }
-      
-      super.initialize(new DataInputStream(input));
-      
+
       // We process requests in a loop, and stay around for a short timeout.
       // This optimistic behaviour allows the other end to reuse connections.
       // Setting keepalive timeout to 0 disable this behavior.
       do {
         updateCurrentThreadName("Waiting for operation #" + (opsProcessed + 1));
 
+        // Release the thread while the connection waits for the next op,
+        // unless the op arrives or some of its input is already buffered
+        // within the grace period.
+        if (opsProcessed != 0 && !resumed && parkableChannel != null
+            && in.available() == 0 && !awaitNextOp()) {
+          parked = true;
+          return;
+        }
+        resumed = false;
         try {
           if (opsProcessed != 0) {
             assert dnConf.socketKeepaliveTimeout > 0;
@@ -326,14 +324,97 @@ public void run() {
       }
     } finally {
       collectThreadLocalStates();
-      LOG.debug("{}:Number of active connections is: {}",
-          datanode.getDisplayName(), datanode.getXceiverCount());
-      updateCurrentThreadName("Cleaning up");
-      if (peer != null) {
-        dataXceiverServer.closePeer(peer);
-        IOUtils.closeStream(in);
+      if (parked) {
+        // Hand the connection over to the selector of the idle connections,
+        // which resumes this xceiver on a new thread when the next op
+        // arrives. Nothing may be accessed after this.
+        updateCurrentThreadName("Parked");
+        dataXceiverServer.parkPeer(peer, parkableChannel, this,
+            dnConf.socketKeepaliveTimeout
+                - Math.max(dnConf.socketReuseParkGraceMs, 0));
+      } else {
+        LOG.debug("{}:Number of active connections is: {}",
+            datanode.getDisplayName(), datanode.getXceiverCount());
+        updateCurrentThreadName("Cleaning up");
+        if (peer != null) {
+          dataXceiverServer.closePeer(peer);
+          IOUtils.closeStream(in);
+        }
+      }
+    }
+  }
+
+  /**
+   * Set up the streams of a new connection.
+   *
+   * @return false if the handshake of the client failed
+   */
+  private boolean initialize() throws IOException {
+    peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
+    InputStream input = socketIn;
+    try {
+      IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
+        socketIn, datanode.getXferAddress().getPort(),
+        datanode.getDatanodeId());
+      input = new BufferedInputStream(saslStreams.in,
+          smallBufferSize);
+      socketOut = saslStreams.out;
+      if (saslStreams.in == socketIn && peer instanceof NioInetPeer
+          && dataXceiverServer.canParkPeers()) {
+        parkableChannel = ((NioInetPeer) peer).getSocketChannel();
+      }
+    } catch (InvalidMagicNumberException imne) {
+      if (imne.isHandshake4Encryption()) {
+        LOG.info("Failed to read expected encryption handshake from client " +
+            "at {}. Perhaps the client " +
+            "is running an older version of Hadoop which does not support " +
+            "encryption", peer.getRemoteAddressString(), imne);
+      } else {
+        LOG.info("Failed to read expected SASL data transfer protection " +
+            "handshake from client at {}" +
+            ". Perhaps the client is running an older version of Hadoop " +
+            "which does not support SASL data transfer protection",
+            peer.getRemoteAddressString(), imne);
       }
+      return false;
+    }
+
+    super.initialize(new DataInputStream(input));
+    return true;
+  }
+
+  /**
+   * Wait on the thread of this xceiver, for the grace period, for the next op
+   * of a connection which may be parked. Connections whose ops follow each
+   * other closely then keep their thread, instead of being resumed on a new
+   * one for every op.
+   *
+   * @return whether the connection has to keep its thread
+   */
+  private boolean awaitNextOp() throws IOException {
+    final int graceMs = dnConf.socketReuseParkGraceMs;
+    if (graceMs >= dnConf.socketKeepaliveTimeout) {
+      return true;
+    } else if (graceMs <= 0) {
+      return false;
+    }
+    // A parkable connection reads directly from the socket input stream.
+    peer.setReadTimeout(graceMs);
+    try {
+      ((SocketInputStream) socketIn).waitForReadable();
+    } catch (SocketTimeoutException e) {
+      return false;
     }
+    return true;
+  }
+
+  /**
+   * Close the connection of this xceiver while it is parked, waiting for the
+   * next op without a thread.
+   */
+  void closeParked() {
+    IOUtils.closeStream(in);
+    IOUtils.closeStream(peer);
   }
 
   /**
@@ -20,6 +20,7 @@
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -32,6 +33,7 @@
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.net.PeerServer;
+import org.apache.hadoop.hdfs.net.TcpPeerServer;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.util.Daemon;
 
@@ -173,6 +175,12 @@ void release() {
 
   private final DataTransferThrottler writeThrottler;
 
+  /**
+   * Watches the idle TCP connections waiting for their next operation, or
+   * null if the xceivers wait for the next operation on their threads.
+   */
+  private final IdlePeerSelector idlePeerSelector;
+
   /**
    * Stores an estimate for block size to check if the disk partition has enough
    * space. Newer clients pass the expected block size to the DataNode. For
@@ -219,10 +227,26 @@ void release() {
     } else {
       this.writeThrottler = null;
     }
+
+    IdlePeerSelector selector = null;
+    if (peerServer instanceof TcpPeerServer && conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_DEFAULT)) {
+      try {
+        selector = new IdlePeerSelector(this);
+      } catch (IOException e) {
+        LOG.warn("Failed to open the selector of idle connections, the " +
+            "xceivers will wait for the next operation on their threads", e);
+      }
+    }
+    this.idlePeerSelector = selector;
   }
 
   @Override
   public void run() {
+    if (idlePeerSelector != null) {
+      new Daemon(datanode.threadGroup, idlePeerSelector).start();
+    }
     Peer peer = null;
     while (datanode.shouldRun && !datanode.shutdownForUpgrade) {
       try {
@@ -281,6 +305,9 @@ public void run() {
     } finally {
       lock.unlock();
     }
+    if (idlePeerSelector != null) {
+      idlePeerSelector.close();
+    }
 
     // if in restart prep stage, notify peers before closing them.
     if (datanode.shutdownForUpgrade) {
@@ -492,6 +519,57 @@ void releasePeer(Peer peer) {
     }
   }
 
+  /**
+   * @return whether the xceivers may wait for the next operation on their
+   *         connections without a thread
+   */
+  boolean canParkPeers() {
+    return idlePeerSelector != null;
+  }
+
+  /**
+   * Release the thread of an xceiver waiting for the next operation on its
+   * connection. The xceiver is resumed on a new thread by
+   * {@link #resumeParked(DataXceiver)} when the operation arrives.
+   *
+   * @param peer The peer of the xceiver
+   * @param channel The non-blocking channel of the peer
+   * @param xceiver The xceiver
+   * @param timeoutMs The time to wait for the next operation
+   */
+  void parkPeer(Peer peer, SocketChannel channel, DataXceiver xceiver,
+      long timeoutMs) {
+    releasePeer(peer);
+    idlePeerSelector.park(channel, xceiver, timeoutMs);
+  }
+
+  /**
+   * Resume a parked xceiver on a new thread, or close its connection if the
+   * xceiver count is exceeded.
+   *
+   * @param xceiver The xceiver whose next operation arrived
+   */
+  void resumeParked(DataXceiver xceiver) {
+    if (!datanode.shouldRun || datanode.shutdownForUpgrade) {
+      xceiver.closeParked();
+      return;
+    }
+    int curXceiverCount = datanode.getXceiverCount();
+    if (curXceiverCount > maxXceiverCount) {
+      LOG.warn("{}:DataXceiverServer: Xceiver count {} exceeds the limit of " +
+          "concurrent xceivers: {}, closing an idle connection",
+          datanode.getDisplayName(), curXceiverCount, maxXceiverCount);
+      xceiver.closeParked();
+      return;
+    }
+    new Daemon(datanode.threadGroup, xceiver).start();
+  }
+
+  @VisibleForTesting
+  int getNumParkedPeers() {
+    return idlePeerSelector == null ? 0 : idlePeerSelector.getNumParkedPeers();
+  }
+
   /**
    * Update the number of threads which may be used concurrently for moving
    * blocks.
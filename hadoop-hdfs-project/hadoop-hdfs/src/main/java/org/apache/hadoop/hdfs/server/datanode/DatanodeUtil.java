@@ -127,6 +127,52 @@ public static File idToBlockDir(File root, long blockId) {
     return new File(root, path);
   }
 
+  /** The number of leaf directories that finalized blocks are stored in. */
+  public static final int NUM_BLOCK_DIRS = 32 * 32;
+
+  /**
+   * Get the index, in [0, {@link #NUM_BLOCK_DIRS}), of the leaf directory
+   * returned by {@link #idToBlockDir(File, long)} for this block ID.
+   * @param blockId the block ID
+   * @return the index of the leaf directory of the block
+   */
+  public static int idToBlockDirIndex(long blockId) {
+    int d1 = (int) ((blockId >> 16) & 0x1F);
+    int d2 = (int) ((blockId >> 8) & 0x1F);
+    return (d1 << 5) | d2;
+  }
+
+  /**
+   * Get the index of a leaf directory under the root where finalized blocks
+   * are stored, as returned by {@link #idToBlockDirIndex(long)}.
+   * @param root the root directory where finalized blocks are stored
+   * @param dir the directory
+   * @return the index of the leaf directory, or -1 if dir is not one of the
+   *         leaf directories of root
+   */
+  public static int blockDirIndex(File root, File dir) {
+    File parent = dir.getParentFile();
+    if (parent == null || !root.equals(parent.getParentFile())) {
+      return -1;
+    }
+    int d1 = parseBlockSubdir(parent.getName());
+    int d2 = parseBlockSubdir(dir.getName());
+    return d1 < 0 || d2 < 0 ? -1 : (d1 << 5) | d2;
+  }
+
+  private static int parseBlockSubdir(String name) {
+    if (!name.startsWith(DataStorage.BLOCK_SUBDIR_PREFIX)) {
+      return -1;
+    }
+    try {
+      int d = Integer.parseInt(
+          name.substring(DataStorage.BLOCK_SUBDIR_PREFIX.length()));
+      return d >= 0 && d <= 0x1F ? d : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
   /**
    * @return the FileInputStream for the meta data of the given block.
    * @throws FileNotFoundException
@@ -20,6 +20,7 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,6 +29,7 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -46,8 +48,10 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi.ScanInfo;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.StopWatch;
+import org.apache.hadoop.util.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,12 +70,30 @@ public class DirectoryScanner implements Runnable {
 
   private static final int DEFAULT_MAP_SIZE = 32768;
   private static final int RECONCILE_BLOCKS_BATCH_SIZE = 1000;
+  /**
+   * A directory modified less than this many milliseconds before it is
+   * listed may be modified again without a visible change of its mtime.
+   */
+  private static final long RACY_MTIME_MS = 2000L;
   private final FsDatasetSpi<?> dataset;
+  private final DataNodeMetrics metrics;
   private final ExecutorService reportCompileThreadPool;
   private final ScheduledExecutorService masterThread;
   private final long scanPeriodMsecs;
   private final long throttleLimitMsPerSec;
   private final AtomicBoolean shouldRun = new AtomicBoolean();
+  private final boolean incrementalScan;
+  private final int fullScanCycles;
+  private long numScans = 0L;
+  private volatile boolean fullScan = true;
+
+  /**
+   * The mtimes of the leaf block directories listed by the previous scans,
+   * indexed by volume and block pool ID. A zero mtime means that the
+   * directory has to be listed again.
+   */
+  private final Map<FsVolumeSpi, Map<String, long[]>> scannedDirMtimes =
+      new ConcurrentHashMap<>();
 
   private boolean retainDiffs = false;
 
@@ -124,6 +146,7 @@ static class Stats {
     long missingMemoryBlocks = 0;
     long mismatchBlocks = 0;
     long duplicateBlocks = 0;
+    long skippedBlocks = 0;
 
     /**
      * Create a new Stats object for the given blockpool ID.
@@ -140,7 +163,8 @@ public String toString() {
           + ", missing metadata files: " + missingMetaFile
           + ", missing block files: " + missingBlockFile
           + ", missing blocks in memory: " + missingMemoryBlocks
-          + ", mismatched blocks: " + mismatchBlocks;
+          + ", mismatched blocks: " + mismatchBlocks
+          + ", blocks in unchanged directories: " + skippedBlocks;
     }
   }
 
@@ -160,6 +184,10 @@ public static class ScanInfoVolumeReport {
 
     private final BlockPoolReport blockPoolReport;
 
+    private final Map<String, BitSet> skippedDirs = new HashMap<>();
+
+    private Map<String, long[]> dirMtimes;
+
     /**
      * Create a new info list.
      *
@@ -194,6 +222,37 @@ public List<ScanInfo> getScanInfo(final String bpid) {
       return this.blockPoolReport.getScanInfo(bpid);
     }
 
+    void setSkippedDirs(final String bpid, final BitSet dirs) {
+      if (dirs != null) {
+        this.skippedDirs.put(bpid, dirs);
+      }
+    }
+
+    /**
+     * Get the indices of the unchanged leaf block directories that were not
+     * listed for the given block pool.
+     *
+     * @param bpid the block pool ID
+     * @return the skipped directories, or null if none was skipped
+     */
+    public BitSet getSkippedDirs(final String bpid) {
+      return this.skippedDirs.get(bpid);
+    }
+
+    void setDirMtimes(final Map<String, long[]> dirMtimes) {
+      this.dirMtimes = dirMtimes;
+    }
+
+    /**
+     * Get the mtimes of the leaf block directories of the volume, indexed by
+     * block pool ID.
+     *
+     * @return the mtimes, or null if the scan is not incremental
+     */
+    Map<String, long[]> getDirMtimes() {
+      return dirMtimes;
+    }
+
     public FsVolumeSpi getVolume() {
       return volume;
     }
@@ -283,7 +342,20 @@ public String toString() {
    * @param conf the Configuration object
    */
   public DirectoryScanner(FsDatasetSpi<?> dataset, Configuration conf) {
+    this(dataset, conf, null);
+  }
+
+  /**
+   * Create a new directory scanner, but don't cycle it running yet.
+   *
+   * @param dataset the dataset to scan
+   * @param conf the Configuration object
+   * @param metrics the DataNode metrics to update, or null
+   */
+  public DirectoryScanner(FsDatasetSpi<?> dataset, Configuration conf,
+      DataNodeMetrics metrics) {
     this.dataset = dataset;
+    this.metrics = metrics;
     this.stats = new HashMap<>(DEFAULT_MAP_SIZE);
     int interval = (int) conf.getTimeDuration(
         DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY,
@@ -314,6 +386,13 @@ public DirectoryScanner(FsDatasetSpi<?> dataset, Configuration conf) {
     reportCompileThreadPool =
         Executors.newFixedThreadPool(threads, new Daemon.DaemonFactory());
 
+    incrementalScan = conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_DEFAULT);
+    fullScanCycles = Math.max(1, conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_CYCLES_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_CYCLES_DEFAULT));
+
     masterThread =
         new ScheduledThreadPoolExecutor(1, new Daemon.DaemonFactory());
   }
@@ -457,15 +536,27 @@ public void reconcile() throws IOException {
    * "finalized blocks" lists of both disk and memory.
    */
   private void scan() {
+    final long startTime = Time.monotonicNow();
+    long numDifferences = 0;
+    long numSkippedDirs = 0;
     BlockPoolReport blockPoolReport = new BlockPoolReport();
+    // The directories skipped by an incremental scan, by block pool and volume
+    Map<String, Map<FsVolumeSpi, BitSet>> skippedDirs = new HashMap<>();
 
     clear();
 
+    fullScan = !incrementalScan || numScans++ % fullScanCycles == 0;
     Collection<ScanInfoVolumeReport> volumeReports = getVolumeReports();
     for (ScanInfoVolumeReport volumeReport : volumeReports) {
       for (String blockPoolId : volumeReport.getBlockPoolIds()) {
         List<ScanInfo> scanInfos = volumeReport.getScanInfo(blockPoolId);
         blockPoolReport.addAll(blockPoolId, scanInfos);
+        BitSet skipped = volumeReport.getSkippedDirs(blockPoolId);
+        if (skipped != null) {
+          numSkippedDirs += skipped.cardinality();
+          skippedDirs.computeIfAbsent(blockPoolId, k -> new HashMap<>())
+              .put(volumeReport.getVolume(), skipped);
+        }
       }
     }
 
@@ -474,6 +565,8 @@ private void scan() {
 
     for (final String bpid : blockPoolReport.getBlockPoolIds()) {
       List<ScanInfo> blockpoolReport = blockPoolReport.getScanInfo(bpid);
+      Map<FsVolumeSpi, BitSet> bpSkippedDirs =
+          skippedDirs.getOrDefault(bpid, Collections.emptyMap());
 
       Stats statsRecord = new Stats(bpid);
       stats.put(bpid, statsRecord);
@@ -498,9 +591,14 @@ private void scan() {
           continue;
         }
         if (info.getBlockId() > memBlock.getBlockId()) {
-          // Block is missing on the disk
-          addDifference(diffRecord, statsRecord, memBlock.getBlockId(),
-              info.getVolume());
+          if (isInSkippedDir(bpSkippedDirs, memBlock)) {
+            // The directory of the block has not changed since the last scan
+            statsRecord.skippedBlocks++;
+          } else {
+            // Block is missing on the disk
+            addDifference(diffRecord, statsRecord, memBlock.getBlockId(),
+                info.getVolume());
+          }
           m++;
           continue;
         }
@@ -535,8 +633,12 @@ private void scan() {
       }
       while (m < bl.size()) {
         ReplicaInfo current = bl.get(m++);
-        addDifference(diffRecord, statsRecord, current.getBlockId(),
-            current.getVolume());
+        if (isInSkippedDir(bpSkippedDirs, current)) {
+          statsRecord.skippedBlocks++;
+        } else {
+          addDifference(diffRecord, statsRecord, current.getBlockId(),
+              current.getVolume());
+        }
       }
       while (d < blockpoolReport.size()) {
         if (!dataset.isDeletingBlock(bpid,
@@ -546,11 +648,59 @@ private void scan() {
         }
         d++;
       }
+      numDifferences += diffRecord.size();
       synchronized (diffs) {
         diffs.addAll(bpid, diffRecord);
       }
       LOG.info("Scan Results: {}", statsRecord);
     }
+    if (incrementalScan) {
+      // Only the volumes that were compared completely can skip their
+      // unchanged directories on the next scan.
+      for (ScanInfoVolumeReport volumeReport : volumeReports) {
+        if (volumeReport.getDirMtimes() != null) {
+          scannedDirMtimes.put(volumeReport.getVolume(),
+              volumeReport.getDirMtimes());
+        }
+      }
+      // List the directories of the differences again on the next scan,
+      // whether or not reconciling them touches the directory.
+      synchronized (diffs) {
+        for (Map.Entry<String, ScanInfo> entry : diffs.getEntries()) {
+          forgetScannedDir(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    if (metrics != null) {
+      metrics.addDirectoryScan(Time.monotonicNow() - startTime,
+          numDifferences, numSkippedDirs);
+    }
+  }
+
+  /**
+   * Return whether a replica is stored in a leaf block directory that was
+   * skipped by the current scan because it has not changed.
+   */
+  private static boolean isInSkippedDir(Map<FsVolumeSpi, BitSet> skippedDirs,
+      ReplicaInfo replica) {
+    if (skippedDirs.isEmpty()) {
+      return false;
+    }
+    final BitSet skipped = skippedDirs.get(replica.getVolume());
+    return skipped != null
+        && skipped.get(DatanodeUtil.idToBlockDirIndex(replica.getBlockId()));
+  }
+
+  /**
+   * Make the next scan list the leaf block directory of a difference.
+   */
+  private void forgetScannedDir(String bpid, ScanInfo info) {
+    final Map<String, long[]> volumeMtimes =
+        scannedDirMtimes.get(info.getVolume());
+    final long[] mtimes = volumeMtimes == null ? null : volumeMtimes.get(bpid);
+    if (mtimes != null) {
+      mtimes[DatanodeUtil.idToBlockDirIndex(info.getBlockId())] = 0L;
+    }
   }
 
   /**
@@ -593,6 +743,7 @@ private void addDifference(Collection<ScanInfo> diffRecord, Stats statsRecord,
   public Collection<ScanInfoVolumeReport> getVolumeReports() {
     List<ScanInfoVolumeReport> volReports = new ArrayList<>();
     List<Future<ScanInfoVolumeReport>> compilersInProgress = new ArrayList<>();
+    List<FsVolumeSpi> scannedVolumes = new ArrayList<>();
 
     // First get list of data directories
     try (FsDatasetSpi.FsVolumeReferences volumes =
@@ -605,8 +756,11 @@ public Collection<ScanInfoVolumeReport> getVolumeReports() {
           Future<ScanInfoVolumeReport> result =
               reportCompileThreadPool.submit(reportCompiler);
           compilersInProgress.add(result);
+          scannedVolumes.add(volume);
         }
       }
+      // Forget the directories of the volumes that have been removed
+      scannedDirMtimes.keySet().retainAll(scannedVolumes);
 
       for (Future<ScanInfoVolumeReport> future : compilersInProgress) {
         try {
@@ -638,6 +792,14 @@ public Collection<ScanInfoVolumeReport> getVolumeReports() {
    */
   public class ReportCompiler implements Callable<ScanInfoVolumeReport> {
     private final FsVolumeSpi volume;
+    // The mtimes of the leaf block directories of the volume by block pool
+    // as of the previous scan, and as of this scan. The latter is null if
+    // the scan is not incremental.
+    private final Map<String, long[]> prevDirMtimes;
+    private final Map<String, long[]> dirMtimes;
+    private final boolean skipUnchangedDirs;
+    private final Map<String, BitSet> skippedDirs = new HashMap<>();
+    private final long startTime = Time.now();
     // Variable for tracking time spent running for throttling purposes
     private final StopWatch throttleTimer = new StopWatch();
     // Variable for tracking time spent running and waiting for testing
@@ -651,6 +813,10 @@ public class ReportCompiler implements Callable<ScanInfoVolumeReport> {
      */
     public ReportCompiler(FsVolumeSpi volume) {
       this.volume = volume;
+      this.prevDirMtimes = scannedDirMtimes.getOrDefault(volume,
+          Collections.emptyMap());
+      this.dirMtimes = incrementalScan ? new HashMap<>() : null;
+      this.skipUnchangedDirs = incrementalScan && !fullScan;
     }
 
     /**
@@ -676,16 +842,74 @@ public ScanInfoVolumeReport call() throws IOException {
           // ScanInfos are added directly to 'report' list
           volume.compileReport(bpid, report, this);
           result.addAll(bpid, report);
+          result.setSkippedDirs(bpid, skippedDirs.get(bpid));
         } catch (InterruptedException ex) {
           // Exit quickly and flag the scanner to do the same
           result = null;
           break;
         }
       }
+      if (result != null) {
+        result.setDirMtimes(dirMtimes);
+      }
       LOG.trace("Scanner volume report: {}", result);
       return result;
     }
 
+    /**
+     * Return whether the volume should track the mtimes of its leaf block
+     * directories with {@link #isUnchangedDir} and {@link #setScannedDir}.
+     *
+     * @return whether the scan is incremental
+     */
+    public boolean isIncremental() {
+      return dirMtimes != null;
+    }
+
+    /**
+     * Check whether a leaf block directory is unchanged since it was last
+     * listed. An unchanged directory need not be listed, and the replicas
+     * in it are not compared with the disk.
+     *
+     * @param bpid the block pool ID
+     * @param dirIndex the index of the directory, as computed by
+     *          {@link DatanodeUtil#blockDirIndex}
+     * @param mtime the current mtime of the directory
+     * @return whether the directory can be skipped
+     */
+    public boolean isUnchangedDir(String bpid, int dirIndex, long mtime) {
+      final long[] mtimes = prevDirMtimes.get(bpid);
+      if (!skipUnchangedDirs || mtimes == null || mtime == 0L
+          || mtimes[dirIndex] != mtime) {
+        return false;
+      }
+      skippedDirs.computeIfAbsent(bpid,
+          k -> new BitSet(DatanodeUtil.NUM_BLOCK_DIRS)).set(dirIndex);
+      getDirMtimes(bpid)[dirIndex] = mtime;
+      return true;
+    }
+
+    /**
+     * Record that a leaf block directory has been listed.
+     *
+     * @param bpid the block pool ID
+     * @param dirIndex the index of the directory, as computed by
+     *          {@link DatanodeUtil#blockDirIndex}
+     * @param mtime the mtime of the directory before it was listed
+     */
+    public void setScannedDir(String bpid, int dirIndex, long mtime) {
+      final long[] mtimes = getDirMtimes(bpid);
+      // A modification within the mtime granularity of the file system may
+      // not change the mtime, so recently modified directories are listed
+      // again by the next scan.
+      mtimes[dirIndex] = mtime < startTime - RACY_MTIME_MS ? mtime : 0L;
+    }
+
+    private long[] getDirMtimes(String bpid) {
+      return dirMtimes.computeIfAbsent(bpid,
+          k -> new long[DatanodeUtil.NUM_BLOCK_DIRS]);
+    }
+
     /**
      * Called by the thread before each potential disk scan so that a pause can
      * be optionally inserted to limit the number of scans per second. The limit
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+
+/**
+ * Watches the TCP connections of the {@link DataXceiver}s which wait for the
+ * next operation of their client, so that an idle connection does not hold a
+ * thread. When the next operation of a connection arrives, its xceiver is
+ * resumed by the {@link DataXceiverServer} on a new thread. A connection
+ * which stays idle for longer than its keepalive timeout is closed.
+ */
+class IdlePeerSelector implements Runnable, Closeable {
+  public static final Logger LOG = DataNode.LOG;
+
+  /** Interval of the checks for connections which stayed idle too long. */
+  private static final long EXPIRY_CHECK_INTERVAL_MS = 100;
+
+  private static final class ParkedPeer {
+    private final SocketChannel channel;
+    private final DataXceiver xceiver;
+    private final long deadline;
+
+    private ParkedPeer(SocketChannel channel, DataXceiver xceiver,
+        long deadline) {
+      this.channel = channel;
+      this.xceiver = xceiver;
+      this.deadline = deadline;
+    }
+  }
+
+  private final DataXceiverServer server;
+  private final Selector selector;
+  /** Peers parked by xceiver threads, to be registered by the selector. */
+  private final Queue<ParkedPeer> toRegister = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger numParked = new AtomicInteger();
+  private volatile boolean closed = false;
+
+  IdlePeerSelector(DataXceiverServer server) throws IOException {
+    this.server = server;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Wait for the next operation on the connection of an xceiver without a
+   * thread. The connection must not have buffered any input.
+   *
+   * @param channel the non-blocking channel of the connection
+   * @param xceiver the xceiver to resume when the next operation arrives
+   * @param timeoutMs the time to wait before closing the connection
+   */
+  void park(SocketChannel channel, DataXceiver xceiver, long timeoutMs) {
+    numParked.incrementAndGet();
+    toRegister.add(new ParkedPeer(channel, xceiver,
+        monotonicNow() + timeoutMs));
+    if (closed) {
+      closeQueued();
+    } else {
+      selector.wakeup();
+    }
+  }
+
+  @Override
+  public void run() {
+    long nextExpiryCheck = monotonicNow() + EXPIRY_CHECK_INTERVAL_MS;
+    try {
+      while (!closed) {
+        registerQueued();
+        selector.select(EXPIRY_CHECK_INTERVAL_MS);
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          key.cancel();
+          numParked.decrementAndGet();
+          server.resumeParked(((ParkedPeer) key.attachment()).xceiver);
+        }
+        long now = monotonicNow();
+        if (now >= nextExpiryCheck) {
+          for (SelectionKey key : selector.keys()) {
+            ParkedPeer parked = (ParkedPeer) key.attachment();
+            if (key.isValid() && parked.deadline <= now) {
+              key.cancel();
+              numParked.decrementAndGet();
+              parked.xceiver.closeParked();
+            }
+          }
+          nextExpiryCheck = now + EXPIRY_CHECK_INTERVAL_MS;
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      if (!closed) {
+        LOG.warn("Idle peer selector failed, closing the idle connections", e);
+      }
+    } finally {
+      closed = true;
+      closeAll();
+    }
+  }
+
+  private void registerQueued() throws IOException {
+    // The keys of the resumed peers are only removed from the selector by
+    // its next selection, so a peer parked again can not be registered
+    // before that.
+    boolean flushed = false;
+    ParkedPeer parked;
+    while ((parked = toRegister.poll()) != null) {
+      if (!flushed) {
+        selector.selectNow();
+        flushed = true;
+      }
+      try {
+        parked.channel.register(selector, SelectionKey.OP_READ, parked);
+      } catch (IOException | CancelledKeyException
+          | IllegalBlockingModeException e) {
+        LOG.debug("Failed to register idle peer of {}", parked.xceiver, e);
+        numParked.decrementAndGet();
+        parked.xceiver.closeParked();
+      }
+    }
+  }
+
+  private void closeQueued() {
+    ParkedPeer parked;
+    while ((parked = toRegister.poll()) != null) {
+      numParked.decrementAndGet();
+      parked.xceiver.closeParked();
+    }
+  }
+
+  private void closeAll() {
+    try {
+      for (SelectionKey key : selector.keys()) {
+        if (key.isValid()) {
+          numParked.decrementAndGet();
+          ((ParkedPeer) key.attachment()).xceiver.closeParked();
+        }
+      }
+    } catch (ClosedSelectorException ignored) {
+      // the selector was closed when it failed
+    }
+    closeQueued();
+    try {
+      selector.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close the idle peer selector", e);
+    }
+  }
+
+  /** Stop the selector and close all the idle connections. */
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  /**
+   * @return the number of connections waiting for their next operation
+   */
+  @VisibleForTesting
+  int getNumParkedPeers() {
+    return numParked.get();
+  }
+}
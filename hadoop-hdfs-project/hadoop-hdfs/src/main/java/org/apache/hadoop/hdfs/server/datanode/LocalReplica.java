@@ -51,18 +51,32 @@
 abstract public class LocalReplica extends ReplicaInfo {
 
   /**
-   * Base directory containing numerically-identified sub directories and
-   * possibly blocks.
+   * A base directory containing numerically-identified sub directories and
+   * possibly blocks. The base directories are interned and shared by their
+   * replicas, so a replica only holds a reference to its base directory.
    */
-  private File baseDir;
+  private static final class BaseDir {
+    private final File dir;
+
+    /**
+     * Whether or not the parent directories of the replicas include subdirs,
+     * in which case we can generate them based on the replicas' block IDs.
+     */
+    private final boolean hasSubdirs;
+
+    private BaseDir(File dir, boolean hasSubdirs) {
+      this.dir = dir;
+      this.hasSubdirs = hasSubdirs;
+    }
+  }
 
-  /**
-   * Whether or not this replica's parent directory includes subdirs, in which
-   * case we can generate them based on the replica's block ID
-   */
-  private boolean hasSubdirs;
+  private BaseDir baseDir;
 
-  private static final Map<String, File> internedBaseDirs = new HashMap<String, File>();
+  // Both maps of interned base directories are guarded by internedBaseDirs.
+  private static final Map<String, BaseDir> internedBaseDirs =
+      new HashMap<String, BaseDir>();
+  private static final Map<String, BaseDir> internedSubdirBaseDirs =
+      new HashMap<String, BaseDir>();
 
   static final Logger LOG = LoggerFactory.getLogger(LocalReplica.class);
 
@@ -123,8 +137,11 @@ public File getMetaFile() {
    * @return the parent directory path where this replica is located
    */
   protected File getDir() {
-    return hasSubdirs ? DatanodeUtil.idToBlockDir(baseDir,
-        getBlockId()) : baseDir;
+    if (baseDir == null) {
+      return null;
+    }
+    return baseDir.hasSubdirs ? DatanodeUtil.idToBlockDir(baseDir.dir,
+        getBlockId()) : baseDir.dir;
   }
 
   /**
@@ -138,16 +155,18 @@ private void setDirInternal(File dir) {
     }
 
     ReplicaDirInfo dirInfo = parseBaseDir(dir, getBlockId());
-    this.hasSubdirs = dirInfo.hasSubidrs;
+    Map<String, BaseDir> interned = dirInfo.hasSubidrs ?
+        internedSubdirBaseDirs : internedBaseDirs;
 
     synchronized (internedBaseDirs) {
-      if (!internedBaseDirs.containsKey(dirInfo.baseDirPath)) {
+      if (!interned.containsKey(dirInfo.baseDirPath)) {
         // Create a new String path of this file and make a brand new File object
         // to guarantee we drop the reference to the underlying char[] storage.
         File baseDir = new File(dirInfo.baseDirPath);
-        internedBaseDirs.put(dirInfo.baseDirPath, baseDir);
+        interned.put(dirInfo.baseDirPath,
+            new BaseDir(baseDir, dirInfo.hasSubidrs));
       }
-      this.baseDir = internedBaseDirs.get(dirInfo.baseDirPath);
+      this.baseDir = interned.get(dirInfo.baseDirPath);
     }
   }
 
@@ -29,18 +29,13 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi.ScanInfo;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
 import org.apache.hadoop.hdfs.server.protocol.ReplicaRecoveryInfo;
-import org.apache.hadoop.util.LightWeightResizableGSet;
 
 /**
  * This class is used by datanodes to maintain meta data of its replicas.
  * It provides a general interface for meta information of a replica.
  */
 @InterfaceAudience.Private
-abstract public class ReplicaInfo extends Block
-    implements Replica, LightWeightResizableGSet.LinkedElement {
-
-  /** For implementing {@link LightWeightResizableGSet.LinkedElement}. */
-  private LightWeightResizableGSet.LinkedElement next;
+abstract public class ReplicaInfo extends Block implements Replica {
 
   /** volume where the replica belongs. */
   private FsVolumeSpi volume;
@@ -305,14 +300,4 @@ public String toString() {
   public boolean isOnTransientStorage() {
     return volume.isTransientStorage();
   }
-
-  @Override
-  public LightWeightResizableGSet.LinkedElement getNext() {
-    return next;
-  }
-
-  @Override
-  public void setNext(LightWeightResizableGSet.LinkedElement next) {
-    this.next = next;
-  }
 }
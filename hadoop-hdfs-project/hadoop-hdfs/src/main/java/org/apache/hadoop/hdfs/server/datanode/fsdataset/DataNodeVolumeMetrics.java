@@ -76,6 +76,11 @@ public class DataNodeVolumeMetrics {
   @Metric("file io error rate")
   private MutableRate fileIoErrorRate;
 
+  @Metric("number of reads served by the read cache")
+  private MutableCounterLong readCacheHits;
+  @Metric("number of cacheable reads not served by the read cache")
+  private MutableCounterLong readCacheMisses;
+
   public long getTotalMetadataOperations() {
     return totalMetadataOperations.value();
   }
@@ -179,6 +184,14 @@ public double getFileIoErrorStdDev() {
     return fileIoErrorRate.lastStat().stddev();
   }
 
+  public long getReadCacheHits() {
+    return readCacheHits.value();
+  }
+
+  public long getReadCacheMisses() {
+    return readCacheMisses.value();
+  }
+
   private final String name;
   private final MetricsSystem ms;
 
@@ -286,4 +299,12 @@ public void addFileIoError(final long latency) {
     totalFileIoErrors.incr();
     metadataOperationRate.add(latency);
   }
+
+  public void incrReadCacheHits() {
+    readCacheHits.incr();
+  }
+
+  public void incrReadCacheMisses() {
+    readCacheMisses.incr();
+  }
 }
\ No newline at end of file
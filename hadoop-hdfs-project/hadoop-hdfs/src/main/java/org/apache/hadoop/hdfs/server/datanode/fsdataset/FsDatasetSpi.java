@@ -673,6 +673,15 @@ ReplicaInfo moveBlockAcrossVolumes(final ExtendedBlock block,
    */
   AutoCloseableLock acquireDatasetReadLock();
 
+  /**
+   * Acquire the read lock of the data set and the read lock of one replica.
+   * Unlike the dataset read lock alone, this also prevents other threads from
+   * changing the state of the replica, for example finalizing it.
+   * @param b the block of the replica
+   * @return The AutoClosable lock instance, which releases both locks.
+   */
+  AutoCloseableLock acquireReplicaReadLock(ExtendedBlock b);
+
 
   /**
    * Deep copy the replica info belonging to given block pool.
@@ -56,7 +56,7 @@ public ReplicaInputStreams(
         LOG.warn("Could not get file descriptor for inputstream of class " +
             this.dataIn.getClass());
       }
-    } else {
+    } else if (dataIn != null) {
       LOG.debug("Could not get file descriptor for inputstream of class " +
           this.dataIn.getClass());
     }
@@ -186,7 +186,7 @@ public StorageReport[] getStorageReports(String bpid)
 
   @Override
   public FsVolumeImpl getVolume(final ExtendedBlock b) {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaReadLock(b)) {
       final ReplicaInfo r =
           volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
       return r != null ? (FsVolumeImpl) r.getVolume() : null;
@@ -196,7 +196,8 @@ public FsVolumeImpl getVolume(final ExtendedBlock b) {
   @Override // FsDatasetSpi
   public Block getStoredBlock(String bpid, long blkid)
       throws IOException {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock =
+             replicaLock.readLock(datasetReadLock, bpid, blkid)) {
       ReplicaInfo r = volumeMap.get(bpid, blkid);
       if (r == null) {
         return null;
@@ -210,8 +211,7 @@ public Set<? extends Replica> deepCopyReplica(String bpid)
       throws IOException {
     Set<? extends Replica> replicas = null;
     try (AutoCloseableLock lock = datasetReadLock.acquire()) {
-      replicas = new HashSet<>(volumeMap.replicas(bpid) == null ? Collections.
-          EMPTY_SET : volumeMap.replicas(bpid));
+      replicas = new HashSet<>(volumeMap.copyReplicas(bpid));
     }
     return Collections.unmodifiableSet(replicas);
   }
@@ -280,6 +280,8 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
   @VisibleForTesting
   final InstrumentedReadWriteLock datasetRWLock;
   private final Condition datasetWriteLockCondition;
+  @VisibleForTesting
+  final StripedReplicaLock replicaLock;
   private static String blockPoolId = "";
   
   /**
@@ -304,7 +306,12 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
             DFSConfigKeys.DFS_DATANODE_LOCK_REPORTING_THRESHOLD_MS_KEY,
             DFSConfigKeys.DFS_DATANODE_LOCK_REPORTING_THRESHOLD_MS_DEFAULT,
             TimeUnit.MILLISECONDS));
-    this.datasetWriteLock = new AutoCloseableLock(datasetRWLock.writeLock());
+    this.datasetWriteLock = new TimedWriteLock(datasetRWLock.writeLock(),
+        holdTimeUs -> {
+          if (dataNodeMetrics != null) {
+            dataNodeMetrics.addDatasetWriteLockHold(holdTimeUs);
+          }
+        });
     boolean enableRL = conf.getBoolean(
         DFSConfigKeys.DFS_DATANODE_LOCK_READ_WRITE_ENABLED_KEY,
         DFSConfigKeys.DFS_DATANODE_LOCK_READ_WRITE_ENABLED_DEFAULT);
@@ -320,6 +327,14 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
       this.datasetReadLock = this.datasetWriteLock;
     }
     this.datasetWriteLockCondition = datasetWriteLock.newCondition();
+    this.replicaLock = new StripedReplicaLock(
+        conf.getInt(DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY,
+            DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_DEFAULT),
+        holdTimeUs -> {
+          if (dataNodeMetrics != null) {
+            dataNodeMetrics.addReplicaWriteLockHold(holdTimeUs);
+          }
+        });
 
     // The number of volumes required for operation is the total number
     // of volumes minus the number of failed volumes we can tolerate.
@@ -358,7 +373,9 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
     }
 
     storageMap = new ConcurrentHashMap<String, DatanodeStorage>();
-    volumeMap = new ReplicaMap(datasetReadLock, datasetWriteLock);
+    // The replica map has its own lock, as the replicas are changed by
+    // threads holding only the dataset read lock and a replica lock.
+    volumeMap = new ReplicaMap(new ReentrantReadWriteLock());
     ramDiskReplicaTracker = RamDiskReplicaTracker.getInstance(conf, this);
 
     @SuppressWarnings("unchecked")
@@ -420,6 +437,12 @@ public AutoCloseableLock acquireDatasetReadLock() {
     return datasetReadLock.acquire();
   }
 
+  @Override
+  public AutoCloseableLock acquireReplicaReadLock(ExtendedBlock b) {
+    return replicaLock.readLock(datasetReadLock, b.getBlockPoolId(),
+        b.getBlockId());
+  }
+
   /**
    * Gets initial volume failure information for all volumes that failed
    * immediately at startup.  The method works by determining the set difference
@@ -609,19 +632,21 @@ public void removeVolumes(
           // Removed all replica information for the blocks on the volume.
           // Unlike updating the volumeMap in addVolume(), this operation does
           // not scan disks.
-          for (String bpid : volumeMap.getBlockPoolList()) {
-            List<ReplicaInfo> blocks = blkToInvalidate
-                .computeIfAbsent(bpid, (k) -> new ArrayList<>());
-            for (Iterator<ReplicaInfo> it =
-                  volumeMap.replicas(bpid).iterator(); it.hasNext();) {
-              ReplicaInfo block = it.next();
-              final StorageLocation blockStorageLocation =
-                  block.getVolume().getStorageLocation();
-              LOG.trace("checking for block " + block.getBlockId() +
-                  " with storageLocation " + blockStorageLocation);
-              if (blockStorageLocation.equals(sdLocation)) {
-                blocks.add(block);
-                it.remove();
+          try (AutoCloseableLock l = volumeMap.getLock().acquire()) {
+            for (String bpid : volumeMap.getBlockPoolList()) {
+              List<ReplicaInfo> blocks = blkToInvalidate
+                  .computeIfAbsent(bpid, (k) -> new ArrayList<>());
+              for (Iterator<ReplicaInfo> it =
+                    volumeMap.replicas(bpid).iterator(); it.hasNext();) {
+                ReplicaInfo block = it.next();
+                final StorageLocation blockStorageLocation =
+                    block.getVolume().getStorageLocation();
+                LOG.trace("checking for block " + block.getBlockId() +
+                    " with storageLocation " + blockStorageLocation);
+                if (blockStorageLocation.equals(sdLocation)) {
+                  blocks.add(block);
+                  it.remove();
+                }
               }
             }
           }
@@ -842,7 +867,7 @@ public InputStream getBlockInputStream(ExtendedBlock b,
       long seekOffset) throws IOException {
 
     ReplicaInfo info;
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaReadLock(b)) {
       info = volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
     }
 
@@ -930,7 +955,7 @@ ReplicaInfo getReplicaInfo(String bpid, long blkid)
   @Override // FsDatasetSpi
   public ReplicaInputStreams getTmpInputStreams(ExtendedBlock b,
       long blkOffset, long metaOffset) throws IOException {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaReadLock(b)) {
       ReplicaInfo info = getReplicaInfo(b);
       FsVolumeReference ref = info.getVolume().obtainReference();
       try {
@@ -1074,7 +1099,10 @@ static File[] hardLinkBlockFiles(ReplicaInfo srcReplica, File dstMeta,
   public ReplicaInfo moveBlockAcrossStorage(ExtendedBlock block,
       StorageType targetStorageType, String targetStorageId)
       throws IOException {
-    ReplicaInfo replicaInfo = getReplicaInfo(block);
+    ReplicaInfo replicaInfo;
+    try (AutoCloseableLock lock = acquireReplicaReadLock(block)) {
+      replicaInfo = getReplicaInfo(block);
+    }
     if (replicaInfo.getState() != ReplicaState.FINALIZED) {
       throw new ReplicaNotFoundException(
           ReplicaNotFoundException.UNFINALIZED_REPLICA + block);
@@ -1286,7 +1314,10 @@ void finalizeNewReplica(ReplicaInfo newReplicaInfo,
   @Override
   public ReplicaInfo moveBlockAcrossVolumes(ExtendedBlock block, FsVolumeSpi
       destination) throws IOException {
-    ReplicaInfo replicaInfo = getReplicaInfo(block);
+    ReplicaInfo replicaInfo;
+    try (AutoCloseableLock lock = acquireReplicaReadLock(block)) {
+      replicaInfo = getReplicaInfo(block);
+    }
     if (replicaInfo.getState() != ReplicaState.FINALIZED) {
       throw new ReplicaNotFoundException(
           ReplicaNotFoundException.UNFINALIZED_REPLICA + block);
@@ -1585,7 +1616,19 @@ public ReplicaHandler createRbw(
       StorageType storageType, String storageId, ExtendedBlock b,
       boolean allowLazyPersist) throws IOException {
     long startTimeMs = Time.monotonicNow();
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    // Use ramdisk only if block size is a multiple of OS page size.
+    // This simplifies reservation for partially used replicas
+    // significantly.
+    final boolean tryLazyPersist = allowLazyPersist &&
+        lazyWriter != null &&
+        b.getNumBytes() % cacheManager.getOsPageSize() == 0;
+    // Reserving memory for a lazy persist replica may evict other replicas,
+    // which needs the dataset write lock. Any other replica is created
+    // under the read lock, holding only the lock of the new replica.
+    try (AutoCloseableLock lock = tryLazyPersist ?
+             datasetWriteLock.acquire() : datasetReadLock.acquire();
+         AutoCloseableLock l =
+             replicaLock.writeLock(b.getBlockPoolId(), b.getBlockId())) {
       ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
           b.getBlockId());
       if (replicaInfo != null) {
@@ -1596,13 +1639,7 @@ public ReplicaHandler createRbw(
       // create a new block
       FsVolumeReference ref = null;
 
-      // Use ramdisk only if block size is a multiple of OS page size.
-      // This simplifies reservation for partially used replicas
-      // significantly.
-      if (allowLazyPersist &&
-          lazyWriter != null &&
-          b.getNumBytes() % cacheManager.getOsPageSize() == 0 &&
-          reserveLockedMemory(b.getNumBytes())) {
+      if (tryLazyPersist && reserveLockedMemory(b.getNumBytes())) {
         try {
           // First try to place the block on a transient volume.
           ref = volumes.getNextTransientVolume(b.getNumBytes());
@@ -1754,7 +1791,9 @@ private ReplicaHandler recoverRbwImpl(ReplicaInPipeline rbw,
   public ReplicaInPipeline convertTemporaryToRbw(
       final ExtendedBlock b) throws IOException {
     long startTimeMs = Time.monotonicNow();
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    try (AutoCloseableLock lock = datasetReadLock.acquire();
+         AutoCloseableLock l =
+             replicaLock.writeLock(b.getBlockPoolId(), b.getBlockId())) {
       final long blockId = b.getBlockId();
       final long expectedGs = b.getGenerationStamp();
       final long visible = b.getNumBytes();
@@ -1947,7 +1986,9 @@ public void finalizeBlock(ExtendedBlock b, boolean fsyncDir)
     ReplicaInfo replicaInfo = null;
     ReplicaInfo finalizedReplicaInfo = null;
     long startTimeMs = Time.monotonicNow();
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    try (AutoCloseableLock lock = datasetReadLock.acquire();
+         AutoCloseableLock l =
+             replicaLock.writeLock(b.getBlockPoolId(), b.getBlockId())) {
       if (Thread.interrupted()) {
         // Don't allow data modifications from interrupted threads
         throw new IOException("Cannot finalize block from Interrupted Thread");
@@ -1983,7 +2024,9 @@ public void finalizeBlock(ExtendedBlock b, boolean fsyncDir)
 
   private ReplicaInfo finalizeReplica(String bpid, ReplicaInfo replicaInfo)
       throws IOException {
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    try (AutoCloseableLock lock = datasetReadLock.acquire();
+         AutoCloseableLock l =
+             replicaLock.writeLock(bpid, replicaInfo.getBlockId())) {
       // Compare generation stamp of old and new replica before finalizing
       if (volumeMap.get(bpid, replicaInfo.getBlockId()).getGenerationStamp()
           > replicaInfo.getGenerationStamp()) {
@@ -2029,7 +2072,9 @@ private ReplicaInfo finalizeReplica(String bpid, ReplicaInfo replicaInfo)
   @Override // FsDatasetSpi
   public void unfinalizeBlock(ExtendedBlock b) throws IOException {
     long startTimeMs = Time.monotonicNow();
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    try (AutoCloseableLock lock = datasetReadLock.acquire();
+         AutoCloseableLock l =
+             replicaLock.writeLock(b.getBlockPoolId(), b.getBlockId())) {
       ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
           b.getLocalBlock());
       if (replicaInfo != null &&
@@ -2093,8 +2138,10 @@ public Map<DatanodeStorage, BlockListAsLongs> getBlockReports(String bpid) {
         builders.put(v.getStorageID(), BlockListAsLongs.builder(maxDataLength));
       }
 
+      // Build the reports from a copy of the replicas, so that the replica
+      // map is not locked while the replicas are encoded.
       Set<String> missingVolumesReported = new HashSet<>();
-      for (ReplicaInfo b : volumeMap.replicas(bpid)) {
+      for (ReplicaInfo b : volumeMap.copyReplicas(bpid)) {
         // skip PROVIDED replicas.
         if (b.getVolume().getStorageType() == StorageType.PROVIDED) {
           continue;
@@ -2151,7 +2198,8 @@ public Map<DatanodeStorage, BlockListAsLongs> getBlockReports(String bpid) {
    */
   @Override
   public List<ReplicaInfo> getSortedFinalizedBlocks(String bpid) {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = datasetReadLock.acquire();
+        AutoCloseableLock l = volumeMap.getReadLock().acquire()) {
       final List<ReplicaInfo> finalized = new ArrayList<ReplicaInfo>(
           volumeMap.size(bpid));
       for (ReplicaInfo b : volumeMap.replicas(bpid)) {
@@ -2487,9 +2535,10 @@ public boolean isCached(String bpid, long blockId) {
 
   @Override // FsDatasetSpi
   public boolean contains(final ExtendedBlock block) {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
-      final long blockId = block.getLocalBlock().getBlockId();
-      final String bpid = block.getBlockPoolId();
+    final long blockId = block.getLocalBlock().getBlockId();
+    final String bpid = block.getBlockPoolId();
+    try (AutoCloseableLock lock =
+             replicaLock.readLock(datasetReadLock, bpid, blockId)) {
       final ReplicaInfo r = volumeMap.get(bpid, blockId);
       return (r != null && r.blockDataExists());
     }
@@ -2815,7 +2864,8 @@ public ReplicaInfo getReplica(String bpid, long blockId) {
 
   @Override 
   public String getReplicaString(String bpid, long blockId) {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock =
+             replicaLock.readLock(datasetReadLock, bpid, blockId)) {
       final Replica r = volumeMap.get(bpid, blockId);
       return r == null ? "null" : r.toString();
     }
@@ -2825,16 +2875,28 @@ public String getReplicaString(String bpid, long blockId) {
   public ReplicaRecoveryInfo initReplicaRecovery(RecoveringBlock rBlock)
       throws IOException {
     return initReplicaRecovery(rBlock.getBlock().getBlockPoolId(), volumeMap,
-        rBlock.getBlock().getLocalBlock(), rBlock.getNewGenerationStamp(),
+        datasetWriteLock, rBlock.getBlock().getLocalBlock(),
+        rBlock.getNewGenerationStamp(),
         datanode.getDnConf().getXceiverStopTimeout());
   }
 
   /** static version of {@link #initReplicaRecovery(RecoveringBlock)}. */
   static ReplicaRecoveryInfo initReplicaRecovery(String bpid, ReplicaMap map,
       Block block, long recoveryId, long xceiverStopTimeout) throws IOException {
+    return initReplicaRecovery(bpid, map, map.getLock(), block, recoveryId,
+        xceiverStopTimeout);
+  }
+
+  /**
+   * Initialize a replica recovery, holding the given lock, which must exclude
+   * all other changes to the replica.
+   */
+  private static ReplicaRecoveryInfo initReplicaRecovery(String bpid,
+      ReplicaMap map, AutoCloseableLock recoveryLock, Block block,
+      long recoveryId, long xceiverStopTimeout) throws IOException {
     while (true) {
       try {
-        try (AutoCloseableLock lock = map.getLock().acquire()) {
+        try (AutoCloseableLock lock = recoveryLock.acquire()) {
           return initReplicaRecoveryImpl(bpid, map, block, recoveryId);
         }
       } catch (MustStopExistingWriter e) {
@@ -3042,7 +3104,7 @@ private ReplicaInfo updateReplicaUnderRecovery(
   @Override // FsDatasetSpi
   public long getReplicaVisibleLength(final ExtendedBlock block)
   throws IOException {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaReadLock(block)) {
       final Replica replica = getReplicaInfo(block.getBlockPoolId(),
           block.getBlockId());
       if (replica.getGenerationStamp() < block.getGenerationStamp()) {
@@ -3192,7 +3254,7 @@ public void deleteBlockPool(String bpid, boolean force)
   @Override // FsDatasetSpi
   public BlockLocalPathInfo getBlockLocalPathInfo(ExtendedBlock block)
       throws IOException {
-    try (AutoCloseableLock lock = datasetReadLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaReadLock(block)) {
       final Replica replica = volumeMap.get(block.getBlockPoolId(),
           block.getBlockId());
       if (replica == null) {
@@ -3625,7 +3687,8 @@ public int getVolumeCount() {
   }
 
   void stopAllDataxceiverThreads(FsVolumeImpl volume) {
-    try (AutoCloseableLock lock = datasetWriteLock.acquire()) {
+    try (AutoCloseableLock lock = datasetWriteLock.acquire();
+        AutoCloseableLock l = volumeMap.getReadLock().acquire()) {
       for (String bpid : volumeMap.getBlockPoolList()) {
         Collection<ReplicaInfo> replicas = volumeMap.replicas(bpid);
         for (ReplicaInfo replicaInfo : replicas) {
@@ -1382,7 +1382,7 @@ private File[] copyReplicaWithNewBlockIdAndGS(
   @Override
   public void compileReport(String bpid, Collection<ScanInfo> report,
       ReportCompiler reportCompiler) throws InterruptedException, IOException {
-    compileReport(getFinalizedDir(bpid), getFinalizedDir(bpid), report,
+    compileReport(bpid, getFinalizedDir(bpid), getFinalizedDir(bpid), report,
         reportCompiler);
   }
 
@@ -1410,12 +1410,23 @@ public boolean accept(File dir, String name) {
     }
   }
 
-  private void compileReport(File bpFinalizedDir, File dir,
+  private void compileReport(String bpid, File bpFinalizedDir, File dir,
       Collection<ScanInfo> report, ReportCompiler reportCompiler)
       throws InterruptedException {
 
     reportCompiler.throttle();
 
+    // Creating, deleting or renaming a block file updates the mtime of its
+    // leaf directory, so an incremental scan skips the untouched ones.
+    final int dirIndex = DatanodeUtil.blockDirIndex(bpFinalizedDir, dir);
+    long mtime = 0;
+    if (dirIndex >= 0 && reportCompiler.isIncremental()) {
+      mtime = dir.lastModified();
+      if (reportCompiler.isUnchangedDir(bpid, dirIndex, mtime)) {
+        return;
+      }
+    }
+
     List <String> fileNames;
     try {
       fileNames =
@@ -1426,6 +1437,9 @@ private void compileReport(File bpFinalizedDir, File dir,
       // Ignore this directory and proceed.
       return;
     }
+    if (dirIndex >= 0 && reportCompiler.isIncremental()) {
+      reportCompiler.setScannedDir(bpid, dirIndex, mtime);
+    }
     Collections.sort(fileNames);
 
     /*
@@ -1443,7 +1457,7 @@ private void compileReport(File bpFinalizedDir, File dir,
 
       File file = new File(dir, fileNames.get(i));
       if (file.isDirectory()) {
-        compileReport(bpFinalizedDir, file, report, reportCompiler);
+        compileReport(bpid, bpFinalizedDir, file, report, reportCompiler);
         continue;
       }
       if (!Block.isBlockFilename(file)) {
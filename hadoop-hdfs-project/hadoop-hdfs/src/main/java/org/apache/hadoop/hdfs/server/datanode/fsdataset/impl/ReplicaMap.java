@@ -17,9 +17,11 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -258,6 +260,21 @@ Collection<ReplicaInfo> replicas(String bpid) {
     return map.get(bpid);
   }
 
+  /**
+   * Get a copy of the replicas for given block pool, which can be iterated
+   * over without holding the lock of the map.
+   *
+   * @param bpid block pool id
+   * @return the replicas belonging to the block pool, sorted by block ID, or
+   *         an empty list if the block pool is not in the map
+   */
+  List<ReplicaInfo> copyReplicas(String bpid) {
+    try (AutoCloseableLock l = readLock.acquire()) {
+      FoldedTreeSet<ReplicaInfo> set = map.get(bpid);
+      return set != null ? new ArrayList<>(set) : new ArrayList<>();
+    }
+  }
+
   void initBlockPool(String bpid) {
     checkBlockPool(bpid);
     try (AutoCloseableLock l = writeLock.acquire()) {
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.thirdparty.com.google.common.base.Preconditions;
+import org.apache.hadoop.util.AutoCloseableLock;
+
+/**
+ * Striped read-write locks of the replicas of {@link FsDatasetImpl}, so that
+ * operations on different replicas, which may be on different volumes, do
+ * not exclude each other.
+ * <p>
+ * The locks of {@link FsDatasetImpl} are acquired in this order:
+ * <ol>
+ * <li>The dataset lock. Its write lock is held by the operations which change
+ * the volumes or block pools, or the replicas of more than one block, and its
+ * read lock by the other operations.</li>
+ * <li>The replica lock of the block, which a thread holding only the dataset
+ * read lock must hold to change or read the state or the files of a replica.
+ * Such a thread holds the replica lock of at most one block. Callers outside
+ * {@link FsDatasetImpl} take both locks through
+ * {@link FsDatasetSpi#acquireReplicaReadLock}.</li>
+ * <li>The lock of the {@link ReplicaMap}, held only within its methods.</li>
+ * </ol>
+ */
+class StripedReplicaLock {
+  private final AutoCloseableLock[] readLocks;
+  private final AutoCloseableLock[] writeLocks;
+
+  StripedReplicaLock(int numStripes, LongConsumer holdTimeUs) {
+    Preconditions.checkArgument(numStripes > 0,
+        "The number of replica lock stripes must be positive.");
+    readLocks = new AutoCloseableLock[numStripes];
+    writeLocks = new AutoCloseableLock[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+      readLocks[i] = new AutoCloseableLock(lock.readLock());
+      writeLocks[i] = new TimedWriteLock(lock.writeLock(), holdTimeUs);
+    }
+  }
+
+  private int getStripe(String bpid, long blockId) {
+    int hash = 31 * bpid.hashCode() + Long.hashCode(blockId);
+    return Math.floorMod(hash, readLocks.length);
+  }
+
+  /** Acquire the read lock of the replica. */
+  AutoCloseableLock readLock(String bpid, long blockId) {
+    return readLocks[getStripe(bpid, blockId)].acquire();
+  }
+
+  /** Acquire the write lock of the replica. */
+  AutoCloseableLock writeLock(String bpid, long blockId) {
+    return writeLocks[getStripe(bpid, blockId)].acquire();
+  }
+
+  /**
+   * Acquire the given dataset lock and then the read lock of the replica.
+   * @return a lock which releases both when it is closed
+   */
+  AutoCloseableLock readLock(AutoCloseableLock datasetLock, String bpid,
+      long blockId) {
+    datasetLock.acquire();
+    try {
+      return new HeldLocks(datasetLock, readLock(bpid, blockId));
+    } catch (RuntimeException | Error e) {
+      datasetLock.release();
+      throw e;
+    }
+  }
+
+  /** A dataset lock and a replica lock which are held and released together. */
+  private static final class HeldLocks extends AutoCloseableLock {
+    private final AutoCloseableLock datasetLock;
+    private final AutoCloseableLock replicaLock;
+
+    private HeldLocks(AutoCloseableLock datasetLock,
+        AutoCloseableLock replicaLock) {
+      super(null);
+      this.datasetLock = datasetLock;
+      this.replicaLock = replicaLock;
+    }
+
+    @Override
+    public AutoCloseableLock acquire() {
+      throw new UnsupportedOperationException("The locks are already held");
+    }
+
+    @Override
+    public boolean tryLock() {
+      throw new UnsupportedOperationException("The locks are already held");
+    }
+
+    @Override
+    public void release() {
+      replicaLock.release();
+      datasetLock.release();
+    }
+  }
+}
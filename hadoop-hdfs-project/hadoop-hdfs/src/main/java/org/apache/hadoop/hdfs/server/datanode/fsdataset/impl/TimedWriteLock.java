@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongConsumer;
+
+import org.apache.hadoop.util.AutoCloseableLock;
+
+/**
+ * An {@link AutoCloseableLock} over an exclusive lock, which reports the time
+ * the lock is held, in microseconds, when its outermost hold is released.
+ * Waiting on one of its conditions releases the lock, so the time before the
+ * wait is reported as a hold, and the timing restarts when the wait returns.
+ * The hold state is only accessed by the thread holding the lock.
+ */
+class TimedWriteLock extends AutoCloseableLock {
+  private final LongConsumer holdTimeUs;
+  private int holdCount;
+  private long acquiredNanos;
+
+  TimedWriteLock(Lock lock, LongConsumer holdTimeUs) {
+    super(lock);
+    this.holdTimeUs = holdTimeUs;
+  }
+
+  @Override
+  public AutoCloseableLock acquire() {
+    super.acquire();
+    if (holdCount++ == 0) {
+      acquiredNanos = System.nanoTime();
+    }
+    return this;
+  }
+
+  @Override
+  public boolean tryLock() {
+    if (!super.tryLock()) {
+      return false;
+    }
+    if (holdCount++ == 0) {
+      acquiredNanos = System.nanoTime();
+    }
+    return true;
+  }
+
+  @Override
+  public void release() {
+    if (--holdCount == 0) {
+      reportHold();
+    }
+    super.release();
+  }
+
+  @Override
+  public Condition newCondition() {
+    return new TimedCondition(super.newCondition());
+  }
+
+  private void reportHold() {
+    holdTimeUs.accept(TimeUnit.NANOSECONDS.toMicros(
+        System.nanoTime() - acquiredNanos));
+  }
+
+  /**
+   * A condition of the lock, which stops timing the hold while the lock is
+   * released by a wait.
+   */
+  private final class TimedCondition implements Condition {
+    private final Condition condition;
+
+    private TimedCondition(Condition condition) {
+      this.condition = condition;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+      reportHold();
+      try {
+        condition.await();
+      } finally {
+        acquiredNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public void awaitUninterruptibly() {
+      reportHold();
+      try {
+        condition.awaitUninterruptibly();
+      } finally {
+        acquiredNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public long awaitNanos(long nanosTimeout) throws InterruptedException {
+      reportHold();
+      try {
+        return condition.awaitNanos(nanosTimeout);
+      } finally {
+        acquiredNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit)
+        throws InterruptedException {
+      reportHold();
+      try {
+        return condition.await(time, unit);
+      } finally {
+        acquiredNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public boolean awaitUntil(Date deadline) throws InterruptedException {
+      reportHold();
+      try {
+        return condition.awaitUntil(deadline);
+      } finally {
+        acquiredNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public void signal() {
+      condition.signal();
+    }
+
+    @Override
+    public void signalAll() {
+      condition.signalAll();
+    }
+  }
+}
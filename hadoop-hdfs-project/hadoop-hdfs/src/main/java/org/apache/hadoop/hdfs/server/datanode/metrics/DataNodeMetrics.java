@@ -182,6 +182,17 @@ public class DataNodeMetrics {
   @Metric private MutableRate unfinalizeBlockOp;
   @Metric private MutableRate checkAndUpdateOp;
   @Metric private MutableRate updateReplicaUnderRecoveryOp;
+  @Metric("Microseconds the FsDataset write lock is held")
+  private MutableRate datasetWriteLockHold;
+  @Metric("Microseconds the write lock of a replica is held")
+  private MutableRate replicaWriteLockHold;
+
+  @Metric("Milliseconds spent by directory scans")
+  private MutableRate directoryScan;
+  @Metric("Number of differences found by directory scans")
+  private MutableCounterLong directoryScanDifferences;
+  @Metric("Number of unchanged block directories skipped by directory scans")
+  private MutableCounterLong directoryScanSkippedDirs;
 
   @Metric MutableCounterLong packetsReceived;
   @Metric MutableCounterLong packetsSlowWriteToMirror;
@@ -689,6 +700,35 @@ public void addUnfinalizeBlockOp(long latency) {
     unfinalizeBlockOp.add(latency);
   }
 
+  /**
+   * Add a hold of the FsDataset write lock.
+   * @param holdTimeUs microseconds the lock was held
+   */
+  public void addDatasetWriteLockHold(long holdTimeUs) {
+    datasetWriteLockHold.add(holdTimeUs);
+  }
+
+  /**
+   * Add a hold of the write lock of a replica.
+   * @param holdTimeUs microseconds the lock was held
+   */
+  public void addReplicaWriteLockHold(long holdTimeUs) {
+    replicaWriteLockHold.add(holdTimeUs);
+  }
+
+  /**
+   * Add a directory scan.
+   * @param latency milliseconds of the directory scan
+   * @param differences number of differences found by the scan
+   * @param skippedDirs number of unchanged block directories skipped
+   */
+  public void addDirectoryScan(long latency, long differences,
+      long skippedDirs) {
+    directoryScan.add(latency);
+    directoryScanDifferences.incr(differences);
+    directoryScanSkippedDirs.incr(skippedDirs);
+  }
+
   /**
    * Add addCheckAndUpdateOp metrics.
    * @param latency milliseconds of check and update block file
@@ -0,0 +1,698 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_ENABLED_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_ENABLED_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_MAX_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_MAX_SIZE_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_KEY;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.CallerContext;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An audit logger which moves the formatting and writing of audit events
+ * off the RPC handlers. Handlers only capture the fields of an event and
+ * enqueue them; a single background thread drains the queue in batches and
+ * writes the events to one of two sinks:
+ * <ul>
+ * <li>TEXT: the FSNamesystem.audit log, in the same format as the default
+ * audit logger, followed by the time the event happened as a
+ * <code>time=</code> field, since the timestamp of the log line itself is
+ * the time it was written. Since only one thread logs, handlers no longer
+ * contend on the appenders.</li>
+ * <li>BINARY: a local file, in a compact binary format in which every event
+ * is prefixed by its length, which is much cheaper to produce and to parse,
+ * see {@link BinaryReader}. The
+ * file is rolled over once it reaches
+ * {@link DFSConfigKeys#DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_KEY};
+ * if that is not set, it grows without bound and has to be rotated
+ * externally.</li>
+ * </ul>
+ * Enqueuing does not take a lock: the queue is a
+ * {@link ConcurrentLinkedQueue}, bounded by a {@link Semaphore} whose permits
+ * are taken with a compare-and-set as long as the queue is not full.
+ *
+ * Enable it by adding this class name to
+ * {@link DFSConfigKeys#DFS_NAMENODE_AUDIT_LOGGERS_KEY}. As for the default
+ * audit logger, events are only produced if the FSNamesystem.audit log is
+ * enabled at INFO level.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class BatchingAuditLogger extends DefaultAuditLogger
+    implements Closeable {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(BatchingAuditLogger.class);
+
+  /** The output formats. */
+  public enum Format {
+    TEXT, BINARY
+  }
+
+  /** Written at the start of a binary audit log file. */
+  static final byte[] BINARY_MAGIC =
+      "HDFSAUDIT".getBytes(StandardCharsets.UTF_8);
+  static final int BINARY_VERSION = 2;
+
+  private static final long POLL_INTERVAL_MS = 100;
+  private static final long DROPPED_WARN_INTERVAL_MS = 10000;
+
+  private final Queue<AuditEvent> queue = new ConcurrentLinkedQueue<>();
+  /** One permit per free slot in the queue. */
+  private Semaphore capacity;
+  private int batchSize;
+  private boolean blocking;
+  private long blockingTimeoutMs;
+  private Format format;
+  private File binaryFile;
+  private long binaryMaxSize;
+  private int binaryMaxBackups;
+  private DataOutputStream binaryOut;
+  private final DataOutputBuffer recordBuf = new DataOutputBuffer();
+  private Daemon writer;
+  /** Whether the writer is parked waiting for events. */
+  private volatile boolean writerWaiting;
+  private volatile boolean running;
+  private final AtomicLong numDropped = new AtomicLong(0);
+  private final AtomicLong lastDroppedWarnTime = new AtomicLong(0);
+  private final StringBuilder sb = new StringBuilder();
+
+  @Override
+  public void initialize(Configuration conf) {
+    isCallerContextEnabled = conf.getBoolean(
+        HADOOP_CALLER_CONTEXT_ENABLED_KEY,
+        HADOOP_CALLER_CONTEXT_ENABLED_DEFAULT);
+    callerContextMaxLen = conf.getInt(
+        HADOOP_CALLER_CONTEXT_MAX_SIZE_KEY,
+        HADOOP_CALLER_CONTEXT_MAX_SIZE_DEFAULT);
+    callerSignatureMaxLen = conf.getInt(
+        HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_KEY,
+        HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_DEFAULT);
+    logTokenTrackingId = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_DEFAULT);
+    debugCmdSet.addAll(Arrays.asList(conf.getTrimmedStrings(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST)));
+
+    int queueSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_DEFAULT);
+    batchSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_DEFAULT);
+    if (queueSize <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_KEY + " = "
+          + queueSize + " and " + DFSConfigKeys
+          .DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY + " = " + batchSize
+          + " must be positive");
+    }
+    blocking = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_DEFAULT);
+    blockingTimeoutMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_TIMEOUT_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BLOCKING_TIMEOUT_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    String formatName = conf.getTrimmed(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_DEFAULT);
+    try {
+      format = Format.valueOf(formatName.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY + " = "
+          + formatName + " must be one of " + Arrays.toString(Format.values()),
+          e);
+    }
+    if (format == Format.BINARY) {
+      String path = conf.getTrimmed(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY, "");
+      if (path.isEmpty()) {
+        throw new IllegalArgumentException(
+            DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY
+            + " must be set for the " + format + " format");
+      }
+      binaryFile = new File(path);
+      binaryMaxSize = conf.getLongBytes(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_KEY,
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_DEFAULT);
+      binaryMaxBackups = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_KEY,
+          DFSConfigKeys
+              .DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_DEFAULT);
+      try {
+        binaryOut = openBinaryLog(binaryFile);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(
+            "Failed to open binary audit log " + path, e);
+      }
+    }
+
+    capacity = new Semaphore(queueSize);
+    lastDroppedWarnTime.set(Time.monotonicNow() - DROPPED_WARN_INTERVAL_MS);
+    running = true;
+    writer = new Daemon(this::writeEvents);
+    writer.setName("BatchingAuditLogger");
+    writer.start();
+    LOG.info("Batching audit logger started: format = {}, queue size = {}, "
+        + "batch size = {}, blocking = {}, blocking timeout = {} ms", format,
+        queueSize, batchSize, blocking, blockingTimeoutMs);
+  }
+
+  private static DataOutputStream openBinaryLog(File file)
+      throws IOException {
+    boolean isNew = !file.exists() || file.length() == 0;
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file, true)));
+    if (isNew) {
+      out.write(BINARY_MAGIC);
+      out.writeInt(BINARY_VERSION);
+      out.flush();
+    }
+    return out;
+  }
+
+  /**
+   * Roll the binary log over: shift the backups PATH.1 ... PATH.(n-1) up by
+   * one, dropping the oldest, move the current file to PATH.1 and start a
+   * new one.
+   */
+  private void rollBinaryLog() throws IOException {
+    binaryOut.close();
+    binaryOut = null;
+    for (int i = binaryMaxBackups - 1; i >= 1; i--) {
+      File backup = getBinaryBackup(i);
+      if (backup.exists()) {
+        Files.move(backup.toPath(), getBinaryBackup(i + 1).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (binaryMaxBackups > 0) {
+      Files.move(binaryFile.toPath(), getBinaryBackup(1).toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(binaryFile.toPath());
+    }
+    binaryOut = openBinaryLog(binaryFile);
+    LOG.info("Rolled over binary audit log {}", binaryFile);
+  }
+
+  private File getBinaryBackup(int index) {
+    return new File(binaryFile.getPath() + "." + index);
+  }
+
+  @Override
+  public void logAuditEvent(boolean succeeded, String userName,
+      InetAddress addr, String cmd, String src, String dst,
+      FileStatus status, CallerContext callerContext, UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    final Log auditLog = FSNamesystem.auditLog;
+    if (!auditLog.isDebugEnabled() &&
+        (!auditLog.isInfoEnabled() || debugCmdSet.contains(cmd))) {
+      return;
+    }
+    AuditEvent event = new AuditEvent(Time.now(), succeeded, userName, addr,
+        cmd, src, dst, status,
+        logTokenTrackingId ? getTrackingId(ugi, dtSecretManager) : null,
+        Server.getProtocol(), callerContext);
+    boolean queued = false;
+    try {
+      queued = running && (blocking
+          ? capacity.tryAcquire(blockingTimeoutMs, TimeUnit.MILLISECONDS)
+          : capacity.tryAcquire());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!queued) {
+      addDropped(1);
+      return;
+    }
+    queue.offer(event);
+    if (!running) {
+      // close() may have drained the queue before the event was added. The
+      // event is either removed here, or was taken by close() or the writer.
+      if (queue.remove(event)) {
+        addDropped(1);
+      }
+    } else if (writerWaiting) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Count events which were not logged, in the AuditEventsDropped metric,
+   * and warn about them at most every {@link #DROPPED_WARN_INTERVAL_MS}.
+   */
+  private void addDropped(long count) {
+    final long total = numDropped.addAndGet(count);
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrAuditEventsDropped(count);
+    }
+    final long now = Time.monotonicNow();
+    final long last = lastDroppedWarnTime.get();
+    if (now - last >= DROPPED_WARN_INTERVAL_MS &&
+        lastDroppedWarnTime.compareAndSet(last, now)) {
+      LOG.warn("{} audit events have been dropped so far, since the queue "
+          + "was full or the logger was closed", total);
+    }
+  }
+
+  @Override
+  public void logAuditEvent(boolean succeeded, String userName,
+      InetAddress addr, String cmd, String src, String dst,
+      FileStatus status, UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    logAuditEvent(succeeded, userName, addr, cmd, src, dst, status,
+        null /*CallerContext*/, ugi, dtSecretManager);
+  }
+
+  @Override
+  public void logAuditMessage(String message) {
+    FSNamesystem.auditLog.info(message);
+  }
+
+  /** Body of the background writer thread. */
+  private void writeEvents() {
+    final List<AuditEvent> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        if (drain(batch, batchSize) == 0) {
+          writerWaiting = true;
+          if (running && queue.isEmpty()) {
+            LockSupport.parkNanos(this,
+                TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS));
+          }
+          writerWaiting = false;
+          continue;
+        }
+        writeBatch(batch);
+      } catch (Throwable t) {
+        LOG.error("Failed to write {} audit events", batch.size(), t);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Move up to max events from the queue to the batch, and free their slots.
+   *
+   * @return the number of events moved
+   */
+  private int drain(List<AuditEvent> batch, int max) {
+    int n = 0;
+    AuditEvent event;
+    while (n < max && (event = queue.poll()) != null) {
+      batch.add(event);
+      n++;
+    }
+    if (n > 0) {
+      capacity.release(n);
+    }
+    return n;
+  }
+
+  private void writeBatch(List<AuditEvent> batch) throws IOException {
+    int written = 0;
+    try {
+      for (AuditEvent event : batch) {
+        write(event);
+        written++;
+      }
+      if (binaryOut != null) {
+        binaryOut.flush();
+        if (binaryMaxSize > 0 && binaryFile.length() >= binaryMaxSize) {
+          rollBinaryLog();
+        }
+      }
+    } finally {
+      if (written < batch.size()) {
+        addDropped(batch.size() - written);
+      }
+    }
+  }
+
+  private void write(AuditEvent event) throws IOException {
+    if (format == Format.BINARY) {
+      recordBuf.reset();
+      event.write(recordBuf, formatCallerContext(event.callerContext));
+      WritableUtils.writeVInt(binaryOut, recordBuf.getLength());
+      binaryOut.write(recordBuf.getData(), 0, recordBuf.getLength());
+    } else {
+      sb.setLength(0);
+      appendAuditMessage(sb, event.succeeded, event.userName, event.addr,
+          event.cmd, event.src, event.dst, event.owner, event.group,
+          event.permission, event.trackingId, event.proto,
+          event.callerContext);
+      // The event may be written well after it happened, so record when.
+      sb.append("\t").append("time=");
+      DateTimeFormatter.ISO_INSTANT.formatTo(
+          Instant.ofEpochMilli(event.time), sb);
+      logAuditMessage(sb.toString());
+    }
+  }
+
+  /**
+   * @return the number of audit events which were dropped because the queue
+   * was full, the logger was closed or they could not be written.
+   */
+  public long getNumDropped() {
+    return numDropped.get();
+  }
+
+  /**
+   * Stop accepting events, write out the queued ones and wait for the
+   * background writer to exit.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    final List<AuditEvent> remaining = new ArrayList<>();
+    drain(remaining, Integer.MAX_VALUE);
+    if (writer.isAlive()) {
+      // Interrupted while waiting; the writer still owns the output.
+      if (!remaining.isEmpty()) {
+        addDropped(remaining.size());
+      }
+      return;
+    }
+    try {
+      // Only left behind if the writer died.
+      if (!remaining.isEmpty()) {
+        writeBatch(remaining);
+      }
+    } finally {
+      if (binaryOut != null) {
+        binaryOut.close();
+      }
+    }
+  }
+
+  /**
+   * An audit event, as captured on the calling thread. Only the fields
+   * which are logged are kept.
+   */
+  public static final class AuditEvent {
+    private final long time;
+    private final boolean succeeded;
+    private final String userName;
+    private final InetAddress addr;
+    private final String cmd;
+    private final String src;
+    private final String dst;
+    private final String owner;
+    private final String group;
+    private final FsPermission permission;
+    private final String trackingId;
+    private final String proto;
+    private final CallerContext callerContext;
+    /** The formatted caller context, only set for events read back. */
+    private final String callerContextString;
+
+    AuditEvent(long time, boolean succeeded, String userName,
+        InetAddress addr, String cmd, String src, String dst,
+        FileStatus status, String trackingId, String proto,
+        CallerContext callerContext) {
+      this.time = time;
+      this.succeeded = succeeded;
+      this.userName = userName;
+      this.addr = addr;
+      this.cmd = cmd;
+      this.src = src;
+      this.dst = dst;
+      this.owner = status == null ? null : status.getOwner();
+      this.group = status == null ? null : status.getGroup();
+      this.permission = status == null ? null : status.getPermission();
+      this.trackingId = trackingId;
+      this.proto = proto;
+      this.callerContext = callerContext;
+      this.callerContextString = null;
+    }
+
+    private AuditEvent(DataInput in) throws IOException {
+      this.time = WritableUtils.readVLong(in);
+      this.succeeded = in.readBoolean();
+      this.userName = readString(in);
+      int addrLen = WritableUtils.readVInt(in);
+      if (addrLen < 0) {
+        this.addr = null;
+      } else {
+        byte[] addrBytes = new byte[addrLen];
+        in.readFully(addrBytes);
+        this.addr = InetAddress.getByAddress(addrBytes);
+      }
+      this.cmd = readString(in);
+      this.src = readString(in);
+      this.dst = readString(in);
+      this.owner = readString(in);
+      this.group = readString(in);
+      short perm = in.readShort();
+      this.permission = perm < 0 ? null : new FsPermission(perm);
+      this.trackingId = readString(in);
+      this.proto = readString(in);
+      this.callerContext = null;
+      this.callerContextString = readString(in);
+    }
+
+    private void write(DataOutput out, String formattedCallerContext)
+        throws IOException {
+      WritableUtils.writeVLong(out, time);
+      out.writeBoolean(succeeded);
+      writeString(out, userName);
+      if (addr == null) {
+        WritableUtils.writeVInt(out, -1);
+      } else {
+        byte[] addrBytes = addr.getAddress();
+        WritableUtils.writeVInt(out, addrBytes.length);
+        out.write(addrBytes);
+      }
+      writeString(out, cmd);
+      writeString(out, src);
+      writeString(out, dst);
+      writeString(out, owner);
+      writeString(out, group);
+      out.writeShort(permission == null ? -1 : permission.toShort());
+      writeString(out, trackingId);
+      writeString(out, proto);
+      writeString(out, formattedCallerContext);
+    }
+
+    private static void writeString(DataOutput out, String s)
+        throws IOException {
+      if (s == null) {
+        WritableUtils.writeVInt(out, -1);
+      } else {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+      }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+      int len = WritableUtils.readVInt(in);
+      if (len < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[len];
+      in.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public boolean isSucceeded() {
+      return succeeded;
+    }
+
+    public String getUserName() {
+      return userName;
+    }
+
+    public InetAddress getAddress() {
+      return addr;
+    }
+
+    public String getCommand() {
+      return cmd;
+    }
+
+    public String getSrc() {
+      return src;
+    }
+
+    public String getDst() {
+      return dst;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+
+    public String getGroup() {
+      return group;
+    }
+
+    public FsPermission getPermission() {
+      return permission;
+    }
+
+    public String getTrackingId() {
+      return trackingId;
+    }
+
+    public String getProtocol() {
+      return proto;
+    }
+
+    /** @return the caller context as it was logged, for events read back. */
+    public String getCallerContext() {
+      return callerContextString;
+    }
+  }
+
+  /**
+   * Reads the events of a binary audit log file. Each event is prefixed by
+   * its length as a vint, so that fields appended by later versions can be
+   * skipped.
+   */
+  public static class BinaryReader implements Closeable {
+    private final DataInputStream in;
+    private final DataInputBuffer recordIn = new DataInputBuffer();
+    private byte[] record = new byte[256];
+
+    public BinaryReader(File file) throws IOException {
+      this(new FileInputStream(file));
+    }
+
+    public BinaryReader(InputStream stream) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(stream));
+      boolean ok = false;
+      try {
+        byte[] magic = new byte[BINARY_MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BINARY_MAGIC)) {
+          throw new IOException("Not a binary audit log");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+          throw new IOException("Unsupported binary audit log version "
+              + version);
+        }
+        ok = true;
+      } finally {
+        if (!ok) {
+          IOUtils.closeStream(in);
+        }
+      }
+    }
+
+    /**
+     * @return the next event, or null at the end of the file.
+     */
+    public AuditEvent next() throws IOException {
+      in.mark(1);
+      if (in.read() < 0) {
+        return null;
+      }
+      in.reset();
+      try {
+        int len = WritableUtils.readVInt(in);
+        if (len < 0) {
+          throw new IOException("Invalid audit event length " + len);
+        }
+        if (record.length < len) {
+          record = new byte[len];
+        }
+        in.readFully(record, 0, len);
+        recordIn.reset(record, len);
+        return new AuditEvent(recordIn);
+      } catch (EOFException e) {
+        throw new IOException("Truncated audit event", e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
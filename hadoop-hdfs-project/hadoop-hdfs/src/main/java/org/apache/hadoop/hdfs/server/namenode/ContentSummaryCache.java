@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the content counts of directories, keyed by inode id.
+ * Repeated content summary calls on a directory, or on one of its ancestors,
+ * do not traverse its subtree again.
+ *
+ * The entries are computed under the read lock. An entry is removed under
+ * the write lock whenever a descendant of its directory changes, using the
+ * same hooks which update the cached quota usage of
+ * {@link DirectoryWithQuotaFeature}, plus additions and removals of
+ * children, changes to the length of a file's last block, and snapshot
+ * creation and (dis)allowing on a directory. Operations which may change
+ * arbitrary subtrees, such as setting a storage policy or deleting a
+ * snapshot, clear the cache.
+ * Entries are evicted in least-recently-used order.
+ */
+class ContentSummaryCache {
+  /** The cached counts of a directory. */
+  static final class Entry {
+    private final ContentCounts counts;
+    private final ContentCounts snapshotCounts;
+
+    private Entry(ContentCounts counts, ContentCounts snapshotCounts) {
+      this.counts = copy(counts);
+      this.snapshotCounts = copy(snapshotCounts);
+    }
+
+    /** Add the cached counts to the given context. */
+    void addTo(ContentSummaryComputationContext summary) {
+      summary.getCounts().addContents(counts);
+      summary.getSnapshotCounts().addContents(snapshotCounts);
+    }
+
+    private static ContentCounts copy(ContentCounts c) {
+      final ContentCounts copy = new ContentCounts.Builder().build();
+      copy.addContents(c);
+      return copy;
+    }
+  }
+
+  private final Map<Long, Entry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  ContentSummaryCache(final int capacity) {
+    this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  synchronized Entry get(long inodeId) {
+    final Entry e = entries.get(inodeId);
+    if (e != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return e;
+  }
+
+  synchronized void put(long inodeId, ContentCounts counts,
+      ContentCounts snapshotCounts) {
+    entries.put(inodeId, new Entry(counts, snapshotCounts));
+  }
+
+  /**
+   * Remove the entries of the first numOfINodes inodes of the given path,
+   * i.e. the ancestors of an inode which has changed.
+   */
+  synchronized void invalidate(INodesInPath iip, int numOfINodes) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    numOfINodes = Math.min(numOfINodes, iip.length());
+    for (int i = 0; i < numOfINodes; i++) {
+      final INode inode = iip.getINode(i);
+      if (inode != null) {
+        entries.remove(inode.getId());
+      }
+    }
+  }
+
+  /** Remove the entries of the given inode and its ancestors. */
+  synchronized void invalidate(INode inode) {
+    for (; inode != null && !entries.isEmpty(); inode = inode.getParent()) {
+      entries.remove(inode.getId());
+    }
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  long getHitCount() {
+    return hits.get();
+  }
+
+  long getMissCount() {
+    return misses.get();
+  }
+}
@@ -25,12 +25,19 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.fs.XAttr;
+import org.apache.hadoop.hdfs.util.ReadOnlyList;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.CallerContext;
 import org.apache.hadoop.security.AccessControlException;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import static org.apache.hadoop.hdfs.server.common.HdfsServerConstants.XATTR_ERASURECODING_POLICY;
 
 @InterfaceAudience.Private
@@ -46,6 +53,8 @@ public class ContentSummaryComputationContext {
   private long yieldCount = 0;
   private long sleepMilliSec = 0;
   private int sleepNanoSec = 0;
+  private ForkJoinPool pool = null;
+  private ContentSummaryCache cache = null;
 
   public static final String REPLICATED = "Replicated";
   public static final Logger LOG = LoggerFactory
@@ -78,6 +87,23 @@ public ContentSummaryComputationContext(FSDirectory dir,
     this.sleepMilliSec = sleepMicroSec/1000;
     this.sleepNanoSec = (int)((sleepMicroSec%1000)*1000);
     this.pc = pc;
+    if (dir != null) {
+      this.pool = dir.getContentSummaryPool();
+      // Cached counts skip the permission checks of the subtree.
+      if (!dir.isPermissionEnabled() || pc == null || pc.isSuperUser()) {
+        this.cache = dir.getContentSummaryCache();
+      }
+    }
+  }
+
+  /** Constructor for a subtree computed in parallel, without yielding. */
+  private ContentSummaryComputationContext(
+      ContentSummaryComputationContext parent) {
+    this(null, parent.fsn, 0, 0, parent.pc);
+    this.dir = parent.dir;
+    this.bsps = parent.bsps;
+    this.pool = parent.pool;
+    this.cache = parent.cache;
   }
 
   /** Constructor for blocking computation. */
@@ -145,6 +171,118 @@ public boolean yield() {
     return true;
   }
 
+  /**
+   * Add the cached counts of the given directory, if any.
+   * @return true if the counts were cached.
+   */
+  boolean addCachedCounts(INodeDirectory inode) {
+    if (cache == null) {
+      return false;
+    }
+    final ContentSummaryCache.Entry e = cache.get(inode.getId());
+    if (e == null) {
+      return false;
+    }
+    e.addTo(this);
+    return true;
+  }
+
+  /**
+   * Cache the counts of this context as the counts of the given directory.
+   * Only valid if the context was used for the directory alone and the
+   * locks were never released during the computation.
+   */
+  void cacheCounts(INodeDirectory inode) {
+    if (cache != null && yieldCount == 0) {
+      cache.put(inode.getId(), counts, snapshotCounts);
+    }
+  }
+
+  /**
+   * Compute the children of a directory in parallel if a pool is
+   * configured. Each child directory is computed as a separate task with
+   * its own context, which is merged into this one. The locks are held by
+   * the thread which started the computation, so the tasks never yield;
+   * a context which has to yield is therefore never computed in parallel.
+   *
+   * @return false if the children have to be computed by the caller.
+   */
+  boolean computeInParallel(ReadOnlyList<INode> children, int snapshotId)
+      throws AccessControlException {
+    if (pool == null || limitPerRun > 0 || children.size() < 2) {
+      return false;
+    }
+    final String operationType = FSPermissionChecker.getOperationType();
+    final CallerContext callerContext = CallerContext.getCurrent();
+    final List<SubtreeTask> tasks = new ArrayList<>();
+    for (INode child : children) {
+      if (child.isDirectory()) {
+        SubtreeTask task = new SubtreeTask(child, snapshotId,
+            new ContentSummaryComputationContext(this),
+            operationType, callerContext);
+        if (ForkJoinTask.getPool() == pool) {
+          task.fork();
+        } else {
+          pool.execute(task);
+        }
+        tasks.add(task);
+      } else {
+        child.computeContentSummary(snapshotId, this);
+      }
+    }
+    AccessControlException ace = null;
+    for (SubtreeTask task : tasks) {
+      task.join();
+      if (task.exception != null) {
+        ace = task.exception;
+      } else {
+        counts.addContents(task.summary.getCounts());
+        snapshotCounts.addContents(task.summary.getSnapshotCounts());
+      }
+    }
+    if (ace != null) {
+      throw ace;
+    }
+    return true;
+  }
+
+  /** Computes the content summary of a subtree in a pool thread. */
+  private static final class SubtreeTask extends RecursiveAction {
+    private final INode inode;
+    private final int snapshotId;
+    private final ContentSummaryComputationContext summary;
+    private final String operationType;
+    private final CallerContext callerContext;
+    private AccessControlException exception;
+
+    SubtreeTask(INode inode, int snapshotId,
+        ContentSummaryComputationContext summary, String operationType,
+        CallerContext callerContext) {
+      this.inode = inode;
+      this.snapshotId = snapshotId;
+      this.summary = summary;
+      this.operationType = operationType;
+      this.callerContext = callerContext;
+    }
+
+    @Override
+    protected void compute() {
+      // Permission checks may depend on the context of the caller.
+      final String oldOperationType = FSPermissionChecker.getOperationType();
+      final CallerContext oldCallerContext = CallerContext.getCurrent();
+      FSPermissionChecker.setOperationType(operationType);
+      CallerContext.setCurrent(callerContext);
+      try {
+        inode.computeContentSummary(snapshotId, summary);
+      } catch (AccessControlException e) {
+        exception = e;
+      } finally {
+        FSPermissionChecker.setOperationType(oldOperationType);
+        CallerContext.setCurrent(oldCallerContext);
+      }
+    }
+  }
+
   /** Get the content counts */
   public ContentCounts getCounts() {
     return counts;
@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import static org.apache.commons.text.StringEscapeUtils.escapeJava;
+
 import java.net.InetAddress;
 import java.util.HashSet;
 import java.util.Set;
@@ -26,9 +28,13 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
 import org.apache.hadoop.ipc.CallerContext;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.UserGroupInformation.AuthenticationMethod;
+import org.apache.hadoop.security.token.TokenIdentifier;
 
 /**
  * This class provides an interface for Namenode and Router to Audit events
@@ -77,6 +83,88 @@ boolean getCallerContextEnabled() {
     return isCallerContextEnabled;
   }
 
+  /**
+   * Append an audit event to the given StringBuilder in the default format,
+   * a set of tab-separated <code>key=value</code> pairs.
+   *
+   * @param trackingId the delegation token tracking ID, only logged if
+   *          {@link #logTokenTrackingId} is set
+   * @param proto the RPC protocol of the request
+   */
+  protected void appendAuditMessage(StringBuilder sb, boolean succeeded,
+      String userName, InetAddress addr, String cmd, String src, String dst,
+      String owner, String group, FsPermission permission, String trackingId,
+      String proto, CallerContext callerContext) {
+    sb.append("allowed=").append(succeeded).append("\t")
+        .append("ugi=").append(userName).append("\t")
+        .append("ip=").append(addr).append("\t")
+        .append("cmd=").append(cmd).append("\t")
+        .append("src=").append(escapeJava(src)).append("\t")
+        .append("dst=").append(escapeJava(dst)).append("\t");
+    if (null == permission) {
+      sb.append("perm=null");
+    } else {
+      sb.append("perm=")
+          .append(owner).append(":")
+          .append(group).append(":")
+          .append(permission);
+    }
+    if (logTokenTrackingId) {
+      sb.append("\t").append("trackingId=").append(trackingId);
+    }
+    sb.append("\t").append("proto=").append(proto);
+    String context = formatCallerContext(callerContext);
+    if (context != null) {
+      sb.append("\t").append("callerContext=").append(context);
+    }
+  }
+
+  /**
+   * @return the caller context as it is logged, or null if it is not to be
+   * logged.
+   */
+  protected String formatCallerContext(CallerContext callerContext) {
+    if (!isCallerContextEnabled ||
+        callerContext == null ||
+        !callerContext.isContextValid()) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    if (callerContext.getContext().length() > callerContextMaxLen) {
+      sb.append(callerContext.getContext().substring(0,
+          callerContextMaxLen));
+    } else {
+      sb.append(callerContext.getContext());
+    }
+    if (callerContext.getSignature() != null &&
+        callerContext.getSignature().length > 0 &&
+        callerContext.getSignature().length <= callerSignatureMaxLen) {
+      sb.append(":")
+          .append(new String(callerContext.getSignature(),
+          CallerContext.SIGNATURE_ENCODING));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the tracking ID of the delegation token the user authenticated
+   * with, or null if the user did not authenticate with a delegation token.
+   */
+  protected static String getTrackingId(UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    if (ugi != null && dtSecretManager != null
+        && ugi.getAuthenticationMethod() == AuthenticationMethod.TOKEN) {
+      for (TokenIdentifier tid: ugi.getTokenIdentifiers()) {
+        if (tid instanceof DelegationTokenIdentifier) {
+          DelegationTokenIdentifier dtid =
+              (DelegationTokenIdentifier)tid;
+          return dtSecretManager.getTokenTrackingId(dtid);
+        }
+      }
+    }
+    return null;
+  }
+
   public abstract void initialize(Configuration conf);
 
   public abstract void logAuditMessage(String message);
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes edit log ops from an {@link EditLogInputStream} on a background
+ * thread, so that reading and deserializing the next ops overlaps with
+ * {@link FSEditLogLoader} applying the current one. Only decoding is moved
+ * off the replaying thread; the ops themselves are not applied in parallel. Ops are handed over in
+ * stream order through a bounded queue; the loader still applies them one
+ * at a time, in txid order, under the namesystem write lock.
+ *
+ * The decoding thread owns the input stream until it has either reached the
+ * end of the stream, read the maximum number of ops, failed, or been closed.
+ * The position and layout version of the stream are captured along with
+ * each op, so callers must not access the stream while the prefetcher is
+ * running, except after {@link #next()} has returned null or thrown.
+ *
+ * The decoding runs as a task on an executor owned by the
+ * {@link FSNamesystem}, which is shared by all replays of the namesystem,
+ * so that frequent tailing of in-progress edits does not start a new thread
+ * for every batch of edits.
+ */
+class EditLogReplayPrefetcher implements Closeable {
+  static final Logger LOG =
+      LoggerFactory.getLogger(EditLogReplayPrefetcher.class);
+
+  private static final long POLL_INTERVAL_MS = 100;
+
+  /** A decoded op along with the stream state right after reading it. */
+  private static final class Entry {
+    private final FSEditLogOp op;
+    private final long position;
+    private final int logVersion;
+    private final Throwable error;
+
+    private Entry(FSEditLogOp op, long position, int logVersion,
+        Throwable error) {
+      this.op = op;
+      this.position = position;
+      this.logVersion = logVersion;
+      this.error = error;
+    }
+  }
+
+  private static final Entry END_OF_STREAM = new Entry(null, -1, 0, null);
+
+  private final EditLogInputStream in;
+  private final long maxOpsToRead;
+  private final BlockingQueue<Entry> queue;
+  private final ExecutorService executor;
+  private Future<?> decoder;
+  private volatile boolean stopped = false;
+  private boolean finished = false;
+
+  private long position = -1;
+  private int logVersion;
+
+  /**
+   * @param in the stream to decode from
+   * @param maxOpsToRead the maximum number of ops to read from the stream
+   * @param capacity the maximum number of decoded ops waiting to be applied
+   * @param executor the executor to decode on
+   */
+  EditLogReplayPrefetcher(EditLogInputStream in, long maxOpsToRead,
+      int capacity, ExecutorService executor) {
+    this.in = in;
+    this.maxOpsToRead = maxOpsToRead;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.executor = executor;
+  }
+
+  void start() {
+    decoder = executor.submit(this::decode);
+  }
+
+  private void decode() {
+    // The ops handed to the loader must stay valid until they are applied,
+    // so they cannot be recycled from the per-thread op cache.
+    FSEditLogOp.OpInstanceCache.setCacheDisabledForCurrentThread(true);
+    try {
+      long numOps = 0;
+      while (!stopped && numOps < maxOpsToRead) {
+        FSEditLogOp op = in.readOp();
+        if (op == null) {
+          break;
+        }
+        numOps++;
+        if (!put(new Entry(op, in.getPosition(), in.getVersion(true), null))) {
+          return;
+        }
+      }
+      put(END_OF_STREAM);
+    } catch (Throwable t) {
+      put(new Entry(null, -1, 0, t));
+    }
+  }
+
+  private boolean put(Entry entry) {
+    try {
+      while (!stopped) {
+        if (queue.offer(entry, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * Return the next decoded op, or null at the end of the stream or after
+   * the maximum number of ops has been returned. A failure to decode is
+   * rethrown to the caller, after which no more ops are returned.
+   */
+  FSEditLogOp next() throws IOException {
+    if (finished) {
+      return null;
+    }
+    Entry entry;
+    try {
+      entry = queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting for edit log op");
+    }
+    if (entry == END_OF_STREAM) {
+      finished = true;
+      return null;
+    }
+    if (entry.error != null) {
+      finished = true;
+      if (entry.error instanceof IOException) {
+        throw (IOException) entry.error;
+      } else if (entry.error instanceof RuntimeException) {
+        throw (RuntimeException) entry.error;
+      } else if (entry.error instanceof Error) {
+        throw (Error) entry.error;
+      }
+      throw new IOException(entry.error);
+    }
+    position = entry.position;
+    logVersion = entry.logVersion;
+    return entry.op;
+  }
+
+  /** @return the stream position right after the last returned op. */
+  long getPosition() {
+    return position;
+  }
+
+  /** @return the layout version the last returned op was decoded with. */
+  int getLogVersion() {
+    return logVersion;
+  }
+
+  /**
+   * Stop the decoding task and wait for it to finish. After this returns,
+   * the input stream may be used or closed by the caller again.
+   */
+  @Override
+  public void close() {
+    stopped = true;
+    queue.clear();
+    if (decoder == null) {
+      return;
+    }
+    try {
+      decoder.get();
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while stopping the decoding of {}", in.getName());
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | CancellationException e) {
+      // decode() hands its own failures to the loader, so the task can only
+      // fail if it was cancelled by shutting down the executor.
+      LOG.debug("Decoding of {} did not complete", in.getName(), e);
+    }
+  }
+}
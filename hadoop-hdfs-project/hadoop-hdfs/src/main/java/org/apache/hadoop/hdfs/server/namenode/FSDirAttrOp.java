@@ -35,6 +35,7 @@
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
 import org.apache.hadoop.hdfs.server.namenode.FSDirectory.DirOp;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.hdfs.util.EnumCounters;
 import org.apache.hadoop.security.AccessControlException;
 
@@ -129,6 +130,44 @@ static FileStatus setTimes(
     return fsd.getAuditFileInfo(iip);
   }
 
+  /**
+   * Set times while holding the namesystem lock in shared mode, serializing
+   * only on the partition lock of the parent directory. This is only done if
+   * the path is not covered by a snapshot, since recording a snapshot diff
+   * touches the diff lists of the ancestors as well.
+   *
+   * @return the resolved path if the times were handled, or null if the
+   * caller must retry under the exclusive lock.
+   */
+  static INodesInPath setTimesPartitioned(
+      FSDirectory fsd, FSNamesystemLock fsLock, FSPermissionChecker pc,
+      String src, long mtime, long atime) throws IOException {
+    assert fsd.hasReadLock();
+    final INodesInPath iip = fsd.resolvePath(pc, src, DirOp.WRITE);
+    if (fsd.isPermissionEnabled()) {
+      fsd.checkPathAccess(pc, iip, FsAction.WRITE);
+    }
+    final INode inode = iip.getLastINode();
+    if (inode == null) {
+      throw new FileNotFoundException("File/Directory " + iip.getPath() +
+                                          " does not exist.");
+    }
+    if (iip.getLatestSnapshotId() != Snapshot.CURRENT_STATE_ID) {
+      return null;
+    }
+    final INode parent = iip.length() > 1 ? iip.getINode(-2) : inode;
+    fsLock.partitionLock(parent.getId());
+    try {
+      boolean changed = unprotectedSetTimes(fsd, iip, mtime, atime, true);
+      if (changed) {
+        fsd.getEditLog().logTimes(iip.getPath(), mtime, atime);
+      }
+    } finally {
+      fsLock.partitionUnlock();
+    }
+    return iip;
+  }
+
   static boolean setReplication(
       FSDirectory fsd, FSPermissionChecker pc, BlockManager bm, String src,
       final short replication) throws IOException {
@@ -451,8 +490,11 @@ static void unprotectedSetStoragePolicy(FSDirectory fsd, BlockManager bm,
                 " cannot be changed after file creation.");
       }
       inode.asFile().setStoragePolicyID(policyId, snapshotId);
+      fsd.invalidateContentSummary(inode);
     } else if (inode.isDirectory()) {
       setDirStoragePolicy(fsd, iip, policyId);
+      // The policy is inherited by the files of the whole subtree.
+      fsd.clearContentSummaryCache();
     } else {
       throw new FileNotFoundException(iip.getPath()
           + " is not a file or directory");
@@ -482,7 +524,7 @@ private static void setDirStoragePolicy(
   static boolean unprotectedSetTimes(
       FSDirectory fsd, INodesInPath iip, long mtime, long atime, boolean force)
           throws QuotaExceededException {
-    assert fsd.hasWriteLock();
+    assert fsd.hasWriteLock() || fsd.hasPartitionLock();
     boolean status = false;
     INode inode = iip.getLastINode();
     int latest = iip.getLatestSnapshotId();
@@ -264,6 +264,6 @@ static void unprotectedConcat(FSDirectory fsd, INodesInPath targetIIP,
     trgInode.setModificationTime(timestamp, targetIIP.getLatestSnapshotId());
     trgParent.updateModificationTime(timestamp, targetIIP.getLatestSnapshotId());
     // update quota on the parent directory with deltas
-    FSDirectory.unprotectedUpdateCount(targetIIP, targetIIP.length() - 1, deltas);
+    fsd.unprotectedUpdateCount(targetIIP, targetIIP.length() - 1, deltas);
   }
 }
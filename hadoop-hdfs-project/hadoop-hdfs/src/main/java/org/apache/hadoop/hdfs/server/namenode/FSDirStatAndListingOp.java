@@ -521,6 +521,10 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
                 fsd.getContentCountLimit(), fsd.getContentSleepMicroSec(), pc);
         ContentSummary cs = targetNode.computeAndConvertContentSummary(
             iip.getPathSnapshotId(), cscc);
+        if (targetNode.isDirectory() && !targetNode.isReference()
+            && iip.getPathSnapshotId() == Snapshot.CURRENT_STATE_ID) {
+          cscc.cacheCounts(targetNode.asDirectory());
+        }
         fsd.addYieldCount(cscc.getYieldCount());
         return cs;
       }
@@ -159,6 +159,10 @@ private static INodeDirectory createRoot(FSNamesystem namesystem) {
   private final int lsLimit;  // max list limit
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
+  // parallel content summary computation, null if disabled.
+  private final ForkJoinPool contentSummaryPool;
+  // cached content counts of directories, null if disabled.
+  private final ContentSummaryCache contentSummaryCache;
   private final INodeMap inodeMap; // Synchronized by dirLock
   private long yieldCount = 0; // keep track of lock yield count.
   private int quotaInitThreads;
@@ -280,6 +284,10 @@ boolean hasReadLock() {
     return namesystem.hasReadLock();
   }
 
+  boolean hasPartitionLock() {
+    return namesystem.hasPartitionLock();
+  }
+
   @Deprecated // dirLock is obsolete, use namesystem.fsLock instead
   public int getReadHoldCount() {
     return namesystem.getReadHoldCount();
@@ -371,6 +379,26 @@ public enum DirOp {
     this.contentSleepMicroSec = conf.getLong(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT);
+    int contentSummaryParallelism = conf.getInt(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLELISM_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLELISM_DEFAULT);
+    if (contentSummaryParallelism > 1 && contentCountLimit > 0) {
+      // The parallel traversal cannot release the locks periodically.
+      LOG.warn("Ignoring {} = {} since {} = {}. Set {} to 0 to compute "
+          + "content summaries in parallel.",
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLELISM_KEY,
+          contentSummaryParallelism,
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY, contentCountLimit,
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY);
+      contentSummaryParallelism = 1;
+    }
+    this.contentSummaryPool = contentSummaryParallelism > 1 ?
+        new ForkJoinPool(contentSummaryParallelism) : null;
+    final int contentSummaryCacheSize = conf.getInt(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT);
+    this.contentSummaryCache = contentSummaryCacheSize > 0 ?
+        new ContentSummaryCache(contentSummaryCacheSize) : null;
     
     // filesystem limits
     this.maxComponentLength = (int) conf.getLongBytes(
@@ -642,6 +670,34 @@ long getContentSleepMicroSec() {
     return contentSleepMicroSec;
   }
 
+  ForkJoinPool getContentSummaryPool() {
+    return contentSummaryPool;
+  }
+
+  @VisibleForTesting
+  ContentSummaryCache getContentSummaryCache() {
+    return contentSummaryCache;
+  }
+
+  /**
+   * Remove the cached content counts of the given inode and its ancestors.
+   */
+  public void invalidateContentSummary(INode inode) {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.invalidate(inode);
+    }
+  }
+
+  /**
+   * Remove all cached content counts, for changes which may affect any
+   * descendant of a directory.
+   */
+  public void clearContentSummaryCache() {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.clear();
+    }
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -992,6 +1048,7 @@ public void updateCount(INodesInPath iip, INode.QuotaDelta quotaDelta,
       INodeDirectory quotaDir = entry.getKey();
       quotaDir.getDirectoryWithQuotaFeature().addSpaceConsumed2Cache(
           entry.getValue().negation());
+      invalidateContentSummary(quotaDir);
     }
   }
 
@@ -1081,8 +1138,11 @@ void updateCountNoQuotaCheck(INodesInPath inodesInPath,
    * updates quota without verification
    * callers responsibility is to make sure quota is not exceeded
    */
-  static void unprotectedUpdateCount(INodesInPath inodesInPath,
+  void unprotectedUpdateCount(INodesInPath inodesInPath,
       int numOfINodes, QuotaCounts counts) {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.invalidate(inodesInPath, numOfINodes);
+    }
     for(int i=0; i < numOfINodes; i++) {
       if (inodesInPath.getINode(i).isQuotaSet()) { // a directory with quota
         inodesInPath.getINode(i).asDirectory().getDirectoryWithQuotaFeature()
@@ -1419,6 +1479,7 @@ public long removeLastINode(final INodesInPath iip) {
     if (!parent.removeChild(last, latestSnapshot)) {
       return -1;
     }
+    invalidateContentSummary(parent);
 
     return (!last.isInLatestSnapshot(latestSnapshot)
         && INodeReference.tryRemoveReference(last) > 0) ? 0 : 1;
@@ -1618,6 +1679,9 @@ void cacheName(INode inode) {
   void shutdown() {
     nameCache.reset();
     inodeMap.clear();
+    if (contentSummaryPool != null) {
+      contentSummaryPool.shutdownNow();
+    }
   }
   
   /**
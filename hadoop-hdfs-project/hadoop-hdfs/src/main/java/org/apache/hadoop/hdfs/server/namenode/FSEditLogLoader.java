@@ -234,13 +234,26 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
     Counter counter = prog.getCounter(Phase.LOADING_EDITS, step);
     long lastLogTime = timer.monotonicNow();
     long lastInodeId = fsNamesys.dir.getLastInodeId();
-    
+
+    // Decode ops ahead of applying them, unless the stream may need to be
+    // resynced in recovery mode or replay may stop early for a rollback.
+    EditLogReplayPrefetcher prefetcher = null;
+    int prefetchOps = fsNamesys.getEditLogReplayPrefetchOps();
+    if (prefetchOps > 0 && recovery == null &&
+        startOpt != StartupOption.ROLLINGUPGRADE) {
+      prefetcher = new EditLogReplayPrefetcher(in, maxTxnsToRead, prefetchOps,
+          fsNamesys.getEditLogReplayPrefetchExecutor());
+    }
+
     try {
+      if (prefetcher != null) {
+        prefetcher.start();
+      }
       while (true) {
         try {
           FSEditLogOp op;
           try {
-            op = in.readOp();
+            op = prefetcher != null ? prefetcher.next() : in.readOp();
             if (op == null) {
               break;
             }
@@ -262,7 +275,7 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
             continue;
           }
           recentOpcodeOffsets[(int)(numEdits % recentOpcodeOffsets.length)] =
-            in.getPosition();
+            prefetcher != null ? prefetcher.getPosition() : in.getPosition();
           if (op.hasTransactionId()) {
             if (op.getTransactionId() > expectedTxId) { 
               MetaRecoveryContext.editLogLoaderPrompt("There appears " +
@@ -284,8 +297,10 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
               LOG.trace("op=" + op + ", startOpt=" + startOpt
                   + ", numEdits=" + numEdits + ", totalEdits=" + totalEdits);
             }
+            int logVersion = prefetcher != null ?
+                prefetcher.getLogVersion() : in.getVersion(true);
             long inodeId = applyEditLogOp(op, fsDir, startOpt,
-                in.getVersion(true), lastInodeId);
+                logVersion, lastInodeId);
             if (lastInodeId < inodeId) {
               lastInodeId = inodeId;
             }
@@ -336,6 +351,9 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
         }
       }
     } finally {
+      if (prefetcher != null) {
+        prefetcher.close();
+      }
       fsNamesys.dir.resetLastInodeId(lastInodeId);
       if(closeOnExit) {
         in.close();
@@ -1094,6 +1112,7 @@ private void addNewBlock(AddBlockOp op, INodeFile file,
       }
       
       oldLastBlock.setNumBytes(pBlock.getNumBytes());
+      fsNamesys.dir.invalidateContentSummary(file);
       if (!oldLastBlock.isComplete()) {
         fsNamesys.getBlockManager().forceCompleteBlock(oldLastBlock);
         fsNamesys.getBlockManager().processQueuedMessagesForBlock(pBlock);
@@ -1128,6 +1147,8 @@ private void updateBlocks(FSDirectory fsDir, BlockListUpdatingOp op,
     BlockInfo[] oldBlocks = file.getBlocks();
     Block[] newBlocks = op.getBlocks();
     String path = op.getPath();
+    // The block lengths may change without changing the space consumed.
+    fsDir.invalidateContentSummary(file);
     
     // Are we only updating the last block's gen stamp.
     boolean isGenStampUpdate = oldBlocks.length == newBlocks.length;
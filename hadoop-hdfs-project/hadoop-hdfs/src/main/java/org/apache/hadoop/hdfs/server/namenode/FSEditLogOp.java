@@ -176,19 +176,31 @@ static final class OpInstanceCacheMap extends
       }
     }
 
+    /**
+     * Threads which must get a fresh instance for every op, e.g. because the
+     * ops they decode are consumed by another thread.
+     */
+    private static final ThreadLocal<Boolean> THREAD_CACHE_DISABLED =
+        ThreadLocal.withInitial(() -> false);
+
     private boolean useCache = true;
 
     void disableCache() {
       useCache = false;
     }
 
+    static void setCacheDisabledForCurrentThread(boolean disabled) {
+      THREAD_CACHE_DISABLED.set(disabled);
+    }
+
     public OpInstanceCache get() {
       return this;
     }
 
     @SuppressWarnings("unchecked")
     public <T extends FSEditLogOp> T get(FSEditLogOpCodes opCode) {
-      return useCache ? (T)CACHE.get().get(opCode) : (T)newInstance(opCode);
+      return useCache && !THREAD_CACHE_DISABLED.get() ?
+          (T)CACHE.get().get(opCode) : (T)newInstance(opCode);
     }
 
     private static FSEditLogOp newInstance(FSEditLogOpCodes opCode) {
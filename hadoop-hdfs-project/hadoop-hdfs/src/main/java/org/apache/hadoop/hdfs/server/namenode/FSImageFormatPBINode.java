@@ -18,17 +18,23 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -810,6 +816,11 @@ void serializeINodeSection(OutputStream out) throws IOException {
 
       int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
+      ExecutorService executor = parent.getParallelSaveExecutor();
+      if (executor != null) {
+        serializeINodeSubSections(out, iter, executor);
+        return;
+      }
       while (iter.hasNext()) {
         INodeWithAdditionalFields n = iter.next();
         save(out, n);
@@ -827,6 +838,98 @@ void serializeINodeSection(OutputStream out) throws IOException {
           FSImageFormatProtobuf.SectionName.INODE_SUB);
     }
 
+    /**
+     * Serialize the inodes of the INode section in parallel. The inodes of
+     * each sub-section are collected by the calling thread and encoded into a
+     * buffer by the executor. The buffers are written in order, so the
+     * output is the same as if the sub-sections were serialized sequentially.
+     * At most one buffer per thread is pending at a time.
+     *
+     * The tasks do not assign any ids: users, groups, ACL names and xattr
+     * names are written as the serial numbers the inodes already hold,
+     * which {@link SerialNumberManager} assigned when they were set under
+     * the write lock. The string table of those serial numbers is written
+     * afterwards by the saving thread, so it does not depend on the order in
+     * which the tasks run. The tasks must not use the {@link SaverContext}.
+     */
+    private void serializeINodeSubSections(OutputStream out,
+        Iterator<INodeWithAdditionalFields> iter, ExecutorService executor)
+        throws IOException {
+      final int inodesPerSubSection = parent.getInodesPerSubSection();
+      final int maxPending = parent.getParallelSaveThreads();
+      final Deque<Future<ByteArrayOutputStream>> pending = new ArrayDeque<>();
+      int i = 0;
+      try {
+        while (iter.hasNext()) {
+          final List<INode> inodes = new ArrayList<>(inodesPerSubSection);
+          while (iter.hasNext() && inodes.size() < inodesPerSubSection) {
+            inodes.add(iter.next());
+            ++i;
+            if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
+              context.checkCancelled();
+            }
+          }
+          pending.add(executor.submit(() -> serializeINodes(inodes)));
+          if (pending.size() >= maxPending) {
+            writeSubSection(out, pending.remove(),
+                FSImageFormatProtobuf.SectionName.INODE_SUB);
+          }
+        }
+        // The last sub-section is committed with the section
+        while (pending.size() > 1) {
+          writeSubSection(out, pending.remove(),
+              FSImageFormatProtobuf.SectionName.INODE_SUB);
+        }
+        if (!pending.isEmpty()) {
+          writeSubSection(out, pending.remove(), null);
+        }
+      } finally {
+        for (Future<ByteArrayOutputStream> f : pending) {
+          f.cancel(true);
+        }
+      }
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
+    }
+
+    private ByteArrayOutputStream serializeINodes(List<INode> inodes)
+        throws IOException {
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      for (INode n : inodes) {
+        save(buf, n);
+      }
+      return buf;
+    }
+
+    /**
+     * Wait for a serialized sub-section and write it to the output stream.
+     * @param name the sub-section to commit, or null if it is committed later
+     */
+    private void writeSubSection(OutputStream out,
+        Future<ByteArrayOutputStream> future,
+        FSImageFormatProtobuf.SectionName name) throws IOException {
+      ByteArrayOutputStream buf;
+      try {
+        buf = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while serializing the INode section");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Failed to serialize the INode section", cause);
+      }
+      buf.writeTo(out);
+      context.checkCancelled();
+      if (name != null) {
+        parent.commitSubSection(summary, name);
+      }
+    }
+
     void serializeFilesUCSection(OutputStream out) throws IOException {
       Collection<Long> filesWithUC = fsn.getLeaseManager()
               .getINodeIdWithLeases();
@@ -43,6 +43,9 @@
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyInfo;
@@ -78,6 +81,7 @@
 
 import org.apache.hadoop.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.thirdparty.com.google.common.collect.Maps;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.thirdparty.protobuf.CodedOutputStream;
 
 /**
@@ -104,6 +108,12 @@ public ArrayList<INodeReference> getRefList() {
   }
 
   public static final class SaverContext {
+    /**
+     * Assigns ids to values in the order they are first seen. The ids are
+     * only deterministic if all values are added by a single thread, so the
+     * methods are synchronized for safety but callers must not add values
+     * from parallel tasks.
+     */
     public static class DeduplicationMap<E> {
       private final Map<E, Integer> map = Maps.newHashMap();
       private DeduplicationMap() {}
@@ -112,7 +122,7 @@ static <T> DeduplicationMap<T> newMap() {
         return new DeduplicationMap<T>();
       }
 
-      int getId(E value) {
+      synchronized int getId(E value) {
         if (value == null) {
           return 0;
         }
@@ -125,11 +135,11 @@ int getId(E value) {
         return v;
       }
 
-      int size() {
+      synchronized int size() {
         return map.size();
       }
 
-      Set<Entry<E, Integer>> entrySet() {
+      synchronized Set<Entry<E, Integer>> entrySet() {
         return map.entrySet();
       }
     }
@@ -617,6 +627,14 @@ public static final class Saver {
     public static final int CHECK_CANCEL_INTERVAL = 4096;
     private boolean writeSubSections = false;
     private int inodesPerSubSection = Integer.MAX_VALUE;
+    /**
+     * Serializes the inode sub-sections of all savers. It is created once and
+     * its idle threads exit, so saving does not start new threads each time.
+     */
+    private static ThreadPoolExecutor sharedParallelSaveExecutor;
+    // Serializes the inode sub-sections concurrently, if not null
+    private ExecutorService parallelSaveExecutor;
+    private int parallelSaveThreads = 1;
 
     private final SaveNamespaceContext context;
     private final SaverContext saverContext;
@@ -653,6 +671,18 @@ public int getInodesPerSubSection() {
       return inodesPerSubSection;
     }
 
+    /**
+     * @return the executor serializing sub-sections in parallel, or null if
+     *         the sub-sections are serialized by the calling thread.
+     */
+    ExecutorService getParallelSaveExecutor() {
+      return parallelSaveExecutor;
+    }
+
+    int getParallelSaveThreads() {
+      return parallelSaveThreads;
+    }
+
     /**
      * Commit the length and offset of a fsimage section to the summary index,
      * including the sub section, which will be committed before the section is
@@ -728,6 +758,12 @@ long save(File file, FSImageCompression compression) throws IOException {
       enableSubSectionsIfRequired();
       FileOutputStream fout = new FileOutputStream(file);
       fileChannel = fout.getChannel();
+      if (writeSubSections && parallelSaveThreads > 1) {
+        parallelSaveExecutor = getSharedParallelSaveExecutor(
+            parallelSaveThreads);
+        LOG.info("The fsimage sub-sections will be saved in parallel using" +
+            " {} threads", parallelSaveThreads);
+      }
       try {
         LOG.info("Saving image file {} using {}", file, compression);
         long startTime = monotonicNow();
@@ -738,10 +774,33 @@ long save(File file, FSImageCompression compression) throws IOException {
             (numErrors > 0 ? (" with" + numErrors + " errors") : ""));
         return numErrors;
       } finally {
+        parallelSaveExecutor = null;
         fout.close();
       }
     }
 
+    /**
+     * @return the executor shared by all savers, resized to the given number
+     *         of threads if needed.
+     */
+    private static synchronized ExecutorService getSharedParallelSaveExecutor(
+        int threads) {
+      if (sharedParallelSaveExecutor == null) {
+        sharedParallelSaveExecutor = new ThreadPoolExecutor(threads, threads,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("FSImage Parallel Saver #%d").build());
+        sharedParallelSaveExecutor.allowCoreThreadTimeOut(true);
+      } else if (threads > sharedParallelSaveExecutor.getMaximumPoolSize()) {
+        sharedParallelSaveExecutor.setMaximumPoolSize(threads);
+        sharedParallelSaveExecutor.setCorePoolSize(threads);
+      } else if (threads < sharedParallelSaveExecutor.getMaximumPoolSize()) {
+        sharedParallelSaveExecutor.setCorePoolSize(threads);
+        sharedParallelSaveExecutor.setMaximumPoolSize(threads);
+      }
+      return sharedParallelSaveExecutor;
+    }
+
     private void enableSubSectionsIfRequired() {
       boolean parallelEnabled = enableParallelSaveAndLoad(conf);
       int inodeThreshold = conf.getInt(
@@ -777,6 +836,9 @@ private void enableSubSectionsIfRequired() {
           // Calculate the inodes per section rounded up to the nearest int
           inodesPerSubSection = (inodeCount + targetSections - 1) /
               targetSections;
+          parallelSaveThreads = conf.getInt(
+              DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+              DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
         }
       } else {
         writeSubSections = false;
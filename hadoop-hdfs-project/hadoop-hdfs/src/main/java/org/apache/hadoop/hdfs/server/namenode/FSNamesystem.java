@@ -131,6 +131,7 @@
 import static org.apache.hadoop.hdfs.server.namenode.top.metrics.TopMetrics.TOPMETRICS_METRICS_SOURCE_NAME;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -236,6 +237,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.ReencryptAction;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.LastBlockWithStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
@@ -328,7 +330,6 @@
 import org.apache.hadoop.security.UserGroupInformation.AuthenticationMethod;
 import org.apache.hadoop.security.token.SecretManager.InvalidToken;
 import org.apache.hadoop.security.token.Token;
-import org.apache.hadoop.security.token.TokenIdentifier;
 import org.apache.hadoop.security.token.delegation.DelegationKey;
 import org.apache.log4j.Logger;
 import org.apache.log4j.Appender;
@@ -470,6 +471,12 @@ private void logAuditEvent(boolean succeeded,
   private final boolean isSnapshotTrashRootEnabled;
   private final int snapshotDiffReportLimit;
   private final int blockDeletionIncrement;
+  /** Minimum number of blocks of a delete removed in the background. */
+  private final int asyncBlockDeletionThreshold;
+  /** Number of edit log ops decoded ahead of replay; 0 disables. */
+  private final int editLogReplayPrefetchOps;
+  /** Decodes edit log ops ahead of replay, or null if disabled. */
+  private final ExecutorService editLogReplayPrefetchExecutor;
 
   /** Interval between each check of lease to release. */
   private final long leaseRecheckIntervalMs;
@@ -573,6 +580,7 @@ private void logAuditEvent(boolean succeeded,
 
   // Maximum number of paths that can be listed per batched call.
   private final int batchedListingLimit;
+  private final int batchedFileInfoLimit;
 
   private final int numCommittedAllowed;
 
@@ -929,6 +937,13 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
           batchedListingLimit > 0,
           DFSConfigKeys.DFS_NAMENODE_BATCHED_LISTING_LIMIT +
               " must be greater than zero");
+      this.batchedFileInfoLimit = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_FILEINFO_LIMIT,
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_FILEINFO_LIMIT_DEFAULT);
+      Preconditions.checkArgument(
+          batchedFileInfoLimit > 0,
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_FILEINFO_LIMIT +
+              " must be greater than zero");
       this.numCommittedAllowed = conf.getInt(
           DFSConfigKeys.DFS_NAMENODE_FILE_CLOSE_NUM_COMMITTED_ALLOWED_KEY,
           DFSConfigKeys.DFS_NAMENODE_FILE_CLOSE_NUM_COMMITTED_ALLOWED_DEFAULT);
@@ -1021,6 +1036,22 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
       Preconditions.checkArgument(blockDeletionIncrement > 0,
           DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_INCREMENT_KEY +
               " must be a positive integer.");
+      this.asyncBlockDeletionThreshold = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_KEY,
+          DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_DEFAULT);
+      this.editLogReplayPrefetchOps = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY,
+          DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_DEFAULT);
+      Preconditions.checkArgument(editLogReplayPrefetchOps >= 0,
+          DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY +
+              " must not be negative.");
+      // Replays are serialized by the write lock, so a single thread decodes
+      // for all of them.
+      this.editLogReplayPrefetchExecutor = editLogReplayPrefetchOps > 0 ?
+          Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("Edit Log Replay Prefetcher #%d")
+              .build()) : null;
     } catch(IOException e) {
       LOG.error(getClass().getSimpleName() + " initialization failed.", e);
       close();
@@ -1056,6 +1087,14 @@ public int getMaxListOpenFilesResponses() {
     return maxListOpenFilesResponses;
   }
 
+  int getEditLogReplayPrefetchOps() {
+    return editLogReplayPrefetchOps;
+  }
+
+  ExecutorService getEditLogReplayPrefetchExecutor() {
+    return editLogReplayPrefetchExecutor;
+  }
+
   boolean isSnapshotTrashRootEnabled() {
     return isSnapshotTrashRootEnabled;
   }
@@ -1787,6 +1826,14 @@ public boolean hasReadLock() {
     return this.fsLock.getReadHoldCount() > 0 || hasWriteLock();
   }
 
+  /**
+   * @return true if the current thread holds a partition lock of the
+   * partitioned locking mode.
+   */
+  boolean hasPartitionLock() {
+    return this.fsLock.hasPartitionLock();
+  }
+
   public int getReadHoldCount() {
     return this.fsLock.getReadHoldCount();
   }
@@ -1857,8 +1904,18 @@ void close() {
         stopStandbyServices();
       } catch (IOException ie) {
       } finally {
+        if (editLogReplayPrefetchExecutor != null) {
+          editLogReplayPrefetchExecutor.shutdownNow();
+        }
         IOUtils.cleanupWithLogger(LOG, dir);
         IOUtils.cleanupWithLogger(LOG, fsImage);
+        if (auditLoggers != null) {
+          for (AuditLogger logger : auditLoggers) {
+            if (logger instanceof Closeable) {
+              IOUtils.cleanupWithLogger(LOG, (Closeable) logger);
+            }
+          }
+        }
       }
     }
   }
@@ -2256,14 +2313,33 @@ void setTimes(String src, long mtime, long atime) throws IOException {
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      writeLock();
-      try {
-        checkOperation(OperationCategory.WRITE);
-        checkNameNodeSafeMode("Cannot set times " + src);
-        auditStat = FSDirAttrOp.setTimes(dir, pc, src, mtime, atime);
-      } finally {
-        writeUnlock(operationName,
-            getLockReportInfoSupplier(src, null, auditStat));
+      boolean done = false;
+      if (fsLock.isPartitionedLockEnabled()) {
+        readLock();
+        try {
+          checkOperation(OperationCategory.WRITE);
+          checkNameNodeSafeMode("Cannot set times " + src);
+          INodesInPath iip = FSDirAttrOp.setTimesPartitioned(
+              dir, fsLock, pc, src, mtime, atime);
+          if (iip != null) {
+            auditStat = dir.getAuditFileInfo(iip);
+            done = true;
+          }
+        } finally {
+          readUnlock(operationName,
+              getLockReportInfoSupplier(src, null, auditStat));
+        }
+      }
+      if (!done) {
+        writeLock();
+        try {
+          checkOperation(OperationCategory.WRITE);
+          checkNameNodeSafeMode("Cannot set times " + src);
+          auditStat = FSDirAttrOp.setTimes(dir, pc, src, mtime, atime);
+        } finally {
+          writeUnlock(operationName,
+              getLockReportInfoSupplier(src, null, auditStat));
+        }
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -3340,12 +3416,30 @@ FSPermissionChecker getPermissionChecker()
    * Writelock is dropped and reacquired every BLOCK_DELETION_INCREMENT to
    * ensure that other waiters on the lock can get in. See HDFS-2938
    * 
+   * The blocks of large deletes, with at least
+   * {@link DFSConfigKeys#DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_KEY}
+   * blocks, are instead removed in the background by the blockManager.
+   *
    * @param blocks
    *          An instance of {@link BlocksMapUpdateInfo} which contains a list
    *          of blocks that need to be removed from blocksMap
    */
   void removeBlocks(BlocksMapUpdateInfo blocks) {
     List<BlockInfo> toDeleteList = blocks.getToDeleteList();
+    if (asyncBlockDeletionThreshold > 0
+        && toDeleteList.size() >= asyncBlockDeletionThreshold) {
+      // the caller may clear the list, so queue copies of it
+      List<BlockInfo> batch = new ArrayList<>(blockDeletionIncrement);
+      for (BlockInfo block : toDeleteList) {
+        batch.add(block);
+        if (batch.size() == blockDeletionIncrement) {
+          blockManager.addBlocksToMarkedDeleteQueue(batch);
+          batch = new ArrayList<>(blockDeletionIncrement);
+        }
+      }
+      blockManager.addBlocksToMarkedDeleteQueue(batch);
+      return;
+    }
     Iterator<BlockInfo> iter = toDeleteList.iterator();
     while (iter.hasNext()) {
       writeLock();
@@ -3432,6 +3526,63 @@ HdfsFileStatus getFileInfo(final String src, boolean resolveLink,
     return stat;
   }
 
+  /**
+   * Get the file info for many files, resolving all of them under a single
+   * acquisition of the read lock.
+   *
+   * @param clientMachine the client, to sort the block locations by distance
+   * @param srcs The string representations of the paths to the files
+   * @param needLocation Include {@link LocatedBlocks} with block tokens in
+   *        the file info, as {@link #getBlockLocations} does
+   * @throws AccessControlException if access to any of the paths is denied
+   *
+   * @return the file info of each path, null for the paths not found
+   */
+  HdfsFileStatus[] getBatchedFileInfo(String clientMachine,
+      final String[] srcs, boolean needLocation) throws IOException {
+    if (srcs.length > batchedFileInfoLimit) {
+      String msg = String.format("Too many source paths (%d > %d)",
+          srcs.length, batchedFileInfoLimit);
+      throw new IllegalArgumentException(msg);
+    }
+    // a client which gets block tokens can read the files, so it is audited
+    // as if it had opened them
+    final String operationName = needLocation ? "open" : "getfileinfo";
+    checkOperation(OperationCategory.READ);
+    final HdfsFileStatus[] stats = new HdfsFileStatus[srcs.length];
+    final FSPermissionChecker pc = getPermissionChecker();
+    FSPermissionChecker.setOperationType(operationName);
+    int i = 0;
+    try {
+      readLock();
+      try {
+        checkOperation(OperationCategory.READ);
+        for (; i < srcs.length; i++) {
+          stats[i] = FSDirStatAndListingOp.getFileInfo(
+              dir, pc, srcs[i], true, needLocation, needLocation);
+        }
+      } finally {
+        readUnlock(operationName,
+            getLockReportInfoSupplier(Arrays.toString(srcs)));
+      }
+    } catch (AccessControlException e) {
+      logAuditEvent(false, operationName, srcs[i]);
+      throw e;
+    }
+    for (String src : srcs) {
+      logAuditEvent(true, operationName, src);
+    }
+    if (needLocation) {
+      for (HdfsFileStatus stat : stats) {
+        if (stat instanceof HdfsLocatedFileStatus) {
+          sortLocatedBlocks(clientMachine,
+              ((HdfsLocatedFileStatus) stat).getLocatedBlocks());
+        }
+      }
+    }
+    return stats;
+  }
+
   /**
    * Returns true if the file is closed
    */
@@ -3626,6 +3777,7 @@ void fsync(String src, long fileId, String clientName, long lastBlockLength)
       if (lastBlockLength > 0) {
         pendingFile.getFileUnderConstructionFeature().updateLengthOfLastBlock(
             pendingFile, lastBlockLength);
+        dir.invalidateContentSummary(pendingFile);
       }
       FSDirWriteFileOp.persistBlocks(dir, src, pendingFile, false);
     } finally {
@@ -3814,6 +3966,9 @@ void commitOrCompleteLastBlock(
     assert hasWriteLock();
     Preconditions.checkArgument(fileINode.isUnderConstruction());
     blockManager.commitOrCompleteLastBlock(fileINode, commitBlock, iip);
+    // The length of the last block may have changed even if the space
+    // charged for it did not.
+    dir.invalidateContentSummary(fileINode);
   }
 
   void addCommittedBlocksToPending(final INodeFile pendingFile) {
@@ -3998,6 +4153,7 @@ void commitBlockSynchronization(ExtendedBlock oldBlock,
           storedBlock.setGenerationStamp(newgenerationstamp);
           storedBlock.setNumBytes(newlength);
         }
+        dir.invalidateContentSummary(iFile);
 
         // Find the target DatanodeStorageInfos. If not found because of invalid
         // or empty DatanodeID/StorageID, the slot of same offset in dsInfos is
@@ -4844,6 +5000,13 @@ public long getNumOfWriteLockLongHold() {
     return fsLock.getNumOfWriteLockLongHold();
   }
 
+  @Metric(value = {"PartitionLockContendedCount", "The number of times " +
+          "a partition lock had to wait for another holder"},
+          type = Metric.Type.COUNTER)
+  public long getNumOfPartitionLockContended() {
+    return fsLock.getNumOfPartitionLockContended();
+  }
+
   int getNumberOfDatanodes(DatanodeReportType type) {
     readLock();
     try {
@@ -5316,6 +5479,13 @@ public long getPendingDeletionBlocks() {
     return blockManager.getPendingDeletionBlocksCount();
   }
 
+  @Metric({"PendingMarkedDeleteBlocks",
+      "Number of blocks of deleted files still to be removed from the "
+          + "blocks map"})
+  public long getPendingMarkedDeleteBlocks() {
+    return blockManager.getPendingMarkedDeleteBlocksCount();
+  }
+
   @Override // ReplicatedBlocksMBean
   @Metric({"LowRedundancyReplicatedBlocks",
       "Number of low redundancy replicated blocks"})
@@ -5920,6 +6090,7 @@ private void updatePipelineInternal(String clientName, ExtendedBlock oldBlock,
 
     // Update old block with the new generation stamp and new length
     blockManager.updateLastBlock(lastBlock, newBlock);
+    dir.invalidateContentSummary(pendingFile);
 
     // find the DatanodeDescriptor objects
     final DatanodeStorageInfo[] storages = blockManager.getDatanodeManager()
@@ -8678,59 +8849,20 @@ public void logAuditEvent(boolean succeeded, String userName,
       if (auditLog.isDebugEnabled() ||
           (auditLog.isInfoEnabled() && !debugCmdSet.contains(cmd))) {
         final StringBuilder sb = STRING_BUILDER.get();
-        src = escapeJava(src);
-        dst = escapeJava(dst);
         sb.setLength(0);
-        sb.append("allowed=").append(succeeded).append("\t")
-            .append("ugi=").append(userName).append("\t")
-            .append("ip=").append(addr).append("\t")
-            .append("cmd=").append(cmd).append("\t")
-            .append("src=").append(src).append("\t")
-            .append("dst=").append(dst).append("\t");
-        if (null == status) {
-          sb.append("perm=null");
-        } else {
-          sb.append("perm=")
-              .append(status.getOwner()).append(":")
-              .append(status.getGroup()).append(":")
-              .append(status.getPermission());
-        }
-        if (logTokenTrackingId) {
-          sb.append("\t").append("trackingId=");
-          String trackingId = null;
-          if (ugi != null && dtSecretManager != null
-              && ugi.getAuthenticationMethod() == AuthenticationMethod.TOKEN) {
-            for (TokenIdentifier tid: ugi.getTokenIdentifiers()) {
-              if (tid instanceof DelegationTokenIdentifier) {
-                DelegationTokenIdentifier dtid =
-                    (DelegationTokenIdentifier)tid;
-                trackingId = dtSecretManager.getTokenTrackingId(dtid);
-                break;
-              }
-            }
-          }
-          sb.append(trackingId);
-        }
-        sb.append("\t").append("proto=")
-            .append(Server.getProtocol());
-        if (isCallerContextEnabled &&
-            callerContext != null &&
-            callerContext.isContextValid()) {
-          sb.append("\t").append("callerContext=");
-          if (callerContext.getContext().length() > callerContextMaxLen) {
-            sb.append(callerContext.getContext().substring(0,
-                callerContextMaxLen));
-          } else {
-            sb.append(callerContext.getContext());
-          }
-          if (callerContext.getSignature() != null &&
-              callerContext.getSignature().length > 0 &&
-              callerContext.getSignature().length <= callerSignatureMaxLen) {
-            sb.append(":")
-                .append(new String(callerContext.getSignature(),
-                CallerContext.SIGNATURE_ENCODING));
-          }
+        String owner = null;
+        String group = null;
+        FsPermission permission = null;
+        if (status != null) {
+          owner = status.getOwner();
+          group = status.getGroup();
+          permission = status.getPermission();
         }
+        String trackingId = logTokenTrackingId ?
+            getTrackingId(ugi, dtSecretManager) : null;
+        appendAuditMessage(sb, succeeded, userName, addr, cmd, src, dst,
+            owner, group, permission, trackingId, Server.getProtocol(),
+            callerContext);
         logAuditMessage(sb.toString());
       }
     }
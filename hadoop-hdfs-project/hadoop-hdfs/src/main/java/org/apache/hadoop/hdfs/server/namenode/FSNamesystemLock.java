@@ -22,11 +22,14 @@
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.Arrays;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
 import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.thirdparty.com.google.common.base.Preconditions;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.log.LogThrottlingHelper;
@@ -43,6 +46,10 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_WRITE_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_WRITE_LOCK_REPORTING_THRESHOLD_MS_KEY;
 import static org.apache.hadoop.ipc.ProcessingDetails.Timing;
@@ -62,11 +69,30 @@
  * most recent snapshot will be lost due to the use of
  * {@link MutableRatesWithAggregation}. However since threads are re-used
  * between operations this should not generally be an issue.
+ *
+ * If {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY}
+ * is true, an array of partition locks is maintained in addition to the
+ * coarse lock. Operations which only mutate state that is owned by a single
+ * directory may hold the coarse lock in shared mode and serialize on the
+ * partition lock(s) of the directories they touch instead of taking the
+ * coarse lock exclusively. Any holder of the exclusive lock still excludes
+ * every partition holder, since partitions are only taken under the shared
+ * lock. Only setTimes uses this today; every other namespace mutation,
+ * including create, mkdirs, complete, delete and rename, still takes the
+ * exclusive lock, since it updates the inode map, ancestor quotas or block
+ * state, none of which are safe to change under the shared lock.
  */
 class FSNamesystemLock {
   @VisibleForTesting
   protected ReentrantReadWriteLock coarseLock;
 
+  /** Partition locks, or null if partitioned locking is disabled. */
+  private final ReentrantLock[] partitionLocks;
+  /** Indexes of the partition locks held by the current thread, sorted. */
+  private final ThreadLocal<int[]> heldPartitions = new ThreadLocal<>();
+  /** Number of times a partition lock had to wait for another holder. */
+  private final AtomicLong numPartitionLockContended = new AtomicLong(0);
+
   private final boolean metricsEnabled;
   private final MutableRatesWithAggregation detailedHoldTimeMetrics;
   private final Timer timer;
@@ -159,6 +185,28 @@ public Long initialValue() {
     FSNamesystem.LOG.info("Detailed lock hold time metrics enabled: " +
         this.metricsEnabled);
     this.detailedHoldTimeMetrics = detailedHoldTimeMetrics;
+
+    boolean partitioned = conf.getBoolean(
+        DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY,
+        DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_DEFAULT);
+    if (partitioned) {
+      int numPartitions = conf.getInt(
+          DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY,
+          DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_DEFAULT);
+      if (numPartitions <= 0) {
+        throw new IllegalArgumentException(
+            DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY + " = " + numPartitions
+            + " must be positive");
+      }
+      this.partitionLocks = new ReentrantLock[numPartitions];
+      for (int i = 0; i < numPartitions; i++) {
+        partitionLocks[i] = new ReentrantLock(fair);
+      }
+      FSNamesystem.LOG.info("setTimes partition locks enabled with {} locks",
+          numPartitions);
+    } else {
+      this.partitionLocks = null;
+    }
   }
 
   public void readLock() {
@@ -347,6 +395,107 @@ private void writeUnlock(String opName, boolean suppressWriteLockReport,
     }
   }
 
+  /**
+   * @return true if partitioned locking is enabled, i.e. callers may use
+   * {@link #partitionLock(long...)} under the shared lock.
+   */
+  public boolean isPartitionedLockEnabled() {
+    return partitionLocks != null;
+  }
+
+  /**
+   * Acquire the partition locks for the given keys (normally directory inode
+   * ids). The caller must already hold the shared lock and must not hold any
+   * partition lock. Partitions are always acquired in ascending index order
+   * so that concurrent multi-partition holders cannot deadlock.
+   *
+   * @param keys the partition keys
+   */
+  public void partitionLock(long... keys) {
+    Preconditions.checkState(partitionLocks != null,
+        "Partitioned locking is not enabled");
+    Preconditions.checkState(coarseLock.getReadHoldCount() > 0,
+        "Partition locks must be taken under the shared lock");
+    Preconditions.checkState(heldPartitions.get() == null,
+        "Partition locks are already held by this thread");
+    int[] indexes = getPartitionIndexes(keys);
+    long startNanos = timer.monotonicNowNanos();
+    for (int i = 0; i < indexes.length; i++) {
+      ReentrantLock lock = partitionLocks[indexes[i]];
+      if (!lock.tryLock()) {
+        numPartitionLockContended.incrementAndGet();
+        lock.lock();
+      }
+    }
+    heldPartitions.set(indexes);
+    updateProcessingDetails(Timing.LOCKWAIT,
+        timer.monotonicNowNanos() - startNanos);
+  }
+
+  /**
+   * Release all partition locks held by the current thread. The shared lock
+   * is left untouched.
+   */
+  public void partitionUnlock() {
+    int[] indexes = heldPartitions.get();
+    Preconditions.checkState(indexes != null,
+        "No partition locks are held by this thread");
+    heldPartitions.remove();
+    for (int i = indexes.length - 1; i >= 0; i--) {
+      partitionLocks[indexes[i]].unlock();
+    }
+  }
+
+  /**
+   * @return true if the current thread holds partition locks.
+   */
+  public boolean hasPartitionLock() {
+    return heldPartitions.get() != null;
+  }
+
+  /**
+   * @return true if the current thread holds the partition lock for the
+   * given key.
+   */
+  public boolean hasPartitionLock(long key) {
+    int[] indexes = heldPartitions.get();
+    return indexes != null &&
+        Arrays.binarySearch(indexes, getPartitionIndex(key)) >= 0;
+  }
+
+  /**
+   * Returns the number of times a partition lock was contended.
+   *
+   * @return long - Number of contended partition lock acquisitions
+   */
+  public long getNumOfPartitionLockContended() {
+    return numPartitionLockContended.get();
+  }
+
+  @VisibleForTesting
+  int getPartitionIndex(long key) {
+    // Spread the inode ids, which are allocated sequentially, over the
+    // partitions.
+    long h = key * 0x9E3779B97F4A7C15L;
+    int spread = (int) (h ^ (h >>> 32)) & Integer.MAX_VALUE;
+    return spread % partitionLocks.length;
+  }
+
+  private int[] getPartitionIndexes(long[] keys) {
+    int[] indexes = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      indexes[i] = getPartitionIndex(keys[i]);
+    }
+    Arrays.sort(indexes);
+    int n = 0;
+    for (int i = 0; i < indexes.length; i++) {
+      if (n == 0 || indexes[n - 1] != indexes[i]) {
+        indexes[n++] = indexes[i];
+      }
+    }
+    return n == indexes.length ? indexes : Arrays.copyOf(indexes, n);
+  }
+
   public int getReadHoldCount() {
     return coarseLock.getReadHoldCount();
   }
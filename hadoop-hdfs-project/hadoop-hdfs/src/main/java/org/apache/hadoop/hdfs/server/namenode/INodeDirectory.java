@@ -40,6 +40,7 @@
 import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectoryWithSnapshotFeature.DirectoryDiffList;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.SnapshotManager;
+import org.apache.hadoop.hdfs.util.ChunkedList;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
 
 import org.apache.hadoop.thirdparty.com.google.common.annotations.VisibleForTesting;
@@ -71,6 +72,16 @@ public static INodeDirectory valueOf(INode inode, Object path
   // Thus allocate the corresponding ArrayLists with a small initial capacity.
   public static final int DEFAULT_FILES_PER_DIRECTORY = 2;
 
+  /**
+   * Directories with more children than this keep them in a
+   * {@link ChunkedList}, so that adding or removing a child does not shift
+   * the whole array while the namesystem write lock is held.
+   */
+  @VisibleForTesting
+  static final int CHUNKED_CHILDREN_THRESHOLD = 32 * 1024;
+  /** The maximum number of children in one chunk of a {@link ChunkedList}. */
+  static final int CHILDREN_CHUNK_SIZE = 4 * 1024;
+
   static final byte[] ROOT_NAME = DFSUtil.string2Bytes("");
 
   private List<INode> children = null;
@@ -546,6 +557,10 @@ public boolean removeChild(final INode child) {
 
     final INode removed = children.remove(i);
     Preconditions.checkState(removed.equals(child));
+    if (children instanceof ChunkedList &&
+        children.size() < CHUNKED_CHILDREN_THRESHOLD / 2) {
+      children = new ArrayList<>(children);
+    }
     return true;
   }
 
@@ -617,6 +632,10 @@ private void addChild(final INode node, final int insertionPoint) {
     }
     node.setParent(this);
     children.add(-insertionPoint - 1, node);
+    if (children.size() > CHUNKED_CHILDREN_THRESHOLD &&
+        !(children instanceof ChunkedList)) {
+      children = new ChunkedList<>(children, CHILDREN_CHUNK_SIZE);
+    }
 
     if (node.getGroupName() == null) {
       node.setGroup(getGroupName());
@@ -686,6 +705,10 @@ public QuotaCounts computeQuotaUsage4CurrentDirectory(
   @Override
   public ContentSummaryComputationContext computeContentSummary(int snapshotId,
       ContentSummaryComputationContext summary) throws AccessControlException {
+    if (snapshotId == Snapshot.CURRENT_STATE_ID
+        && summary.addCachedCounts(this)) {
+      return summary;
+    }
     final DirectoryWithSnapshotFeature sf = getDirectoryWithSnapshotFeature();
     if (sf != null && snapshotId == Snapshot.CURRENT_STATE_ID) {
       final ContentCounts counts = new ContentCounts.Builder().build();
@@ -712,31 +735,33 @@ protected ContentSummaryComputationContext computeDirectoryContentSummary(
     // throws exception if failing the permission check
     summary.checkPermission(this, snapshotId, FsAction.READ_EXECUTE);
     ReadOnlyList<INode> childrenList = getChildrenList(snapshotId);
-    // Explicit traversing is done to enable repositioning after relinquishing
-    // and reacquiring locks.
-    for (int i = 0;  i < childrenList.size(); i++) {
-      INode child = childrenList.get(i);
-      byte[] childName = child.getLocalNameBytes();
-
-      long lastYieldCount = summary.getYieldCount();
-      child.computeContentSummary(snapshotId, summary);
-
-      // Check whether the computation was paused in the subtree.
-      // The counts may be off, but traversing the rest of children
-      // should be made safe.
-      if (lastYieldCount == summary.getYieldCount()) {
-        continue;
-      }
-      // The locks were released and reacquired. Check parent first.
-      if (!isRoot() && getParent() == null) {
-        // Stop further counting and return whatever we have so far.
-        break;
+    if (!summary.computeInParallel(childrenList, snapshotId)) {
+      // Explicit traversing is done to enable repositioning after
+      // relinquishing and reacquiring locks.
+      for (int i = 0;  i < childrenList.size(); i++) {
+        INode child = childrenList.get(i);
+        byte[] childName = child.getLocalNameBytes();
+
+        long lastYieldCount = summary.getYieldCount();
+        child.computeContentSummary(snapshotId, summary);
+
+        // Check whether the computation was paused in the subtree.
+        // The counts may be off, but traversing the rest of children
+        // should be made safe.
+        if (lastYieldCount == summary.getYieldCount()) {
+          continue;
+        }
+        // The locks were released and reacquired. Check parent first.
+        if (!isRoot() && getParent() == null) {
+          // Stop further counting and return whatever we have so far.
+          break;
+        }
+        // Obtain the children list again since it may have been modified.
+        childrenList = getChildrenList(snapshotId);
+        // Reposition in case the children list is changed. Decrement by 1
+        // since it will be incremented when loops.
+        i = nextChild(childrenList, childName) - 1;
       }
-      // Obtain the children list again since it may have been modified.
-      childrenList = getChildrenList(snapshotId);
-      // Reposition in case the children list is changed. Decrement by 1
-      // since it will be incremented when loops.
-      i = nextChild(childrenList, childName) - 1;
     }
 
     // Increment the directory count for this directory.
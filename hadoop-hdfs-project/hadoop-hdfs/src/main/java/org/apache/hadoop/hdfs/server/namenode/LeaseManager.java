@@ -23,14 +23,15 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -87,16 +88,30 @@ public class LeaseManager {
   private long hardLimit;
   static final int INODE_FILTER_WORKER_COUNT_MAX = 4;
   static final int INODE_FILTER_WORKER_TASK_MIN = 512;
+  /** Width of a slot of the lease expiry index. */
+  static final long EXPIRY_INDEX_SLOT_MS = 1000;
   private long lastHolderUpdateTime;
   private String internalLeaseHolder;
 
   //
   // Used for handling lock-leases
   // Mapping: leaseHolder -> Lease
+  // Updated under the LeaseManager lock, but read without it so that
+  // clients renewing their leases do not contend with each other.
   //
-  private final HashMap<String, Lease> leases = new HashMap<>();
+  private final ConcurrentHashMap<String, Lease> leases =
+      new ConcurrentHashMap<>();
   // INodeID -> Lease
   private final TreeMap<Long, Lease> leasesById = new TreeMap<>();
+  //
+  // Expiry index: slot -> leases indexed at a time within that slot.
+  // A renewal only updates the lease; the monitor moves a lease to a later
+  // slot when it reaches the lease and finds it renewed, so each sweep only
+  // visits the slots which may hold expired leases.
+  //
+  private final TreeMap<Long, Set<Lease>> expiryIndex = new TreeMap<>();
+  // set when the last checkLeases stopped before releasing all leases
+  private boolean releaseTruncated;
 
   private Daemon lmthread;
   private volatile boolean shouldRunMonitor;
@@ -348,6 +363,7 @@ synchronized Lease addLease(String holder, long inodeId) {
     if (lease == null) {
       lease = new Lease(holder);
       leases.put(holder, lease);
+      addToExpiryIndex(lease);
     } else {
       renewLease(lease);
     }
@@ -376,6 +392,20 @@ private synchronized void removeLease(Lease lease, long inodeId) {
       if (leases.remove(lease.holder) == null) {
         LOG.error("{} not found", lease);
       }
+      removeFromExpiryIndex(lease);
+    }
+  }
+
+  private void addToExpiryIndex(Lease lease) {
+    lease.expirySlot = lease.lastUpdate / EXPIRY_INDEX_SLOT_MS;
+    expiryIndex.computeIfAbsent(lease.expirySlot, k -> new HashSet<>())
+        .add(lease);
+  }
+
+  private void removeFromExpiryIndex(Lease lease) {
+    Set<Lease> slot = expiryIndex.get(lease.expirySlot);
+    if (slot != null && slot.remove(lease) && slot.isEmpty()) {
+      expiryIndex.remove(lease.expirySlot);
     }
   }
 
@@ -395,6 +425,7 @@ synchronized void removeLease(String holder, INodeFile src) {
   synchronized void removeAllLeases() {
     leasesById.clear();
     leases.clear();
+    expiryIndex.clear();
   }
 
   /**
@@ -410,13 +441,14 @@ synchronized Lease reassignLease(Lease lease, INodeFile src,
   }
 
   /**
-   * Renew the lease(s) held by the given client
+   * Renew the lease(s) held by the given client. This does not take the
+   * LeaseManager lock.
    */
-  synchronized void renewLease(String holder) {
+  void renewLease(String holder) {
     renewLease(getLease(holder));
   }
 
-  synchronized void renewLease(Lease lease) {
+  void renewLease(Lease lease) {
     if (lease != null) {
       lease.renew();
     }
@@ -440,7 +472,9 @@ synchronized void renewAllLeases() {
    *************************************************************/
   class Lease {
     private final String holder;
-    private long lastUpdate;
+    private volatile long lastUpdate;
+    // the slot of the expiry index holding this lease
+    private long expirySlot;
     private final HashSet<Long> files = new HashSet<>();
 
     /** Only LeaseManager object can create a lease */
@@ -504,14 +538,37 @@ public void setLeasePeriod(long softLimit, long hardLimit) {
     this.hardLimit = hardLimit; 
   }
 
+  /**
+   * Get the leases which have expired hard limit, oldest first. Only the
+   * slots of the expiry index older than the hard limit are visited; the
+   * leases in them which were renewed since are moved to the slot of their
+   * last renewal.
+   */
   private synchronized Collection<Lease> getExpiredCandidateLeases() {
     final long now = Time.monotonicNow();
-    Collection<Lease> expired = new HashSet<>();
-    for (Lease lease : leases.values()) {
-      if (lease.expiredHardLimit(now)) {
-        expired.add(lease);
+    final List<Lease> expired = new ArrayList<>();
+    final List<Lease> renewed = new ArrayList<>();
+    Iterator<Map.Entry<Long, Set<Lease>>> slots =
+        expiryIndex.headMap((now - hardLimit) / EXPIRY_INDEX_SLOT_MS, true)
+            .entrySet().iterator();
+    while (slots.hasNext()) {
+      Set<Lease> slot = slots.next().getValue();
+      for (Iterator<Lease> it = slot.iterator(); it.hasNext();) {
+        Lease lease = it.next();
+        if (lease.expiredHardLimit(now)) {
+          expired.add(lease);
+        } else {
+          it.remove();
+          renewed.add(lease);
+        }
+      }
+      if (slot.isEmpty()) {
+        slots.remove();
       }
     }
+    for (Lease lease : renewed) {
+      addToExpiryIndex(lease);
+    }
     return expired;
   }
   
@@ -525,11 +582,17 @@ class Monitor implements Runnable {
     /** Check leases periodically. */
     @Override
     public void run() {
+      boolean releaseNextBatch = false;
       for(; shouldRunMonitor && fsnamesystem.isRunning(); ) {
         boolean needSync = false;
         try {
-          // sleep now to avoid infinite loop if an exception was thrown.
-          Thread.sleep(fsnamesystem.getLeaseRecheckIntervalMs());
+          // sleep now to avoid infinite loop if an exception was thrown,
+          // unless the last check had to stop before releasing all the
+          // expired leases.
+          if (!releaseNextBatch) {
+            Thread.sleep(fsnamesystem.getLeaseRecheckIntervalMs());
+          }
+          releaseNextBatch = false;
 
           // pre-filter the leases w/o the fsn lock.
           Collection<Lease> candidates = getExpiredCandidateLeases();
@@ -541,6 +604,7 @@ public void run() {
           try {
             if (!fsnamesystem.isInSafeMode()) {
               needSync = checkLeases(candidates);
+              releaseNextBatch = isReleaseTruncated();
             }
           } finally {
             fsnamesystem.writeUnlock("leaseManager");
@@ -571,8 +635,10 @@ private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
     assert fsnamesystem.hasWriteLock();
 
     long start = monotonicNow();
+    releaseTruncated = false;
     for (Lease leaseToCheck : leasesToCheck) {
       if (isMaxLockHoldToReleaseLease(start)) {
+        releaseTruncated = true;
         break;
       }
       if (!leaseToCheck.expiredHardLimit(Time.monotonicNow())) {
@@ -632,6 +698,7 @@ private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
         if (isMaxLockHoldToReleaseLease(start)) {
           LOG.debug("Breaking out of checkLeases after {} ms.",
               fsnamesystem.getMaxLockHoldToReleaseLeaseMs());
+          releaseTruncated = true;
           break;
         }
       }
@@ -644,6 +711,15 @@ private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
   }
 
 
+  /**
+   * @return true if the last check of the leases stopped on the max lock
+   * hold before releasing all the expired leases.
+   */
+  @VisibleForTesting
+  synchronized boolean isReleaseTruncated() {
+    return releaseTruncated;
+  }
+
   /** @return true if max lock hold is reached */
   private boolean isMaxLockHoldToReleaseLease(long start) {
     return monotonicNow() - start >
@@ -1212,6 +1212,16 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
         namesystem.getFileInfo(src, true, true, needBlockToken);
   }
 
+  @Override // ClientProtocol
+  public HdfsFileStatus[] getBatchedFileInfo(String[] srcs,
+      boolean needLocation) throws IOException {
+    checkNNStartup();
+    HdfsFileStatus[] stats = namesystem.getBatchedFileInfo(
+        getClientMachine(), srcs, needLocation);
+    metrics.incrFileInfoOps(stats.length);
+    return stats;
+  }
+
   @Override // ClientProtocol
   public boolean isFileClosed(String src) throws IOException{
     checkNNStartup();
@@ -1611,7 +1621,7 @@ public DatanodeCommand blockReport(final DatanodeRegistration nodeReg,
           final int index = r;
           noStaleStorages = bm.runBlockOp(() ->
             bm.processReport(nodeReg, reports[index].getStorage(),
-                blocks, context));
+                blocks, context), !bm.isBlockReportBatchedApplyEnabled());
         }
       }
     } catch (UnregisteredNodeException une) {
@@ -87,6 +87,11 @@ public class NameNodeMetrics {
   MutableGaugeInt blockOpsQueued;
   @Metric("Number of blockReports and blockReceivedAndDeleted batch processed")
   MutableCounterLong blockOpsBatched;
+  @Metric("Number of block report changes found by the diff of full block "
+      + "reports and waiting to be applied")
+  MutableGaugeInt blockReportChangesPending;
+  @Metric("Number of audit events dropped by the batching audit logger")
+  MutableCounterLong auditEventsDropped;
 
   @Metric("Number of file system operations")
   public long totalFileOps(){
@@ -124,6 +129,10 @@ public long totalFileOps(){
   @Metric("Number of blockReports from individual storages")
   MutableRate storageBlockReport;
   final MutableQuantiles[] storageBlockReportQuantiles;
+  @Metric("Time to compare block reports under the read lock")
+  MutableRate blockReportDiff;
+  @Metric("Write lock hold time of batches applying block report changes")
+  MutableRate blockReportApplyBatch;
   @Metric("Cache report") MutableRate cacheReport;
   final MutableQuantiles[] cacheReportQuantiles;
   @Metric("Generate EDEK time") private MutableRate generateEDEKTime;
@@ -291,6 +300,10 @@ public void incrFileInfoOps() {
     fileInfoOps.incr();
   }
 
+  public void incrFileInfoOps(long delta) {
+    fileInfoOps.incr(delta);
+  }
+
   public void incrCreateSymlinkOps() {
     createSymlinkOps.incr();
   }
@@ -343,6 +356,22 @@ public void addBlockOpsBatched(int count) {
     blockOpsBatched.incr(count);
   }
 
+  public void addBlockReportChangesPending(int delta) {
+    blockReportChangesPending.incr(delta);
+  }
+
+  public void incrAuditEventsDropped(long count) {
+    auditEventsDropped.incr(count);
+  }
+
+  public void addBlockReportDiff(long latency) {
+    blockReportDiff.add(latency);
+  }
+
+  public void addBlockReportApplyBatch(long latency) {
+    blockReportApplyBatch.add(latency);
+  }
+
   public void addTransaction(long latency) {
     transactions.add(latency);
   }
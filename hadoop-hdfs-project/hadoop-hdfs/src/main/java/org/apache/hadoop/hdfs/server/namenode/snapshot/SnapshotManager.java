@@ -258,6 +258,8 @@ public void setSnapshottable(final String path, boolean checkNestedSnapshottable
       d.addSnapshottableFeature();
     }
     addSnapshottable(d);
+    // The snapshottable directory count of d and its ancestors changed.
+    fsdir.invalidateContentSummary(d);
   }
   
   /** Add the given snapshottable directory to {@link #snapshottables}. */
@@ -304,6 +306,7 @@ public void resetSnapshottable(final String path) throws IOException {
       d.removeSnapshottableFeature();
     }
     removeSnapshottable(d);
+    fsdir.invalidateContentSummary(d);
   }
 
   /**
@@ -466,6 +469,8 @@ public String createSnapshot(final LeaseManager leaseManager,
     //create success, update id
     snapshotCounter++;
     numSnapshots.getAndIncrement();
+    // The snapshot count of srcRoot and its ancestors changed.
+    fsdir.invalidateContentSummary(srcRoot);
     return Snapshot.getSnapshotPath(snapshotRoot, snapshotName);
   }
 
@@ -544,6 +549,8 @@ public void deleteSnapshot(final INodesInPath iip, final String snapshotName,
 
     srcRoot.removeSnapshot(reclaimContext, snapshotName, now, this);
     numSnapshots.getAndDecrement();
+    // The snapshot diffs of the whole subtree may have changed.
+    fsdir.clearContentSummaryCache();
   }
 
   /**
@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * A {@link java.util.List} which stores its elements in a sequence of
+ * bounded chunks. Inserting or removing an element at an arbitrary index
+ * only shifts the elements of one chunk and updates the chunk offsets, i.e.
+ * it costs O(chunk size + number of chunks) instead of the O(n) of an
+ * {@link ArrayList}. Random access costs a binary search over the chunk
+ * offsets.
+ *
+ * This is intended for very large lists which are kept sorted by their
+ * owner and updated in the middle, e.g. the children of a directory with
+ * millions of entries. This class does not support null elements and is not
+ * thread safe.
+ */
+@InterfaceAudience.Private
+public class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+  private final int maxChunkSize;
+  private final ArrayList<ArrayList<E>> chunks = new ArrayList<>();
+  /** The index of the first element of each chunk. */
+  private int[] offsets = new int[16];
+  private int size = 0;
+
+  /**
+   * @param maxChunkSize the maximum number of elements in a chunk; a chunk
+   *                     growing above this is split in two.
+   */
+  public ChunkedList(int maxChunkSize) {
+    Preconditions.checkArgument(maxChunkSize >= 2,
+        "maxChunkSize = %s < 2", maxChunkSize);
+    this.maxChunkSize = maxChunkSize;
+  }
+
+  /**
+   * Create a list with the elements of the given collection, in its
+   * iteration order.
+   */
+  public ChunkedList(Collection<? extends E> c, int maxChunkSize) {
+    this(maxChunkSize);
+    for (E e : c) {
+      add(e);
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public E get(int index) {
+    checkIndex(index, size);
+    final int c = chunkOf(index);
+    return chunks.get(c).get(index - offsets[c]);
+  }
+
+  @Override
+  public E set(int index, E element) {
+    Preconditions.checkNotNull(element);
+    checkIndex(index, size);
+    final int c = chunkOf(index);
+    return chunks.get(c).set(index - offsets[c], element);
+  }
+
+  @Override
+  public void add(int index, E element) {
+    Preconditions.checkNotNull(element);
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("index = " + index + ", size = "
+          + size);
+    }
+    modCount++;
+    if (index == size) {
+      // Appending does not split chunks, so that a list built in order has
+      // full chunks.
+      ArrayList<E> last =
+          chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+      if (last == null || last.size() >= maxChunkSize) {
+        last = new ArrayList<>();
+        chunks.add(last);
+        ensureOffsetsCapacity();
+        offsets[chunks.size() - 1] = size;
+      }
+      last.add(element);
+      size++;
+      return;
+    }
+
+    final int c = chunkOf(index);
+    final ArrayList<E> chunk = chunks.get(c);
+    chunk.add(index - offsets[c], element);
+    size++;
+    if (chunk.size() > maxChunkSize) {
+      // Split the chunk into two halves.
+      final int half = chunk.size() / 2;
+      final ArrayList<E> tail = new ArrayList<>(chunk.subList(half,
+          chunk.size()));
+      chunk.subList(half, chunk.size()).clear();
+      chunk.trimToSize();
+      chunks.add(c + 1, tail);
+      ensureOffsetsCapacity();
+    }
+    updateOffsets(c + 1);
+  }
+
+  @Override
+  public E remove(int index) {
+    checkIndex(index, size);
+    modCount++;
+    int c = chunkOf(index);
+    final ArrayList<E> chunk = chunks.get(c);
+    final E removed = chunk.remove(index - offsets[c]);
+    size--;
+    if (chunk.isEmpty()) {
+      chunks.remove(c);
+    } else if (c + 1 < chunks.size() &&
+        chunk.size() + chunks.get(c + 1).size() <= maxChunkSize / 2) {
+      // Merge small neighbouring chunks so that mass removals do not leave
+      // many tiny chunks behind.
+      chunk.addAll(chunks.remove(c + 1));
+      c++;
+    } else {
+      c++;
+    }
+    updateOffsets(c);
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    chunks.clear();
+    offsets = new int[16];
+    size = 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    // Iterate chunk by chunk instead of a binary search per element.
+    return new Iterator<E>() {
+      private int chunk = 0;
+      private int pos = 0;
+      private int lastRet = -1;
+      private int expectedModCount = modCount;
+
+      @Override
+      public boolean hasNext() {
+        return nextIndex() < size;
+      }
+
+      private int nextIndex() {
+        return chunk < chunks.size() ? offsets[chunk] + pos : size;
+      }
+
+      @Override
+      public E next() {
+        checkForComodification();
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        while (pos >= chunks.get(chunk).size()) {
+          chunk++;
+          pos = 0;
+        }
+        lastRet = offsets[chunk] + pos;
+        return chunks.get(chunk).get(pos++);
+      }
+
+      @Override
+      public void remove() {
+        Preconditions.checkState(lastRet >= 0);
+        checkForComodification();
+        ChunkedList.this.remove(lastRet);
+        // Chunks may have been merged or removed; reposition by index.
+        final int next = lastRet;
+        lastRet = -1;
+        expectedModCount = modCount;
+        if (next < size) {
+          chunk = chunkOf(next);
+          pos = next - offsets[chunk];
+        } else {
+          chunk = chunks.size();
+          pos = 0;
+        }
+      }
+
+      private void checkForComodification() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+      }
+    };
+  }
+
+  /** @return the number of chunks, for testing. */
+  int getNumChunks() {
+    return chunks.size();
+  }
+
+  /** @return the index of the chunk containing the given element index. */
+  private int chunkOf(int index) {
+    int lower = 0;
+    int upper = chunks.size() - 1;
+    while (lower < upper) {
+      final int mid = (lower + upper + 1) >>> 1;
+      if (offsets[mid] <= index) {
+        lower = mid;
+      } else {
+        upper = mid - 1;
+      }
+    }
+    return lower;
+  }
+
+  private void updateOffsets(int from) {
+    for (int i = Math.max(from, 1); i < chunks.size(); i++) {
+      offsets[i] = offsets[i - 1] + chunks.get(i - 1).size();
+    }
+    if (!chunks.isEmpty()) {
+      offsets[0] = 0;
+    }
+  }
+
+  private void ensureOffsetsCapacity() {
+    if (chunks.size() > offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(chunks.size(),
+          offsets.length * 2));
+    }
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index = " + index + ", size = "
+          + size);
+    }
+  }
+}
@@ -22,6 +22,8 @@
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_SELECTOR_GRACE_MS_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_DATANODE_SOCKET_WRITE_TIMEOUT_KEY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -121,6 +123,46 @@ public void testDatanodeRespectsKeepAliveTimeout() throws Exception {
     assertEquals(-1, peer.getInputStream().read());
   }
 
+  /**
+   * Check that a cached connection waiting for its next op does not hold an
+   * xceiver when the idle connections are watched by a selector.
+   */
+  @Test(timeout=30000)
+  public void testIdleConnectionReleasesXceiver() throws Exception {
+    cluster.shutdown();
+    conf.setBoolean(DFS_DATANODE_SOCKET_REUSE_SELECTOR_ENABLED_KEY, true);
+    conf.setInt(DFS_DATANODE_SOCKET_REUSE_SELECTOR_GRACE_MS_KEY, 100);
+    cluster = new MiniDFSCluster.Builder(conf)
+      .numDataNodes(1).build();
+    dn = cluster.getDataNodes().get(0);
+
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setLong(DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY, 60000L);
+    clientConf.set(DFS_CLIENT_CONTEXT, "testIdleConnectionReleasesXceiver");
+    DistributedFileSystem fs =
+        (DistributedFileSystem)FileSystem.get(cluster.getURI(),
+            clientConf);
+    PeerCache peerCache = ClientContext.getFromConf(clientConf).getPeerCache();
+
+    DFSTestUtil.createFile(fs, TEST_FILE, 1L, (short)1, 0L);
+
+    // The connection cached by the reader is parked on the datanode.
+    DFSTestUtil.readFile(fs, TEST_FILE);
+    assertEquals(1, peerCache.size());
+    GenericTestUtils.waitFor(() -> dn.getXceiverCount() == 0, 10, 5000);
+
+    // The next op on the connection resumes it.
+    DFSTestUtil.readFile(fs, TEST_FILE);
+    assertEquals(1, peerCache.size());
+    GenericTestUtils.waitFor(() -> dn.getXceiverCount() == 0, 10, 5000);
+
+    // The parked connection is still closed after the keepalive timeout.
+    Thread.sleep(KEEPALIVE_TIMEOUT + 500);
+    Peer peer = peerCache.get(dn.getDatanodeId(), false);
+    assertNotNull(peer);
+    assertEquals(-1, peer.getInputStream().read());
+  }
+
   /**
    * Test that the client respects its keepalive timeout.
    */
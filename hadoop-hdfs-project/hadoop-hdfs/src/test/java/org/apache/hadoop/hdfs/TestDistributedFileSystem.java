@@ -102,6 +102,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.RollingUpgradeAction;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.StoragePolicySatisfierMode;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator;
@@ -1578,6 +1579,54 @@ public void testListStatusOfSnapshotDirs() throws IOException {
     }
   }
 
+  @Test
+  public void testGetBatchedFileStatus() throws Exception {
+    Configuration conf = getTestConfiguration();
+    // split the paths into several calls
+    conf.setInt(HdfsClientConfigKeys.DFS_BATCHED_FILEINFO_LIMIT_KEY, 2);
+    conf.setBoolean(DFSConfigKeys.DFS_BLOCK_ACCESS_TOKEN_ENABLE_KEY, true);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).build();
+    try {
+      DistributedFileSystem dfs = cluster.getFileSystem();
+      Path dir = new Path("/testGetBatchedFileStatus");
+      Path file1 = new Path(dir, "file1");
+      Path file2 = new Path(dir, "file2");
+      DFSTestUtil.createFile(dfs, file1, 1024, (short) 1, 0L);
+      DFSTestUtil.createFile(dfs, file2, 2048, (short) 1, 0L);
+      List<Path> paths = Arrays.asList(
+          file1, new Path(dir, "missing"), dir, file2);
+
+      FileStatus[] stats = dfs.getFileStatus(paths);
+      assertEquals(paths.size(), stats.length);
+      assertEquals(dfs.getFileStatus(file1), stats[0]);
+      assertEquals(dfs.makeQualified(file1), stats[0].getPath());
+      assertNull(stats[1]);
+      assertTrue(stats[2].isDirectory());
+      assertEquals(2048, stats[3].getLen());
+
+      LocatedFileStatus[] located = dfs.getLocatedFileStatus(paths);
+      assertEquals(paths.size(), located.length);
+      assertEquals(dfs.makeQualified(file2), located[3].getPath());
+      assertEquals(1, located[0].getBlockLocations().length);
+      assertNull(located[1]);
+      assertEquals(0, located[2].getBlockLocations().length);
+
+      // the located blocks carry block tokens, as from getBlockLocations
+      HdfsFileStatus[] batched = dfs.getClient().getNamenode()
+          .getBatchedFileInfo(new String[] {file1.toString()}, true);
+      LocatedBlock block =
+          ((HdfsLocatedFileStatus) batched[0]).getLocatedBlocks().get(0);
+      assertTrue(block.getBlockToken().getIdentifier().length > 0);
+
+      // the NameNode rejects batches over the limit
+      LambdaTestUtils.intercept(RemoteException.class, "Too many source paths",
+          () -> dfs.getClient().getNamenode().getBatchedFileInfo(
+              new String[] {"/a", "/b", "/c"}, false));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test(timeout=10000)
   public void testDFSClientPeerReadTimeout() throws IOException {
     final int timeout = 1000;
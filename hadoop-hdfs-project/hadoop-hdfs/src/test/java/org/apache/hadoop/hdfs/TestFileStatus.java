@@ -24,6 +24,9 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.hadoop.conf.Configuration;
@@ -34,6 +37,7 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.contract.ContractTestUtils;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.ipc.RemoteException;
@@ -344,4 +348,53 @@ public void testGetFileStatusOnDir() throws Exception {
     }
     assertEquals(2, count);
   }
+
+  /** Test listings with prefetched pages and parallel listings. */
+  @Test
+  public void testListStatusPrefetchAndBatch() throws IOException {
+    Path dir1 = new Path("/test/prefetch/dir1");
+    Path dir2 = new Path("/test/prefetch/dir2");
+    for (int i = 0; i < 9; i++) {
+      assertTrue(fs.mkdirs(new Path(dir1, "d" + i)));
+    }
+    assertTrue(fs.mkdirs(new Path(dir2, "d0")));
+
+    Configuration prefetchConf = new Configuration(conf);
+    prefetchConf.setInt(HdfsClientConfigKeys.Listing.PREFETCH_DEPTH_KEY, 2);
+    try (DistributedFileSystem prefetchFs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), prefetchConf)) {
+      // the listing limit is 2, so the 9 entries span 5 pages
+      FileStatus[] expected = fs.listStatus(dir1);
+      assertEquals(9, expected.length);
+      RemoteIterator<FileStatus> itor = prefetchFs.listStatusIterator(dir1);
+      for (FileStatus status : expected) {
+        assertTrue(itor.hasNext());
+        assertEquals(status.getPath(), itor.next().getPath());
+      }
+      assertFalse(itor.hasNext());
+
+      itor = prefetchFs.listStatusIterator(dir2);
+      assertEquals("d0", itor.next().getPath().getName());
+      assertFalse(itor.hasNext());
+
+      Map<Path, FileStatus[]> listings =
+          prefetchFs.listStatusBatch(Arrays.asList(dir2, dir1));
+      assertEquals(Arrays.asList(dir2, dir1),
+          new ArrayList<>(listings.keySet()));
+      assertEquals(1, listings.get(dir2).length);
+      assertEquals(9, listings.get(dir1).length);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i].getPath(), listings.get(dir1)[i].getPath());
+      }
+
+      try {
+        prefetchFs.listStatusBatch(
+            Arrays.asList(dir1, new Path("/test/prefetch/missing")));
+        fail("FileNotFoundException expected");
+      } catch (FileNotFoundException fnfe) {
+      }
+    } finally {
+      fs.delete(dir1.getParent(), true);
+    }
+  }
 }
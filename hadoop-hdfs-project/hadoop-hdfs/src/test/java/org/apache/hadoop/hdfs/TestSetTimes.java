@@ -347,6 +347,58 @@ public void testAtimeUpdate() throws Exception {
     }
   }
 
+  /**
+   * Test setTimes with partitioned locking, both outside and inside of a
+   * snapshottable directory, and that the times survive a restart.
+   */
+  @Test
+  public void testTimesWithPartitionedLock() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY, true);
+    MiniDFSCluster cluster = null;
+
+    try {
+      cluster = new MiniDFSCluster.Builder(conf)
+          .numDataNodes(0)
+          .build();
+      DistributedFileSystem fs = cluster.getFileSystem();
+
+      Path p = new Path("/partitioned/file");
+      DFSTestUtil.createFile(fs, p, 0, (short)1, 0L);
+      fs.setTimes(p, 1000L, 2000L);
+      assertEquals(1000L, fs.getFileStatus(p).getModificationTime());
+      assertEquals(2000L, fs.getFileStatus(p).getAccessTime());
+
+      // Paths covered by a snapshot fall back to the exclusive lock.
+      Path snapshotRoot = new Path("/snapshotted");
+      Path q = new Path(snapshotRoot, "file");
+      DFSTestUtil.createFile(fs, q, 0, (short)1, 0L);
+      fs.allowSnapshot(snapshotRoot);
+      fs.createSnapshot(snapshotRoot, "s0");
+      fs.setTimes(q, 3000L, 4000L);
+      assertEquals(3000L, fs.getFileStatus(q).getModificationTime());
+
+      try {
+        fs.setTimes(new Path("/partitioned/nonexistent"), 1L, 1L);
+        fail("setTimes of a nonexistent file should fail");
+      } catch (FileNotFoundException e) {
+        // expected
+      }
+
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      assertEquals(1000L, fs.getFileStatus(p).getModificationTime());
+      assertEquals(2000L, fs.getFileStatus(p).getAccessTime());
+      assertEquals(3000L, fs.getFileStatus(q).getModificationTime());
+      assertEquals(4000L, fs.getFileStatus(q).getAccessTime());
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     new TestSetTimes().testTimes();
   }
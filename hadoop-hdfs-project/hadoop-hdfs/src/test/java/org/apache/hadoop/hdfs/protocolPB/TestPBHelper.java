@@ -41,10 +41,12 @@
 import org.apache.hadoop.fs.permission.AclEntryType;
 import org.apache.hadoop.fs.permission.AclStatus;
 import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.FsServerDefaults;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.StripedFileTestUtil;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -54,8 +56,11 @@
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo.DatanodeInfoBuilder;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo.AdminStates;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockECReconstructionCommandProto;
 import org.apache.hadoop.hdfs.protocol.proto.DatanodeProtocolProtos.BlockRecoveryCommandProto;
@@ -612,6 +617,66 @@ public void testConvertLocatedBlockArray() {
     }
   }
 
+  @Test
+  public void testConvertLazyLocatedBlocks() {
+    List<LocatedBlock> lbl = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      LocatedBlock lb = createLocatedBlock();
+      lb.setStartOffset(i * 20);
+      lbl.add(lb);
+    }
+    LocatedBlocks lbs = new LocatedBlocks(60, false, lbl, null, true,
+        null, null);
+    LocatedBlocks lbs2 = PBHelperClient.convert(PBHelperClient.convert(lbs));
+    assertEquals(lbl.size(), lbs2.locatedBlockCount());
+    // the blocks are converted on access and then kept
+    LocatedBlock first = lbs2.get(0);
+    compare(lbl.get(0), first);
+    assertSame(first, lbs2.get(0));
+    assertEquals(1, lbs2.findBlock(20));
+
+    LocatedBlock inserted = createLocatedBlock();
+    inserted.setStartOffset(30);
+    LocatedBlock replaced = createLocatedBlock();
+    replaced.setStartOffset(40);
+    lbs2.insertRange(2, Arrays.asList(inserted, replaced));
+    assertEquals(4, lbs2.locatedBlockCount());
+    assertSame(first, lbs2.get(0));
+    compare(lbl.get(1), lbs2.get(1));
+    assertSame(inserted, lbs2.get(2));
+    assertSame(replaced, lbs2.get(3));
+  }
+
+  @Test
+  public void testConvertLazyDirectoryListing() {
+    HdfsFileStatus[] statuses = new HdfsFileStatus[3];
+    for (int i = 0; i < statuses.length; i++) {
+      statuses[i] = new HdfsFileStatus.Builder()
+          .length(i)
+          .perm(FsPermission.getDefault())
+          .path(DFSUtil.string2Bytes("file" + i))
+          .fileId(i + 1)
+          .build();
+    }
+    DirectoryListing listing = new DirectoryListing(statuses, 7);
+    DirectoryListing listing2 =
+        PBHelperClient.convert(PBHelperClient.convert(listing));
+    assertEquals(7, listing2.getRemainingEntries());
+    assertTrue(listing2.hasMore());
+    assertEquals(statuses.length, listing2.getPartialListingSize());
+    assertEquals("file2", DFSUtil.bytes2String(listing2.getLastName()));
+    for (int i = 0; i < statuses.length; i++) {
+      assertEquals(statuses[i].getFileId(),
+          listing2.getPartialListingEntry(i).getFileId());
+      assertEquals(statuses[i].getLocalName(),
+          listing2.getPartialListingEntry(i).getLocalName());
+    }
+    HdfsFileStatus[] statuses2 = listing2.getPartialListing();
+    assertEquals(statuses.length, statuses2.length);
+    assertSame(statuses2[1], listing2.getPartialListingEntry(1));
+    assertEquals("file2", DFSUtil.bytes2String(listing2.getLastName()));
+  }
+
   @Test
   public void testConvertDatanodeRegistration() {
     DatanodeID dnId = DFSTestUtil.getLocalDatanodeID();
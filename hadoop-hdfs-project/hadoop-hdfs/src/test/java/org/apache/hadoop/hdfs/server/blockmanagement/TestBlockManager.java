@@ -1465,6 +1465,76 @@ public void run() {
     }
   }
 
+  @Test(timeout = 60000)
+  public void testBatchedBlockReportApply() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_BATCHED_APPLY_ENABLED_KEY, true);
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME, 0,
+        TimeUnit.MILLISECONDS);
+    final MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      final FSNamesystem fsn = cluster.getNamesystem();
+      final BlockManager blockManager = fsn.getBlockManager();
+      final DataNode dn = cluster.getDataNodes().get(0);
+      final DatanodeDescriptor node = blockManager.getDatanodeManager()
+          .getDatanode(dn.getDatanodeId());
+      final FileSystem fs = cluster.getFileSystem();
+      final List<BlockInfo> blocks = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        final Path file = new Path("/testBatchedBlockReportApply" + i);
+        DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+        blocks.add(blockManager.getStoredBlock(
+            DFSTestUtil.getFirstBlock(fs, file).getLocalBlock()));
+      }
+      DataNodeTestUtils.triggerBlockReport(dn);
+
+      // Forget every other replica, the next full report has to add them.
+      fsn.writeLock();
+      try {
+        for (int i = 0; i < blocks.size(); i += 2) {
+          blockManager.removeStoredBlock(blocks.get(i), node);
+        }
+      } finally {
+        fsn.writeUnlock();
+      }
+      MetricsRecordBuilder rb = getMetrics("NameNodeActivity");
+      final long diffs =
+          MetricsAsserts.getLongCounter("BlockReportDiffNumOps", rb);
+      final long batches =
+          MetricsAsserts.getLongCounter("BlockReportApplyBatchNumOps", rb);
+      DataNodeTestUtils.triggerBlockReport(dn);
+      GenericTestUtils.waitFor(() -> {
+        for (BlockInfo b : blocks) {
+          if (blockManager.countNodes(b).liveReplicas() != 1) {
+            return false;
+          }
+        }
+        return true;
+      }, 100, 10000);
+
+      rb = getMetrics("NameNodeActivity");
+      assertTrue(
+          MetricsAsserts.getLongCounter("BlockReportDiffNumOps", rb) > diffs);
+      // Even with a zero lock hold time, every batch applies at least one
+      // change, so the 5 changes and the storages without changes take
+      // far fewer batches than there are blocks.
+      final long newBatches =
+          MetricsAsserts.getLongCounter("BlockReportApplyBatchNumOps", rb)
+          - batches;
+      assertTrue("Unexpected number of batches " + newBatches,
+          newBatches > 0 && newBatches <= blocks.size());
+      assertEquals(0,
+          MetricsAsserts.getIntGauge("BlockReportChangesPending", rb));
+      assertEquals(0, blockManager.getMissingBlocksCount());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test(timeout = 60000)
   public void testBlockManagerMachinesArray() throws Exception {
     final Configuration conf = new HdfsConfiguration();
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.util.LightWeightGSet;
+import org.apache.hadoop.util.Time;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the different set implementations backing {@link BlocksMap}.
+ */
+@RunWith(Parameterized.class)
+public class TestBlocksMap {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestBlocksMap.class);
+
+  private static final int NUM_BLOCKS = 100000;
+
+  @Parameters
+  public static Collection<Object[]> data() {
+    Collection<Object[]> params = new ArrayList<Object[]>();
+    for (BlocksMap.GSetType type : BlocksMap.GSetType.values()) {
+      params.add(new Object[]{type});
+    }
+    return params;
+  }
+
+  private final BlocksMap.GSetType type;
+
+  public TestBlocksMap(BlocksMap.GSetType type) {
+    this.type = type;
+  }
+
+  @Test
+  public void testAddGetRemove() {
+    BlocksMap map = new BlocksMap(16, type);
+    assertEquals(type, map.getGSetType());
+    BlockCollection bc = mock(BlockCollection.class);
+    when(bc.getId()).thenReturn(1000L);
+
+    long start = Time.monotonicNow();
+    BlockInfo[] infos = new BlockInfo[NUM_BLOCKS];
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      infos[i] = new BlockInfoContiguous(new Block(i, 1024, 1001), (short) 3);
+      assertSame(infos[i], map.addBlockCollection(infos[i], bc));
+    }
+    long added = Time.monotonicNow();
+    assertEquals(NUM_BLOCKS, map.size());
+    assertEquals(NUM_BLOCKS, map.getReplicatedBlocks());
+    if (type == BlocksMap.GSetType.RESIZABLE) {
+      assertTrue("Capacity should grow with the number of blocks",
+          map.getCapacity() >= NUM_BLOCKS);
+    } else {
+      assertEquals(16, map.getCapacity());
+    }
+
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      Block b = new Block(i, 1024, 1001);
+      assertTrue(map.containsBlock(b));
+      assertSame(infos[i], map.getStoredBlock(b));
+    }
+    assertNull(map.getStoredBlock(new Block(NUM_BLOCKS)));
+
+    Set<Long> ids = new HashSet<>();
+    for (BlockInfo info : map.getBlocks()) {
+      ids.add(info.getBlockId());
+    }
+    assertEquals(NUM_BLOCKS, ids.size());
+
+    long looked = Time.monotonicNow();
+    for (int i = 0; i < NUM_BLOCKS; i += 2) {
+      infos[i].delete();
+      map.removeBlock(infos[i]);
+    }
+    long removed = Time.monotonicNow();
+    assertEquals(NUM_BLOCKS / 2, map.size());
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      assertEquals(i % 2 != 0, map.containsBlock(infos[i]));
+    }
+    LOG.info("{}: add {} ms, lookup and iterate {} ms, remove {} ms, " +
+        "final capacity {}", type, added - start, looked - added,
+        removed - looked, map.getCapacity());
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertFalse(map.containsBlock(infos[1]));
+  }
+
+  /**
+   * Check the table capacity of a map holding many blocks. FIXED allocates
+   * its table from a share of the heap up front and never changes it,
+   * RESIZABLE grows it in proportion to the blocks present.
+   */
+  @Test
+  public void testTableCapacity() {
+    final int initialCapacity = type == BlocksMap.GSetType.FIXED ?
+        LightWeightGSet.computeCapacity(
+            DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_CAPACITY_PERCENTAGE_DEFAULT,
+            "BlocksMap") :
+        DFSConfigKeys.DFS_NAMENODE_BLOCKSMAP_INITIAL_CAPACITY_DEFAULT;
+    BlocksMap map = new BlocksMap(initialCapacity, type);
+    assertEquals(initialCapacity, map.getCapacity());
+    BlockCollection bc = mock(BlockCollection.class);
+    when(bc.getId()).thenReturn(1000L);
+    for (int i = 0; i < NUM_BLOCKS; i++) {
+      Block b = new Block(i, 1024, 1001);
+      map.addBlockCollection(new BlockInfoContiguous(b, (short) 3), bc);
+    }
+    assertEquals(NUM_BLOCKS, map.size());
+    LOG.info("{}: capacity {} for {} blocks, initial capacity {}", type,
+        map.getCapacity(), NUM_BLOCKS, initialCapacity);
+
+    if (type == BlocksMap.GSetType.FIXED) {
+      assertEquals(initialCapacity, map.getCapacity());
+    } else {
+      // The resizable table stays within a power of two of the load factor
+      // bound, independent of the heap size.
+      assertTrue(map.getCapacity() >= NUM_BLOCKS);
+      assertTrue(map.getCapacity() <= 4 * NUM_BLOCKS);
+    }
+  }
+}
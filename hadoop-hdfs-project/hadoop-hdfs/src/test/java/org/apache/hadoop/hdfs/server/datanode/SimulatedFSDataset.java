@@ -1592,6 +1592,11 @@ public AutoCloseableLock acquireDatasetReadLock() {
     return datasetLock.acquire();
   }
 
+  @Override
+  public AutoCloseableLock acquireReplicaReadLock(ExtendedBlock b) {
+    return datasetLock.acquire();
+  }
+
   @Override
   public Set<? extends Replica> deepCopyReplica(String bpid)
       throws IOException {
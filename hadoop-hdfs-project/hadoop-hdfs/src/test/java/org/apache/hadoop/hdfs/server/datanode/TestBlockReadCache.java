@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BlockReadCache} and its use by {@link BlockSender}.
+ */
+public class TestBlockReadCache {
+  private static final String BPID = "BP-1-127.0.0.1-1";
+
+  private static BlockReadCache.Segment newSegment(byte fill) {
+    byte[] data = new byte[BlockReadCache.SEGMENT_SIZE];
+    Arrays.fill(data, fill);
+    return new BlockReadCache.Segment(data, new byte[4]);
+  }
+
+  @Test(timeout = 60000)
+  public void testAdmissionThreshold() {
+    BlockReadCache cache = new BlockReadCache(1024 * 1024, 2);
+    ExtendedBlock block = new ExtendedBlock(BPID, 1L, 1024, 1001L);
+
+    // The first read of the segment does not make it admissible
+    assertNull(cache.get(block, 0, 512)[0]);
+    assertFalse(cache.isAdmissible(block, 0));
+    assertNull(cache.get(block, 0, 512)[0]);
+    assertTrue(cache.isAdmissible(block, 0));
+    assertTrue(cache.put(block, 0, newSegment((byte) 7)));
+
+    BlockReadCache.Segment segment = cache.get(block, 0, 512)[0];
+    assertNotNull(segment);
+    byte[] buf = new byte[16];
+    segment.readData(100, buf, 0, buf.length);
+    assertEquals(7, buf[15]);
+
+    // Another generation stamp of the block is a different replica
+    ExtendedBlock appended = new ExtendedBlock(BPID, 1L, 2048, 1002L);
+    assertNull(cache.get(appended, 0, 512)[0]);
+
+    // A range spanning segments only hits if they are all cached
+    BlockReadCache.Segment[] segments =
+        cache.get(block, 1024, BlockReadCache.SEGMENT_SIZE + 1024);
+    assertEquals(2, segments.length);
+    assertNotNull(segments[0]);
+    assertNull(segments[1]);
+  }
+
+  @Test(timeout = 60000)
+  public void testEvictionKeepsFrequentSegments() {
+    // Room for a single segment
+    BlockReadCache cache =
+        new BlockReadCache(BlockReadCache.SEGMENT_SIZE + 4, 1);
+    ExtendedBlock hot = new ExtendedBlock(BPID, 1L, 1024, 1001L);
+    ExtendedBlock cold = new ExtendedBlock(BPID, 2L, 1024, 1001L);
+
+    for (int i = 0; i < 5; i++) {
+      cache.get(hot, 0, 512);
+    }
+    assertTrue(cache.put(hot, 0, newSegment((byte) 1)));
+
+    // A segment read less often than the cached one is not admitted
+    cache.get(cold, 0, 512);
+    assertFalse(cache.put(cold, 0, newSegment((byte) 2)));
+    assertNotNull(cache.get(hot, 0, 512)[0]);
+
+    // Until it becomes hotter
+    for (int i = 0; i < 10; i++) {
+      cache.get(cold, 0, 512);
+    }
+    assertTrue(cache.put(cold, 0, newSegment((byte) 2)));
+    assertEquals(1, cache.getNumSegments());
+    assertEquals(BlockReadCache.SEGMENT_SIZE + 4, cache.getUsedBytes());
+    assertNull(cache.get(hot, 0, 512)[0]);
+  }
+
+  @Test(timeout = 60000)
+  public void testStripes() {
+    // A small cache is a single stripe
+    assertEquals(1, new BlockReadCache(
+        4 * BlockReadCache.SEGMENT_SIZE, 1).getNumStripes());
+
+    // Room for 64 segments in each stripe
+    final int segmentSize = BlockReadCache.SEGMENT_SIZE + 4;
+    BlockReadCache cache = new BlockReadCache(
+        64L * BlockReadCache.MAX_STRIPES * segmentSize, 1);
+    assertEquals(BlockReadCache.MAX_STRIPES, cache.getNumStripes());
+
+    // The blocks of different stripes do not evict each other
+    for (long id = 0; id < BlockReadCache.MAX_STRIPES; id++) {
+      ExtendedBlock block = new ExtendedBlock(BPID, id, 1024, 1001L);
+      cache.get(block, 0, 512);
+      assertTrue(cache.put(block, 0, newSegment((byte) id)));
+    }
+    assertEquals(BlockReadCache.MAX_STRIPES, cache.getNumSegments());
+    assertEquals(BlockReadCache.MAX_STRIPES * (long) segmentSize,
+        cache.getUsedBytes());
+    for (long id = 0; id < BlockReadCache.MAX_STRIPES; id++) {
+      ExtendedBlock block = new ExtendedBlock(BPID, id, 1024, 1001L);
+      byte[] buf = new byte[1];
+      cache.get(block, 0, 512)[0].readData(0, buf, 0, 1);
+      assertEquals(id, buf[0]);
+    }
+    cache.clear();
+    assertEquals(0, cache.getNumSegments());
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test(timeout = 120000)
+  public void testBlockSenderUsesReadCache() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_READ_CACHE_CAPACITY_KEY,
+        4 * 1024 * 1024);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_READ_CACHE_ADMISSION_THRESHOLD_KEY,
+        2);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build()) {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/testBlockSenderUsesReadCache");
+      byte[] contents = new byte[300 * 1024];
+      new Random(0xcafe).nextBytes(contents);
+      DFSTestUtil.writeFile(fs, path, contents);
+
+      // Read a range spanning two segments a few times
+      final int offset = BlockReadCache.SEGMENT_SIZE - 1000;
+      final int length = 5000;
+      for (int i = 0; i < 4; i++) {
+        byte[] buf = new byte[length];
+        try (FSDataInputStream in = fs.open(path)) {
+          in.readFully(offset, buf);
+        }
+        byte[] expected = new byte[length];
+        System.arraycopy(contents, offset, expected, 0, length);
+        assertArrayEquals(expected, buf);
+      }
+
+      DataNode dn = cluster.getDataNodes().get(0);
+      assertEquals(2, dn.getBlockReadCache().getNumSegments());
+      long hits = 0;
+      long misses = 0;
+      FsDatasetSpi<?> data = DataNodeTestUtils.getFSDataset(dn);
+      try (FsDatasetSpi.FsVolumeReferences volumes =
+          data.getFsVolumeReferences()) {
+        for (FsVolumeSpi volume : volumes) {
+          hits += volume.getMetrics().getReadCacheHits();
+          misses += volume.getMetrics().getReadCacheMisses();
+        }
+      }
+      // The first two reads load the segments, the others hit them
+      assertEquals(2, hits);
+      assertEquals(2, misses);
+    }
+  }
+}
@@ -18,6 +18,8 @@
 package org.apache.hadoop.hdfs.server.datanode;
 
 import static org.apache.hadoop.hdfs.protocol.Block.BLOCK_FILE_PREFIX;
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.apache.hadoop.util.Shell.getMemlockLimit;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
@@ -72,6 +74,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsVolumeImpl;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.LazyPersistTestCase;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.util.AutoCloseableLock;
 import org.apache.hadoop.util.Time;
@@ -168,6 +171,18 @@ private long deleteBlockFile() {
     return 0;
   }
 
+  /** Set the mtime of every directory holding a replica into the past. */
+  private void ageBlockDirs(long ageMs) {
+    final long mtime = Time.now() - ageMs;
+    try (AutoCloseableLock lock = fds.acquireDatasetLock()) {
+      for (ReplicaInfo b : FsDatasetTestUtil.getReplicas(fds, bpid)) {
+        File dir = new File(b.getBlockURI()).getParentFile();
+        assertTrue("Failed to set mtime of " + dir,
+            dir.setLastModified(mtime));
+      }
+    }
+  }
+
   /** Delete block meta file */
   private long deleteMetaFile() {
     try (AutoCloseableLock lock = fds.acquireDatasetLock()) {
@@ -1167,6 +1182,64 @@ public void testDirectoryScannerInFederatedCluster() throws Exception {
     }
   }
 
+  @Test(timeout = 300000)
+  public void testIncrementalScanSkipsUnchangedDirs() throws Exception {
+    Configuration conf = new HdfsConfiguration(CONF);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_CYCLES_KEY,
+        100);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      bpid = cluster.getNamesystem().getBlockPoolId();
+      DataNode dn = cluster.getDataNodes().get(0);
+      fds = DataNodeTestUtils.getFSDataset(dn);
+      client = cluster.getFileSystem().getClient();
+      scanner = new DirectoryScanner(fds, conf, dn.getMetrics());
+      scanner.setRetainDiffs(true);
+
+      final int numBlocks = 5;
+      createFile(GenericTestUtils.getMethodName(), BLOCK_LENGTH * numBlocks,
+          false);
+      // Move the mtimes of the block directories past the window in which
+      // they are not trusted.
+      ageBlockDirs(60000L);
+
+      // The first scan lists every directory.
+      scan(numBlocks, 0, 0, 0, 0, 0);
+
+      // The second scan skips all of them, and the replicas in them.
+      scanner.reconcile();
+      DirectoryScanner.Stats stats = scanner.stats.get(bpid);
+      assertEquals(0, stats.totalBlocks);
+      assertEquals(numBlocks, stats.skippedBlocks);
+      assertEquals(0, scanner.diffs.getScanInfo(bpid).size());
+
+      // Deleting a block file updates the mtime of its directory, so it is
+      // listed again and the difference is found.
+      long blockId = deleteBlockFile();
+      assertTrue(blockId != 0);
+      scanner.reconcile();
+      stats = scanner.stats.get(bpid);
+      assertEquals(1, stats.missingBlockFile);
+      assertEquals(1, scanner.diffs.getScanInfo(bpid).size());
+      assertTrue(stats.totalBlocks > 0);
+      assertEquals(numBlocks, stats.totalBlocks + stats.skippedBlocks);
+
+      MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+      assertCounter("DirectoryScanNumOps", 3L, rb);
+      assertCounter("DirectoryScanDifferences", 1L, rb);
+    } finally {
+      if (scanner != null) {
+        scanner.shutdown();
+        scanner = null;
+      }
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
   private static final String SEP = System.getProperty("file.separator");
 
   /**
@@ -1204,6 +1277,36 @@ public void testLocalReplicaParsing() {
     assertEquals(true, info.hasSubidrs);
   }
 
+  /**
+   * Test that replicas sharing an interned base directory, with and without
+   * the subdirs of their block IDs, locate their own block files.
+   */
+  @Test(timeout = 3000)
+  public void testLocalReplicaSharedBaseDir() {
+    File baseDir = new File(GenericTestUtils.getRandomizedTempPath());
+    long blkId1 = getRandomBlockId();
+    long blkId2 = blkId1 + 1;
+    File blockDir1 = DatanodeUtil.idToBlockDir(baseDir, blkId1);
+    File blockDir2 = DatanodeUtil.idToBlockDir(baseDir, blkId2);
+
+    LocalReplica inSubdir1 = (LocalReplica) new ReplicaBuilder(
+        HdfsServerConstants.ReplicaState.FINALIZED)
+        .setDirectoryToUse(blockDir1).setBlockId(blkId1).build();
+    LocalReplica inSubdir2 = (LocalReplica) new ReplicaBuilder(
+        HdfsServerConstants.ReplicaState.FINALIZED)
+        .setDirectoryToUse(blockDir2).setBlockId(blkId2).build();
+    LocalReplica inBaseDir = (LocalReplica) new ReplicaBuilder(
+        HdfsServerConstants.ReplicaState.FINALIZED)
+        .setDirectoryToUse(baseDir).setBlockId(blkId2).build();
+
+    assertEquals(new File(blockDir1, BLOCK_FILE_PREFIX + blkId1),
+        inSubdir1.getBlockFile());
+    assertEquals(new File(blockDir2, BLOCK_FILE_PREFIX + blkId2),
+        inSubdir2.getBlockFile());
+    assertEquals(new File(baseDir, BLOCK_FILE_PREFIX + blkId2),
+        inBaseDir.getBlockFile());
+  }
+
   /**
    * Test whether can LocalReplica.updateWithReplica() correct the wrongly
    * recorded replica location.
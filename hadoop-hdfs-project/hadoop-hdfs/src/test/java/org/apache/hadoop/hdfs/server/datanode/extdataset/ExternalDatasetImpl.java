@@ -461,6 +461,11 @@ public AutoCloseableLock acquireDatasetReadLock() {
     return null;
   }
 
+  @Override
+  public AutoCloseableLock acquireReplicaReadLock(ExtendedBlock b) {
+    return null;
+  }
+
   @Override
   public Set<? extends Replica> deepCopyReplica(String bpid)
       throws IOException {
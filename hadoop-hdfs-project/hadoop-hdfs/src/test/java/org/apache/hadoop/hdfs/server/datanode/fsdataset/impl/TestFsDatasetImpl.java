@@ -338,6 +338,74 @@ public void run() {
     }
   }
 
+  @Test(timeout=20000)
+  public void testReplicaLockDoesNotBlockOtherReplicas() throws Exception {
+    final String bpid = BLOCK_POOL_IDS[0];
+    final ExtendedBlock lockedBlock = new ExtendedBlock(bpid, 1);
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Thread holder = new Thread() {
+      public void run() {
+        try (AutoCloseableLock l = dataset.acquireDatasetReadLock();
+             AutoCloseableLock r = dataset.replicaLock.writeLock(
+                 bpid, lockedBlock.getBlockId())) {
+          holding.countDown();
+          release.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    AtomicBoolean created = new AtomicBoolean(false);
+    Thread writer = new Thread() {
+      public void run() {
+        try (ReplicaHandler replica = dataset.createRbw(
+            StorageType.DEFAULT, null, lockedBlock, false)) {
+          created.set(true);
+        } catch (IOException e) {
+          LOG.warn("Failed to create " + lockedBlock, e);
+        }
+      }
+    };
+    AtomicBoolean read = new AtomicBoolean(false);
+    Thread reader = new Thread() {
+      public void run() {
+        try (AutoCloseableLock l =
+                 dataset.acquireReplicaReadLock(lockedBlock)) {
+          read.set(true);
+        }
+      }
+    };
+    holder.start();
+    holding.await();
+    try {
+      // The replicas of the other blocks are written while the holder keeps
+      // the dataset read lock and the lock of the first replica.
+      for (int i = 2; i < 10; i++) {
+        ExtendedBlock eb = new ExtendedBlock(bpid, i);
+        try (ReplicaHandler replica = dataset.createRbw(
+            StorageType.DEFAULT, null, eb, false)) {
+          dataset.finalizeBlock(eb, false);
+        }
+        assertTrue(dataset.contains(eb));
+      }
+      // The replica of the locked block waits for the holder, and so does
+      // a reader of its state.
+      writer.start();
+      reader.start();
+      Thread.sleep(100);
+      assertFalse(created.get());
+      assertFalse(read.get());
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+    writer.join();
+    reader.join();
+    assertTrue(created.get());
+    assertTrue(read.get());
+  }
+
   @Test
   public void testAddVolumes() throws IOException {
     final int numNewVolumes = 3;
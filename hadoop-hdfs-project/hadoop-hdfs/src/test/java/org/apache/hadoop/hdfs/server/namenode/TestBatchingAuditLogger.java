@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOGGERS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.GenericTestUtils.LogCapturer;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.event.Level;
+
+/**
+ * Tests {@link BatchingAuditLogger}.
+ */
+public class TestBatchingAuditLogger {
+  private static final int NUM_EVENTS = 1000;
+
+  @Before
+  public void setup() {
+    GenericTestUtils.setLogLevel(FSNamesystem.auditLog, Level.INFO);
+  }
+
+  @Test
+  public void testBinaryFormat() throws Exception {
+    File dir = GenericTestUtils.getTestDir("TestBatchingAuditLogger");
+    dir.mkdirs();
+    File file = new File(dir, "audit.bin");
+    file.delete();
+
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY, "binary");
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY,
+        file.getAbsolutePath());
+    conf.setInt(DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY, 16);
+
+    InetAddress addr = InetAddress.getByName("127.0.0.1");
+    FileStatus status = new FileStatus(0, true, 0, 0, 0, 0,
+        new FsPermission((short) 0750), "owner", "group", new Path("/dir"));
+    BatchingAuditLogger logger = new BatchingAuditLogger();
+    logger.initialize(conf);
+    try {
+      for (int i = 0; i < NUM_EVENTS; i++) {
+        logger.logAuditEvent(i % 2 == 0, "user" + i, addr, "mkdirs",
+            "/dir" + i, i % 3 == 0 ? null : "/dst\t" + i,
+            i % 5 == 0 ? status : null, null, null);
+      }
+    } finally {
+      logger.close();
+    }
+    assertEquals(0, logger.getNumDropped());
+
+    int n = 0;
+    try (BatchingAuditLogger.BinaryReader reader =
+        new BatchingAuditLogger.BinaryReader(file)) {
+      BatchingAuditLogger.AuditEvent event;
+      while ((event = reader.next()) != null) {
+        assertEquals(n % 2 == 0, event.isSucceeded());
+        assertEquals("user" + n, event.getUserName());
+        assertEquals(addr, event.getAddress());
+        assertEquals("mkdirs", event.getCommand());
+        assertEquals("/dir" + n, event.getSrc());
+        if (n % 3 == 0) {
+          assertNull(event.getDst());
+        } else {
+          assertEquals("/dst\t" + n, event.getDst());
+        }
+        if (n % 5 == 0) {
+          assertEquals("owner", event.getOwner());
+          assertEquals("group", event.getGroup());
+          assertEquals(status.getPermission(), event.getPermission());
+        } else {
+          assertNull(event.getPermission());
+        }
+        assertNull(event.getTrackingId());
+        assertTrue(event.getTime() > 0);
+        n++;
+      }
+    }
+    assertEquals(NUM_EVENTS, n);
+  }
+
+  /**
+   * Events logged concurrently with close() are either written or counted
+   * as dropped, and logging after close() does not block.
+   */
+  @Test(timeout = 60000)
+  public void testCloseWhileLogging() throws Exception {
+    File file = getBinaryFile("testCloseWhileLogging");
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY, "binary");
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY,
+        file.getAbsolutePath());
+    conf.setInt(DFS_NAMENODE_AUDIT_LOG_BATCH_QUEUE_SIZE_KEY, 64);
+
+    final InetAddress addr = InetAddress.getByName("127.0.0.1");
+    final BatchingAuditLogger logger = new BatchingAuditLogger();
+    logger.initialize(conf);
+    final int numThreads = 4;
+    final CountDownLatch started = new CountDownLatch(numThreads);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      Thread thread = new Thread(() -> {
+        started.countDown();
+        for (int i = 0; i < NUM_EVENTS; i++) {
+          logger.logAuditEvent(true, "user", addr, "mkdirs", "/dir" + i,
+              null, null, null, null);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    started.await();
+    logger.close();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(numThreads * NUM_EVENTS,
+        countEvents(file) + logger.getNumDropped());
+  }
+
+  @Test
+  public void testBinaryRollover() throws Exception {
+    File file = getBinaryFile("testBinaryRollover");
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY, "binary");
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_PATH_KEY,
+        file.getAbsolutePath());
+    conf.setInt(DFS_NAMENODE_AUDIT_LOG_BATCH_SIZE_KEY, 16);
+    conf.setLong(DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_SIZE_KEY, 4096);
+    conf.setInt(DFS_NAMENODE_AUDIT_LOG_BATCH_BINARY_MAX_BACKUPS_KEY, 2);
+
+    InetAddress addr = InetAddress.getByName("127.0.0.1");
+    BatchingAuditLogger logger = new BatchingAuditLogger();
+    logger.initialize(conf);
+    try {
+      for (int i = 0; i < NUM_EVENTS; i++) {
+        logger.logAuditEvent(true, "user" + i, addr, "mkdirs", "/dir" + i,
+            null, null, null, null);
+      }
+    } finally {
+      logger.close();
+    }
+    assertEquals(0, logger.getNumDropped());
+
+    File backup1 = new File(file.getPath() + ".1");
+    File backup2 = new File(file.getPath() + ".2");
+    assertTrue(backup1.exists());
+    assertTrue(backup2.exists());
+    assertFalse(new File(file.getPath() + ".3").exists());
+    // A file only exceeds the limit by the batch which made it roll over.
+    assertTrue(backup1.length() < 2 * 4096);
+    // Every file is complete on its own, and the newest events are kept.
+    int kept = countEvents(backup2) + countEvents(backup1)
+        + countEvents(file);
+    assertTrue(kept > 0 && kept < NUM_EVENTS);
+    try (BatchingAuditLogger.BinaryReader reader =
+        new BatchingAuditLogger.BinaryReader(file)) {
+      BatchingAuditLogger.AuditEvent last = null;
+      BatchingAuditLogger.AuditEvent event;
+      while ((event = reader.next()) != null) {
+        last = event;
+      }
+      if (last != null) {
+        assertEquals("user" + (NUM_EVENTS - 1), last.getUserName());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidFormat() {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY, "json");
+    try {
+      new BatchingAuditLogger().initialize(conf);
+      fail("Expected an invalid format to be rejected");
+    } catch (IllegalArgumentException e) {
+      GenericTestUtils.assertExceptionContains(
+          DFS_NAMENODE_AUDIT_LOG_BATCH_FORMAT_KEY, e);
+    }
+  }
+
+  private static File getBinaryFile(String name) {
+    File dir = GenericTestUtils.getTestDir("TestBatchingAuditLogger");
+    dir.mkdirs();
+    File file = new File(dir, name + ".bin");
+    for (int i = 0; i < 4; i++) {
+      new File(file.getPath() + (i == 0 ? "" : "." + i)).delete();
+    }
+    return file;
+  }
+
+  private static int countEvents(File file) throws IOException {
+    int n = 0;
+    try (BatchingAuditLogger.BinaryReader reader =
+        new BatchingAuditLogger.BinaryReader(file)) {
+      while (reader.next() != null) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  @Test
+  public void testTextFormat() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_AUDIT_LOGGERS_KEY,
+        BatchingAuditLogger.class.getName());
+    LogCapturer auditlog = LogCapturer.captureLogs(FSNamesystem.auditLog);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    try {
+      cluster.waitClusterUp();
+      cluster.getFileSystem().mkdirs(new Path("/testTextFormat"));
+      GenericTestUtils.waitFor(() -> auditlog.getOutput().contains(
+          "cmd=mkdirs\tsrc=/testTextFormat\tdst=null\tperm="), 10, 10000);
+      // The time of the event is logged, not only the time of the line.
+      assertTrue(auditlog.getOutput().matches("(?s).*cmd=mkdirs\t"
+          + "src=/testTextFormat\t[^\n]*"
+          + "\ttime=\\d{4}-\\d{2}-\\d{2}T[^\n]*Z.*"));
+    } finally {
+      auditlog.stopCapturing();
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PrivilegedExceptionAction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.QuotaUsage;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests content summaries computed in parallel and served from the cache.
+ */
+public class TestContentSummaryParallelAndCache {
+  private static final short REPLICATION = 1;
+  private static final int FILE_LEN = 10;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY, 0);
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLELISM_KEY, 4);
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY, 100);
+    cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(REPLICATION).build();
+    cluster.waitActive();
+    dfs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Create numDirs directories under the given root, each with a
+   * subdirectory, and a file in both.
+   */
+  private void createTree(Path root, int numDirs) throws Exception {
+    for (int i = 0; i < numDirs; i++) {
+      Path dir = new Path(root, "dir" + i);
+      DFSTestUtil.createFile(dfs, new Path(dir, "file"), FILE_LEN,
+          REPLICATION, 0L);
+      DFSTestUtil.createFile(dfs, new Path(dir, "sub/file"), FILE_LEN,
+          REPLICATION, 0L);
+    }
+  }
+
+  private static void verifySummary(ContentSummary summary, int dirCount,
+      int fileCount, long length) {
+    assertEquals(dirCount, summary.getDirectoryCount());
+    assertEquals(fileCount, summary.getFileCount());
+    assertEquals(length, summary.getLength());
+    assertEquals(length * REPLICATION, summary.getSpaceConsumed());
+  }
+
+  @Test
+  public void testParallelContentSummary() throws Exception {
+    assertNotNull(
+        cluster.getNamesystem().getFSDirectory().getContentSummaryPool());
+    final Path root = new Path("/testParallelContentSummary");
+    createTree(root, 10);
+    DFSTestUtil.createFile(dfs, new Path(root, "file"), FILE_LEN,
+        REPLICATION, 0L);
+
+    verifySummary(dfs.getContentSummary(root), 21, 21, 21 * FILE_LEN);
+    QuotaUsage usage = dfs.getQuotaUsage(root);
+    assertEquals(42, usage.getFileAndDirectoryCount());
+
+    // Permission failures in a pool thread reach the caller.
+    dfs.setPermission(root, new FsPermission((short) 0777));
+    dfs.setPermission(new Path(root, "dir7/sub"), new FsPermission((short) 0));
+    UserGroupInformation user = UserGroupInformation.createUserForTesting(
+        "user", new String[] {"group"});
+    LambdaTestUtils.intercept(AccessControlException.class,
+        () -> user.doAs((PrivilegedExceptionAction<ContentSummary>) () ->
+            cluster.getNameNodeRpc().getContentSummary(root.toString())));
+  }
+
+  /**
+   * The parallel traversal cannot yield, so it is disabled when a limit
+   * is set.
+   */
+  @Test
+  public void testParallelismIgnoredWithLimit() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY, 100);
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLELISM_KEY, 4);
+    MiniDFSCluster limited =
+        new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    try {
+      limited.waitActive();
+      assertNull(
+          limited.getNamesystem().getFSDirectory().getContentSummaryPool());
+    } finally {
+      limited.shutdown();
+    }
+  }
+
+  @Test
+  public void testContentSummaryCache() throws Exception {
+    final Path root = new Path("/testContentSummaryCache");
+    createTree(root, 3);
+    final ContentSummaryCache cache =
+        cluster.getNamesystem().getFSDirectory().getContentSummaryCache();
+
+    verifySummary(dfs.getContentSummary(root), 7, 6, 6 * FILE_LEN);
+    long hits = cache.getHitCount();
+    verifySummary(dfs.getContentSummary(root), 7, 6, 6 * FILE_LEN);
+    assertTrue(cache.getHitCount() > hits);
+
+    // A cached subdirectory is reused for its parent.
+    final Path sub = new Path(root, "dir1/sub");
+    verifySummary(dfs.getContentSummary(sub), 1, 1, FILE_LEN);
+    hits = cache.getHitCount();
+    verifySummary(dfs.getContentSummary(new Path(root, "dir1")),
+        2, 2, 2 * FILE_LEN);
+    assertTrue(cache.getHitCount() > hits);
+
+    // Changes below a cached directory are visible.
+    DFSTestUtil.createFile(dfs, new Path(sub, "file2"), FILE_LEN,
+        REPLICATION, 0L);
+    verifySummary(dfs.getContentSummary(root), 7, 7, 7 * FILE_LEN);
+    dfs.mkdirs(new Path(sub, "empty"));
+    verifySummary(dfs.getContentSummary(root), 8, 7, 7 * FILE_LEN);
+    dfs.rename(new Path(root, "dir2"), new Path("/"));
+    verifySummary(dfs.getContentSummary(root), 6, 5, 5 * FILE_LEN);
+    dfs.delete(new Path(sub, "file2"), false);
+    verifySummary(dfs.getContentSummary(root), 6, 4, 4 * FILE_LEN);
+    dfs.setReplication(new Path(sub, "file"), (short) 2);
+    assertEquals(5 * FILE_LEN,
+        dfs.getContentSummary(root).getSpaceConsumed());
+
+    // Callers whose permissions are checked do not use the cache.
+    dfs.setPermission(root, new FsPermission((short) 0777));
+    UserGroupInformation user = UserGroupInformation.createUserForTesting(
+        "user", new String[] {"group"});
+    dfs.getContentSummary(root);
+    hits = cache.getHitCount();
+    ContentSummary summary = user.doAs(
+        (PrivilegedExceptionAction<ContentSummary>) () ->
+            cluster.getNameNodeRpc().getContentSummary(root.toString()));
+    assertEquals(4, summary.getFileCount());
+    assertEquals(hits, cache.getHitCount());
+  }
+
+  private boolean isCached(Path path) throws Exception {
+    final FSDirectory fsd = cluster.getNamesystem().getFSDirectory();
+    return fsd.getContentSummaryCache().get(
+        fsd.getINode(path.toString()).getId()) != null;
+  }
+
+  /**
+   * Query the summaries of the given snapshot root, its parent and a
+   * sibling of it, so that all three are cached.
+   */
+  private void cacheSnapshotTree(Path parent, Path snapshotRoot,
+      Path sibling) throws Exception {
+    dfs.getContentSummary(snapshotRoot);
+    dfs.getContentSummary(sibling);
+    dfs.getContentSummary(parent);
+    assertTrue(isCached(snapshotRoot));
+    assertTrue(isCached(sibling));
+    assertTrue(isCached(parent));
+  }
+
+  private void verifyInvalidated(Path parent, Path snapshotRoot,
+      Path sibling) throws Exception {
+    assertFalse(isCached(snapshotRoot));
+    assertFalse(isCached(parent));
+    assertTrue(isCached(sibling));
+  }
+
+  @Test
+  public void testAllowSnapshotInvalidatesCache() throws Exception {
+    final Path root = new Path("/testAllowSnapshotInvalidatesCache");
+    createTree(root, 2);
+    final Path dir = new Path(root, "dir0");
+    final Path sibling = new Path(root, "dir1");
+    cacheSnapshotTree(root, dir, sibling);
+
+    dfs.allowSnapshot(dir);
+    verifyInvalidated(root, dir, sibling);
+  }
+
+  @Test
+  public void testDisallowSnapshotInvalidatesCache() throws Exception {
+    final Path root = new Path("/testDisallowSnapshotInvalidatesCache");
+    createTree(root, 2);
+    final Path dir = new Path(root, "dir0");
+    final Path sibling = new Path(root, "dir1");
+    dfs.allowSnapshot(dir);
+    cacheSnapshotTree(root, dir, sibling);
+
+    dfs.disallowSnapshot(dir);
+    verifyInvalidated(root, dir, sibling);
+  }
+
+  @Test
+  public void testCreateSnapshotInvalidatesCache() throws Exception {
+    final Path root = new Path("/testCreateSnapshotInvalidatesCache");
+    createTree(root, 2);
+    final Path dir = new Path(root, "dir0");
+    final Path sibling = new Path(root, "dir1");
+    dfs.allowSnapshot(dir);
+    cacheSnapshotTree(root, dir, sibling);
+
+    dfs.createSnapshot(dir, "s0");
+    verifyInvalidated(root, dir, sibling);
+  }
+
+  /**
+   * A block completed at exactly the preferred block size does not change
+   * the space consumed, but the file length still changes.
+   */
+  @Test
+  public void testCompleteFullBlockInvalidatesCache() throws Exception {
+    final Path root = new Path("/testCompleteFullBlockInvalidatesCache");
+    final Path file = new Path(root, "file");
+    final int blockSize = 1024;
+    final FSDataOutputStream out = dfs.create(file, true, 4096, REPLICATION,
+        blockSize);
+    try {
+      out.write(new byte[blockSize]);
+      out.hflush();
+      // Only the space of the block under construction is known.
+      assertEquals(0, dfs.getContentSummary(root).getLength());
+      assertTrue(isCached(root));
+    } finally {
+      out.close();
+    }
+    assertFalse(isCached(root));
+    assertEquals(blockSize, dfs.getContentSummary(root).getLength());
+  }
+}
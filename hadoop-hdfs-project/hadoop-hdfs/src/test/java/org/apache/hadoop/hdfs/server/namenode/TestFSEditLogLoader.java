@@ -20,6 +20,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doNothing;
@@ -113,8 +114,20 @@ private static Configuration getConf() {
 
   @Test
   public void testDisplayRecentEditLogOpCodes() throws IOException {
-    // start a cluster
+    checkDisplayRecentEditLogOpCodes(getConf());
+  }
+
+  @Test
+  public void testDisplayRecentEditLogOpCodesWithPrefetch()
+      throws IOException {
     Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY, 4);
+    checkDisplayRecentEditLogOpCodes(conf);
+  }
+
+  private void checkDisplayRecentEditLogOpCodes(Configuration conf)
+      throws IOException {
+    // start a cluster
     MiniDFSCluster cluster = null;
     FileSystem fileSys = null;
     cluster = new MiniDFSCluster.Builder(conf).numDataNodes(NUM_DATA_NODES)
@@ -156,6 +169,72 @@ public void testDisplayRecentEditLogOpCodes() throws IOException {
     }
   }
   
+  /**
+   * Test that edits replayed with prefetching enabled produce the same
+   * namespace as the one they were written from.
+   */
+  @Test
+  public void testReplayWithPrefetch() throws Exception {
+    Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY, 2);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1)
+          .enableManagedDfsDirsRedundancy(false).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 50; i++) {
+        Path dir = new Path("/prefetch/dir" + i);
+        fs.mkdirs(dir);
+        DFSTestUtil.createFile(fs, new Path(dir, "file"), 1024, (short) 1, 0L);
+        fs.setTimes(new Path(dir, "file"), i, i);
+        if (i % 3 == 0) {
+          fs.delete(dir, true);
+        } else if (i % 3 == 1) {
+          fs.rename(dir, new Path("/prefetch/renamed" + i));
+        }
+      }
+      long lastTxId = cluster.getNamesystem().getFSImage().getEditLog()
+          .getLastWrittenTxId();
+
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      assertTrue(cluster.getNamesystem().getFSImage().getLastAppliedTxId()
+          >= lastTxId);
+      // All replays decode on the one thread of the namesystem, and the
+      // thread of the previous namesystem exits once it is closed.
+      assertNotNull(
+          cluster.getNamesystem().getEditLogReplayPrefetchExecutor());
+      GenericTestUtils.waitFor(() -> {
+        int decoders = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+          if (t.getName().startsWith("Edit Log Replay Prefetcher")) {
+            decoders++;
+          }
+        }
+        return decoders <= 1;
+      }, 100, 10000);
+      for (int i = 0; i < 50; i++) {
+        Path dir = new Path("/prefetch/dir" + i);
+        Path renamed = new Path("/prefetch/renamed" + i);
+        if (i % 3 == 0) {
+          assertFalse(fs.exists(dir));
+        } else if (i % 3 == 1) {
+          assertFalse(fs.exists(dir));
+          assertEquals(i, fs.getFileStatus(new Path(renamed, "file"))
+              .getModificationTime());
+        } else {
+          assertEquals(1024, fs.getFileStatus(new Path(dir, "file"))
+              .getLen());
+        }
+      }
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   /**
    * Test that, if the NN restarts with a new minimum replication,
    * any files created with the old replication count will get
@@ -32,11 +32,18 @@
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 import org.apache.hadoop.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntryType;
+import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.hdfs.StripedFileTestUtil;
 import org.apache.hadoop.hdfs.protocol.AddErasureCodingPolicyResponse;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -1103,6 +1110,115 @@ public void testParallelSaveAndLoad() throws IOException {
     }
   }
 
+  private byte[] readLatestImageSection(MiniDFSCluster cluster,
+      SectionName name) throws IOException {
+    File image = FSImageTestUtil.findLatestImageFile(FSImageTestUtil
+        .getFSImage(cluster.getNameNode()).getStorage().getStorageDir(0));
+    Section section = getSubSectionsOfName(Lists.newArrayList(
+        FSImageTestUtil.getLatestImageSummary(cluster).getSectionsList()),
+        name).get(0);
+    byte[] data = new byte[(int) section.getLength()];
+    try (RandomAccessFile raFile = new RandomAccessFile(image, "r")) {
+      raFile.seek(section.getOffset());
+      raFile.readFully(data);
+    }
+    return data;
+  }
+
+  @Test
+  public void testParallelSaveMatchesSequentialSave() throws IOException {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = createAndLoadParallelFSImage(conf);
+      DistributedFileSystem fs = cluster.getFileSystem();
+      // Reference many distinct users, groups, ACL names and xattr names
+      // from every sub-section.
+      final String baseDir = "/abc/def";
+      for (int i = 0; i < 10; i++) {
+        Path dir = new Path(baseDir + "/" + i);
+        fs.modifyAclEntries(dir, Lists.newArrayList(new AclEntry.Builder()
+            .setScope(AclEntryScope.DEFAULT).setType(AclEntryType.USER)
+            .setName("defaultuser" + i).setPermission(FsAction.ALL).build()));
+        fs.setXAttr(dir, "trusted.dir" + i, new byte[] {(byte) i});
+        for (int j = 0; j < 5; j++) {
+          Path f = new Path(dir, Integer.toString(j));
+          int n = i * 5 + j;
+          fs.setOwner(f, "user" + n, "group" + (n % 7));
+          fs.modifyAclEntries(f, Lists.newArrayList(
+              new AclEntry.Builder().setScope(AclEntryScope.ACCESS)
+                  .setType(AclEntryType.USER).setName("acluser" + n)
+                  .setPermission(FsAction.READ).build(),
+              new AclEntry.Builder().setScope(AclEntryScope.ACCESS)
+                  .setType(AclEntryType.GROUP).setName("aclgroup" + (n % 11))
+                  .setPermission(FsAction.READ_WRITE).build()));
+          fs.setXAttr(f, "user.attr" + (n % 13), new byte[] {(byte) n});
+        }
+      }
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+
+      // Save with the sub-sections serialized by the saving thread, then in
+      // parallel, without restarting so that the serial numbers are the
+      // same for both images.
+      final Configuration nnConf = cluster.getNameNode().getConf();
+      nnConf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 1);
+      fs.saveNamespace();
+      byte[] sequential = readLatestImageSection(cluster, SectionName.INODE);
+      byte[] sequentialStrings =
+          readLatestImageSection(cluster, SectionName.STRING_TABLE);
+      List<Section> sequentialSubSections = getSubSectionsOfName(
+          Lists.newArrayList(FSImageTestUtil.getLatestImageSummary(cluster)
+              .getSectionsList()), SectionName.INODE_SUB);
+
+      nnConf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 4);
+      fs.saveNamespace();
+      byte[] parallel = readLatestImageSection(cluster, SectionName.INODE);
+      byte[] parallelStrings =
+          readLatestImageSection(cluster, SectionName.STRING_TABLE);
+      List<Section> parallelSubSections = getSubSectionsOfName(
+          Lists.newArrayList(FSImageTestUtil.getLatestImageSummary(cluster)
+              .getSectionsList()), SectionName.INODE_SUB);
+
+      assertArrayEquals(sequential, parallel);
+      assertArrayEquals(sequentialStrings, parallelStrings);
+      assertEquals(4, parallelSubSections.size());
+      assertEquals(sequentialSubSections.size(), parallelSubSections.size());
+      for (int i = 0; i < parallelSubSections.size(); i++) {
+        assertEquals(sequentialSubSections.get(i).getLength(),
+            parallelSubSections.get(i).getLength());
+      }
+
+      // The image saved in parallel loads back with the same attributes.
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      for (int i = 0; i < 10; i++) {
+        Path dir = new Path(baseDir + "/" + i);
+        assertArrayEquals(new byte[] {(byte) i},
+            fs.getXAttr(dir, "trusted.dir" + i));
+        for (int j = 0; j < 5; j++) {
+          Path f = new Path(dir, Integer.toString(j));
+          int n = i * 5 + j;
+          FileStatus status = fs.getFileStatus(f);
+          assertEquals("user" + n, status.getOwner());
+          assertEquals("group" + (n % 7), status.getGroup());
+          List<AclEntry> acl = fs.getAclStatus(f).getEntries();
+          assertTrue(acl.contains(new AclEntry.Builder()
+              .setScope(AclEntryScope.ACCESS).setType(AclEntryType.USER)
+              .setName("acluser" + n).setPermission(FsAction.READ).build()));
+          assertArrayEquals(new byte[] {(byte) n},
+              fs.getXAttr(f, "user.attr" + (n % 13)));
+        }
+      }
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   @Test
   public void testNoParallelSectionsWithCompressionEnabled()
       throws IOException {
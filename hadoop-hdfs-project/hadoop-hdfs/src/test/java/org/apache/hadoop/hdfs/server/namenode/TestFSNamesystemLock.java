@@ -43,6 +43,8 @@
 
 import static org.junit.Assert.*;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY;
 import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
 import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
 
@@ -134,6 +136,67 @@ public Boolean get() {
     }
   }
 
+  @Test(timeout=30000)
+  public void testPartitionLock() throws Exception {
+    final Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_SETTIMES_PARTITION_LOCK_ENABLED_KEY, true);
+    conf.setInt(DFS_NAMENODE_SETTIMES_PARTITION_LOCKS_KEY, 16);
+    final FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+    assertTrue(fsnLock.isPartitionedLockEnabled());
+    assertFalse(new FSNamesystemLock(new Configuration(), null)
+        .isPartitionedLockEnabled());
+
+    // Find two keys which map to different partitions.
+    final long key1 = 16385;
+    long k = key1 + 1;
+    while (fsnLock.getPartitionIndex(k) == fsnLock.getPartitionIndex(key1)) {
+      k++;
+    }
+    final long key2 = k;
+
+    // Partitions may only be taken under the shared lock.
+    try {
+      fsnLock.partitionLock(key1);
+      fail("Partition lock should require the shared lock");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    fsnLock.readLock();
+    fsnLock.partitionLock(key1, key1, key2);
+    assertTrue(fsnLock.hasPartitionLock());
+    assertTrue(fsnLock.hasPartitionLock(key1));
+    assertTrue(fsnLock.hasPartitionLock(key2));
+
+    // Another thread can take the shared lock but blocks on the partition.
+    final CountDownLatch acquired = new CountDownLatch(1);
+    Thread t = new Thread(() -> {
+      fsnLock.readLock();
+      try {
+        fsnLock.partitionLock(key2);
+        acquired.countDown();
+        fsnLock.partitionUnlock();
+      } finally {
+        fsnLock.readUnlock();
+      }
+    });
+    t.start();
+    assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+    GenericTestUtils.waitFor(
+        () -> fsnLock.getNumOfPartitionLockContended() == 1, 10, 10000);
+
+    fsnLock.partitionUnlock();
+    assertFalse(fsnLock.hasPartitionLock());
+    assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    t.join();
+    fsnLock.readUnlock();
+
+    // The exclusive lock can still be taken once all holders are done.
+    fsnLock.writeLock();
+    assertTrue(fsnLock.isWriteLockedByCurrentThread());
+    fsnLock.writeUnlock();
+  }
+
   /**
    * Test when FSNamesystem write lock is held for a long time,
    * logger will report it.
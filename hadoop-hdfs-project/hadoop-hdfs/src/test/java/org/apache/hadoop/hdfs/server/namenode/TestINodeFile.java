@@ -29,6 +29,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -70,6 +71,7 @@
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoContiguous;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
+import org.apache.hadoop.hdfs.util.ReadOnlyList;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.Time;
@@ -268,6 +270,63 @@ public void testPreferredBlockSizeAboveUpperBound ()
     createINodeFile(replication, preferredBlockSize);
  }
 
+  /**
+   * Test a directory whose children exceed the chunking threshold, and
+   * which drops back to a plain list after most children are removed.
+   */
+  @Test
+  public void testLargeDirectoryChildren() {
+    final int numChildren = INodeDirectory.CHUNKED_CHILDREN_THRESHOLD + 1000;
+    INodeDirectory dir = new INodeDirectory(HdfsConstants.GRANDFATHER_INODE_ID,
+        DFSUtil.string2Bytes("d"), perm, 0L);
+    List<INodeFile> files = new ArrayList<>(numChildren);
+    for (int i = 0; i < numChildren; i++) {
+      files.add(createINodeFile(i));
+    }
+    Collections.shuffle(files);
+    for (INodeFile f : files) {
+      assertTrue(dir.addChild(f));
+    }
+    assertFalse(dir.addChild(createINodeFile(0)));
+
+    ReadOnlyList<INode> children =
+        dir.getChildrenList(Snapshot.CURRENT_STATE_ID);
+    assertEquals(numChildren, children.size());
+    for (int i = 1; i < children.size(); i++) {
+      assertTrue(children.get(i - 1).compareTo(
+          children.get(i).getLocalNameBytes()) < 0);
+    }
+    for (INodeFile f : files) {
+      assertSame(f, dir.getChild(f.getLocalNameBytes(),
+          Snapshot.CURRENT_STATE_ID));
+    }
+    // Paginate as getListing does.
+    int listed = 0;
+    byte[] startAfter = HdfsFileStatus.EMPTY_NAME;
+    while (true) {
+      int start = INodeDirectory.nextChild(children, startAfter);
+      if (start >= children.size()) {
+        break;
+      }
+      int end = Math.min(start + 1000, children.size());
+      listed += end - start;
+      startAfter = children.get(end - 1).getLocalNameBytes();
+    }
+    assertEquals(numChildren, listed);
+
+    // Remove most of the children again.
+    for (int i = 0; i < numChildren - 10; i++) {
+      assertTrue(dir.removeChild(files.get(i)));
+    }
+    assertFalse(dir.removeChild(files.get(0)));
+    children = dir.getChildrenList(Snapshot.CURRENT_STATE_ID);
+    assertEquals(10, children.size());
+    for (int i = numChildren - 10; i < numChildren; i++) {
+      assertSame(files.get(i), dir.getChild(files.get(i).getLocalNameBytes(),
+          Snapshot.CURRENT_STATE_ID));
+    }
+  }
+
   @Test
   public void testGetFullPathName() {
     replication = 3;
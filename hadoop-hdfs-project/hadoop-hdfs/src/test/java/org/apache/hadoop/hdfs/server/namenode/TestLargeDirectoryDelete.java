@@ -29,6 +29,7 @@
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.util.Time;
 import org.junit.Assert;
 import org.junit.Test;
@@ -223,4 +224,26 @@ public void largeDelete() throws Throwable {
       mc.shutdown();
     }
   }
+  /**
+   * Check that the blocks of a delete above the async threshold are removed
+   * from the blocks map in the background after the delete returns.
+   */
+  @Test
+  public void largeDeleteAsync() throws Throwable {
+    Configuration conf = new HdfsConfiguration(CONF);
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_ASYNC_THRESHOLD_KEY, 1000);
+    mc = new MiniDFSCluster.Builder(conf).build();
+    try {
+      mc.waitActive();
+      createFiles();
+      Assert.assertEquals(TOTAL_BLOCKS, getBlockCount());
+      final FSNamesystem namesystem = mc.getNamesystem();
+      Assert.assertTrue(mc.getFileSystem().delete(new Path("/root"), true));
+      GenericTestUtils.waitFor(() -> getBlockCount() == 0
+          && namesystem.getPendingMarkedDeleteBlocks() == 0, 100, 60000);
+    } finally {
+      mc.shutdown();
+    }
+  }
 }
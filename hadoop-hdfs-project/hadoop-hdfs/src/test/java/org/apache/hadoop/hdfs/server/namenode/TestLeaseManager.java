@@ -19,7 +19,10 @@
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.hadoop.thirdparty.com.google.common.collect.Lists;
@@ -102,6 +105,31 @@ public void testCheckLease() throws InterruptedException {
     assertTrue(lm.countLease() < numLease);
   }
 
+  /**
+   * Check that renewed leases are kept by checkLeases and are found again by
+   * the expiry index once they expire.
+   */
+  @Test
+  public void testCheckLeaseAfterRenew() throws InterruptedException {
+    LeaseManager lm = new LeaseManager(makeMockFsNameSystem());
+    lm.setLeasePeriod(100L, 100L);
+    lm.addLease("holder1", INodeId.ROOT_INODE_ID + 1);
+    lm.addLease("holder2", INodeId.ROOT_INODE_ID + 2);
+    Thread.sleep(200);
+
+    // holder1 renews without the LeaseManager lock, holder2 expires.
+    lm.renewLease("holder1");
+    lm.checkLeases();
+    assertFalse(lm.isReleaseTruncated());
+    assertEquals(1, lm.countLease());
+    assertNotNull(lm.getLease("holder1"));
+    assertNull(lm.getLease("holder2"));
+
+    Thread.sleep(200);
+    lm.checkLeases();
+    assertEquals(0, lm.countLease());
+  }
+
   /**
    * Test whether the internal lease holder name is updated properly.
    */
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.util.Time;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests {@link ChunkedList} against an {@link ArrayList}.
+ */
+public class TestChunkedList {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestChunkedList.class);
+
+  @Test
+  public void testEmpty() {
+    ChunkedList<Integer> list = new ChunkedList<>(4);
+    assertEquals(0, list.size());
+    assertTrue(list.isEmpty());
+    assertFalse(list.iterator().hasNext());
+    try {
+      list.get(0);
+      fail("get on an empty list should fail");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAppendFillsChunks() {
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      expected.add(i);
+    }
+    ChunkedList<Integer> list = new ChunkedList<>(expected, 10);
+    assertEquals(expected, list);
+    assertEquals(10, list.getNumChunks());
+  }
+
+  @Test
+  public void testRandomOperations() {
+    final long seed = Time.now();
+    LOG.info("seed = {}", seed);
+    final Random random = new Random(seed);
+    final List<Integer> expected = new ArrayList<>();
+    final ChunkedList<Integer> list = new ChunkedList<>(8);
+
+    for (int n = 0; n < 20000; n++) {
+      final int op = random.nextInt(10);
+      if (op < 5 || expected.isEmpty()) {
+        int index = random.nextInt(expected.size() + 1);
+        int value = random.nextInt();
+        expected.add(index, value);
+        list.add(index, value);
+      } else if (op < 8) {
+        int index = random.nextInt(expected.size());
+        assertEquals(expected.remove(index), list.remove(index));
+      } else {
+        int index = random.nextInt(expected.size());
+        int value = random.nextInt();
+        assertEquals(expected.set(index, value), list.set(index, value));
+      }
+      assertEquals(expected.size(), list.size());
+      if (n % 500 == 0) {
+        assertEquals(expected, list);
+      }
+    }
+    assertEquals(expected, list);
+
+    // Remove everything through the iterator.
+    for (Iterator<Integer> it = list.iterator(); it.hasNext();) {
+      int value = it.next();
+      if (value % 2 == 0) {
+        it.remove();
+      }
+    }
+    expected.removeIf(value -> value % 2 == 0);
+    assertEquals(expected, list);
+
+    list.clear();
+    assertEquals(0, list.size());
+    assertEquals(0, list.getNumChunks());
+  }
+
+  @Test
+  public void testSortedInsertAndBinarySearch() {
+    final ChunkedList<Integer> list = new ChunkedList<>(16);
+    final Random random = new Random();
+    for (int i = 0; i < 5000; i++) {
+      int value = random.nextInt(100000);
+      int pos = Collections.binarySearch(list, value);
+      if (pos < 0) {
+        list.add(-pos - 1, value);
+      }
+    }
+    for (int i = 1; i < list.size(); i++) {
+      assertTrue(list.get(i - 1) < list.get(i));
+    }
+    for (int i = 0; i < list.size(); i++) {
+      assertEquals(i, Collections.binarySearch(list, list.get(i)));
+    }
+  }
+
+  @Test
+  public void testConcurrentModification() {
+    final ChunkedList<Integer> list = new ChunkedList<>(4);
+    for (int i = 0; i < 10; i++) {
+      list.add(i);
+    }
+    Iterator<Integer> it = list.iterator();
+    it.next();
+    list.add(0, -1);
+    try {
+      it.next();
+      fail("Iterator should detect the modification");
+    } catch (ConcurrentModificationException e) {
+      // expected
+    }
+  }
+}
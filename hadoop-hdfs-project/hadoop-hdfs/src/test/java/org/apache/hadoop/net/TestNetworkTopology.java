@@ -30,6 +30,7 @@
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSTestUtil;
@@ -218,6 +219,35 @@ public void testGetDistance() throws Exception {
     assertEquals(6, NetworkTopology.getDistanceByPath(node2, node4));
   }
 
+  @Test
+  public void testSortByDistanceWithCachingWeigher() throws Exception {
+    ToIntFunction<Node> weigher =
+        cluster.getCachingWeigher(dataNodes[0], false);
+    assertEquals(0, weigher.applyAsInt(dataNodes[0]));
+    assertEquals(2, weigher.applyAsInt(dataNodes[1]));
+    // the cached weights match the weights of the topology
+    for (int i = 0; i < 2; i++) {
+      for (DatanodeDescriptor dn : dataNodes) {
+        assertEquals(cluster.getWeight(dataNodes[0], dn),
+            weigher.applyAsInt(dn));
+      }
+    }
+
+    // the sort of several arrays with one weigher matches the usual sort
+    DatanodeDescriptor[][] replicaSets = {
+        {dataNodes[1], dataNodes[2], dataNodes[0]},
+        {dataNodes[5], dataNodes[3], dataNodes[1]},
+        {dataNodes[1], dataNodes[5], dataNodes[3]}};
+    for (DatanodeDescriptor[] replicas : replicaSets) {
+      DatanodeDescriptor[] expected = replicas.clone();
+      cluster.setRandomSeed(0xDEADBEEF);
+      cluster.sortByDistance(dataNodes[0], expected, expected.length);
+      cluster.setRandomSeed(0xDEADBEEF);
+      cluster.sortByDistance(weigher, replicas, replicas.length, null);
+      Assert.assertArrayEquals(expected, replicas);
+    }
+  }
+
   @Test
   public void testSortByDistance() throws Exception {
     DatanodeDescriptor[] testNodes = new DatanodeDescriptor[3];
@@ -42,7 +42,8 @@ public void initializeMemberVariables() {
     xmlFilename = new String("hdfs-default.xml");
     configurationClasses = new Class[] { HdfsClientConfigKeys.class,
         HdfsClientConfigKeys.Failover.class,
-        HdfsClientConfigKeys.StripedRead.class, DFSConfigKeys.class,
+        HdfsClientConfigKeys.StripedRead.class,
+        HdfsClientConfigKeys.Listing.class, DFSConfigKeys.class,
         HdfsClientConfigKeys.BlockWrite.class, HdfsClientConfigKeys.Write.class,
         HdfsClientConfigKeys.Read.class, HdfsClientConfigKeys.HedgedRead.class,
         HdfsClientConfigKeys.ShortCircuit.class,